@@ -0,0 +1,146 @@
+package org.eqasim.core.analysis;
+
+import java.util.BitSet;
+
+import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.IdSet;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Classifies links, transit stops and transit routes once with respect to the
+ * scenario extent, so that the analysis listeners do not need to query the
+ * extent for every event. Links are classified by their coordinate. A transit
+ * route touches the extent if one of its stops or one of the links of its
+ * network route, including the start and end links, is inside. Links and stops
+ * that were not known when the index was built are classified through the
+ * extent on every call.
+ */
+public class AnalysisExtentIndex {
+	private final ScenarioExtent extent;
+
+	private final BitSet indexedLinks = new BitSet();
+	private final BitSet insideLinks = new BitSet();
+
+	private final BitSet indexedStops = new BitSet();
+	private final BitSet insideStops = new BitSet();
+
+	private final IdMap<TransitLine, IdSet<TransitRoute>> touchingRoutes = new IdMap<>(TransitLine.class);
+
+	/**
+	 * The network and the schedule may be null if links or transit routes do not
+	 * need to be classified.
+	 */
+	public AnalysisExtentIndex(ScenarioExtent extent, Network network, TransitSchedule schedule) {
+		this.extent = extent;
+
+		if (network != null) {
+			for (Link link : network.getLinks().values()) {
+				int index = link.getId().index();
+				indexedLinks.set(index);
+
+				if (extent.isInside(link.getCoord())) {
+					insideLinks.set(index);
+				}
+			}
+		}
+
+		if (schedule != null) {
+			for (TransitStopFacility facility : schedule.getFacilities().values()) {
+				int index = facility.getId().index();
+				indexedStops.set(index);
+
+				if (extent.isInside(facility.getCoord())) {
+					insideStops.set(index);
+				}
+			}
+
+			for (TransitLine transitLine : schedule.getTransitLines().values()) {
+				IdSet<TransitRoute> routeIds = new IdSet<>(TransitRoute.class);
+
+				for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+					if (isTouching(transitRoute, network)) {
+						routeIds.add(transitRoute.getId());
+					}
+				}
+
+				touchingRoutes.put(transitLine.getId(), routeIds);
+			}
+		}
+	}
+
+	private boolean isTouching(TransitRoute transitRoute, Network network) {
+		for (TransitRouteStop stop : transitRoute.getStops()) {
+			if (isInside(stop.getStopFacility())) {
+				return true;
+			}
+		}
+
+		NetworkRoute networkRoute = transitRoute.getRoute();
+
+		if (network != null && networkRoute != null) {
+			if (isInside(network, networkRoute.getStartLinkId()) || isInside(network, networkRoute.getEndLinkId())) {
+				return true;
+			}
+
+			for (Id<Link> linkId : networkRoute.getLinkIds()) {
+				if (isInside(network, linkId)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isInside(Network network, Id<Link> linkId) {
+		Link link = linkId == null ? null : network.getLinks().get(linkId);
+		return link != null && isInside(link);
+	}
+
+	public ScenarioExtent getExtent() {
+		return extent;
+	}
+
+	public boolean isInside(Coord coord) {
+		return extent.isInside(coord);
+	}
+
+	public boolean isInside(Link link) {
+		int index = link.getId().index();
+
+		if (indexedLinks.get(index)) {
+			return insideLinks.get(index);
+		}
+
+		return extent.isInside(link.getCoord());
+	}
+
+	public boolean isInside(TransitStopFacility facility) {
+		int index = facility.getId().index();
+
+		if (indexedStops.get(index)) {
+			return insideStops.get(index);
+		}
+
+		return extent.isInside(facility.getCoord());
+	}
+
+	/**
+	 * Returns whether the transit route has a stop or a link inside the extent.
+	 * Unknown routes are treated as not touching the extent.
+	 */
+	public boolean isTouching(Id<TransitLine> transitLineId, Id<TransitRoute> transitRouteId) {
+		IdSet<TransitRoute> routeIds = touchingRoutes.get(transitLineId);
+		return routeIds != null && routeIds.contains(transitRouteId);
+	}
+}
@@ -0,0 +1,40 @@
+package org.eqasim.core.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns consecutive integer ids to strings, so that they can be stored in
+ * primitive arrays. Instances are not thread-safe.
+ */
+public class StringDictionary {
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final List<String> values = new ArrayList<>();
+
+	public int intern(String value) {
+		Integer id = ids.get(value);
+
+		if (id == null) {
+			id = values.size();
+			values.add(value);
+			ids.put(value, id);
+		}
+
+		return id;
+	}
+
+	public String get(int id) {
+		return values.get(id);
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public void clear() {
+		ids.clear();
+		values.clear();
+	}
+}
@@ -0,0 +1,5 @@
+package org.eqasim.core.analysis;
+
+public enum TripOutputFormat {
+	csv, binary
+}
@@ -1,36 +1,48 @@
 package org.eqasim.core.analysis.pt;
 
+import org.eqasim.core.analysis.AnalysisExtentIndex;
 import org.eqasim.core.components.transit.events.PublicTransitEvent;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.IdMap;
-import org.matsim.api.core.v01.IdSet;
 import org.matsim.api.core.v01.events.GenericEvent;
 import org.matsim.api.core.v01.events.handler.GenericEventHandler;
+import org.matsim.core.utils.geometry.CoordUtils;
 import org.matsim.pt.transitSchedule.api.*;
 
 import java.util.*;
 
+/**
+ * Counts accesses and egresses per transit stop. All stops of the schedule are
+ * numbered once at construction and the counts are kept in arrays. If
+ * overlapping stops are merged, every stop is mapped to the first stop of the
+ * schedule that has the same coordinate or, if a merge distance is given, that
+ * lies within that distance.
+ */
 public class PublicTransportStationUsageListener implements GenericEventHandler {
-    private final Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usagesMap = new HashMap<>();
-    private final TransitSchedule transitSchedule;
+    private static final int NONE = -1;
+
     private final Set<String> modes = new HashSet<>();
-    private final IdSet<TransitStopFacility> relevantStops = new IdSet<>(TransitStopFacility.class);
 
-    private final boolean mergeOverlappingStops;
+    private final List<TransitStopFacility> stops = new ArrayList<>();
+    private final int[] stopPositions;
+    private final int[] representatives;
+
+    // Only used if a set of modes is given
+    private final BitSet relevantStops = new BitSet();
 
-    private final IdMap<TransitStopFacility, TransitStopFacility> facilitiesMap = new IdMap<>(TransitStopFacility.class);
+    // Only set if usages should be restricted to stops inside the extent
+    private final AnalysisExtentIndex extentIndex;
 
-    private final ScenarioExtent extent;
+    private final int[] accesses;
+    private final int[] egresses;
 
     public PublicTransportStationUsageListener(TransitSchedule transitSchedule) {
         this(transitSchedule, false, null);
     }
 
     public PublicTransportStationUsageListener(TransitSchedule transitSchedule, boolean mergeOverlappingStops, ScenarioExtent scenarioExtent) {
-        this.transitSchedule = transitSchedule;
-        this.mergeOverlappingStops = mergeOverlappingStops;
-        this.extent = scenarioExtent;
+        this(transitSchedule, mergeOverlappingStops, Collections.emptySet(), scenarioExtent);
     }
 
     public PublicTransportStationUsageListener(TransitSchedule transitSchedule, Collection<String> modes) {
@@ -38,69 +50,165 @@ public class PublicTransportStationUsageListener implements GenericEventHandler
     }
 
     public PublicTransportStationUsageListener(TransitSchedule transitSchedule, boolean mergeOverlappingStops, Collection<String> modes, ScenarioExtent extent) {
-        this(transitSchedule, mergeOverlappingStops, extent);
+        this(transitSchedule, mergeOverlappingStops, modes, extent, 0.0);
+    }
+
+    /**
+     * @param mergeDistance maximum distance between two stops to be merged, zero
+     *                      to only merge stops with equal coordinates
+     */
+    public PublicTransportStationUsageListener(TransitSchedule transitSchedule, boolean mergeOverlappingStops, Collection<String> modes, ScenarioExtent extent, double mergeDistance) {
+        int maximumIndex = -1;
+
+        for (TransitStopFacility facility : transitSchedule.getFacilities().values()) {
+            maximumIndex = Math.max(maximumIndex, facility.getId().index());
+        }
+
+        this.stopPositions = new int[maximumIndex + 1];
+        Arrays.fill(stopPositions, NONE);
+
+        for (TransitStopFacility facility : transitSchedule.getFacilities().values()) {
+            stopPositions[facility.getId().index()] = stops.size();
+            stops.add(facility);
+        }
+
+        this.representatives = mergeOverlappingStops ? createMergeMap(mergeDistance) : null;
+
         this.modes.addAll(modes);
         if(modes.size() > 0) {
             for(TransitLine transitLine: transitSchedule.getTransitLines().values()) {
                 for(TransitRoute transitRoute: transitLine.getRoutes().values()) {
                     if(this.modes.contains(transitRoute.getTransportMode())) {
-                        transitRoute.getStops().forEach(stop -> this.relevantStops.add(stop.getStopFacility().getId()));
+                        for(TransitRouteStop stop: transitRoute.getStops()) {
+                            int position = getPosition(stop.getStopFacility().getId());
+                            if(position != NONE) {
+                                this.relevantStops.set(position);
+                            }
+                        }
                     }
                 }
             }
         }
+
+        this.extentIndex = extent == null ? null : new AnalysisExtentIndex(extent, null, transitSchedule);
+
+        this.accesses = new int[stops.size()];
+        this.egresses = new int[stops.size()];
     }
 
-    @Override
-    public void handleEvent(GenericEvent event) {
-        if(event instanceof PublicTransitEvent) {
-            PublicTransitEvent publicTransitEvent = (PublicTransitEvent) event;
-            Id<TransitStopFacility> accessStopId = publicTransitEvent.getAccessStopId();
-            Id<TransitStopFacility> egressStopId = publicTransitEvent.getEgressStopId();
-            if(this.modes.size() == 0 || this.relevantStops.contains(accessStopId)) {
-                TransitStopFacility accessStop = this.transitSchedule.getFacilities().get(accessStopId);
-                if(this.extent == null || this.extent.isInside(accessStop.getCoord())) {
-                    if(this.mergeOverlappingStops) {
-                        accessStop = this.getMerged(accessStop);
-                    }
-                    PublicTransportStationUsageItem.initOrAddAccess(accessStop, this.usagesMap);
-                }
+    /**
+     * Maps every stop position to the position of its representative. Stops are
+     * hashed into a grid with the merge distance as cell size, so only the
+     * neighbouring cells need to be searched.
+     */
+    private int[] createMergeMap(double mergeDistance) {
+        int[] result = new int[stops.size()];
+
+        if (mergeDistance <= 0.0) {
+            Map<Coord, Integer> coordRepresentatives = new HashMap<>();
+
+            for (int position = 0; position < stops.size(); position++) {
+                int candidate = position;
+                result[position] = coordRepresentatives.computeIfAbsent(stops.get(position).getCoord(), c -> candidate);
             }
-            if(this.modes.size() == 0 || this.relevantStops.contains(egressStopId)) {
-                TransitStopFacility egressStop = this.transitSchedule.getFacilities().get(egressStopId);
-                if(this.extent == null || this.extent.isInside(egressStop.getCoord())) {
-                    if(this.mergeOverlappingStops) {
-                        egressStop = this.getMerged(egressStop);
+
+            return result;
+        }
+
+        Map<Long, List<Integer>> cells = new HashMap<>();
+
+        for (int position = 0; position < stops.size(); position++) {
+            Coord coord = stops.get(position).getCoord();
+
+            long cellX = (long) Math.floor(coord.getX() / mergeDistance);
+            long cellY = (long) Math.floor(coord.getY() / mergeDistance);
+
+            int representative = position;
+
+            search: for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    List<Integer> candidates = cells.get(getCellKey(cellX + dx, cellY + dy));
+
+                    if (candidates != null) {
+                        for (int candidate : candidates) {
+                            if (CoordUtils.calcEuclideanDistance(coord, stops.get(candidate).getCoord()) <= mergeDistance) {
+                                representative = candidate;
+                                break search;
+                            }
+                        }
                     }
-                    PublicTransportStationUsageItem.initOrAddEgress(egressStop, this.usagesMap);
                 }
             }
+
+            result[position] = representative;
+
+            if (representative == position) {
+                cells.computeIfAbsent(getCellKey(cellX, cellY), k -> new ArrayList<>()).add(position);
+            }
         }
+
+        return result;
     }
 
-    private TransitStopFacility getMerged(TransitStopFacility facility) {
-        if(!this.facilitiesMap.containsKey(facility.getId())) {
-            boolean found = false;
-            for(TransitStopFacility otherFacility: this.facilitiesMap.values()) {
-                if(facility.getCoord().equals(otherFacility.getCoord())) {
-                    found = true;
-                    this.facilitiesMap.put(facility.getId(), otherFacility);
-                    break;
-                }
+    private static long getCellKey(long cellX, long cellY) {
+        return (cellX << 32) ^ (cellY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the position of the stop, or NONE if it is not part of the schedule.
+     */
+    private int getPosition(Id<TransitStopFacility> facilityId) {
+        int index = facilityId.index();
+        return index < stopPositions.length ? stopPositions[index] : NONE;
+    }
+
+    @Override
+    public void handleEvent(GenericEvent event) {
+        if(event instanceof PublicTransitEvent) {
+            PublicTransitEvent publicTransitEvent = (PublicTransitEvent) event;
+
+            int accessPosition = getPosition(publicTransitEvent.getAccessStopId());
+            int egressPosition = getPosition(publicTransitEvent.getEgressStopId());
+
+            if (isCounted(accessPosition)) {
+                accesses[representatives == null ? accessPosition : representatives[accessPosition]]++;
             }
-            if(!found) {
-                this.facilitiesMap.put(facility.getId(), facility);
+
+            if (isCounted(egressPosition)) {
+                egresses[representatives == null ? egressPosition : representatives[egressPosition]]++;
             }
         }
-        return this.facilitiesMap.get(facility.getId());
+    }
+
+    private boolean isCounted(int position) {
+        // Stops that are not in the schedule are never counted
+        if (position == NONE) {
+            return false;
+        }
+
+        if (this.modes.size() > 0 && !this.relevantStops.get(position)) {
+            return false;
+        }
+
+        return this.extentIndex == null || this.extentIndex.isInside(stops.get(position));
     }
 
     public Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> getUsagesMap() {
-        return this.usagesMap;
+        Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usagesMap = new LinkedHashMap<>();
+
+        for (int position = 0; position < stops.size(); position++) {
+            if (accesses[position] > 0 || egresses[position] > 0) {
+                TransitStopFacility facility = stops.get(position);
+                usagesMap.put(facility.getId(), new PublicTransportStationUsageItem(facility, accesses[position], egresses[position]));
+            }
+        }
+
+        return usagesMap;
     }
 
     @Override
     public void reset(int iteration) {
-        usagesMap.clear();
+        Arrays.fill(accesses, 0);
+        Arrays.fill(egresses, 0);
     }
 }
@@ -26,11 +26,9 @@ public class PublicTransportStationUsageWriter {
 		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath)));
 
 		writer.write(formatHeader() + "\n");
-		writer.flush();
 
 		for (PublicTransportStationUsageItem usage : usages) {
 			writer.write(formatUsage(usage) + "\n");
-			writer.flush();
 		}
 
 		writer.flush();
@@ -0,0 +1,34 @@
+package org.eqasim.core.analysis.run;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eqasim.core.analysis.DistanceUnit;
+import org.eqasim.core.analysis.trips.TripTable;
+import org.eqasim.core.analysis.trips.TripWriter;
+import org.matsim.core.config.CommandLine;
+import org.matsim.core.config.CommandLine.ConfigurationException;
+
+/**
+ * Exports trips from the binary trip format to CSV.
+ */
+public class RunExportTrips {
+	static public void main(String[] args) throws IOException, ConfigurationException {
+		CommandLine cmd = new CommandLine.Builder(args) //
+				.requireOptions("input-path", "output-path") //
+				.allowOptions("input-distance-unit", "output-distance-unit") //
+				.build();
+
+		TripTable tripTable;
+
+		try (InputStream inputStream = new FileInputStream(cmd.getOptionStrict("input-path"))) {
+			tripTable = TripTable.readBinary(inputStream);
+		}
+
+		DistanceUnit inputUnit = DistanceUnit.valueOf(cmd.getOption("input-distance-unit").orElse("meter"));
+		DistanceUnit outputUnit = DistanceUnit.valueOf(cmd.getOption("output-distance-unit").orElse("meter"));
+
+		new TripWriter(tripTable.getTripItems(), inputUnit, outputUnit).write(cmd.getOptionStrict("output-path"));
+	}
+}
@@ -27,7 +27,7 @@ public class RunPublicTransportStationUsageAnalysis {
 	static public void main(String[] args) throws IOException, ConfigurationException {
 		CommandLine cmd = new CommandLine.Builder(args) //
 				.requireOptions("events-path", "schedule-path", "output-path")
-				.allowOptions("modes", "merge-overlapping-stops", "extent-path")//
+				.allowOptions("modes", "merge-overlapping-stops", "merge-distance", "extent-path")//
 				.build();
 
 		String outputPath = cmd.getOptionStrict("output-path");
@@ -37,6 +37,7 @@ public class RunPublicTransportStationUsageAnalysis {
 
 		List<String> modes = cmd.hasOption("modes") ? List.of(cmd.getOptionStrict("modes").split(",")) : new ArrayList<>();
 		boolean mergeOverlappingStops = cmd.hasOption("merge-overlapping-stops") && Boolean.parseBoolean(cmd.getOptionStrict("merge-overlapping-stops"));
+		double mergeDistance = cmd.getOption("merge-distance").map(Double::parseDouble).orElse(0.0);
 
 		ScenarioExtent scenarioExtent = null;
 		if(extentPath != null) {
@@ -47,7 +48,7 @@ public class RunPublicTransportStationUsageAnalysis {
 		Scenario scenario = ScenarioUtils.createScenario(config);
 		new TransitScheduleReader(scenario).readFile(schedulePath);
 
-		PublicTransportStationUsageListener tripListener = new PublicTransportStationUsageListener(scenario.getTransitSchedule(), mergeOverlappingStops, modes, scenarioExtent);
+		PublicTransportStationUsageListener tripListener = new PublicTransportStationUsageListener(scenario.getTransitSchedule(), mergeOverlappingStops, modes, scenarioExtent, mergeDistance);
 		EventsManager eventsManager = EventsUtils.createEventsManager();
 		eventsManager.addHandler(tripListener);
 		MatsimEventsReader reader = new MatsimEventsReader(eventsManager);
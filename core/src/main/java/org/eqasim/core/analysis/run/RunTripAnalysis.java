@@ -1,7 +1,9 @@
 package org.eqasim.core.analysis.run;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.Collection;
@@ -12,10 +14,12 @@ import org.apache.log4j.Logger;
 import org.eqasim.core.analysis.DefaultPersonAnalysisFilter;
 import org.eqasim.core.analysis.DistanceUnit;
 import org.eqasim.core.analysis.PersonAnalysisFilter;
+import org.eqasim.core.analysis.TripOutputFormat;
 import org.eqasim.core.analysis.trips.TripItem;
 import org.eqasim.core.analysis.trips.TripListener;
 import org.eqasim.core.analysis.trips.TripReaderFromEvents;
 import org.eqasim.core.analysis.trips.TripReaderFromPopulation;
+import org.eqasim.core.analysis.trips.TripTable;
 import org.eqasim.core.analysis.trips.TripWriter;
 import org.eqasim.core.components.EqasimMainModeIdentifier;
 import org.eqasim.core.scenario.cutter.extent.ShapeScenarioExtent;
@@ -45,6 +49,7 @@ public class RunTripAnalysis {
 				.allowOptions("input-distance-units", "output-distance-units")
 				.allowOptions("extent-path", "extent-attribute", "extent-value", "schedule-path")
 				.allowOptions("main-mode-identifier", "person-analysis-filter")
+				.allowOptions("output-format")
 				.build();
 		PersonAnalysisFilter personAnalysisFilter;
 		if(cmd.hasOption("person-analysis-filter")) {
@@ -127,6 +132,10 @@ public class RunTripAnalysis {
 		Collection<String> vehicleModes = Arrays.asList(cmd.getOption("vehicle-modes").orElse("car,pt").split(","))
 				.stream().map(s -> s.trim()).collect(Collectors.toSet());
 
+		TripOutputFormat outputFormat = TripOutputFormat.valueOf(cmd.getOption("output-format").orElse("csv"));
+
+		// Events are analyzed into a trip table, the population into trip items
+		TripTable tripTable = null;
 		Collection<TripItem> trips;
 
 		if (cmd.hasOption("events-path")) {
@@ -144,7 +153,8 @@ public class RunTripAnalysis {
 				schedule = scenario.getTransitSchedule();
 			}
 			TripListener tripListener = new TripListener(network, mainModeIdentifier, personAnalysisFilter, shapeScenarioExtent, schedule);
-			trips = new TripReaderFromEvents(tripListener).readTrips(eventsPath);
+			tripTable = new TripReaderFromEvents(tripListener).readTripTable(eventsPath);
+			trips = null;
 		} else {
 			Network network = null;
 			ActivityFacilities facilities = null;
@@ -173,6 +183,20 @@ public class RunTripAnalysis {
 		DistanceUnit inputUnit = DistanceUnit.valueOf(cmd.getOption("input-distance-unit").orElse("meter"));
 		DistanceUnit outputUnit = DistanceUnit.valueOf(cmd.getOption("output-distance-unit").orElse("meter"));
 
-		new TripWriter(trips, inputUnit, outputUnit).write(outputPath);
+		if (outputFormat == TripOutputFormat.binary) {
+			if (tripTable == null) {
+				tripTable = TripTable.fromItems(trips);
+			}
+
+			try (OutputStream outputStream = new FileOutputStream(outputPath)) {
+				TripTable.writeBinary(outputStream, tripTable);
+			}
+		} else {
+			if (trips == null) {
+				trips = tripTable.getTripItems();
+			}
+
+			new TripWriter(trips, inputUnit, outputUnit).write(outputPath);
+		}
 	}
 }
@@ -1,15 +1,21 @@
 package org.eqasim.core.analysis.trips;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
+import org.eqasim.core.analysis.AnalysisExtentIndex;
 import org.eqasim.core.analysis.PersonAnalysisFilter;
+import org.eqasim.core.analysis.StringDictionary;
 import org.eqasim.core.components.transit.events.PublicTransitEvent;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.events.GenericEvent;
@@ -27,6 +33,7 @@ import org.matsim.api.core.v01.events.handler.PersonLeavesVehicleEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.api.experimental.events.handler.TeleportationArrivalEventHandler;
@@ -35,11 +42,15 @@ import org.matsim.core.router.MainModeIdentifier;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.geometry.CoordUtils;
-import org.matsim.pt.transitSchedule.api.TransitRoute;
-import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.vehicles.Vehicle;
 
+/**
+ * Records trips from events into a {@link TripTable}. The state of ongoing
+ * trips is kept in arrays indexed by the person id index. The legs and stage
+ * activities of a trip are recorded as interned ids and the main mode is only
+ * identified once per distinct sequence of leg modes and stage activities.
+ */
 public class TripListener implements ActivityStartEventHandler, ActivityEndEventHandler, PersonDepartureEventHandler,
 		PersonEntersVehicleEventHandler, PersonLeavesVehicleEventHandler, LinkEnterEventHandler,
 		TeleportationArrivalEventHandler, GenericEventHandler {
@@ -47,64 +58,179 @@ public class TripListener implements ActivityStartEventHandler, ActivityEndEvent
 	final private Network network;
 	final private PopulationFactory factory;
 
-	final private Collection<TripItem> trips = new LinkedList<>();
-	final private Map<Id<Person>, TripListenerItem> ongoing = new HashMap<>();
-	final private Map<Id<Vehicle>, Collection<Id<Person>>> passengers = new HashMap<>();
-	final private Map<Id<Person>, Integer> tripIndex = new HashMap<>();
+	final private TripTable trips = new TripTable();
+	final private IdMap<Vehicle, List<Id<Person>>> passengers = new IdMap<>(Vehicle.class);
 
 	final private PersonAnalysisFilter personFilter;
 
-	final private ScenarioExtent scenarioExtent;
+	// Only set if the scope of the trips should be analyzed
+	final private AnalysisExtentIndex extentIndex;
 
-	final private TransitSchedule transitSchedule;
+	// Leg modes, stage activity types and stage activity links of the ongoing trips
+	final private StringDictionary elementDictionary = new StringDictionary();
+	final private Map<ElementSequence, Integer> mainModes = new HashMap<>();
+	final private ElementSequence probe = new ElementSequence(null, 0);
 
+	// State per person index
+	private int[] tripIndices = new int[0];
+	private final BitSet ongoing = new BitSet();
+
+	private double[] originX = new double[0];
+	private double[] originY = new double[0];
+	private double[] departureTimes = new double[0];
+	private double[] vehicleDistances = new double[0];
+	private double[] routedDistances = new double[0];
+	private double[] lastAddedLinkDistances = new double[0];
+
+	private int[] precedingPurposes = new int[0];
+	private byte[] originScopes = new byte[0];
+	private byte[] tripScopes = new byte[0];
+
+	private int[][] elements = new int[0][];
+	private int[] elementCounts = new int[0];
 
 	public TripListener(Network network, MainModeIdentifier mainModeIdentifier, PersonAnalysisFilter personFilter) {
 		this(network, mainModeIdentifier, personFilter, null, null);
 	}
 
 	public TripListener(Network network, MainModeIdentifier mainModeIdentifier, PersonAnalysisFilter personFilter, ScenarioExtent scenarioExtent, TransitSchedule transitSchedule) {
+		this(network, mainModeIdentifier, personFilter,
+				scenarioExtent == null ? null : new AnalysisExtentIndex(scenarioExtent, network, transitSchedule));
+	}
+
+	public TripListener(Network network, MainModeIdentifier mainModeIdentifier, PersonAnalysisFilter personFilter,
+			AnalysisExtentIndex extentIndex) {
 		this.network = network;
 		this.mainModeIdentifier = mainModeIdentifier;
 		this.factory = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getPopulation().getFactory();
 		this.personFilter = personFilter;
-		this.scenarioExtent = scenarioExtent;
-		this.transitSchedule = transitSchedule;
+		this.extentIndex = extentIndex;
 	}
 
-	public Collection<TripItem> getTripItems() {
+	public TripTable getTripTable() {
 		return trips;
 	}
 
+	/**
+	 * Converts the recorded trips into items. Prefer {@link #getTripTable()} for
+	 * large populations.
+	 */
+	public Collection<TripItem> getTripItems() {
+		return trips.getTripItems();
+	}
+
 	@Override
 	public void reset(int iteration) {
 		trips.clear();
-		ongoing.clear();
 		passengers.clear();
-		tripIndex.clear();
+
+		// Main modes refer to the dictionary of the trip table
+		mainModes.clear();
+
+		Arrays.fill(tripIndices, -1);
+		ongoing.clear();
+	}
+
+	private void ensureCapacity(int personIndex) {
+		if (personIndex >= tripIndices.length) {
+			int previousLength = tripIndices.length;
+			int length = Math.max(personIndex + 1, previousLength * 2);
+
+			tripIndices = Arrays.copyOf(tripIndices, length);
+			Arrays.fill(tripIndices, previousLength, length, -1);
+
+			originX = Arrays.copyOf(originX, length);
+			originY = Arrays.copyOf(originY, length);
+			departureTimes = Arrays.copyOf(departureTimes, length);
+			vehicleDistances = Arrays.copyOf(vehicleDistances, length);
+			routedDistances = Arrays.copyOf(routedDistances, length);
+			lastAddedLinkDistances = Arrays.copyOf(lastAddedLinkDistances, length);
+			precedingPurposes = Arrays.copyOf(precedingPurposes, length);
+			originScopes = Arrays.copyOf(originScopes, length);
+			tripScopes = Arrays.copyOf(tripScopes, length);
+			elements = Arrays.copyOf(elements, length);
+			elementCounts = Arrays.copyOf(elementCounts, length);
+		}
+	}
+
+	private void addElement(int personIndex, int element) {
+		int[] personElements = elements[personIndex];
+		int count = elementCounts[personIndex];
+
+		if (personElements == null) {
+			personElements = new int[8];
+			elements[personIndex] = personElements;
+		} else if (count == personElements.length) {
+			personElements = Arrays.copyOf(personElements, count * 2);
+			elements[personIndex] = personElements;
+		}
+
+		personElements[count] = element;
+		elementCounts[personIndex] = count + 1;
+	}
+
+	/**
+	 * Legs are encoded as even and stage activities as odd element ids. Every
+	 * stage activity is followed by the index of its link, so that the main mode
+	 * identifier sees the same activities as before.
+	 */
+	private int identifyMainMode(int personIndex) {
+		probe.elements = elements[personIndex] == null ? new int[0] : elements[personIndex];
+		probe.count = elementCounts[personIndex];
+
+		Integer mode = mainModes.get(probe);
+
+		if (mode == null) {
+			List<PlanElement> tripElements = new ArrayList<>(probe.count);
+
+			for (int k = 0; k < probe.count; k++) {
+				int element = probe.elements[k];
+				String value = elementDictionary.get(element >> 1);
+
+				if ((element & 1) == 0) {
+					tripElements.add(factory.createLeg(value));
+				} else {
+					Id<Link> linkId = Id.get(probe.elements[++k], Link.class);
+					tripElements.add(factory.createActivityFromLinkId(value, linkId));
+				}
+			}
+
+			mode = trips.getDictionary().intern(mainModeIdentifier.identifyMainMode(tripElements));
+			mainModes.put(new ElementSequence(Arrays.copyOf(probe.elements, probe.count), probe.count), mode);
+		}
+
+		return mode;
+	}
+
+	private byte getScope(Link link) {
+		return extentIndex.isInside(link) ? TripTable.SCOPE_INSIDE : TripTable.SCOPE_OUTSIDE;
 	}
 
 	@Override
 	public void handleEvent(ActivityEndEvent event) {
 		if (personFilter.analyzePerson(event.getPersonId())) {
 			if (!TripStructureUtils.isStageActivityType(event.getActType())) {
-				Integer personTripIndex = tripIndex.get(event.getPersonId());
-				network.getLinks().get(event.getLinkId()).getCoord();
+				int personIndex = event.getPersonId().index();
+				ensureCapacity(personIndex);
 
-				if (personTripIndex == null) {
-					personTripIndex = 0;
-				} else {
-					personTripIndex = personTripIndex + 1;
-				}
+				Link originLink = network.getLinks().get(event.getLinkId());
+				Coord origin = originLink.getCoord();
 
-				TripListenerItem tripListenerItem = new TripListenerItem(event.getPersonId(), personTripIndex,
-						network.getLinks().get(event.getLinkId()).getCoord(), event.getTime(), event.getActType());
-				tripListenerItem.originScope = this.scenarioExtent == null ? "inside" : this.scenarioExtent.isInside(tripListenerItem.origin) ? "inside": "outside";
-				if(tripListenerItem.originScope.equals("inside")) {
-					tripListenerItem.tripScope = "inside";
-				}
-				ongoing.put(event.getPersonId(), tripListenerItem);
-				tripIndex.put(event.getPersonId(), personTripIndex);
+				tripIndices[personIndex]++;
+				ongoing.set(personIndex);
+
+				originX[personIndex] = origin.getX();
+				originY[personIndex] = origin.getY();
+				departureTimes[personIndex] = event.getTime();
+				vehicleDistances[personIndex] = 0.0;
+				routedDistances[personIndex] = 0.0;
+				lastAddedLinkDistances[personIndex] = 0.0;
+				precedingPurposes[personIndex] = trips.getDictionary().intern(event.getActType());
+				elementCounts[personIndex] = 0;
+
+				originScopes[personIndex] = this.extentIndex == null ? TripTable.SCOPE_INSIDE : getScope(originLink);
+				tripScopes[personIndex] = originScopes[personIndex] == TripTable.SCOPE_INSIDE ? TripTable.SCOPE_INSIDE
+						: TripTable.SCOPE_NONE;
 			}
 		}
 	}
@@ -112,38 +238,48 @@ public class TripListener implements ActivityStartEventHandler, ActivityEndEvent
 	@Override
 	public void handleEvent(PersonDepartureEvent event) {
 		if (personFilter.analyzePerson(event.getPersonId())) {
-			ongoing.get(event.getPersonId()).elements.add(factory.createLeg(event.getLegMode()));
+			int personIndex = event.getPersonId().index();
+			ensureCapacity(personIndex);
+
+			addElement(personIndex, elementDictionary.intern(event.getLegMode()) << 1);
 		}
 	}
 
 	@Override
 	public void handleEvent(ActivityStartEvent event) {
 		if (personFilter.analyzePerson(event.getPersonId())) {
+			int personIndex = event.getPersonId().index();
+			ensureCapacity(personIndex);
+
 			if (TripStructureUtils.isStageActivityType(event.getActType())) {
-				ongoing.get(event.getPersonId()).elements
-						.add(factory.createActivityFromLinkId(event.getActType(), event.getLinkId()));
-			} else {
-				TripListenerItem trip = ongoing.remove(event.getPersonId());
-
-				if (trip != null) {
-					trip.returning = event.getActType().equals("home");
-					trip.followingPurpose = event.getActType();
-					trip.travelTime = event.getTime() - trip.departureTime;
-					trip.mode = mainModeIdentifier.identifyMainMode(trip.elements);
-					trip.destination = network.getLinks().get(event.getLinkId()).getCoord();
-					trip.destinationScope = this.scenarioExtent == null ? "" : this.scenarioExtent.isInside(trip.destination) ? "inside" : "outside";
-					if(trip.destinationScope.equals("inside")) {
-						trip.tripScope = "inside";
-					}
-					if(trip.tripScope.equals("") && this.scenarioExtent != null) {
-						trip.tripScope = "outside";
-					}
-					trip.euclideanDistance = CoordUtils.calcEuclideanDistance(trip.origin, trip.destination);
-
-					trips.add(new TripItem(trip.personId, trip.personTripId, trip.origin, trip.destination,
-							trip.departureTime, trip.travelTime, trip.vehicleDistance, trip.routedDistance, trip.mode,
-							trip.precedingPurpose, trip.followingPurpose, trip.returning, trip.euclideanDistance, trip.originScope, trip.destinationScope, trip.tripScope));
+				addElement(personIndex, (elementDictionary.intern(event.getActType()) << 1) | 1);
+				addElement(personIndex, event.getLinkId().index());
+			} else if (ongoing.get(personIndex)) {
+				ongoing.clear(personIndex);
+
+				Link destinationLink = network.getLinks().get(event.getLinkId());
+				Coord destination = destinationLink.getCoord();
+
+				byte destinationScope = this.extentIndex == null ? TripTable.SCOPE_NONE : getScope(destinationLink);
+				byte tripScope = tripScopes[personIndex];
+
+				if (destinationScope == TripTable.SCOPE_INSIDE) {
+					tripScope = TripTable.SCOPE_INSIDE;
 				}
+
+				if (tripScope == TripTable.SCOPE_NONE && this.extentIndex != null) {
+					tripScope = TripTable.SCOPE_OUTSIDE;
+				}
+
+				double euclideanDistance = CoordUtils.calcEuclideanDistance(
+						new Coord(originX[personIndex], originY[personIndex]), destination);
+
+				trips.add(personIndex, tripIndices[personIndex], originX[personIndex], originY[personIndex],
+						destination.getX(), destination.getY(), departureTimes[personIndex],
+						event.getTime() - departureTimes[personIndex], vehicleDistances[personIndex],
+						routedDistances[personIndex], identifyMainMode(personIndex), precedingPurposes[personIndex],
+						trips.getDictionary().intern(event.getActType()), event.getActType().equals("home"),
+						euclideanDistance, originScopes[personIndex], destinationScope, tripScope);
 			}
 		}
 	}
@@ -151,56 +287,70 @@ public class TripListener implements ActivityStartEventHandler, ActivityEndEvent
 	@Override
 	public void handleEvent(PersonEntersVehicleEvent event) {
 		if (personFilter.analyzePerson(event.getPersonId())) {
-			if (!passengers.containsKey(event.getVehicleId())) {
-				passengers.put(event.getVehicleId(), new HashSet<>());
+			ensureCapacity(event.getPersonId().index());
+			List<Id<Person>> vehiclePassengers = passengers.get(event.getVehicleId());
+
+			if (vehiclePassengers == null) {
+				vehiclePassengers = new ArrayList<>(2);
+				passengers.put(event.getVehicleId(), vehiclePassengers);
 			}
 
-			passengers.get(event.getVehicleId()).add(event.getPersonId());
+			if (!vehiclePassengers.contains(event.getPersonId())) {
+				vehiclePassengers.add(event.getPersonId());
+			}
 		}
 	}
 
 	@Override
 	public void handleEvent(PersonLeavesVehicleEvent event) {
 		if (personFilter.analyzePerson(event.getPersonId())) {
-			if (passengers.containsKey(event.getVehicleId())) {
-				passengers.get(event.getVehicleId()).remove(event.getPersonId());
+			List<Id<Person>> vehiclePassengers = passengers.get(event.getVehicleId());
 
-				if (passengers.get(event.getVehicleId()).size() == 0) {
+			if (vehiclePassengers != null) {
+				vehiclePassengers.remove(event.getPersonId());
+
+				if (vehiclePassengers.size() == 0) {
 					passengers.remove(event.getVehicleId());
 				}
 
 				// Last link is not traversed, so we should not count it!
-				TripListenerItem item = ongoing.get(event.getPersonId());
-				item.routedDistance -= item.lastAddedLinkDistance;
-				item.vehicleDistance -= item.lastAddedLinkDistance;
+				int personIndex = event.getPersonId().index();
+				routedDistances[personIndex] -= lastAddedLinkDistances[personIndex];
+				vehicleDistances[personIndex] -= lastAddedLinkDistances[personIndex];
 			}
 		}
 	}
 
 	@Override
 	public void handleEvent(LinkEnterEvent event) {
-		Collection<Id<Person>> personIds = passengers.get(event.getVehicleId());
+		List<Id<Person>> personIds = passengers.get(event.getVehicleId());
 
 		if (personIds != null) {
-			personIds.forEach(id -> {
-				Link link = network.getLinks().get(event.getLinkId());
-				double linkDistance = link.getLength();
-				TripListenerItem item = ongoing.get(id);
-				if(this.scenarioExtent != null && this.scenarioExtent.isInside(link.getCoord())) {
-					item.tripScope = "inside";
+			Link link = network.getLinks().get(event.getLinkId());
+			double linkDistance = link.getLength();
+			boolean isInside = this.extentIndex != null && this.extentIndex.isInside(link);
+
+			for (Id<Person> personId : personIds) {
+				int personIndex = personId.index();
+
+				if (isInside) {
+					tripScopes[personIndex] = TripTable.SCOPE_INSIDE;
 				}
-				item.routedDistance += linkDistance;
-				item.vehicleDistance += linkDistance;
-				item.lastAddedLinkDistance = linkDistance;
-			});
+
+				routedDistances[personIndex] += linkDistance;
+				vehicleDistances[personIndex] += linkDistance;
+				lastAddedLinkDistances[personIndex] = linkDistance;
+			}
 		}
 	}
 
 	@Override
 	public void handleEvent(TeleportationArrivalEvent event) {
 		if (personFilter.analyzePerson(event.getPersonId())) {
-			TripListenerItem item = ongoing.get(event.getPersonId());
-			item.routedDistance += event.getDistance();
+			int personIndex = event.getPersonId().index();
+			ensureCapacity(personIndex);
+
+			routedDistances[personIndex] += event.getDistance();
 		}
 	}
 
@@ -210,27 +360,62 @@ public class TripListener implements ActivityStartEventHandler, ActivityEndEvent
 			PublicTransitEvent transitEvent = (PublicTransitEvent) event;
 
 			if (personFilter.analyzePerson(transitEvent.getPersonId())) {
-				TripListenerItem item = ongoing.get(transitEvent.getPersonId());
-				item.vehicleDistance += transitEvent.getTravelDistance();
-				if(this.scenarioExtent != null) {
-					TransitRoute transitRoute = this.transitSchedule.getTransitLines().get(transitEvent.getTransitLineId()).getRoutes().get(transitEvent.getTransitRouteId());
-					for(TransitRouteStop transitRouteStop: transitRoute.getStops()) {
-						if(this.scenarioExtent.isInside(transitRouteStop.getStopFacility().getCoord())){
-							item.tripScope = "inside";
-							break;
-						}
-					}
-					if(item.tripScope.equals("inside")) {
-						return;
-					}
-					for(Id<Link> linkId: transitRoute.getRoute().getLinkIds()) {
-						if(this.scenarioExtent.isInside(network.getLinks().get(linkId).getCoord())) {
-							item.tripScope = "inside";
-							break;
-						}
-					}
+				int personIndex = transitEvent.getPersonId().index();
+				ensureCapacity(personIndex);
+
+				vehicleDistances[personIndex] += transitEvent.getTravelDistance();
+
+				if (this.extentIndex != null && this.extentIndex.isTouching(transitEvent.getTransitLineId(),
+						transitEvent.getTransitRouteId())) {
+					tripScopes[personIndex] = TripTable.SCOPE_INSIDE;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sequence of element ids used as the key for the main mode. Only the first
+	 * count elements of the array are considered.
+	 */
+	static private class ElementSequence {
+		int[] elements;
+		int count;
+
+		ElementSequence(int[] elements, int count) {
+			this.elements = elements;
+			this.count = count;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 1;
+
+			for (int k = 0; k < count; k++) {
+				hash = 31 * hash + elements[k];
+			}
+
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof ElementSequence)) {
+				return false;
+			}
+
+			ElementSequence other = (ElementSequence) object;
+
+			if (other.count != count) {
+				return false;
+			}
+
+			for (int k = 0; k < count; k++) {
+				if (elements[k] != other.elements[k]) {
+					return false;
 				}
 			}
+
+			return true;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -14,9 +14,13 @@ public class TripReaderFromEvents {
 	}
 
 	public Collection<TripItem> readTrips(String eventsPath) {
+		return readTripTable(eventsPath).getTripItems();
+	}
+
+	public TripTable readTripTable(String eventsPath) {
 		EventsManager eventsManager = EventsUtils.createEventsManager();
 		eventsManager.addHandler(tripListener);
 		new MatsimEventsReader(eventsManager).readFile(eventsPath);
-		return tripListener.getTripItems();
+		return tripListener.getTripTable();
 	}
 }
@@ -0,0 +1,373 @@
+package org.eqasim.core.analysis.trips;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.eqasim.core.analysis.StringDictionary;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+
+/**
+ * Columnar storage of trips. Every attribute is kept in its own primitive
+ * array, persons are referenced by their id index and modes and purposes are
+ * interned into a dictionary. Trips can be written in a compact binary format
+ * or converted to {@link TripItem}s, for instance for the CSV output.
+ */
+public class TripTable {
+	static final long BINARY_MAGIC = 0x7FF0000054524950L;
+	static final int BINARY_VERSION = 1;
+
+	static public final byte SCOPE_NONE = 0;
+	static public final byte SCOPE_INSIDE = 1;
+	static public final byte SCOPE_OUTSIDE = 2;
+
+	static private final String[] SCOPE_NAMES = { "", "inside", "outside" };
+
+	static private final int INITIAL_CAPACITY = 1024;
+	static private final int BUFFER_SIZE = 1024 * 1024;
+
+	private final StringDictionary dictionary = new StringDictionary();
+
+	private int size = 0;
+
+	private int[] personIndices;
+	private int[] personTripIds;
+
+	private double[] originX;
+	private double[] originY;
+	private double[] destinationX;
+	private double[] destinationY;
+
+	private double[] departureTimes;
+	private double[] travelTimes;
+	private double[] vehicleDistances;
+	private double[] routedDistances;
+	private double[] euclideanDistances;
+
+	private int[] modes;
+	private int[] precedingPurposes;
+	private int[] followingPurposes;
+
+	private boolean[] returning;
+
+	private byte[] originScopes;
+	private byte[] destinationScopes;
+	private byte[] tripScopes;
+
+	public TripTable() {
+		this(INITIAL_CAPACITY);
+	}
+
+	private TripTable(int capacity) {
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		personIndices = new int[capacity];
+		personTripIds = new int[capacity];
+		originX = new double[capacity];
+		originY = new double[capacity];
+		destinationX = new double[capacity];
+		destinationY = new double[capacity];
+		departureTimes = new double[capacity];
+		travelTimes = new double[capacity];
+		vehicleDistances = new double[capacity];
+		routedDistances = new double[capacity];
+		euclideanDistances = new double[capacity];
+		modes = new int[capacity];
+		precedingPurposes = new int[capacity];
+		followingPurposes = new int[capacity];
+		returning = new boolean[capacity];
+		originScopes = new byte[capacity];
+		destinationScopes = new byte[capacity];
+		tripScopes = new byte[capacity];
+	}
+
+	private void grow() {
+		int capacity = Math.max(INITIAL_CAPACITY, personIndices.length * 2);
+
+		personIndices = Arrays.copyOf(personIndices, capacity);
+		personTripIds = Arrays.copyOf(personTripIds, capacity);
+		originX = Arrays.copyOf(originX, capacity);
+		originY = Arrays.copyOf(originY, capacity);
+		destinationX = Arrays.copyOf(destinationX, capacity);
+		destinationY = Arrays.copyOf(destinationY, capacity);
+		departureTimes = Arrays.copyOf(departureTimes, capacity);
+		travelTimes = Arrays.copyOf(travelTimes, capacity);
+		vehicleDistances = Arrays.copyOf(vehicleDistances, capacity);
+		routedDistances = Arrays.copyOf(routedDistances, capacity);
+		euclideanDistances = Arrays.copyOf(euclideanDistances, capacity);
+		modes = Arrays.copyOf(modes, capacity);
+		precedingPurposes = Arrays.copyOf(precedingPurposes, capacity);
+		followingPurposes = Arrays.copyOf(followingPurposes, capacity);
+		returning = Arrays.copyOf(returning, capacity);
+		originScopes = Arrays.copyOf(originScopes, capacity);
+		destinationScopes = Arrays.copyOf(destinationScopes, capacity);
+		tripScopes = Arrays.copyOf(tripScopes, capacity);
+	}
+
+	/**
+	 * Returns the dictionary that holds modes and purposes.
+	 */
+	public StringDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+		dictionary.clear();
+	}
+
+	/**
+	 * Adds a trip. Modes and purposes are ids from the dictionary of this table,
+	 * scopes are one of the SCOPE constants.
+	 */
+	public void add(int personIndex, int personTripId, double originX, double originY, double destinationX,
+			double destinationY, double departureTime, double travelTime, double vehicleDistance,
+			double routedDistance, int mode, int precedingPurpose, int followingPurpose, boolean returning,
+			double euclideanDistance, byte originScope, byte destinationScope, byte tripScope) {
+		if (size == personIndices.length) {
+			grow();
+		}
+
+		this.personIndices[size] = personIndex;
+		this.personTripIds[size] = personTripId;
+		this.originX[size] = originX;
+		this.originY[size] = originY;
+		this.destinationX[size] = destinationX;
+		this.destinationY[size] = destinationY;
+		this.departureTimes[size] = departureTime;
+		this.travelTimes[size] = travelTime;
+		this.vehicleDistances[size] = vehicleDistance;
+		this.routedDistances[size] = routedDistance;
+		this.modes[size] = mode;
+		this.precedingPurposes[size] = precedingPurpose;
+		this.followingPurposes[size] = followingPurpose;
+		this.returning[size] = returning;
+		this.euclideanDistances[size] = euclideanDistance;
+		this.originScopes[size] = originScope;
+		this.destinationScopes[size] = destinationScope;
+		this.tripScopes[size] = tripScope;
+
+		size++;
+	}
+
+	public void add(TripItem trip) {
+		add(trip.personId.index(), trip.personTripId, trip.origin.getX(), trip.origin.getY(),
+				trip.destination.getX(), trip.destination.getY(), trip.departureTime, trip.travelTime,
+				trip.vehicleDistance, trip.routedDistance, dictionary.intern(trip.mode),
+				dictionary.intern(trip.precedingPurpose), dictionary.intern(trip.followingPurpose), trip.returning,
+				trip.euclideanDistance, getScope(trip.originScope), getScope(trip.destinationScope),
+				getScope(trip.tripScope));
+	}
+
+	static public TripTable fromItems(Collection<TripItem> trips) {
+		TripTable table = new TripTable(Math.max(1, trips.size()));
+		trips.forEach(table::add);
+		return table;
+	}
+
+	static public byte getScope(String scope) {
+		switch (scope) {
+		case "":
+			return SCOPE_NONE;
+		case "inside":
+			return SCOPE_INSIDE;
+		case "outside":
+			return SCOPE_OUTSIDE;
+		default:
+			throw new IllegalArgumentException("Unknown scope: " + scope);
+		}
+	}
+
+	public TripItem getTripItem(int row) {
+		return new TripItem(Id.get(personIndices[row], Person.class), personTripIds[row],
+				new Coord(originX[row], originY[row]), new Coord(destinationX[row], destinationY[row]),
+				departureTimes[row], travelTimes[row], vehicleDistances[row], routedDistances[row],
+				dictionary.get(modes[row]), dictionary.get(precedingPurposes[row]),
+				dictionary.get(followingPurposes[row]), returning[row], euclideanDistances[row],
+				SCOPE_NAMES[originScopes[row]], SCOPE_NAMES[destinationScopes[row]], SCOPE_NAMES[tripScopes[row]]);
+	}
+
+	public List<TripItem> getTripItems() {
+		List<TripItem> trips = new ArrayList<>(size);
+
+		for (int row = 0; row < size; row++) {
+			trips.add(getTripItem(row));
+		}
+
+		return trips;
+	}
+
+	/**
+	 * Writes the trips column by column. Persons are written as a table of ids
+	 * because id indices are only valid within one run. Distances are written as
+	 * they have been recorded, i.e. in the distance unit of the scenario.
+	 */
+	static public void writeBinary(OutputStream outputStream, TripTable table) throws IOException {
+		DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+		int size = table.size;
+
+		writer.writeLong(BINARY_MAGIC);
+		writer.writeInt(BINARY_VERSION);
+		writer.writeInt(size);
+
+		writer.writeInt(table.dictionary.size());
+
+		for (int id = 0; id < table.dictionary.size(); id++) {
+			writer.writeUTF(String.valueOf(table.dictionary.get(id)));
+		}
+
+		// Person table in order of first appearance
+		int maximumPersonIndex = -1;
+
+		for (int row = 0; row < size; row++) {
+			maximumPersonIndex = Math.max(maximumPersonIndex, table.personIndices[row]);
+		}
+
+		int[] personReferences = new int[maximumPersonIndex + 1];
+		Arrays.fill(personReferences, -1);
+
+		List<Id<Person>> personIds = new ArrayList<>();
+
+		for (int row = 0; row < size; row++) {
+			int personIndex = table.personIndices[row];
+
+			if (personReferences[personIndex] == -1) {
+				personReferences[personIndex] = personIds.size();
+				personIds.add(Id.get(personIndex, Person.class));
+			}
+		}
+
+		writer.writeInt(personIds.size());
+
+		for (Id<Person> personId : personIds) {
+			writer.writeUTF(personId.toString());
+		}
+
+		for (int row = 0; row < size; row++) {
+			writer.writeInt(personReferences[table.personIndices[row]]);
+		}
+
+		writeColumn(writer, table.personTripIds, size);
+		writeColumn(writer, table.originX, size);
+		writeColumn(writer, table.originY, size);
+		writeColumn(writer, table.destinationX, size);
+		writeColumn(writer, table.destinationY, size);
+		writeColumn(writer, table.departureTimes, size);
+		writeColumn(writer, table.travelTimes, size);
+		writeColumn(writer, table.vehicleDistances, size);
+		writeColumn(writer, table.routedDistances, size);
+		writeColumn(writer, table.euclideanDistances, size);
+		writeColumn(writer, table.modes, size);
+		writeColumn(writer, table.precedingPurposes, size);
+		writeColumn(writer, table.followingPurposes, size);
+
+		for (int row = 0; row < size; row++) {
+			writer.writeBoolean(table.returning[row]);
+		}
+
+		writer.write(table.originScopes, 0, size);
+		writer.write(table.destinationScopes, 0, size);
+		writer.write(table.tripScopes, 0, size);
+
+		writer.flush();
+	}
+
+	static private void writeColumn(DataOutputStream writer, int[] values, int size) throws IOException {
+		for (int row = 0; row < size; row++) {
+			writer.writeInt(values[row]);
+		}
+	}
+
+	static private void writeColumn(DataOutputStream writer, double[] values, int size) throws IOException {
+		for (int row = 0; row < size; row++) {
+			writer.writeDouble(values[row]);
+		}
+	}
+
+	static public TripTable readBinary(InputStream inputStream) throws IOException {
+		DataInputStream reader = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+
+		if (reader.readLong() != BINARY_MAGIC) {
+			throw new IllegalStateException("Not a trip file");
+		}
+
+		int version = reader.readInt();
+
+		if (version != BINARY_VERSION) {
+			throw new IllegalStateException("Unsupported trip format version: " + version);
+		}
+
+		int size = reader.readInt();
+		TripTable table = new TripTable(Math.max(1, size));
+
+		int dictionarySize = reader.readInt();
+
+		for (int id = 0; id < dictionarySize; id++) {
+			table.dictionary.intern(reader.readUTF());
+		}
+
+		int numberOfPersons = reader.readInt();
+		int[] personIndices = new int[numberOfPersons];
+
+		for (int k = 0; k < numberOfPersons; k++) {
+			personIndices[k] = Id.createPersonId(reader.readUTF()).index();
+		}
+
+		for (int row = 0; row < size; row++) {
+			table.personIndices[row] = personIndices[reader.readInt()];
+		}
+
+		readColumn(reader, table.personTripIds, size);
+		readColumn(reader, table.originX, size);
+		readColumn(reader, table.originY, size);
+		readColumn(reader, table.destinationX, size);
+		readColumn(reader, table.destinationY, size);
+		readColumn(reader, table.departureTimes, size);
+		readColumn(reader, table.travelTimes, size);
+		readColumn(reader, table.vehicleDistances, size);
+		readColumn(reader, table.routedDistances, size);
+		readColumn(reader, table.euclideanDistances, size);
+		readColumn(reader, table.modes, size);
+		readColumn(reader, table.precedingPurposes, size);
+		readColumn(reader, table.followingPurposes, size);
+
+		for (int row = 0; row < size; row++) {
+			table.returning[row] = reader.readBoolean();
+		}
+
+		reader.readFully(table.originScopes, 0, size);
+		reader.readFully(table.destinationScopes, 0, size);
+		reader.readFully(table.tripScopes, 0, size);
+
+		table.size = size;
+		return table;
+	}
+
+	static private void readColumn(DataInputStream reader, int[] values, int size) throws IOException {
+		for (int row = 0; row < size; row++) {
+			values[row] = reader.readInt();
+		}
+	}
+
+	static private void readColumn(DataInputStream reader, double[] values, int size) throws IOException {
+		for (int row = 0; row < size; row++) {
+			values[row] = reader.readDouble();
+		}
+	}
+}
@@ -11,6 +11,8 @@ import java.util.Collection;
 import org.eqasim.core.analysis.DistanceUnit;
 
 public class TripWriter {
+	static private final int BUFFER_SIZE = 1024 * 1024;
+
 	final private Collection<TripItem> trips;
 	final private String delimiter;
 
@@ -29,14 +31,13 @@ public class TripWriter {
 	}
 
 	public void write(String outputPath) throws IOException {
-		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath)));
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath)),
+				BUFFER_SIZE);
 
 		writer.write(formatHeader() + "\n");
-		writer.flush();
 
 		for (TripItem trip : trips) {
 			writer.write(formatTrip(trip) + "\n");
-			writer.flush();
 		}
 
 		writer.flush();
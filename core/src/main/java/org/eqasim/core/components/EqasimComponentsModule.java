@@ -1,11 +1,23 @@
 package org.eqasim.core.components;
 
+import org.eqasim.core.components.traffic.CrossingPenaltyClassification;
+import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.router.MainModeIdentifier;
 
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+
 public class EqasimComponentsModule extends AbstractModule {
 	@Override
 	public void install() {
 		bind(MainModeIdentifier.class).to(EqasimMainModeIdentifier.class);
+		addControlerListenerBinding().to(CrossingPenaltyClassification.class);
+	}
+
+	@Provides
+	@Singleton
+	public CrossingPenaltyClassification provideCrossingPenaltyClassification(Network network) {
+		return new CrossingPenaltyClassification(network);
 	}
 }
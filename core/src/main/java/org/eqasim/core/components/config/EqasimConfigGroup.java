@@ -1,10 +1,17 @@
 package org.eqasim.core.components.config;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.eqasim.core.analysis.DistanceUnit;
+import org.eqasim.core.analysis.TripOutputFormat;
+import org.eqasim.core.simulation.mode_choice.epsilon.EpsilonGenerator;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ReflectiveConfigGroup;
@@ -22,9 +29,16 @@ public class EqasimConfigGroup extends ReflectiveConfigGroup {
 
 	private final static String ANALYSIS_INTERVAL = "analysisInterval";
 	private final static String ANALYSIS_DISTANCE_UNIT = "analysisDistanceUnit";
+	private final static String ANALYSIS_TRIP_FORMAT = "analysisTripFormat";
 
 	private final static String USE_SCHEDULE_BASED_TRANSPORT = "useScheduleBasedTransport";
 
+	private final static String EPSILON_GENERATOR = "epsilonGenerator";
+
+	private final static String ROUTE_CACHE_MODES = "routeCacheModes";
+	private final static String ROUTE_CACHE_INVALIDATED_MODES = "routeCacheInvalidatedModes";
+	private final static String ROUTE_CACHE_CAPACITY = "routeCacheCapacity";
+
 	private double sampleSize = 1.0;
 	private DistanceUnit distanceUnit = DistanceUnit.meter;
 
@@ -35,9 +49,16 @@ public class EqasimConfigGroup extends ReflectiveConfigGroup {
 
 	private int analysisInterval = 0;
 	private DistanceUnit analysisDistanceUnit = DistanceUnit.meter;
+	private TripOutputFormat analysisTripFormat = TripOutputFormat.csv;
 
 	private boolean useScheduleBasedTransport = true;
 
+	private EpsilonGenerator epsilonGenerator = EpsilonGenerator.sha512;
+
+	private Set<String> routeCacheModes = new HashSet<>();
+	private Set<String> routeCacheInvalidatedModes = new HashSet<>();
+	private int routeCacheCapacity = 100000;
+
 	public EqasimConfigGroup() {
 		super(GROUP_NAME);
 	}
@@ -228,6 +249,77 @@ public class EqasimConfigGroup extends ReflectiveConfigGroup {
 		this.analysisDistanceUnit = analysisDistanceUnit;
 	}
 
+	@StringGetter(ANALYSIS_TRIP_FORMAT)
+	public TripOutputFormat getAnalysisTripFormat() {
+		return analysisTripFormat;
+	}
+
+	@StringSetter(ANALYSIS_TRIP_FORMAT)
+	public void setAnalysisTripFormat(TripOutputFormat analysisTripFormat) {
+		this.analysisTripFormat = analysisTripFormat;
+	}
+
+	@StringGetter(EPSILON_GENERATOR)
+	public EpsilonGenerator getEpsilonGenerator() {
+		return epsilonGenerator;
+	}
+
+	@StringSetter(EPSILON_GENERATOR)
+	public void setEpsilonGenerator(EpsilonGenerator epsilonGenerator) {
+		this.epsilonGenerator = epsilonGenerator;
+	}
+
+	public Collection<String> getRouteCacheModes() {
+		return routeCacheModes;
+	}
+
+	public void setRouteCacheModes(Collection<String> routeCacheModes) {
+		this.routeCacheModes = new HashSet<>(routeCacheModes);
+	}
+
+	@StringGetter(ROUTE_CACHE_MODES)
+	public String getRouteCacheModesAsString() {
+		return String.join(", ", routeCacheModes);
+	}
+
+	@StringSetter(ROUTE_CACHE_MODES)
+	public void setRouteCacheModesAsString(String routeCacheModes) {
+		this.routeCacheModes = parseModes(routeCacheModes);
+	}
+
+	public Collection<String> getRouteCacheInvalidatedModes() {
+		return routeCacheInvalidatedModes;
+	}
+
+	public void setRouteCacheInvalidatedModes(Collection<String> routeCacheInvalidatedModes) {
+		this.routeCacheInvalidatedModes = new HashSet<>(routeCacheInvalidatedModes);
+	}
+
+	@StringGetter(ROUTE_CACHE_INVALIDATED_MODES)
+	public String getRouteCacheInvalidatedModesAsString() {
+		return String.join(", ", routeCacheInvalidatedModes);
+	}
+
+	@StringSetter(ROUTE_CACHE_INVALIDATED_MODES)
+	public void setRouteCacheInvalidatedModesAsString(String routeCacheInvalidatedModes) {
+		this.routeCacheInvalidatedModes = parseModes(routeCacheInvalidatedModes);
+	}
+
+	@StringGetter(ROUTE_CACHE_CAPACITY)
+	public int getRouteCacheCapacity() {
+		return routeCacheCapacity;
+	}
+
+	@StringSetter(ROUTE_CACHE_CAPACITY)
+	public void setRouteCacheCapacity(int routeCacheCapacity) {
+		this.routeCacheCapacity = routeCacheCapacity;
+	}
+
+	static private Set<String> parseModes(String modes) {
+		return Arrays.asList(modes.split(",")).stream().map(String::trim).filter(mode -> mode.length() > 0)
+				.collect(Collectors.toSet());
+	}
+
 	@StringGetter(USE_SCHEDULE_BASED_TRANSPORT)
 	public boolean getUseScheduleBasedTransport() {
 		return useScheduleBasedTransport;
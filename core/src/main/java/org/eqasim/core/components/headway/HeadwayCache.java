@@ -0,0 +1,160 @@
+package org.eqasim.core.components.headway;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Bounded cache for headways, keyed by origin link, destination link and
+ * departure time bin. All departures in one bin share the headway that is
+ * calculated for the center of the bin.
+ *
+ * The cache is split into segments by the hash of the key. Each segment is a
+ * small LRU map guarded by its own lock, so worker threads rarely contend with
+ * each other. When a segment is full, its least recently used entry is evicted.
+ */
+public class HeadwayCache {
+	private static final int NUMBER_OF_SEGMENTS = 64;
+
+	private final double binSize;
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public HeadwayCache(double binSize, int capacity) {
+		if (!(binSize > 0.0)) {
+			throw new IllegalArgumentException("Bin size must be positive");
+		}
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+
+		this.binSize = binSize;
+		this.segments = new Segment[NUMBER_OF_SEGMENTS];
+
+		int segmentCapacity = Math.max(1, (capacity + NUMBER_OF_SEGMENTS - 1) / NUMBER_OF_SEGMENTS);
+
+		for (int i = 0; i < NUMBER_OF_SEGMENTS; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	public int getBin(double departureTime) {
+		return (int) Math.floor(departureTime / binSize);
+	}
+
+	/**
+	 * Returns the time for which the headway of the bin is calculated.
+	 */
+	public double getBinTime(int bin) {
+		return (bin + 0.5) * binSize;
+	}
+
+	/**
+	 * Returns the cached headway or calculates it with the given supplier. Two
+	 * threads that miss the same key at the same time may both calculate it.
+	 */
+	public double get(Id<Link> originLinkId, Id<Link> destinationLinkId, int bin, DoubleSupplier calculator) {
+		Key key = new Key(originLinkId.index(), destinationLinkId.index(), bin);
+		Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % NUMBER_OF_SEGMENTS];
+
+		Double headway;
+
+		synchronized (segment) {
+			headway = segment.get(key);
+		}
+
+		if (headway != null) {
+			hits.increment();
+			return headway;
+		}
+
+		misses.increment();
+		double calculated = calculator.getAsDouble();
+
+		synchronized (segment) {
+			segment.put(key, calculated);
+		}
+
+		return calculated;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public double getHitRate() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public int size() {
+		int size = 0;
+
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+	private static class Segment extends LinkedHashMap<Key, Double> {
+		private static final long serialVersionUID = 5412279138740473524L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	private static class Key {
+		private final int originIndex;
+		private final int destinationIndex;
+		private final int bin;
+
+		Key(int originIndex, int destinationIndex, int bin) {
+			this.originIndex = originIndex;
+			this.destinationIndex = destinationIndex;
+			this.bin = bin;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Key) {
+				Key otherKey = (Key) other;
+				return originIndex == otherKey.originIndex && destinationIndex == otherKey.destinationIndex
+						&& bin == otherKey.bin;
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = originIndex;
+			hash = 31 * hash + destinationIndex;
+			hash = 31 * hash + bin;
+			return hash ^ (hash >>> 16);
+		}
+	}
+}
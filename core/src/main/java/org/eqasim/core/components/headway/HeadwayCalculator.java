@@ -15,13 +15,36 @@ public class HeadwayCalculator {
 	private final double beforeDepartureOffset;
 	private final double afterDepartureOffset;
 
+	private final HeadwayCache cache;
+
 	public HeadwayCalculator(SwissRailRaptor raptor, double beforeDepartureOffset, double afterDepartureOffset) {
+		this(raptor, beforeDepartureOffset, afterDepartureOffset, null);
+	}
+
+	/**
+	 * If a cache is given, headways are looked up per origin link, destination link
+	 * and time bin of the cache and only calculated on a miss.
+	 */
+	public HeadwayCalculator(SwissRailRaptor raptor, double beforeDepartureOffset, double afterDepartureOffset,
+			HeadwayCache cache) {
 		this.raptor = raptor;
 		this.beforeDepartureOffset = beforeDepartureOffset;
 		this.afterDepartureOffset = afterDepartureOffset;
+		this.cache = cache;
 	}
 
 	public double calculateHeadway_min(Facility originFacility, Facility destinationFacilty, double departureTime) {
+		if (cache != null && originFacility.getLinkId() != null && destinationFacilty.getLinkId() != null) {
+			int bin = cache.getBin(departureTime);
+
+			return cache.get(originFacility.getLinkId(), destinationFacilty.getLinkId(), bin,
+					() -> calculateUncached_min(originFacility, destinationFacilty, cache.getBinTime(bin)));
+		}
+
+		return calculateUncached_min(originFacility, destinationFacilty, departureTime);
+	}
+
+	private double calculateUncached_min(Facility originFacility, Facility destinationFacilty, double departureTime) {
 		double earliestDepartureTime = departureTime - beforeDepartureOffset;
 		double latestDepartureTime = departureTime + afterDepartureOffset;
 
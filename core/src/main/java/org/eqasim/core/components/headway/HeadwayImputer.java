@@ -4,6 +4,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.log4j.Logger;
 import org.eqasim.core.misc.ParallelProgress;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
@@ -19,6 +20,8 @@ import org.matsim.facilities.Facility;
 import com.google.inject.Provider;
 
 public class HeadwayImputer {
+	private final static Logger logger = Logger.getLogger(HeadwayImputer.class);
+
 	private final int numberOfThreads;
 	private final int batchSize;
 	private final boolean replaceExistingHeadways;
@@ -26,14 +29,25 @@ public class HeadwayImputer {
 	private final Network network;
 
 	private final Provider<HeadwayCalculator> calculatorProvider;
+	private final HeadwayCache cache;
 
 	public HeadwayImputer(int numberOfThreads, int batchSize, boolean replaceExistingHeadways, Network network,
 			Provider<HeadwayCalculator> calculatorProvider) {
+		this(numberOfThreads, batchSize, replaceExistingHeadways, network, calculatorProvider, null);
+	}
+
+	/**
+	 * The cache is only used to report statistics, it must be the one that is
+	 * shared by the provided calculators.
+	 */
+	public HeadwayImputer(int numberOfThreads, int batchSize, boolean replaceExistingHeadways, Network network,
+			Provider<HeadwayCalculator> calculatorProvider, HeadwayCache cache) {
 		this.numberOfThreads = numberOfThreads;
 		this.batchSize = batchSize;
 		this.network = network;
 		this.calculatorProvider = calculatorProvider;
 		this.replaceExistingHeadways = replaceExistingHeadways;
+		this.cache = cache;
 	}
 
 	public void run(Population population) throws InterruptedException {
@@ -55,6 +69,11 @@ public class HeadwayImputer {
 		}
 
 		progress.close();
+
+		if (cache != null) {
+			logger.info(String.format("Headway cache: %d hits, %d misses (%.2f%% hit rate), %d entries",
+					cache.getHits(), cache.getMisses(), 100.0 * cache.getHitRate(), cache.size()));
+		}
 	}
 
 	private class Worker implements Runnable {
@@ -1,11 +1,14 @@
 package org.eqasim.core.components.headway;
 
+import java.util.Optional;
+
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.router.TripRouter;
 
 import com.google.inject.Provider;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
 
@@ -15,11 +18,25 @@ public class HeadwayImputerModule extends AbstractModule {
 	private final boolean replaceExistingHeadways;
 	private final double interval;
 
+	private final double cacheBinSize;
+	private final int cacheCapacity;
+
 	public HeadwayImputerModule(int numberOfThreads, int batchSize, boolean replaceExistingHeadways, double interval) {
+		this(numberOfThreads, batchSize, replaceExistingHeadways, interval, 0.0, 0);
+	}
+
+	/**
+	 * Headways are cached per origin link, destination link and time bin if the
+	 * cache bin size is positive.
+	 */
+	public HeadwayImputerModule(int numberOfThreads, int batchSize, boolean replaceExistingHeadways, double interval,
+			double cacheBinSize, int cacheCapacity) {
 		this.numberOfThreads = numberOfThreads;
 		this.batchSize = batchSize;
 		this.replaceExistingHeadways = replaceExistingHeadways;
 		this.interval = interval;
+		this.cacheBinSize = cacheBinSize;
+		this.cacheCapacity = cacheCapacity;
 	}
 
 	@Override
@@ -27,13 +44,24 @@ public class HeadwayImputerModule extends AbstractModule {
 	}
 
 	@Provides
-	public HeadwayCalculator provideHeadwayCalculator(SwissRailRaptor raptor) {
-		return new HeadwayCalculator(raptor, interval, interval);
+	@Singleton
+	public Optional<HeadwayCache> provideHeadwayCache() {
+		if (cacheBinSize > 0.0) {
+			return Optional.of(new HeadwayCache(cacheBinSize, cacheCapacity));
+		} else {
+			return Optional.empty();
+		}
+	}
+
+	@Provides
+	public HeadwayCalculator provideHeadwayCalculator(SwissRailRaptor raptor, Optional<HeadwayCache> cache) {
+		return new HeadwayCalculator(raptor, interval, interval, cache.orElse(null));
 	}
 
 	@Provides
 	public HeadwayImputer provideHeadwayImputer(Provider<HeadwayCalculator> calculatorProvider, Network network,
-			TripRouter tripRouter) {
-		return new HeadwayImputer(numberOfThreads, batchSize, replaceExistingHeadways, network, calculatorProvider);
+			TripRouter tripRouter, Optional<HeadwayCache> cache) {
+		return new HeadwayImputer(numberOfThreads, batchSize, replaceExistingHeadways, network, calculatorProvider,
+				cache.orElse(null));
 	}
 }
@@ -0,0 +1,87 @@
+package org.eqasim.core.components.traffic;
+
+import java.util.BitSet;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+
+/**
+ * Classifies once for the whole network which links receive a crossing
+ * penalty. These are the links that end in an intersection with several
+ * incoming links of which at least one has the same or a higher capacity. The
+ * result is stored in a bit set indexed by the link id index, so that link
+ * speed calculators do not need to look at the intersection for every vehicle.
+ *
+ * Code that changes the network topology or link capacities between
+ * iterations must call {@link #invalidate()}. The classification is then
+ * rebuilt once before the next mobsim. Otherwise, nothing is checked between
+ * iterations.
+ *
+ * Like the previous per-call check, the classification uses the static
+ * capacity of the links. Time-variant capacities from network change events
+ * are not taken into account.
+ */
+public class CrossingPenaltyClassification implements BeforeMobsimListener {
+	private final Network network;
+
+	private volatile BitSet penalizedLinks;
+	private volatile boolean invalidated = false;
+
+	public CrossingPenaltyClassification(Network network) {
+		this.network = network;
+		update();
+	}
+
+	public boolean hasCrossingPenalty(Link link) {
+		return penalizedLinks.get(link.getId().index());
+	}
+
+	/**
+	 * Marks the classification as outdated after the network has been changed.
+	 */
+	public void invalidate() {
+		invalidated = true;
+	}
+
+	/**
+	 * Rebuilds the classification if it has been invalidated since the last
+	 * update.
+	 */
+	public void refresh() {
+		if (invalidated) {
+			update();
+		}
+	}
+
+	public synchronized void update() {
+		invalidated = false;
+		BitSet penalizedLinks = new BitSet();
+
+		for (Link link : network.getLinks().values()) {
+			if (computeCrossingPenalty(link)) {
+				penalizedLinks.set(link.getId().index());
+			}
+		}
+
+		this.penalizedLinks = penalizedLinks;
+	}
+
+	static public boolean computeCrossingPenalty(Link link) {
+		boolean isMajor = true;
+
+		for (Link other : link.getToNode().getInLinks().values()) {
+			if (other.getCapacity() >= link.getCapacity()) {
+				isMajor = false;
+			}
+		}
+
+		return !(isMajor || link.getToNode().getInLinks().size() == 1);
+	}
+
+	@Override
+	public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+		refresh();
+	}
+}
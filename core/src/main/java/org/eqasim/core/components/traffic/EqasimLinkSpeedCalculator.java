@@ -7,23 +7,18 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCa
 public class EqasimLinkSpeedCalculator implements LinkSpeedCalculator {
 	final private LinkSpeedCalculator delegate;
 	final private double crossingPenalty;
+	final private CrossingPenaltyClassification classification;
 
-	public EqasimLinkSpeedCalculator(LinkSpeedCalculator delegate, double crossingPenalty) {
+	public EqasimLinkSpeedCalculator(LinkSpeedCalculator delegate, double crossingPenalty,
+			CrossingPenaltyClassification classification) {
 		this.delegate = delegate;
 		this.crossingPenalty = crossingPenalty;
+		this.classification = classification;
 	}
 
 	@Override
 	public double getMaximumVelocity(QVehicle vehicle, Link link, double time) {
-		boolean isMajor = true;
-
-		for (Link other : link.getToNode().getInLinks().values()) {
-			if (other.getCapacity() >= link.getCapacity()) {
-				isMajor = false;
-			}
-		}
-
-		if (isMajor || link.getToNode().getInLinks().size() == 1) {
+		if (!classification.hasCrossingPenalty(link)) {
 			return delegate.getMaximumVelocity(vehicle, link, time);
 		} else {
 			double travelTime =  link.getLength() / delegate.getMaximumVelocity(vehicle, link, time);
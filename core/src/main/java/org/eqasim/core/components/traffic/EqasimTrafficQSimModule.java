@@ -28,8 +28,9 @@ public class EqasimTrafficQSimModule extends AbstractQSimModule {
 
 	@Provides
 	@Singleton
-	public EqasimLinkSpeedCalculator provideBaselineLinkSpeedCalculator(EqasimConfigGroup eqasimConfig) {
+	public EqasimLinkSpeedCalculator provideBaselineLinkSpeedCalculator(EqasimConfigGroup eqasimConfig,
+			CrossingPenaltyClassification classification) {
 		DefaultLinkSpeedCalculator delegate = new DefaultLinkSpeedCalculator();
-		return new EqasimLinkSpeedCalculator(delegate, eqasimConfig.getCrossingPenalty());
+		return new EqasimLinkSpeedCalculator(delegate, eqasimConfig.getCrossingPenalty(), classification);
 	}
 }
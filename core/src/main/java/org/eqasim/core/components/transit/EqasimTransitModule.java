@@ -2,8 +2,13 @@ package org.eqasim.core.components.transit;
 
 import org.eqasim.core.components.transit.departure.DefaultDepartureFinder;
 import org.eqasim.core.components.transit.departure.DepartureFinder;
+import org.eqasim.core.components.transit.departure.DepartureIndex;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.pt.router.TransitRouter;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
 
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
 
@@ -14,4 +19,10 @@ public class EqasimTransitModule extends AbstractModule {
 
 		bind(DepartureFinder.class).to(DefaultDepartureFinder.class);
 	}
+
+	@Provides
+	@Singleton
+	public DepartureIndex provideDepartureIndex(TransitSchedule schedule) {
+		return new DepartureIndex(schedule);
+	}
 }
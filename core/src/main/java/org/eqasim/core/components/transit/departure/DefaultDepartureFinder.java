@@ -1,72 +1,80 @@
 package org.eqasim.core.components.transit.departure;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.stream.Collectors;
-
+import org.eqasim.core.components.transit.departure.DepartureIndex.RouteDepartures;
 import org.matsim.api.core.v01.Id;
-import org.matsim.pt.transitSchedule.api.Departure;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
-import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
- * TODO: this is sorting all the time. We can make it efficient by creating a
- * sorted list of deaprtures (or departure times per route)
+ * Finds the departure with the shortest waiting time at any position of the
+ * access stop that lies before the egress stop. Departures are looked up
+ * through binary search in the sorted departure times of the
+ * {@link DepartureIndex}.
  */
 @Singleton
 public class DefaultDepartureFinder implements DepartureFinder {
+	private final DepartureIndex index;
+
+	public DefaultDepartureFinder() {
+		this(new DepartureIndex());
+	}
+
+	@Inject
+	public DefaultDepartureFinder(DepartureIndex index) {
+		this.index = index;
+	}
+
 	@Override
 	public StopDeparture findNextDeparture(TransitRoute route, Id<TransitStopFacility> accessStopId,
 			Id<TransitStopFacility> egressStopId, double departureTime) throws NoDepartureFoundException {
-		List<Id<TransitStopFacility>> stopIds = route.getStops().stream().map(s -> s.getStopFacility().getId())
-				.collect(Collectors.toList());
+		RouteDepartures routeDepartures = index.getRouteDepartures(route);
 
-		int firstAccessStopIndex = stopIds.indexOf(accessStopId);
-		int lastEgressStopIndex = stopIds.lastIndexOf(egressStopId);
+		int[] accessStopPositions = routeDepartures.getStopPositions(accessStopId);
+		int[] egressStopPositions = routeDepartures.getStopPositions(egressStopId);
 
-		if (firstAccessStopIndex == -1) {
+		if (accessStopPositions == null) {
 			throw new IllegalStateException("Access stop not found no route");
 		}
 
-		if (lastEgressStopIndex == -1) {
+		if (egressStopPositions == null) {
 			throw new IllegalStateException("Egress stop not found on route");
 		}
 
-		List<TransitRouteStop> stopCandidates = new LinkedList<>();
+		int lastEgressStopPosition = egressStopPositions[egressStopPositions.length - 1];
 
-		for (int i = firstAccessStopIndex; i <= lastEgressStopIndex; i++) {
-			if (stopIds.get(i).equals(accessStopId)) {
-				stopCandidates.add(route.getStops().get(i));
-			}
-		}
+		int bestPosition = -1;
+		int bestDeparture = -1;
+		double bestWaitingTime = Double.POSITIVE_INFINITY;
 
-		if (stopCandidates.size() == 0) {
-			throw new NoDepartureFoundException();
-		}
+		for (int position : accessStopPositions) {
+			if (position > lastEgressStopPosition) {
+				break;
+			}
 
-		StopDeparture result = null;
+			int candidate = routeDepartures.findFirstDeparture(position, departureTime);
 
-		for (Departure departure : route.getDepartures().values()) {
-			for (TransitRouteStop stopCandidate : stopCandidates) {
-				double stopOffset = stopCandidate.getDepartureOffset().seconds();
-				double candidateWaitingTime = (departure.getDepartureTime() + stopOffset) - departureTime;
+			if (candidate < routeDepartures.getNumberOfDepartures()) {
+				double candidateWaitingTime = (routeDepartures.getDepartureTime(candidate)
+						+ routeDepartures.getStopOffset(position)) - departureTime;
 
-				if (candidateWaitingTime >= 0.0) {
-					if (result == null || (result.waitingTime > candidateWaitingTime)) {
-						result = new StopDeparture(departure, stopCandidate, candidateWaitingTime);
-						break;
-					}
+				if (bestDeparture == -1 || candidateWaitingTime < bestWaitingTime
+						|| (candidateWaitingTime == bestWaitingTime && routeDepartures
+								.getScheduleOrder(candidate) < routeDepartures.getScheduleOrder(bestDeparture))) {
+					bestPosition = position;
+					bestDeparture = candidate;
+					bestWaitingTime = candidateWaitingTime;
 				}
 			}
 		}
 
-		if (result == null) {
+		if (bestDeparture == -1) {
 			throw new NoDepartureFoundException();
 		}
 
-		return result;
+		return new StopDeparture(routeDepartures.getDeparture(bestDeparture), routeDepartures.getStop(bestPosition),
+				bestWaitingTime);
 	}
 }
@@ -0,0 +1,243 @@
+package org.eqasim.core.components.transit.departure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Holds, per transit route, the departures sorted by time and the positions at
+ * which each stop facility is served. The index is built for the whole schedule
+ * up front. Routes that are not known yet are indexed on first use.
+ *
+ * Lookups do not check whether a route has changed since it was indexed.
+ * Whoever adjusts the stops or departures of a route must call
+ * {@link #invalidate(TransitRoute)}, or {@link #invalidate()} after changing
+ * the schedule as a whole.
+ */
+public class DepartureIndex {
+	private final Map<TransitRoute, RouteDepartures> routes = new ConcurrentHashMap<>();
+	private final TransitSchedule schedule;
+
+	public DepartureIndex() {
+		this.schedule = null;
+	}
+
+	public DepartureIndex(TransitSchedule schedule) {
+		this.schedule = schedule;
+		build();
+	}
+
+	private void build() {
+		for (TransitLine transitLine : schedule.getTransitLines().values()) {
+			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				routes.put(transitRoute, new RouteDepartures(transitRoute));
+			}
+		}
+	}
+
+	public RouteDepartures getRouteDepartures(TransitRoute transitRoute) {
+		return routes.computeIfAbsent(transitRoute, RouteDepartures::new);
+	}
+
+	/**
+	 * Reindexes the route after its stops or departures have been adjusted.
+	 */
+	public void invalidate(TransitRoute transitRoute) {
+		routes.put(transitRoute, new RouteDepartures(transitRoute));
+	}
+
+	/**
+	 * Drops the whole index after the schedule has been adjusted and rebuilds it
+	 * if it has been created for a schedule.
+	 */
+	public void invalidate() {
+		routes.clear();
+
+		if (schedule != null) {
+			build();
+		}
+	}
+
+	static public class RouteDepartures {
+		private final int numberOfStops;
+		private final int numberOfDepartures;
+
+		// Departures sorted by time, ties keep the order of the schedule
+		private final double[] departureTimes;
+		private final Departure[] departures;
+		private final int[] scheduleOrder;
+
+		private final TransitRouteStop[] stops;
+		private final double[] stopOffsets;
+		private final double[] arrivalOffsets;
+		private final Map<Id<TransitStopFacility>, int[]> stopPositions;
+
+		RouteDepartures(TransitRoute transitRoute) {
+			List<Departure> scheduleDepartures = new ArrayList<>(transitRoute.getDepartures().values());
+
+			Integer[] sorting = new Integer[scheduleDepartures.size()];
+
+			for (int k = 0; k < sorting.length; k++) {
+				sorting[k] = k;
+			}
+
+			Arrays.sort(sorting, Comparator.comparingDouble(k -> scheduleDepartures.get(k).getDepartureTime()));
+
+			this.numberOfDepartures = sorting.length;
+			this.departureTimes = new double[numberOfDepartures];
+			this.departures = new Departure[numberOfDepartures];
+			this.scheduleOrder = new int[numberOfDepartures];
+
+			for (int k = 0; k < numberOfDepartures; k++) {
+				Departure departure = scheduleDepartures.get(sorting[k]);
+
+				departureTimes[k] = departure.getDepartureTime();
+				departures[k] = departure;
+				scheduleOrder[k] = sorting[k];
+			}
+
+			List<TransitRouteStop> routeStops = transitRoute.getStops();
+
+			this.numberOfStops = routeStops.size();
+			this.stops = routeStops.toArray(new TransitRouteStop[numberOfStops]);
+			this.stopOffsets = new double[numberOfStops];
+			this.arrivalOffsets = new double[numberOfStops];
+
+			Map<Id<TransitStopFacility>, List<Integer>> positions = new HashMap<>();
+
+			for (int i = 0; i < numberOfStops; i++) {
+				stopOffsets[i] = stops[i].getDepartureOffset().orElse(Double.NaN);
+				arrivalOffsets[i] = stops[i].getArrivalOffset().orElse(Double.NaN);
+				positions.computeIfAbsent(stops[i].getStopFacility().getId(), id -> new ArrayList<>()).add(i);
+			}
+
+			this.stopPositions = new HashMap<>();
+
+			for (Map.Entry<Id<TransitStopFacility>, List<Integer>> entry : positions.entrySet()) {
+				stopPositions.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+			}
+		}
+
+		/**
+		 * Returns the positions (in ascending order) at which the stop facility is
+		 * served by the route, or null if it is not served at all.
+		 */
+		public int[] getStopPositions(Id<TransitStopFacility> stopFacilityId) {
+			return stopPositions.get(stopFacilityId);
+		}
+
+		public TransitRouteStop getStop(int position) {
+			return stops[position];
+		}
+
+		public double getStopOffset(int position) {
+			return stopOffsets[position];
+		}
+
+		public int getNumberOfDepartures() {
+			return numberOfDepartures;
+		}
+
+		public Departure getDeparture(int index) {
+			return departures[index];
+		}
+
+		public double getDepartureTime(int index) {
+			return departureTimes[index];
+		}
+
+		/**
+		 * Position of the departure in the schedule, used to break ties between
+		 * departures in the same way as a scan over the schedule would.
+		 */
+		public int getScheduleOrder(int index) {
+			return scheduleOrder[index];
+		}
+
+		/**
+		 * Returns the index of the first departure that leaves the stop at the given
+		 * position not before the given time, or the number of departures if there is
+		 * none.
+		 */
+		public int findFirstDeparture(int position, double time) {
+			double offset = stopOffsets[position];
+
+			if (Double.isNaN(offset)) {
+				// Fails for the undefined offset like reading it from the schedule does
+				offset = stops[position].getDepartureOffset().seconds();
+			}
+
+			int lower = 0;
+			int upper = numberOfDepartures;
+
+			while (lower < upper) {
+				int middle = (lower + upper) >>> 1;
+
+				if (departureTimes[middle] + offset - time >= 0.0) {
+					upper = middle;
+				} else {
+					lower = middle + 1;
+				}
+			}
+
+			return lower;
+		}
+
+		/**
+		 * Returns the departure that arrives at the stop facility exactly at the given
+		 * time, or null if there is none. If several departures match, the first one
+		 * in the order of the schedule is returned.
+		 */
+		public Departure findArrivingDeparture(Id<TransitStopFacility> stopFacilityId, double time) {
+			int[] positions = stopPositions.get(stopFacilityId);
+
+			if (positions == null) {
+				return null;
+			}
+
+			int bestDeparture = -1;
+
+			for (int position : positions) {
+				double offset = arrivalOffsets[position];
+
+				if (Double.isNaN(offset)) {
+					// Fails for the undefined offset like reading it from the schedule does
+					offset = stops[position].getArrivalOffset().seconds();
+				}
+
+				int lower = 0;
+				int upper = numberOfDepartures;
+
+				while (lower < upper) {
+					int middle = (lower + upper) >>> 1;
+
+					if (departureTimes[middle] + offset >= time) {
+						upper = middle;
+					} else {
+						lower = middle + 1;
+					}
+				}
+
+				for (int k = lower; k < numberOfDepartures && departureTimes[k] + offset == time; k++) {
+					if (bestDeparture == -1 || scheduleOrder[k] < scheduleOrder[bestDeparture]) {
+						bestDeparture = k;
+					}
+				}
+			}
+
+			return bestDeparture == -1 ? null : departures[bestDeparture];
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package org.eqasim.core.components.travel_time;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.log4j.Logger;
+import org.eqasim.core.misc.ParallelProgress;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ControlerConfigGroup.EventsFileFormat;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Replays an events file into a {@link TravelTimeRecorder} in two stages. The
+ * calling thread decompresses and parses the file and only passes on link and
+ * vehicle enter/leave events. These are collected in batches and handed over
+ * through bounded queues to the aggregation threads. Events are partitioned by
+ * vehicle, so all events of one vehicle arrive in order at the same thread, as
+ * required by the recorder.
+ */
+public class PipelinedEventsReplay {
+	private final static Logger logger = Logger.getLogger(PipelinedEventsReplay.class);
+	private final static List<Event> END_OF_STREAM = Collections.emptyList();
+	private final static int BUFFER_SIZE = 1024 * 1024;
+
+	static public final int DEFAULT_BATCH_SIZE = 4096;
+	static public final int DEFAULT_QUEUE_SIZE = 16;
+
+	private final TravelTimeRecorder recorder;
+	private final int numberOfThreads;
+	private final int batchSize;
+	private final int queueSize;
+
+	public PipelinedEventsReplay(TravelTimeRecorder recorder, int numberOfThreads) {
+		this(recorder, numberOfThreads, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_SIZE);
+	}
+
+	public PipelinedEventsReplay(TravelTimeRecorder recorder, int numberOfThreads, int batchSize, int queueSize) {
+		this.recorder = recorder;
+		this.numberOfThreads = numberOfThreads;
+		this.batchSize = batchSize;
+		this.queueSize = queueSize;
+	}
+
+	public void run(File eventsPath) throws IOException, InterruptedException {
+		List<BlockingQueue<List<Event>>> queues = new ArrayList<>(numberOfThreads);
+		List<Thread> threads = new ArrayList<>(numberOfThreads);
+
+		AtomicBoolean errorsOccured = new AtomicBoolean(false);
+
+		for (int i = 0; i < numberOfThreads; i++) {
+			BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(queueSize);
+			queues.add(queue);
+
+			Thread thread = new Thread(new Worker(queue));
+			thread.setUncaughtExceptionHandler((t, e) -> {
+				e.printStackTrace();
+				errorsOccured.set(true);
+			});
+
+			thread.start();
+			threads.add(thread);
+		}
+
+		ParallelProgress progress = new ParallelProgress("Replaying events (bytes) ...", eventsPath.length());
+		progress.start();
+
+		Dispatcher dispatcher;
+
+		try (CountingInputStream countingStream = new CountingInputStream(new FileInputStream(eventsPath))) {
+			InputStream inputStream = new BufferedInputStream(countingStream, BUFFER_SIZE);
+
+			if (eventsPath.getName().endsWith(".gz")) {
+				inputStream = new GZIPInputStream(inputStream, BUFFER_SIZE);
+			}
+
+			dispatcher = new Dispatcher(queues, errorsOccured, progress, countingStream);
+
+			EventsManager eventsManager = EventsUtils.createEventsManager();
+			eventsManager.addHandler(dispatcher);
+
+			eventsManager.initProcessing();
+			new MatsimEventsReader(eventsManager).readStream(inputStream, EventsFileFormat.xml);
+			eventsManager.finishProcessing();
+
+			dispatcher.flush();
+			progress.set(eventsPath.length());
+		} finally {
+			progress.close();
+
+			for (BlockingQueue<List<Event>> queue : queues) {
+				dispatch(queue, END_OF_STREAM, errorsOccured);
+			}
+
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+
+		if (errorsOccured.get()) {
+			throw new RuntimeException("Errors occured while replaying events.");
+		}
+
+		logger.info(String.format("Replayed %d relevant events", dispatcher.getNumberOfEvents()));
+	}
+
+	/**
+	 * Hands a batch over to an aggregation thread. Returns false if the batch could
+	 * not be passed on because an aggregation thread has failed.
+	 */
+	static private boolean dispatch(BlockingQueue<List<Event>> queue, List<Event> batch, AtomicBoolean errorsOccured)
+			throws InterruptedException {
+		while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+			if (errorsOccured.get()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private class Dispatcher implements LinkEnterEventHandler, LinkLeaveEventHandler,
+			VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
+		private final List<BlockingQueue<List<Event>>> queues;
+		private final List<List<Event>> batches;
+		private final AtomicBoolean errorsOccured;
+
+		private final ParallelProgress progress;
+		private final CountingInputStream countingStream;
+
+		private long numberOfEvents = 0;
+
+		Dispatcher(List<BlockingQueue<List<Event>>> queues, AtomicBoolean errorsOccured, ParallelProgress progress,
+				CountingInputStream countingStream) {
+			this.queues = queues;
+			this.errorsOccured = errorsOccured;
+			this.progress = progress;
+			this.countingStream = countingStream;
+
+			this.batches = new ArrayList<>(queues.size());
+
+			for (int i = 0; i < queues.size(); i++) {
+				batches.add(new ArrayList<>(batchSize));
+			}
+		}
+
+		private void process(Id<Vehicle> vehicleId, Event event) {
+			int partition = vehicleId.index() % queues.size();
+
+			List<Event> batch = batches.get(partition);
+			batch.add(event);
+			numberOfEvents++;
+
+			if (batch.size() >= batchSize) {
+				try {
+					if (!dispatch(queues.get(partition), batch, errorsOccured)) {
+						throw new IllegalStateException("Aggregation of events has failed");
+					}
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+
+				batches.set(partition, new ArrayList<>(batchSize));
+				progress.set(countingStream.getByteCount());
+			}
+		}
+
+		void flush() throws InterruptedException {
+			for (int partition = 0; partition < queues.size(); partition++) {
+				List<Event> batch = batches.get(partition);
+
+				if (batch.size() > 0) {
+					dispatch(queues.get(partition), batch, errorsOccured);
+					batches.set(partition, new ArrayList<>(batchSize));
+				}
+			}
+		}
+
+		long getNumberOfEvents() {
+			return numberOfEvents;
+		}
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			process(event.getVehicleId(), event);
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			process(event.getVehicleId(), event);
+		}
+
+		@Override
+		public void handleEvent(VehicleEntersTrafficEvent event) {
+			process(event.getVehicleId(), event);
+		}
+
+		@Override
+		public void handleEvent(VehicleLeavesTrafficEvent event) {
+			process(event.getVehicleId(), event);
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final BlockingQueue<List<Event>> queue;
+
+		Worker(BlockingQueue<List<Event>> queue) {
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					List<Event> batch = queue.take();
+
+					if (batch == END_OF_STREAM) {
+						return;
+					}
+
+					for (Event event : batch) {
+						if (event instanceof LinkEnterEvent) {
+							recorder.handleEvent((LinkEnterEvent) event);
+						} else if (event instanceof LinkLeaveEvent) {
+							recorder.handleEvent((LinkLeaveEvent) event);
+						} else if (event instanceof VehicleEntersTrafficEvent) {
+							recorder.handleEvent((VehicleEntersTrafficEvent) event);
+						} else if (event instanceof VehicleLeavesTrafficEvent) {
+							recorder.handleEvent((VehicleLeavesTrafficEvent) event);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
@@ -1,15 +1,23 @@
 package org.eqasim.core.components.travel_time;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import org.eqasim.core.misc.ParallelProgress;
 import org.eqasim.core.scenario.cutter.network.RoadNetwork;
@@ -27,11 +35,26 @@ import org.matsim.vehicles.Vehicle;
 /**
  * This TravelTime implementation provides fixed values that can be read from an
  * events file.
- * 
+ *
+ * All values are kept in one flat buffer with one row of bins per link. Rows
+ * are looked up by the index of the link id, so no boxing or hashing happens
+ * while routing. The buffer is either on-heap or a memory-mapped view of a
+ * binary travel time file (see {@link #mapBinary(File, TravelTime)}).
+ *
  * @author Sebastian Hörl <sebastian.hoerl@ivt.baug.ethz.ch>
  */
 public class RecordedTravelTime implements TravelTime {
-	private final Map<Id<Link>, List<Double>> data;
+	/**
+	 * Marks the versioned binary format. Interpreted as a double, this is a NaN, so
+	 * it can never be confused with the start time that opens the legacy format.
+	 */
+	static final long BINARY_MAGIC = 0x7FF0000045515454L;
+	static final int BINARY_VERSION = 2;
+	static final int BINARY_HEADER_SIZE = 48;
+
+	private final List<Id<Link>> linkIds;
+	private final int[] rows;
+	private final DoubleBuffer values;
 
 	private final double startTime;
 	private final double endTime;
@@ -40,15 +63,36 @@ public class RecordedTravelTime implements TravelTime {
 
 	private final TravelTime fallback;
 
-	RecordedTravelTime(double startTime, double endTime, double interval, Map<Id<Link>, List<Double>> data,
-			TravelTime fallback) {
-		this.data = data;
+	RecordedTravelTime(double startTime, double endTime, double interval, int numberOfBins, List<Id<Link>> linkIds,
+			DoubleBuffer values, TravelTime fallback) {
 		this.startTime = startTime;
 		this.endTime = endTime;
 		this.interval = interval;
+		this.numberOfBins = numberOfBins;
+		this.linkIds = linkIds;
+		this.values = values;
 		this.fallback = fallback;
 
-		this.numberOfBins = (int) Math.floor((endTime - startTime) / interval);
+		if ((long) linkIds.size() * numberOfBins != values.capacity()) {
+			throw new IllegalStateException("Travel time buffer does not match the number of links and bins");
+		}
+
+		int maximumIndex = -1;
+
+		for (Id<Link> linkId : linkIds) {
+			maximumIndex = Math.max(maximumIndex, linkId.index());
+		}
+
+		this.rows = new int[maximumIndex + 1];
+		Arrays.fill(rows, -1);
+
+		for (int row = 0; row < linkIds.size(); row++) {
+			rows[linkIds.get(row).index()] = row;
+		}
+	}
+
+	static int getNumberOfBins(double startTime, double endTime, double interval) {
+		return (int) Math.floor((endTime - startTime) / interval);
 	}
 
 	public double getStartTime() {
@@ -63,6 +107,14 @@ public class RecordedTravelTime implements TravelTime {
 		return interval;
 	}
 
+	public int getNumberOfBins() {
+		return numberOfBins;
+	}
+
+	public int getNumberOfLinks() {
+		return linkIds.size();
+	}
+
 	private int getIndex(double time) {
 		if (time < startTime) {
 			return 0;
@@ -75,40 +127,63 @@ public class RecordedTravelTime implements TravelTime {
 
 	@Override
 	public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
-		if (data.containsKey(link.getId())) {
-			return data.get(link.getId()).get(getIndex(time));
+		int index = link.getId().index();
+
+		if (index < rows.length) {
+			int row = rows[index];
+
+			if (row >= 0) {
+				return values.get(row * numberOfBins + getIndex(time));
+			}
 		}
 
 		return fallback.getLinkTravelTime(link, time, person, vehicle);
 	}
 
+	/**
+	 * Writes the travel times in the versioned binary format. The file consists of
+	 * a fixed-size header, a contiguous block of numberOfLinks x numberOfBins
+	 * doubles and, finally, the table of link ids that identifies the rows. Having
+	 * the values at a fixed offset makes it possible to memory-map them directly.
+	 */
 	static public void writeBinary(OutputStream outputStream, RecordedTravelTime travelTime)
 			throws IOException, InterruptedException {
-		DataOutputStream writer = new DataOutputStream(outputStream);
+		DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(outputStream));
+
+		int numberOfLinks = travelTime.linkIds.size();
+		int numberOfBins = travelTime.numberOfBins;
+
+		writer.writeLong(BINARY_MAGIC);
+		writer.writeInt(BINARY_VERSION);
+		writer.writeInt(numberOfBins);
+		writer.writeInt(numberOfLinks);
+		writer.writeInt(0); // padding to keep the values aligned
 
 		writer.writeDouble(travelTime.startTime);
 		writer.writeDouble(travelTime.endTime);
 		writer.writeDouble(travelTime.interval);
 
-		writer.writeInt(travelTime.numberOfBins);
-		writer.writeInt(travelTime.data.size());
-
-		int numberOfLinks = travelTime.data.size();
-
 		ParallelProgress progress = new ParallelProgress("Writing travel time ...", numberOfLinks);
 		progress.start();
 
-		for (Map.Entry<Id<Link>, List<Double>> item : travelTime.data.entrySet()) {
-			writer.writeUTF(item.getKey().toString());
-			List<Double> values = item.getValue();
+		ByteBuffer rowBuffer = ByteBuffer.allocate(Double.BYTES * numberOfBins);
+
+		for (int row = 0; row < numberOfLinks; row++) {
+			rowBuffer.clear();
 
-			for (int k = 0; k < travelTime.numberOfBins; k++) {
-				writer.writeDouble(values.get(k));
+			for (int k = 0; k < numberOfBins; k++) {
+				rowBuffer.putDouble(travelTime.values.get(row * numberOfBins + k));
 			}
 
+			writer.write(rowBuffer.array(), 0, rowBuffer.position());
 			progress.update();
 		}
 
+		for (Id<Link> linkId : travelTime.linkIds) {
+			writer.writeUTF(linkId.toString());
+		}
+
+		writer.flush();
 		progress.close();
 	}
 
@@ -116,34 +191,171 @@ public class RecordedTravelTime implements TravelTime {
 		return readBinary(inputStream, new FreeSpeedTravelTime());
 	}
 
+	/**
+	 * Reads the travel times into an on-heap buffer. Both the versioned format
+	 * written by {@link #writeBinary(OutputStream, RecordedTravelTime)} and the
+	 * legacy format (per-link id followed by its values) are supported.
+	 */
 	static public RecordedTravelTime readBinary(InputStream inputStream, TravelTime fallback) throws IOException {
-		DataInputStream reader = new DataInputStream(inputStream);
+		DataInputStream reader = new DataInputStream(new BufferedInputStream(inputStream));
+
+		long marker = reader.readLong();
+
+		if (marker == BINARY_MAGIC) {
+			return readVersionedBinary(reader, fallback);
+		} else {
+			return readLegacyBinary(reader, Double.longBitsToDouble(marker), fallback);
+		}
+	}
+
+	static private RecordedTravelTime readVersionedBinary(DataInputStream reader, TravelTime fallback)
+			throws IOException {
+		int version = reader.readInt();
+
+		if (version != BINARY_VERSION) {
+			throw new IllegalStateException("Unsupported travel time format version: " + version);
+		}
+
+		int numberOfBins = reader.readInt();
+		int numberOfLinks = reader.readInt();
+		reader.readInt(); // padding
 
 		double startTime = reader.readDouble();
 		double endTime = reader.readDouble();
 		double interval = reader.readDouble();
 
+		double[] values = new double[checkBufferSize(numberOfLinks, numberOfBins)];
+
+		ParallelProgress progress = new ParallelProgress("Reading travel time ...", numberOfLinks);
+		progress.start();
+
+		byte[] rowBytes = new byte[Double.BYTES * numberOfBins];
+
+		for (int row = 0; row < numberOfLinks; row++) {
+			reader.readFully(rowBytes);
+			ByteBuffer.wrap(rowBytes).asDoubleBuffer().get(values, row * numberOfBins, numberOfBins);
+			progress.update();
+		}
+
+		List<Id<Link>> linkIds = readLinkIds(reader, numberOfLinks);
+
+		try {
+			progress.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return new RecordedTravelTime(startTime, endTime, interval, numberOfBins, linkIds, DoubleBuffer.wrap(values),
+				fallback);
+	}
+
+	static private RecordedTravelTime readLegacyBinary(DataInputStream reader, double startTime, TravelTime fallback)
+			throws IOException {
+		double endTime = reader.readDouble();
+		double interval = reader.readDouble();
+
 		int numberOfBins = reader.readInt();
 		int numberOfLinks = reader.readInt();
 
-		Map<Id<Link>, List<Double>> data = new HashMap<>();
+		List<Id<Link>> linkIds = new ArrayList<>(numberOfLinks);
+		double[] values = new double[checkBufferSize(numberOfLinks, numberOfBins)];
 
-		ParallelProgress progress = new ParallelProgress("Writing travel time ...", numberOfLinks);
+		ParallelProgress progress = new ParallelProgress("Reading travel time ...", numberOfLinks);
 		progress.start();
 
-		for (int i = 0; i < numberOfLinks; i++) {
-			Id<Link> linkId = Id.createLinkId(reader.readUTF());
-			List<Double> values = new ArrayList<>(numberOfBins);
+		for (int row = 0; row < numberOfLinks; row++) {
+			linkIds.add(Id.createLinkId(reader.readUTF()));
 
 			for (int k = 0; k < numberOfBins; k++) {
-				values.add(reader.readDouble());
+				values[row * numberOfBins + k] = reader.readDouble();
 			}
 
-			data.put(linkId, values);
 			progress.update();
 		}
 
-		return new RecordedTravelTime(startTime, endTime, interval, data, fallback);
+		try {
+			progress.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return new RecordedTravelTime(startTime, endTime, interval, numberOfBins, linkIds, DoubleBuffer.wrap(values),
+				fallback);
+	}
+
+	static public RecordedTravelTime mapBinary(File path) throws IOException {
+		return mapBinary(path, new FreeSpeedTravelTime());
+	}
+
+	/**
+	 * Memory-maps the values of a travel time file in the versioned binary format.
+	 * Only the header and the link id table are parsed, the values themselves are
+	 * paged in by the operating system when they are first accessed. Files in the
+	 * legacy format are read into memory instead.
+	 */
+	static public RecordedTravelTime mapBinary(File path, TravelTime fallback) throws IOException {
+		try (FileChannel channel = FileChannel.open(path.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE);
+
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					throw new EOFException("Travel time file is truncated: " + path);
+				}
+			}
+
+			header.flip();
+
+			if (header.getLong() != BINARY_MAGIC) {
+				channel.position(0);
+				return readBinary(Channels.newInputStream(channel), fallback);
+			}
+
+			int version = header.getInt();
+
+			if (version != BINARY_VERSION) {
+				throw new IllegalStateException("Unsupported travel time format version: " + version);
+			}
+
+			int numberOfBins = header.getInt();
+			int numberOfLinks = header.getInt();
+			header.getInt(); // padding
+
+			double startTime = header.getDouble();
+			double endTime = header.getDouble();
+			double interval = header.getDouble();
+
+			long valuesSize = (long) Double.BYTES * checkBufferSize(numberOfLinks, numberOfBins);
+
+			DoubleBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, BINARY_HEADER_SIZE, valuesSize)
+					.asDoubleBuffer();
+
+			channel.position(BINARY_HEADER_SIZE + valuesSize);
+			DataInputStream reader = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			List<Id<Link>> linkIds = readLinkIds(reader, numberOfLinks);
+
+			return new RecordedTravelTime(startTime, endTime, interval, numberOfBins, linkIds, values, fallback);
+		}
+	}
+
+	static private List<Id<Link>> readLinkIds(DataInputStream reader, int numberOfLinks) throws IOException {
+		List<Id<Link>> linkIds = new ArrayList<>(numberOfLinks);
+
+		for (int row = 0; row < numberOfLinks; row++) {
+			linkIds.add(Id.createLinkId(reader.readUTF()));
+		}
+
+		return Collections.unmodifiableList(linkIds);
+	}
+
+	static private int checkBufferSize(int numberOfLinks, int numberOfBins) {
+		long size = (long) numberOfLinks * numberOfBins;
+
+		if (size * Double.BYTES > Integer.MAX_VALUE) {
+			throw new IllegalStateException(
+					String.format("Too many travel time values (%d links x %d bins)", numberOfLinks, numberOfBins));
+		}
+
+		return (int) size;
 	}
 
 	static public RecordedTravelTime readFromEvents(File eventsPath, RoadNetwork network, double startTime,
@@ -159,6 +371,28 @@ public class RecordedTravelTime implements TravelTime {
 		return RecordedTravelTime.readFromEvents(eventsPath, network, startTime, endTime, interval);
 	}
 
+	static public RecordedTravelTime readFromEvents(File eventsPath, RoadNetwork network, Config config,
+			int numberOfThreads) throws IOException, InterruptedException {
+		double startTime = 0.0;
+		double endTime = config.travelTimeCalculator().getMaxTime();
+		double interval = config.travelTimeCalculator().getTraveltimeBinSize();
+
+		return RecordedTravelTime.readFromEvents(eventsPath, network, new FreeSpeedTravelTime(), startTime, endTime,
+				interval, numberOfThreads);
+	}
+
+	/**
+	 * Replays the events file with one thread for decompression and parsing and
+	 * the given number of threads for aggregating the travel times.
+	 */
+	static public RecordedTravelTime readFromEvents(File eventsPath, RoadNetwork network, TravelTime fallback,
+			double startTime, double endTime, double interval, int numberOfThreads)
+			throws IOException, InterruptedException {
+		TravelTimeRecorder recorder = new TravelTimeRecorder(network, startTime, endTime, interval);
+		new PipelinedEventsReplay(recorder, numberOfThreads).run(eventsPath);
+		return recorder.getTravelTime(fallback);
+	}
+
 	static public RecordedTravelTime readFromEvents(File eventsPath, RoadNetwork network, TravelTime fallback,
 			double startTime, double endTime, double interval) {
 
@@ -1,10 +1,11 @@
 package org.eqasim.core.components.travel_time;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.eqasim.core.scenario.cutter.network.RoadNetwork;
 import org.matsim.api.core.v01.Id;
@@ -21,30 +22,54 @@ import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 import org.matsim.vehicles.Vehicle;
 
+/**
+ * Records average link traversal times per time bin from events.
+ *
+ * Traversal times and counts are accumulated in flat atomic arrays with one row
+ * per link (addressed through the link id index), so concurrent updates are
+ * lock-free and no objects are allocated per event. The time at which a vehicle
+ * entered its current link is kept per handling thread in an array indexed by
+ * the vehicle id index. Hence, the recorder can be registered with a parallel
+ * events manager or fed by several threads at once, as long as all events of
+ * one vehicle are handled by the same thread.
+ */
 public class TravelTimeRecorder implements LinkEnterEventHandler, LinkLeaveEventHandler,
 		VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
-	private final Map<Id<Link>, List<Double>> cumulativeTraversalTimes = new HashMap<>();
-	private final Map<Id<Link>, List<Long>> traversalCounts = new HashMap<>();
-	private final Map<Id<Vehicle>, Double> pendingTimes = new HashMap<>();
+	private final AtomicLongArray cumulativeTraversalTimes;
+	private final AtomicIntegerArray traversalCounts;
+	private final ThreadLocal<PendingTimes> pendingTimes = ThreadLocal.withInitial(PendingTimes::new);
+
+	private final List<Link> links;
+	private final int[] rows;
 
 	private final double startTime;
 	private final double endTime;
 	private final double interval;
 	private final int numberOfBins;
-	private final RoadNetwork network;
 
 	public TravelTimeRecorder(RoadNetwork network, double startTime, double endTime, double interval) {
 		this.startTime = startTime;
 		this.endTime = endTime;
 		this.interval = interval;
-		this.network = network;
 
-		this.numberOfBins = (int) Math.floor((endTime - startTime) / interval);
+		this.numberOfBins = RecordedTravelTime.getNumberOfBins(startTime, endTime, interval);
+		this.links = new ArrayList<>(network.getLinks().values());
+
+		int maximumIndex = -1;
 
-		for (Link link : network.getLinks().values()) {
-			cumulativeTraversalTimes.put(link.getId(), new ArrayList<>(Collections.nCopies(numberOfBins, 0.0)));
-			traversalCounts.put(link.getId(), new ArrayList<>(Collections.nCopies(numberOfBins, 0L)));
+		for (Link link : links) {
+			maximumIndex = Math.max(maximumIndex, link.getId().index());
 		}
+
+		this.rows = new int[maximumIndex + 1];
+		Arrays.fill(rows, -1);
+
+		for (int row = 0; row < links.size(); row++) {
+			rows[links.get(row).getId().index()] = row;
+		}
+
+		this.cumulativeTraversalTimes = new AtomicLongArray(links.size() * numberOfBins);
+		this.traversalCounts = new AtomicIntegerArray(links.size() * numberOfBins);
 	}
 
 	private int getIndex(double time) {
@@ -59,38 +84,51 @@ public class TravelTimeRecorder implements LinkEnterEventHandler, LinkLeaveEvent
 
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
-		pendingTimes.put(event.getVehicleId(), event.getTime());
+		pendingTimes.get().set(event.getVehicleId(), event.getTime());
 	}
 
 	@Override
 	public void handleEvent(LinkEnterEvent event) {
-		pendingTimes.put(event.getVehicleId(), event.getTime());
+		pendingTimes.get().set(event.getVehicleId(), event.getTime());
 	}
 
 	@Override
 	public void handleEvent(LinkLeaveEvent event) {
-		Double enterTime = pendingTimes.remove(event.getVehicleId());
+		double enterTime = pendingTimes.get().remove(event.getVehicleId());
 
-		if (enterTime != null) {
+		if (!Double.isNaN(enterTime)) {
 			processTime(event.getLinkId(), enterTime, event.getTime());
 		}
 	}
 
 	@Override
 	public void handleEvent(VehicleLeavesTrafficEvent event) {
-		Double enterTime = pendingTimes.remove(event.getVehicleId());
+		double enterTime = pendingTimes.get().remove(event.getVehicleId());
 
-		if (enterTime != null) {
+		if (!Double.isNaN(enterTime)) {
 			processTime(event.getLinkId(), enterTime, event.getTime());
 		}
 	}
 
 	private void processTime(Id<Link> linkId, double enterTime, double exitTime) {
+		int linkIndex = linkId.index();
+
+		if (linkIndex >= rows.length || rows[linkIndex] < 0) {
+			return; // Not a road link
+		}
+
+		int index = rows[linkIndex] * numberOfBins + getIndex(enterTime);
 		double travelTime = exitTime - enterTime;
-		int index = getIndex(enterTime);
 
-		cumulativeTraversalTimes.get(linkId).set(index, cumulativeTraversalTimes.get(linkId).get(index) + travelTime);
-		traversalCounts.get(linkId).set(index, traversalCounts.get(linkId).get(index) + 1);
+		long current;
+		long update;
+
+		do {
+			current = cumulativeTraversalTimes.get(index);
+			update = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + travelTime);
+		} while (!cumulativeTraversalTimes.compareAndSet(index, current, update));
+
+		traversalCounts.incrementAndGet(index);
 	}
 
 	public RecordedTravelTime getTravelTime() {
@@ -98,25 +136,61 @@ public class TravelTimeRecorder implements LinkEnterEventHandler, LinkLeaveEvent
 	}
 
 	public RecordedTravelTime getTravelTime(TravelTime fallback) {
-		Map<Id<Link>, List<Double>> data = new HashMap<>();
-
-		for (Link link : network.getLinks().values()) {
-			List<Double> linkCumulativeTraversalTimes = cumulativeTraversalTimes.get(link.getId());
-			List<Long> linkTraversalCounts = traversalCounts.get(link.getId());
+		List<Id<Link>> linkIds = new ArrayList<>(links.size());
+		double[] values = new double[links.size() * numberOfBins];
 
-			List<Double> values = new ArrayList<>(numberOfBins);
-			data.put(link.getId(), values);
+		for (int row = 0; row < links.size(); row++) {
+			Link link = links.get(row);
+			linkIds.add(link.getId());
 
 			for (int i = 0; i < numberOfBins; i++) {
-				if (linkTraversalCounts.get(i) == 0) {
-					values.add(Math.max(1.0, link.getLength() / link.getFreespeed()));
+				int index = row * numberOfBins + i;
+				int count = traversalCounts.get(index);
+
+				if (count == 0) {
+					values[index] = Math.max(1.0, link.getLength() / link.getFreespeed());
 				} else {
-					values.add(Math.max(1.0, linkCumulativeTraversalTimes.get(i) / linkTraversalCounts.get(i)));
+					double cumulativeTime = Double.longBitsToDouble(cumulativeTraversalTimes.get(index));
+					values[index] = Math.max(1.0, cumulativeTime / count);
 				}
 			}
+		}
+
+		return new RecordedTravelTime(startTime, endTime, interval, numberOfBins, linkIds, DoubleBuffer.wrap(values),
+				fallback);
+	}
+
+	/**
+	 * Link enter times of the vehicles handled by one thread, indexed by vehicle id
+	 * index. Missing entries are NaN.
+	 */
+	static private class PendingTimes {
+		private double[] times = new double[0];
+
+		void set(Id<Vehicle> vehicleId, double time) {
+			int index = vehicleId.index();
+
+			if (index >= times.length) {
+				int size = Math.max(index + 1, Math.max(1024, times.length * 2));
+				int previousSize = times.length;
 
+				times = Arrays.copyOf(times, size);
+				Arrays.fill(times, previousSize, size, Double.NaN);
+			}
+
+			times[index] = time;
 		}
 
-		return new RecordedTravelTime(startTime, endTime, interval, data, fallback);
+		double remove(Id<Vehicle> vehicleId) {
+			int index = vehicleId.index();
+
+			if (index >= times.length) {
+				return Double.NaN;
+			}
+
+			double time = times[index];
+			times[index] = Double.NaN;
+			return time;
+		}
 	}
 }
@@ -11,6 +11,7 @@ public class ParallelProgress {
 
 	private long currentCount = 0;
 	private long lastCount = -1;
+	private long startTime = 0;
 
 	public ParallelProgress(String description, long totalCount) {
 		thread = new Thread(this::run);
@@ -23,8 +24,10 @@ public class ParallelProgress {
 		try {
 			while (currentCount < totalCount) {
 				if (currentCount > lastCount) {
-					logger.info(String.format("%s %d/%d (%.2f%%)", description, currentCount, totalCount,
-							100.0 * currentCount / totalCount));
+					double elapsedTime = Math.max(1e-3, 1e-9 * (System.nanoTime() - startTime));
+
+					logger.info(String.format("%s %d/%d (%.2f%%, %.0f/s)", description, currentCount, totalCount,
+							100.0 * currentCount / totalCount, currentCount / elapsedTime));
 				}
 
 				lastCount = currentCount;
@@ -35,6 +38,7 @@ public class ParallelProgress {
 	}
 
 	public void start() {
+		startTime = System.nanoTime();
 		thread.start();
 	}
 
@@ -50,7 +54,7 @@ public class ParallelProgress {
 		update(1);
 	}
 
-	public synchronized void set(int count) {
+	public synchronized void set(long count) {
 		currentCount = count;
 	}
 
@@ -0,0 +1,68 @@
+package org.eqasim.core.scenario.cutter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects id indices from a list of items on several threads. Every thread
+ * processes a contiguous chunk of the items into its own bit set and the bit
+ * sets are merged once all threads have finished.
+ */
+public class ParallelIndexCollector {
+	private ParallelIndexCollector() {
+	}
+
+	static public <T> BitSet collect(List<T> items, int numberOfThreads, BiConsumer<T, BitSet> collector)
+			throws InterruptedException {
+		int numberOfChunks = Math.max(1, Math.min(numberOfThreads, items.size()));
+
+		if (numberOfChunks == 1) {
+			BitSet indices = new BitSet();
+			items.forEach(item -> collector.accept(item, indices));
+			return indices;
+		}
+
+		List<Thread> threads = new ArrayList<>(numberOfChunks);
+		List<BitSet> results = new ArrayList<>(numberOfChunks);
+
+		AtomicBoolean errorsOccured = new AtomicBoolean(false);
+
+		for (int k = 0; k < numberOfChunks; k++) {
+			List<T> chunk = items.subList(k * items.size() / numberOfChunks, (k + 1) * items.size() / numberOfChunks);
+
+			BitSet indices = new BitSet();
+			results.add(indices);
+
+			Thread thread = new Thread(() -> {
+				chunk.forEach(item -> collector.accept(item, indices));
+			});
+
+			thread.setUncaughtExceptionHandler((t, e) -> {
+				e.printStackTrace();
+				errorsOccured.set(true);
+			});
+
+			thread.start();
+			threads.add(thread);
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		if (errorsOccured.get()) {
+			throw new RuntimeException("Errors occured while collecting indices.");
+		}
+
+		BitSet indices = results.get(0);
+
+		for (int k = 1; k < numberOfChunks; k++) {
+			indices.or(results.get(k));
+		}
+
+		return indices;
+	}
+}
@@ -3,8 +3,14 @@ package org.eqasim.core.scenario.cutter;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.log4j.Logger;
 import org.eqasim.core.components.travel_time.RecordedTravelTime;
 import org.eqasim.core.misc.InjectorBuilder;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
@@ -15,34 +21,47 @@ import org.eqasim.core.scenario.cutter.network.MinimumNetworkFinder;
 import org.eqasim.core.scenario.cutter.network.NetworkCutter;
 import org.eqasim.core.scenario.cutter.network.RoadNetwork;
 import org.eqasim.core.scenario.cutter.outside.OutsideActivityAdapter;
+import org.eqasim.core.scenario.cutter.outside.OutsideFacilityAdapter;
 import org.eqasim.core.scenario.cutter.population.CleanHouseholds;
+import org.eqasim.core.scenario.cutter.population.PlanCutter;
 import org.eqasim.core.scenario.cutter.population.PopulationCutter;
 import org.eqasim.core.scenario.cutter.population.PopulationCutterModule;
+import org.eqasim.core.scenario.cutter.population.PopulationUsage;
 import org.eqasim.core.scenario.cutter.population.RemoveEmptyPlans;
+import org.eqasim.core.scenario.cutter.population.StreamingPopulationProcessor;
 import org.eqasim.core.scenario.cutter.transit.DefaultStopSequenceCrossingPointFinder;
 import org.eqasim.core.scenario.cutter.transit.StopSequenceCrossingPointFinder;
 import org.eqasim.core.scenario.cutter.transit.TransitScheduleCutter;
 import org.eqasim.core.scenario.cutter.transit.TransitVehiclesCutter;
+import org.eqasim.core.scenario.routing.PlanRouter;
 import org.eqasim.core.scenario.routing.PopulationRouter;
 import org.eqasim.core.scenario.routing.PopulationRouterModule;
 import org.eqasim.core.scenario.validation.ScenarioValidator;
 import org.eqasim.core.simulation.EqasimConfigurator;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.CommandLine;
 import org.matsim.core.config.CommandLine.ConfigurationException;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.timing.TimeInterpretationModule;
+import org.matsim.facilities.ActivityFacility;
 
 import com.google.inject.Injector;
+import com.google.inject.Provider;
 
 public class RunScenarioCutter {
+	private final static Logger logger = Logger.getLogger(RunScenarioCutter.class);
+
 	static public void main(String[] args)
 			throws ConfigurationException, MalformedURLException, IOException, InterruptedException {
 		CommandLine cmd = new CommandLine.Builder(args) //
 				.requireOptions("config-path", "output-path", "extent-path") //
-				.allowOptions("threads", "prefix", "extent-attribute", "extent-value", "plans-path", "events-path") //
+				.allowOptions("threads", "prefix", "extent-attribute", "extent-value", "plans-path", "events-path",
+						"travel-time-path", "minimum-network-mode", "streaming", "link-timing-path") //
 				.build();
 
 		// Load some configuration
@@ -50,6 +69,9 @@ public class RunScenarioCutter {
 		int numberOfThreads = cmd.getOption("threads").map(Integer::parseInt)
 				.orElse(Runtime.getRuntime().availableProcessors());
 
+		// In streaming mode, the population is never loaded as a whole
+		boolean streaming = cmd.getOption("streaming").map(Boolean::parseBoolean).orElse(false);
+
 		File outputDirectory = new File(cmd.getOptionStrict("output-path")).getAbsoluteFile();
 		ScenarioWriter.checkOutputDirectory(outputDirectory);
 
@@ -76,6 +98,18 @@ public class RunScenarioCutter {
 			}
 		}
 
+		File streamingPlansFile = null;
+
+		if (streaming) {
+			try {
+				streamingPlansFile = new File(config.plans().getInputFileURL(config.getContext()).toURI());
+			} catch (URISyntaxException e) {
+				throw new IllegalStateException("Plans file must be a local file in streaming mode", e);
+			}
+
+			config.plans().setInputFile(null);
+		}
+
 		Scenario scenario = ScenarioUtils.createScenario(config);
 		configurator.configureScenario(scenario);
 		ScenarioUtils.loadScenario(scenario);
@@ -84,39 +118,100 @@ public class RunScenarioCutter {
 		ScenarioValidator scenarioValidator = new ScenarioValidator();
 		scenarioValidator.checkScenario(scenario);
 
+		// In streaming mode, persons are checked one by one while they are processed
+		AtomicBoolean populationErrorsFound = new AtomicBoolean(false);
+
+		if (streaming) {
+			logger.info("Persons are validated while they are streamed");
+		}
+
 		// Prepare road network
 		RoadNetwork roadNetwork = new RoadNetwork(scenario.getNetwork());
 
 		// Optionally, load travel time
 		Optional<RecordedTravelTime> travelTime = Optional.empty();
 
-		if (cmd.hasOption("events-path")) {
+		if (cmd.hasOption("travel-time-path")) {
+			travelTime = Optional.of(RecordedTravelTime.mapBinary(new File(cmd.getOptionStrict("travel-time-path"))));
+		} else if (cmd.hasOption("events-path")) {
 			travelTime = Optional.of(RecordedTravelTime.readFromEvents( //
-					new File(cmd.getOptionStrict("events-path")), roadNetwork, config));
+					new File(cmd.getOptionStrict("events-path")), roadNetwork, config, numberOfThreads));
 		}
 
 		// Cut population
 		Injector populationCutterInjector = new InjectorBuilder(scenario) //
 				.addOverridingModules(configurator.getModules()) //
-				.addOverridingModule(
-						new PopulationCutterModule(extent, numberOfThreads, 40, cmd.getOption("events-path"))) //
+				.addOverridingModule(new PopulationCutterModule(extent, numberOfThreads, 40,
+						cmd.getOption("events-path"), cmd.getOption("link-timing-path"))) //
 				.addOverridingModule(new CutterTravelTimeModule(travelTime)) //
 				.addOverridingModule(new TimeInterpretationModule()) //
 				.build();
 
 		PopulationCutter populationCutter = populationCutterInjector.getInstance(PopulationCutter.class);
-		populationCutter.run(scenario.getPopulation());
-
-		// ... and remove empty plans
 		RemoveEmptyPlans removeEmptyPlans = new RemoveEmptyPlans();
-		removeEmptyPlans.run(scenario.getPopulation());
-
-		// ... and make outside activities consistent
 		OutsideActivityAdapter outsideActivityAdapter = new OutsideActivityAdapter(roadNetwork);
-		outsideActivityAdapter.run(scenario.getPopulation(), scenario.getActivityFacilities());
+
+		// Collect what the cut population uses, so the other parts can be cut
+		PopulationUsage populationUsage = new PopulationUsage();
+		File cutPopulationFile = new File(outputDirectory, prefix + "population_cut.xml.gz");
+
+		if (streaming) {
+			if (!outputDirectory.exists()) {
+				outputDirectory.mkdir();
+			}
+
+			Provider<PlanCutter> planCutterProvider = populationCutterInjector.getProvider(PlanCutter.class);
+			OutsideFacilityAdapter outsideFacilityAdapter = new OutsideFacilityAdapter(
+					scenario.getActivityFacilities());
+
+			// Persons are validated against snapshots, because outside facilities are added
+			// to the scenario while other persons are processed
+			Map<Id<Link>, Link> validationLinks = new HashMap<>(scenario.getNetwork().getLinks());
+			Map<Id<ActivityFacility>, ActivityFacility> validationFacilities = new HashMap<>(
+					scenario.getActivityFacilities().getFacilities());
+
+			StreamingPopulationProcessor processor = new StreamingPopulationProcessor(scenario, numberOfThreads, 40,
+					4 * numberOfThreads);
+
+			processor.run(streamingPlansFile, cutPopulationFile, () -> {
+				PlanCutter planCutter = planCutterProvider.get();
+
+				return person -> {
+					if (scenarioValidator.checkPerson(validationLinks, validationFacilities, person)) {
+						populationErrorsFound.set(true);
+					}
+
+					populationCutter.cutPerson(person, planCutter);
+
+					if (!removeEmptyPlans.run(person)) {
+						return false;
+					}
+
+					// Outside facilities are created here and the network lookup is not thread-safe
+					synchronized (outsideFacilityAdapter) {
+						outsideActivityAdapter.run(person, outsideFacilityAdapter);
+					}
+
+					populationUsage.add(person);
+					return true;
+				};
+			});
+
+			checkStreamedPopulation(populationErrorsFound);
+		} else {
+			populationCutter.run(scenario.getPopulation());
+
+			// ... and remove empty plans
+			removeEmptyPlans.run(scenario.getPopulation());
+
+			// ... and make outside activities consistent
+			outsideActivityAdapter.run(scenario.getPopulation(), scenario.getActivityFacilities());
+
+			scenario.getPopulation().getPersons().values().forEach(populationUsage::add);
+		}
 
 		// ... and make households consistent
-		CleanHouseholds cleanHouseholds = new CleanHouseholds(scenario.getPopulation());
+		CleanHouseholds cleanHouseholds = new CleanHouseholds(populationUsage.getPersonIds());
 		cleanHouseholds.run(scenario.getHouseholds());
 
 		// Cut transit
@@ -130,15 +225,22 @@ public class RunScenarioCutter {
 		transitVehiclesCutter.run(scenario.getTransitVehicles());
 
 		// Cut facilities
-		CleanHomeFacilities cleanHomeFacilities = new CleanHomeFacilities(scenario.getPopulation());
+		CleanHomeFacilities cleanHomeFacilities = new CleanHomeFacilities(populationUsage.getHomeFacilityIds());
 		cleanHomeFacilities.run(scenario.getActivityFacilities());
 
-		FacilitiesCutter facilitiesCutter = new FacilitiesCutter(extent, scenario.getPopulation());
+		FacilitiesCutter facilitiesCutter = new FacilitiesCutter(extent, populationUsage.getFacilityIds(),
+				numberOfThreads);
 		facilitiesCutter.run(scenario.getActivityFacilities(), true);
 
 		// Cut network
-		MinimumNetworkFinder minimumNetworkFinder = new MinimumNetworkFinder(extent, roadNetwork, numberOfThreads, 20);
-		NetworkCutter networkCutter = new NetworkCutter(extent, scenario, minimumNetworkFinder);
+		MinimumNetworkFinder.Mode minimumNetworkMode = cmd.getOption("minimum-network-mode")
+				.map(value -> MinimumNetworkFinder.Mode.valueOf(value.toUpperCase()))
+				.orElse(MinimumNetworkFinder.Mode.PATHS);
+
+		MinimumNetworkFinder minimumNetworkFinder = new MinimumNetworkFinder(extent, roadNetwork, numberOfThreads, 20,
+				minimumNetworkMode);
+		NetworkCutter networkCutter = new NetworkCutter(extent, scenario, minimumNetworkFinder,
+				populationUsage.getLinkIds(), numberOfThreads);
 		networkCutter.run(scenario.getNetwork());
 
 		// "Cut" config
@@ -156,14 +258,47 @@ public class RunScenarioCutter {
 				.addOverridingModule(new TimeInterpretationModule()) //
 				.build();
 
-		PopulationRouter router = routingInjector.getInstance(PopulationRouter.class);
-		router.run(scenario.getPopulation());
+		if (streaming) {
+			Provider<PlanRouter> planRouterProvider = routingInjector.getProvider(PlanRouter.class);
+
+			StreamingPopulationProcessor processor = new StreamingPopulationProcessor(scenario, numberOfThreads, 100,
+					4 * numberOfThreads);
+
+			processor.run(cutPopulationFile, new File(outputDirectory, prefix + "population.xml.gz"), () -> {
+				PlanRouter planRouter = planRouterProvider.get();
+
+				return person -> {
+					for (Plan plan : person.getPlans()) {
+						planRouter.run(plan, false, Collections.emptySet());
+					}
+
+					if (scenarioValidator.checkPerson(scenario, person)) {
+						populationErrorsFound.set(true);
+					}
+
+					return true;
+				};
+			});
+
+			checkStreamedPopulation(populationErrorsFound);
+
+			cutPopulationFile.delete();
+		} else {
+			PopulationRouter router = routingInjector.getInstance(PopulationRouter.class);
+			router.run(scenario.getPopulation());
+		}
 
 		// Check validity after cutting
 		scenarioValidator.checkScenario(scenario);
 
 		// Write scenario
-		ScenarioWriter scenarioWriter = new ScenarioWriter(config, scenario, prefix);
+		ScenarioWriter scenarioWriter = new ScenarioWriter(config, scenario, prefix, !streaming);
 		scenarioWriter.run(outputDirectory);
 	}
+
+	static private void checkStreamedPopulation(AtomicBoolean populationErrorsFound) {
+		if (populationErrorsFound.get()) {
+			throw new IllegalStateException("Found errors while checking population");
+		}
+	}
 }
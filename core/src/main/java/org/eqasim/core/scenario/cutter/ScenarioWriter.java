@@ -16,11 +16,20 @@ public class ScenarioWriter {
 	private final String prefix;
 	private final Scenario scenario;
 	private final Config config;
+	private final boolean writePopulation;
 
 	public ScenarioWriter(Config config, Scenario scenario, String prefix) {
+		this(config, scenario, prefix, true);
+	}
+
+	/**
+	 * The population can be skipped if it has already been written separately.
+	 */
+	public ScenarioWriter(Config config, Scenario scenario, String prefix, boolean writePopulation) {
 		this.scenario = scenario;
 		this.prefix = prefix;
 		this.config = config;
+		this.writePopulation = writePopulation;
 	}
 
 	public void run(File outputDirectory) {
@@ -31,8 +40,12 @@ public class ScenarioWriter {
 		}
 
 		new ConfigWriter(config).write(new File(outputDirectory, prefix + "config.xml").toString());
-		new PopulationWriter(scenario.getPopulation())
-				.write(new File(outputDirectory, prefix + "population.xml.gz").toString());
+
+		if (writePopulation) {
+			new PopulationWriter(scenario.getPopulation())
+					.write(new File(outputDirectory, prefix + "population.xml.gz").toString());
+		}
+
 		new FacilitiesWriter(scenario.getActivityFacilities())
 				.write(new File(outputDirectory, prefix + "facilities.xml.gz").toString());
 		new NetworkWriter(scenario.getNetwork()).write(new File(outputDirectory, prefix + "network.xml.gz").toString());
@@ -0,0 +1,83 @@
+package org.eqasim.core.scenario.cutter.extent;
+
+import java.util.BitSet;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Classifies all nodes of a network once as inside or outside of the scenario
+ * extent. The result is kept in bit sets indexed by the node and link id
+ * indices. Links that were not part of the network when the index was built are
+ * classified through the extent on every call.
+ */
+public class NetworkExtentIndex {
+	private final ScenarioExtent extent;
+
+	private final BitSet insideNodes = new BitSet();
+	private final BitSet indexedLinks = new BitSet();
+	private final BitSet insideFromNodes = new BitSet();
+	private final BitSet insideToNodes = new BitSet();
+
+	public NetworkExtentIndex(ScenarioExtent extent, Network network) {
+		this.extent = extent;
+
+		for (Node node : network.getNodes().values()) {
+			if (extent.isInside(node.getCoord())) {
+				insideNodes.set(node.getId().index());
+			}
+		}
+
+		for (Link link : network.getLinks().values()) {
+			int index = link.getId().index();
+			indexedLinks.set(index);
+
+			if (insideNodes.get(link.getFromNode().getId().index())) {
+				insideFromNodes.set(index);
+			}
+
+			if (insideNodes.get(link.getToNode().getId().index())) {
+				insideToNodes.set(index);
+			}
+		}
+	}
+
+	public ScenarioExtent getExtent() {
+		return extent;
+	}
+
+	public boolean isFromNodeInside(Link link) {
+		int index = link.getId().index();
+
+		if (indexedLinks.get(index)) {
+			return insideFromNodes.get(index);
+		}
+
+		return extent.isInside(link.getFromNode().getCoord());
+	}
+
+	public boolean isToNodeInside(Link link) {
+		int index = link.getId().index();
+
+		if (indexedLinks.get(index)) {
+			return insideToNodes.get(index);
+		}
+
+		return extent.isInside(link.getToNode().getCoord());
+	}
+
+	/**
+	 * Returns whether both nodes of the link are inside.
+	 */
+	public boolean isInside(Link link) {
+		return isFromNodeInside(link) && isToNodeInside(link);
+	}
+
+	/**
+	 * Returns whether exactly one of the nodes of the link is inside.
+	 */
+	public boolean isCrossing(Link link) {
+		return isFromNodeInside(link) != isToNodeInside(link);
+	}
+}
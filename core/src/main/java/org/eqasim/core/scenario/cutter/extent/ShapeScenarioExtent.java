@@ -15,28 +15,105 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.MultiPolygon;
-import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.matsim.api.core.v01.Coord;
 import org.opengis.feature.simple.SimpleFeature;
 
+/**
+ * Scenario extent that is given by a polygon. Point queries are answered by a
+ * prepared geometry. In front of it, the bounding box of the polygon is split
+ * into a regular grid of cells that are classified once as fully inside, fully
+ * outside or on the boundary of the polygon. Only points in boundary cells
+ * need an actual point-in-polygon test.
+ */
 public class ShapeScenarioExtent implements ScenarioExtent {
+	static private final int DEFAULT_GRID_SIZE = 256;
+
+	static private final byte OUTSIDE = 0;
+	static private final byte INSIDE = 1;
+	static private final byte BOUNDARY = 2;
+
 	private final GeometryFactory factory = new GeometryFactory();
 	private final Polygon polygon;
+	private final PreparedGeometry preparedPolygon;
+
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+
+	private final int gridSize;
+	private final double cellWidth;
+	private final double cellHeight;
+	private final byte[] cells;
 
 	public ShapeScenarioExtent(Polygon polygon) {
+		this(polygon, DEFAULT_GRID_SIZE);
+	}
+
+	public ShapeScenarioExtent(Polygon polygon, int gridSize) {
 		this.polygon = polygon;
+		this.preparedPolygon = PreparedGeometryFactory.prepare(polygon);
+
+		Envelope envelope = polygon.getEnvelopeInternal();
+		this.minX = envelope.getMinX();
+		this.minY = envelope.getMinY();
+		this.maxX = envelope.getMaxX();
+		this.maxY = envelope.getMaxY();
+
+		this.gridSize = gridSize;
+		this.cellWidth = (maxX - minX) / gridSize;
+		this.cellHeight = (maxY - minY) / gridSize;
+		this.cells = new byte[gridSize * gridSize];
+
+		for (int i = 0; i < gridSize; i++) {
+			for (int j = 0; j < gridSize; j++) {
+				Envelope cellEnvelope = new Envelope(minX + i * cellWidth, minX + (i + 1) * cellWidth,
+						minY + j * cellHeight, minY + (j + 1) * cellHeight);
+
+				// Slightly enlarged so rounding in isInside never leaves the cell
+				cellEnvelope.expandBy(1e-6 * cellWidth, 1e-6 * cellHeight);
+				Geometry cell = factory.toGeometry(cellEnvelope);
+
+				if (preparedPolygon.containsProperly(cell)) {
+					cells[i * gridSize + j] = INSIDE;
+				} else if (preparedPolygon.intersects(cell)) {
+					cells[i * gridSize + j] = BOUNDARY;
+				} else {
+					cells[i * gridSize + j] = OUTSIDE;
+				}
+			}
+		}
 	}
 
 	@Override
 	public boolean isInside(Coord coord) {
-		Coordinate coordinate = new Coordinate(coord.getX(), coord.getY());
-		Point point = factory.createPoint(coordinate);
-		return polygon.contains(point);
+		double x = coord.getX();
+		double y = coord.getY();
+
+		if (!(x >= minX && x <= maxX && y >= minY && y <= maxY)) {
+			return false;
+		}
+
+		// Points on the border between two cells are covered by both of them
+		int i = Math.min((int) ((x - minX) / cellWidth), gridSize - 1);
+		int j = Math.min((int) ((y - minY) / cellHeight), gridSize - 1);
+
+		switch (cells[i * gridSize + j]) {
+		case INSIDE:
+			return true;
+		case OUTSIDE:
+			return false;
+		default:
+			return preparedPolygon.contains(factory.createPoint(new Coordinate(x, y)));
+		}
 	}
 
 	@Override
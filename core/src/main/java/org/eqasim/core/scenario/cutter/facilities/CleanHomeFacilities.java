@@ -15,9 +15,15 @@ import org.matsim.facilities.ActivityFacility;
 import org.matsim.facilities.ActivityOption;
 
 public class CleanHomeFacilities {
-	private final Collection<Id<ActivityFacility>> retainedIds = new HashSet<>();
+	private final Collection<Id<ActivityFacility>> retainedIds;
+
+	public CleanHomeFacilities(Collection<Id<ActivityFacility>> retainedIds) {
+		this.retainedIds = retainedIds;
+	}
 
 	public CleanHomeFacilities(Population population) {
+		this.retainedIds = new HashSet<>();
+
 		for (Person person : population.getPersons().values()) {
 			for (Plan plan : person.getPlans()) {
 				for (PlanElement element : plan.getPlanElements()) {
@@ -1,10 +1,13 @@
 package org.eqasim.core.scenario.cutter.facilities;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.eqasim.core.scenario.cutter.ParallelIndexCollector;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Activity;
@@ -19,36 +22,72 @@ public class FacilitiesCutter {
 	private final static Logger log = Logger.getLogger(FacilitiesCutter.class);
 
 	private final ScenarioExtent extent;
-	private final Collection<Id<ActivityFacility>> usedFacilityIds = new HashSet<>();
+	private final int numberOfThreads;
 
-	public FacilitiesCutter(ScenarioExtent extent, Population population) {
+	// Used facilities by id index
+	private final BitSet usedFacilities;
+
+	public FacilitiesCutter(ScenarioExtent extent, Collection<Id<ActivityFacility>> usedFacilityIds) {
+		this(extent, usedFacilityIds, 1);
+	}
+
+	public FacilitiesCutter(ScenarioExtent extent, Collection<Id<ActivityFacility>> usedFacilityIds,
+			int numberOfThreads) {
+		this.extent = extent;
+		this.numberOfThreads = numberOfThreads;
+		this.usedFacilities = new BitSet();
+
+		for (Id<ActivityFacility> facilityId : usedFacilityIds) {
+			if (facilityId != null) {
+				usedFacilities.set(facilityId.index());
+			}
+		}
+	}
+
+	public FacilitiesCutter(ScenarioExtent extent, Population population) throws InterruptedException {
+		this(extent, population, 1);
+	}
+
+	public FacilitiesCutter(ScenarioExtent extent, Population population, int numberOfThreads)
+			throws InterruptedException {
 		this.extent = extent;
+		this.numberOfThreads = numberOfThreads;
 
-		for (Person person : population.getPersons().values()) {
+		List<Person> persons = new ArrayList<>(population.getPersons().values());
+		this.usedFacilities = ParallelIndexCollector.collect(persons, numberOfThreads, (person, indices) -> {
 			for (Plan plan : person.getPlans()) {
 				for (PlanElement element : plan.getPlanElements()) {
 					if (element instanceof Activity) {
 						Activity activity = (Activity) element;
-						usedFacilityIds.add(activity.getFacilityId());
+
+						if (activity.getFacilityId() != null) {
+							indices.set(activity.getFacilityId().index());
+						}
 					}
 				}
 			}
-		}
+		});
 	}
 
-	public void run(ActivityFacilities facilities, boolean keepAllInside) {
+	public void run(ActivityFacilities facilities, boolean keepAllInside) throws InterruptedException {
 		log.info("Cutting facilities ...");
 		int originalNumberOfFacilities = facilities.getFacilities().size();
 
-		Iterator<? extends ActivityFacility> iterator = facilities.getFacilities().values().iterator();
+		// The extent checks are the expensive part, so they are done in parallel
+		List<ActivityFacility> candidates = new ArrayList<>(facilities.getFacilities().values());
+		BitSet retainedFacilities = ParallelIndexCollector.collect(candidates, numberOfThreads,
+				(facility, indices) -> {
+					int index = facility.getId().index();
 
-		while (iterator.hasNext()) {
-			ActivityFacility facility = iterator.next();
+					if (usedFacilities.get(index) || (keepAllInside && extent.isInside(facility.getCoord()))) {
+						indices.set(index);
+					}
+				});
 
-			boolean keep = usedFacilityIds.contains(facility.getId())
-					|| (extent.isInside(facility.getCoord()) && keepAllInside);
+		Iterator<? extends ActivityFacility> iterator = facilities.getFacilities().values().iterator();
 
-			if (!keep) {
+		while (iterator.hasNext()) {
+			if (!retainedFacilities.get(iterator.next().getId().index())) {
 				iterator.remove();
 			}
 		}
@@ -1,11 +1,14 @@
 package org.eqasim.core.scenario.cutter.network;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eqasim.core.misc.ParallelProgress;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
@@ -21,20 +24,163 @@ import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 
+/**
+ * Finds the links that need to be added to a set of links, such that every
+ * link of the set can be reached from a reference link and every link of the
+ * set can reach the reference link.
+ *
+ * <ul>
+ * <li>PATHS: Two point-to-point queries per link.</li>
+ * <li>TREES: One least-cost tree from the reference link on the network and one
+ * towards the reference link on the reversed network. The paths of all links
+ * are then read from the two trees.</li>
+ * <li>COMPONENT: As TREES, but the links from which the reference can already
+ * be reached (and which can already be reached from the reference) within the
+ * given set are found first. Paths from the trees are only added until they
+ * hit such a link, so fewer links are added.</li>
+ * </ul>
+ */
 public class MinimumNetworkFinder {
+	public enum Mode {
+		PATHS, TREES, COMPONENT
+	}
+
 	private final Link referenceLink;
 	private final RoadNetwork network;
 	private final int numberOfThreads;
 	private final int batchSize;
+	private final Mode mode;
 
 	public MinimumNetworkFinder(ScenarioExtent extent, RoadNetwork network, int numberOfThreads, int batchSize) {
+		this(extent, network, numberOfThreads, batchSize, Mode.PATHS);
+	}
+
+	public MinimumNetworkFinder(ScenarioExtent extent, RoadNetwork network, int numberOfThreads, int batchSize,
+			Mode mode) {
 		this.network = network;
 		this.numberOfThreads = numberOfThreads;
 		this.referenceLink = NetworkUtils.getNearestLink(network, extent.getInteriorPoint());
 		this.batchSize = batchSize;
+		this.mode = mode;
 	}
 
 	public Set<Id<Link>> run(Set<Id<Link>> linkIds) throws InterruptedException {
+		if (mode == Mode.PATHS) {
+			return runPaths(linkIds);
+		} else {
+			return runTrees(linkIds);
+		}
+	}
+
+	private Set<Id<Link>> runTrees(Set<Id<Link>> linkIds) throws InterruptedException {
+		RoadGraph graph = new RoadGraph(network);
+		int reference = graph.getLinkPosition(referenceLink.getId());
+
+		// Both trees are independent, so the backward tree is built in parallel
+		AtomicReference<int[]> backwardTree = new AtomicReference<>();
+		AtomicBoolean errorsOccured = new AtomicBoolean(false);
+
+		Thread backwardThread = new Thread(() -> {
+			backwardTree.set(graph.calculateTree(graph.getFromNode(reference), false));
+		});
+
+		backwardThread.setUncaughtExceptionHandler((t, e) -> {
+			e.printStackTrace();
+			errorsOccured.set(true);
+		});
+
+		backwardThread.start();
+		int[] forwardTree = graph.calculateTree(graph.getToNode(reference), true);
+		backwardThread.join();
+
+		if (errorsOccured.get()) {
+			throw new RuntimeException("Found errors while calculating the backward tree");
+		}
+
+		// Nodes at which the paths from and to the reference can stop
+		BitSet forwardCovered = new BitSet(graph.getNumberOfNodes());
+		BitSet backwardCovered = new BitSet(graph.getNumberOfNodes());
+
+		forwardCovered.set(graph.getToNode(reference));
+		backwardCovered.set(graph.getFromNode(reference));
+
+		if (mode == Mode.COMPONENT) {
+			BitSet allowedLinks = new BitSet();
+			allowedLinks.set(reference);
+
+			for (Id<Link> linkId : linkIds) {
+				allowedLinks.set(getLinkPosition(graph, linkId));
+			}
+
+			forwardCovered.or(graph.calculateReachableNodes(graph.getToNode(reference), allowedLinks, true));
+			backwardCovered.or(graph.calculateReachableNodes(graph.getFromNode(reference), allowedLinks, false));
+		}
+
+		ParallelProgress progress = new ParallelProgress("Finding minimum network ...", linkIds.size());
+		progress.start();
+
+		BitSet minimumLinks = new BitSet();
+
+		try {
+			for (Id<Link> linkId : linkIds) {
+				int link = getLinkPosition(graph, linkId);
+
+				// Path from the reference to the link, walked backwards from the link
+				int node = graph.getFromNode(link);
+
+				while (!forwardCovered.get(node)) {
+					forwardCovered.set(node);
+					int treeLink = forwardTree[node];
+
+					if (treeLink == RoadGraph.NONE) {
+						throw new IllegalStateException("Cannot reach link " + linkId + " from reference link");
+					}
+
+					minimumLinks.set(treeLink);
+					node = graph.getFromNode(treeLink);
+				}
+
+				// Path from the link to the reference
+				node = graph.getToNode(link);
+
+				while (!backwardCovered.get(node)) {
+					backwardCovered.set(node);
+					int treeLink = backwardTree.get()[node];
+
+					if (treeLink == RoadGraph.NONE) {
+						throw new IllegalStateException("Cannot reach reference link from link " + linkId);
+					}
+
+					minimumLinks.set(treeLink);
+					node = graph.getToNode(treeLink);
+				}
+
+				progress.update();
+			}
+		} finally {
+			progress.close();
+		}
+
+		Set<Id<Link>> minimumSet = new HashSet<>();
+
+		for (int link = minimumLinks.nextSetBit(0); link >= 0; link = minimumLinks.nextSetBit(link + 1)) {
+			minimumSet.add(graph.getLinkId(link));
+		}
+
+		return minimumSet;
+	}
+
+	private int getLinkPosition(RoadGraph graph, Id<Link> linkId) {
+		int link = graph.getLinkPosition(linkId);
+
+		if (link == RoadGraph.NONE) {
+			throw new IllegalStateException("Cannot find link " + linkId);
+		}
+
+		return link;
+	}
+
+	private Set<Id<Link>> runPaths(Set<Id<Link>> linkIds) throws InterruptedException {
 		Iterator<Id<Link>> linkIterator = linkIds.iterator();
 
 		List<Thread> threads = new LinkedList<>();
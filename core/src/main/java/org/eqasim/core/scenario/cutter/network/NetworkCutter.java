@@ -3,12 +3,18 @@ package org.eqasim.core.scenario.cutter.network;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.eqasim.core.scenario.cutter.ParallelIndexCollector;
+import org.eqasim.core.scenario.cutter.extent.NetworkExtentIndex;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
 import org.eqasim.core.scenario.cutter.extent.ShapeScenarioExtent;
 import org.matsim.api.core.v01.Id;
@@ -41,11 +47,31 @@ public class NetworkCutter {
 	private final ScenarioExtent extent;
 	private final MinimumNetworkFinder minimumNetworkFinder;
 	private final Scenario scenario;
+	private final int numberOfThreads;
+
+	// Links used by the population, if it is not held in the scenario
+	private final Collection<Id<Link>> populationLinkIds;
 
 	public NetworkCutter(ScenarioExtent extent, Scenario scenario, MinimumNetworkFinder minimumNetworkFinder) {
+		this(extent, scenario, minimumNetworkFinder, null);
+	}
+
+	public NetworkCutter(ScenarioExtent extent, Scenario scenario, MinimumNetworkFinder minimumNetworkFinder,
+			Collection<Id<Link>> populationLinkIds) {
+		this(extent, scenario, minimumNetworkFinder, populationLinkIds, 1);
+	}
+
+	/**
+	 * The links used by persons, transit lines and facilities are collected on the
+	 * given number of threads.
+	 */
+	public NetworkCutter(ScenarioExtent extent, Scenario scenario, MinimumNetworkFinder minimumNetworkFinder,
+			Collection<Id<Link>> populationLinkIds, int numberOfThreads) {
 		this.extent = extent;
 		this.minimumNetworkFinder = minimumNetworkFinder;
 		this.scenario = scenario;
+		this.populationLinkIds = populationLinkIds;
+		this.numberOfThreads = numberOfThreads;
 	}
 
 	public void run(Network network) throws InterruptedException {
@@ -54,64 +80,44 @@ public class NetworkCutter {
 		int originalNumberOfLinks = network.getLinks().size();
 		int originalNumberOfNodes = network.getNodes().size();
 
-		// Collect all links that within the area
-		Set<Id<Link>> retainedLinkIds = new HashSet<>();
+		// Collect all links that within the area (by link id index)
+		BitSet retainedLinks = new BitSet();
+		NetworkExtentIndex extentIndex = new NetworkExtentIndex(extent, network);
 
 		for (Link link : network.getLinks().values()) {
-			if (extent.isInside(link.getToNode().getCoord()) && extent.isInside(link.getFromNode().getCoord())) {
-				retainedLinkIds.add(link.getId());
+			if (extentIndex.isInside(link)) {
+				retainedLinks.set(link.getId().index());
 			}
 
 			if (link.getId().toString().contains("outside")) {
-				retainedLinkIds.add(link.getId());
+				retainedLinks.set(link.getId().index());
 			}
 		}
 
 		// Collect all links that are needed by the population
-		for (Person person : scenario.getPopulation().getPersons().values()) {
-			for (Plan plan : person.getPlans()) {
-				for (PlanElement element : plan.getPlanElements()) {
-					if (element instanceof Activity) {
-						Activity activity = (Activity) element;
-
-						if (!activity.getType().equals(PtConstants.TRANSIT_ACTIVITY_TYPE)) {
-							retainedLinkIds.add(activity.getLinkId());
-						}
-					} else {
-						Leg leg = (Leg) element;
-						Route route = leg.getRoute();
-
-						if (route instanceof NetworkRoute) {
-							NetworkRoute networkRoute = (NetworkRoute) route;
-
-							retainedLinkIds.add(networkRoute.getStartLinkId());
-							retainedLinkIds.add(networkRoute.getEndLinkId());
-							retainedLinkIds.addAll(networkRoute.getLinkIds());
-						}
-					}
-				}
+		if (populationLinkIds != null) {
+			for (Id<Link> linkId : populationLinkIds) {
+				retainedLinks.set(linkId.index());
 			}
+		} else {
+			List<Person> persons = new ArrayList<>(scenario.getPopulation().getPersons().values());
+			retainedLinks.or(
+					ParallelIndexCollector.collect(persons, numberOfThreads, NetworkCutter::collectPersonLinks));
 		}
 
 		// Collect all links that are needed by the public transit lines
-		for (TransitLine transitLine : scenario.getTransitSchedule().getTransitLines().values()) {
-			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
-				NetworkRoute networkRoute = transitRoute.getRoute();
-
-				retainedLinkIds.add(networkRoute.getStartLinkId());
-				retainedLinkIds.add(networkRoute.getEndLinkId());
-				retainedLinkIds.addAll(networkRoute.getLinkIds());
-			}
-		}
+		List<TransitLine> transitLines = new ArrayList<>(scenario.getTransitSchedule().getTransitLines().values());
+		retainedLinks.or(
+				ParallelIndexCollector.collect(transitLines, numberOfThreads, NetworkCutter::collectTransitLineLinks));
 
 		for (TransitStopFacility facility : scenario.getTransitSchedule().getFacilities().values()) {
-			retainedLinkIds.add(facility.getLinkId());
+			addLink(facility.getLinkId(), retainedLinks);
 		}
 
 		// Collect all facilities
-		for (ActivityFacility facility : scenario.getActivityFacilities().getFacilities().values()) {
-			retainedLinkIds.add(facility.getLinkId());
-		}
+		List<ActivityFacility> facilities = new ArrayList<>(scenario.getActivityFacilities().getFacilities().values());
+		retainedLinks.or(ParallelIndexCollector.collect(facilities, numberOfThreads,
+				(facility, indices) -> addLink(facility.getLinkId(), indices)));
 
 		// Further processing is needed for the population links, because it may be the
 		// case that an agent is using "walk" in the given population, whereas he may
@@ -123,35 +129,53 @@ public class NetworkCutter {
 
 		Set<Id<Link>> retainedCarLinkIds = new HashSet<>();
 
-		for (Id<Link> linkId : retainedLinkIds) {
-			if (network.getLinks().get(linkId).getAllowedModes().contains("car")) {
-				retainedCarLinkIds.add(linkId);
+		for (int index = retainedLinks.nextSetBit(0); index >= 0; index = retainedLinks.nextSetBit(index + 1)) {
+			Link link = network.getLinks().get(Id.get(index, Link.class));
+
+			if (link != null && link.getAllowedModes().contains("car")) {
+				retainedCarLinkIds.add(link.getId());
 			}
 		}
 
-		Set<Id<Link>> allRetainedLinkIds = new HashSet<>();
-		allRetainedLinkIds.addAll(retainedLinkIds);
-		allRetainedLinkIds.addAll(minimumNetworkFinder.run(retainedCarLinkIds));
+		for (Id<Link> linkId : minimumNetworkFinder.run(retainedCarLinkIds)) {
+			retainedLinks.set(linkId.index());
+		}
 
 		// Note that this means, that public transit lines CANNOT change their routes in
 		// the simulation if this is desired (at least not outside of the scenario
 		// extent).
 
-		Set<Id<Node>> allRetainedNodeIds = new HashSet<>();
+		BitSet retainedNodes = new BitSet();
 
-		for (Id<Link> linkId : allRetainedLinkIds) {
-			allRetainedNodeIds.add(network.getLinks().get(linkId).getFromNode().getId());
-			allRetainedNodeIds.add(network.getLinks().get(linkId).getToNode().getId());
+		for (int index = retainedLinks.nextSetBit(0); index >= 0; index = retainedLinks.nextSetBit(index + 1)) {
+			Link link = network.getLinks().get(Id.get(index, Link.class));
+
+			if (link != null) {
+				retainedNodes.set(link.getFromNode().getId().index());
+				retainedNodes.set(link.getToNode().getId().index());
+			}
 		}
 
-		Set<Id<Link>> allRemovedLinkIds = new HashSet<>(network.getLinks().keySet());
-		Set<Id<Node>> allRemovedNodeIds = new HashSet<>(network.getNodes().keySet());
+		// Removing a node also removes all its links, so only links between retained
+		// nodes need to be removed individually
+		List<Id<Node>> removedNodeIds = new ArrayList<>();
+		List<Id<Link>> removedLinkIds = new ArrayList<>();
 
-		allRemovedLinkIds.removeAll(allRetainedLinkIds);
-		allRemovedNodeIds.removeAll(allRetainedNodeIds);
+		for (Node node : network.getNodes().values()) {
+			if (!retainedNodes.get(node.getId().index())) {
+				removedNodeIds.add(node.getId());
+			}
+		}
+
+		for (Link link : network.getLinks().values()) {
+			if (!retainedLinks.get(link.getId().index()) && retainedNodes.get(link.getFromNode().getId().index())
+					&& retainedNodes.get(link.getToNode().getId().index())) {
+				removedLinkIds.add(link.getId());
+			}
+		}
 
-		allRemovedLinkIds.forEach(id -> network.removeLink(id));
-		allRemovedNodeIds.forEach(id -> network.removeNode(id));
+		removedNodeIds.forEach(network::removeNode);
+		removedLinkIds.forEach(network::removeLink);
 
 		int finalNumberOfNodes = network.getNodes().size();
 		int finalNumberOfLinks = network.getLinks().size();
@@ -163,6 +187,48 @@ public class NetworkCutter {
 		log.info("  Number of links now: " + finalNumberOfLinks);
 	}
 
+	static private void addLink(Id<Link> linkId, BitSet indices) {
+		if (linkId != null) {
+			indices.set(linkId.index());
+		}
+	}
+
+	static private void collectRouteLinks(NetworkRoute networkRoute, BitSet indices) {
+		addLink(networkRoute.getStartLinkId(), indices);
+		addLink(networkRoute.getEndLinkId(), indices);
+
+		for (Id<Link> linkId : networkRoute.getLinkIds()) {
+			indices.set(linkId.index());
+		}
+	}
+
+	static private void collectPersonLinks(Person person, BitSet indices) {
+		for (Plan plan : person.getPlans()) {
+			for (PlanElement element : plan.getPlanElements()) {
+				if (element instanceof Activity) {
+					Activity activity = (Activity) element;
+
+					if (!activity.getType().equals(PtConstants.TRANSIT_ACTIVITY_TYPE)) {
+						addLink(activity.getLinkId(), indices);
+					}
+				} else {
+					Leg leg = (Leg) element;
+					Route route = leg.getRoute();
+
+					if (route instanceof NetworkRoute) {
+						collectRouteLinks((NetworkRoute) route, indices);
+					}
+				}
+			}
+		}
+	}
+
+	static private void collectTransitLineLinks(TransitLine transitLine, BitSet indices) {
+		for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+			collectRouteLinks(transitRoute.getRoute(), indices);
+		}
+	}
+
 	static public void main(String[] args) throws MalformedURLException, IOException, InterruptedException {
 		Network fullNetwork = NetworkUtils.createNetwork();
 		new MatsimNetworkReader(fullNetwork).readFile("output_network.xml.gz");
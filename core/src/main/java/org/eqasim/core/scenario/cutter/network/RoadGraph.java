@@ -0,0 +1,287 @@
+package org.eqasim.core.scenario.cutter.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * Compact array representation of a road network for one-to-all searches.
+ * Nodes and links are numbered consecutively and the outgoing and incoming
+ * links of every node are stored in adjacency arrays. Link costs are free-flow
+ * travel times.
+ */
+class RoadGraph {
+	static final int NONE = -1;
+
+	private final int numberOfNodes;
+	private final int numberOfLinks;
+
+	private final int[] nodePositions;
+	private final int[] linkPositions;
+	private final List<Id<Link>> linkIds;
+
+	private final int[] fromNodes;
+	private final int[] toNodes;
+	private final double[] costs;
+
+	private final int[] outgoingOffsets;
+	private final int[] outgoingLinks;
+	private final int[] incomingOffsets;
+	private final int[] incomingLinks;
+
+	RoadGraph(Network network) {
+		this.numberOfNodes = network.getNodes().size();
+		this.numberOfLinks = network.getLinks().size();
+
+		int maximumNodeIndex = -1;
+
+		for (Node node : network.getNodes().values()) {
+			maximumNodeIndex = Math.max(maximumNodeIndex, node.getId().index());
+		}
+
+		this.nodePositions = new int[maximumNodeIndex + 1];
+		Arrays.fill(nodePositions, NONE);
+
+		int nodePosition = 0;
+
+		for (Node node : network.getNodes().values()) {
+			nodePositions[node.getId().index()] = nodePosition++;
+		}
+
+		int maximumLinkIndex = -1;
+
+		for (Link link : network.getLinks().values()) {
+			maximumLinkIndex = Math.max(maximumLinkIndex, link.getId().index());
+		}
+
+		this.linkPositions = new int[maximumLinkIndex + 1];
+		Arrays.fill(linkPositions, NONE);
+
+		this.linkIds = new ArrayList<>(numberOfLinks);
+		this.fromNodes = new int[numberOfLinks];
+		this.toNodes = new int[numberOfLinks];
+		this.costs = new double[numberOfLinks];
+
+		int[] outgoingCounts = new int[numberOfNodes];
+		int[] incomingCounts = new int[numberOfNodes];
+
+		for (Link link : network.getLinks().values()) {
+			int position = linkIds.size();
+
+			linkPositions[link.getId().index()] = position;
+			linkIds.add(link.getId());
+
+			fromNodes[position] = nodePositions[link.getFromNode().getId().index()];
+			toNodes[position] = nodePositions[link.getToNode().getId().index()];
+			costs[position] = link.getLength() / link.getFreespeed(0.0);
+
+			outgoingCounts[fromNodes[position]]++;
+			incomingCounts[toNodes[position]]++;
+		}
+
+		this.outgoingOffsets = createOffsets(outgoingCounts);
+		this.incomingOffsets = createOffsets(incomingCounts);
+		this.outgoingLinks = new int[numberOfLinks];
+		this.incomingLinks = new int[numberOfLinks];
+
+		int[] outgoingFill = Arrays.copyOf(outgoingOffsets, numberOfNodes);
+		int[] incomingFill = Arrays.copyOf(incomingOffsets, numberOfNodes);
+
+		for (int link = 0; link < numberOfLinks; link++) {
+			outgoingLinks[outgoingFill[fromNodes[link]]++] = link;
+			incomingLinks[incomingFill[toNodes[link]]++] = link;
+		}
+	}
+
+	private static int[] createOffsets(int[] counts) {
+		int[] offsets = new int[counts.length + 1];
+
+		for (int i = 0; i < counts.length; i++) {
+			offsets[i + 1] = offsets[i] + counts[i];
+		}
+
+		return offsets;
+	}
+
+	int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	int getLinkPosition(Id<Link> linkId) {
+		int index = linkId.index();
+		return index < linkPositions.length ? linkPositions[index] : NONE;
+	}
+
+	Id<Link> getLinkId(int link) {
+		return linkIds.get(link);
+	}
+
+	int getFromNode(int link) {
+		return fromNodes[link];
+	}
+
+	int getToNode(int link) {
+		return toNodes[link];
+	}
+
+	/**
+	 * Calculates a least-cost tree from the root node. In forward direction, the
+	 * returned array contains for every node the last link on the path from the
+	 * root. In backward direction, it contains the first link on the path from the
+	 * node to the root. Unreachable nodes and the root have no link.
+	 */
+	int[] calculateTree(int root, boolean forward) {
+		int[] treeLinks = new int[numberOfNodes];
+		Arrays.fill(treeLinks, NONE);
+
+		double[] nodeCosts = new double[numberOfNodes];
+		Arrays.fill(nodeCosts, Double.POSITIVE_INFINITY);
+
+		BitSet settled = new BitSet(numberOfNodes);
+		NodeHeap heap = new NodeHeap();
+
+		nodeCosts[root] = 0.0;
+		heap.push(root, 0.0);
+
+		int[] offsets = forward ? outgoingOffsets : incomingOffsets;
+		int[] adjacentLinks = forward ? outgoingLinks : incomingLinks;
+
+		while (!heap.isEmpty()) {
+			int node = heap.pop();
+
+			if (settled.get(node)) {
+				continue;
+			}
+
+			settled.set(node);
+
+			for (int k = offsets[node]; k < offsets[node + 1]; k++) {
+				int link = adjacentLinks[k];
+				int otherNode = forward ? toNodes[link] : fromNodes[link];
+				double otherCost = nodeCosts[node] + costs[link];
+
+				if (otherCost < nodeCosts[otherNode]) {
+					nodeCosts[otherNode] = otherCost;
+					treeLinks[otherNode] = link;
+					heap.push(otherNode, otherCost);
+				}
+			}
+		}
+
+		return treeLinks;
+	}
+
+	/**
+	 * Returns all nodes that can be reached from the root (forward) or that can
+	 * reach the root (backward) using only the given links.
+	 */
+	BitSet calculateReachableNodes(int root, BitSet allowedLinks, boolean forward) {
+		BitSet reachable = new BitSet(numberOfNodes);
+		reachable.set(root);
+
+		int[] stack = new int[numberOfNodes];
+		int stackSize = 0;
+		stack[stackSize++] = root;
+
+		int[] offsets = forward ? outgoingOffsets : incomingOffsets;
+		int[] adjacentLinks = forward ? outgoingLinks : incomingLinks;
+
+		while (stackSize > 0) {
+			int node = stack[--stackSize];
+
+			for (int k = offsets[node]; k < offsets[node + 1]; k++) {
+				int link = adjacentLinks[k];
+
+				if (allowedLinks.get(link)) {
+					int otherNode = forward ? toNodes[link] : fromNodes[link];
+
+					if (!reachable.get(otherNode)) {
+						reachable.set(otherNode);
+						stack[stackSize++] = otherNode;
+					}
+				}
+			}
+		}
+
+		return reachable;
+	}
+
+	/**
+	 * Binary min-heap of nodes. Nodes may be pushed several times, outdated
+	 * entries are skipped by the search.
+	 */
+	private static class NodeHeap {
+		private int[] nodes = new int[1024];
+		private double[] keys = new double[1024];
+		private int size = 0;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void push(int node, double key) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				keys = Arrays.copyOf(keys, size * 2);
+			}
+
+			int position = size++;
+
+			while (position > 0) {
+				int parent = (position - 1) >>> 1;
+
+				if (keys[parent] <= key) {
+					break;
+				}
+
+				nodes[position] = nodes[parent];
+				keys[position] = keys[parent];
+				position = parent;
+			}
+
+			nodes[position] = node;
+			keys[position] = key;
+		}
+
+		int pop() {
+			int result = nodes[0];
+
+			size--;
+			int lastNode = nodes[size];
+			double lastKey = keys[size];
+
+			int position = 0;
+
+			while (true) {
+				int child = 2 * position + 1;
+
+				if (child >= size) {
+					break;
+				}
+
+				if (child + 1 < size && keys[child + 1] < keys[child]) {
+					child++;
+				}
+
+				if (keys[child] >= lastKey) {
+					break;
+				}
+
+				nodes[position] = nodes[child];
+				keys[position] = keys[child];
+				position = child;
+			}
+
+			nodes[position] = lastNode;
+			keys[position] = lastKey;
+
+			return result;
+		}
+	}
+}
@@ -22,34 +22,38 @@ public class OutsideActivityAdapter {
 		OutsideFacilityAdapter facilityAdapter = new OutsideFacilityAdapter(facilities);
 
 		for (Person person : population.getPersons().values()) {
-			for (Plan plan : person.getPlans()) {
-				for (PlanElement element : plan.getPlanElements()) {
-					if (element instanceof Activity) {
-						Activity activity = (Activity) element;
-
-						if (activity.getType().equals("outside")) {
-							Link activityLink;
+			run(person, facilityAdapter);
+		}
+	}
 
-							if (activity.getLinkId() != null) {
-								activityLink = roadNetwork.getLinks().get(activity.getLinkId());
-							} else {
-								activityLink = NetworkUtils.getNearestLink(roadNetwork, activity.getCoord());
-							}
+	public void run(Person person, OutsideFacilityAdapter facilityAdapter) {
+		for (Plan plan : person.getPlans()) {
+			for (PlanElement element : plan.getPlanElements()) {
+				if (element instanceof Activity) {
+					Activity activity = (Activity) element;
 
-							ActivityFacility facility = facilityAdapter.getFacility(activityLink);
+					if (activity.getType().equals("outside")) {
+						Link activityLink;
 
-							activity.setCoord(facility.getCoord());
-							activity.setLinkId(facility.getLinkId());
-							activity.setFacilityId(facility.getId());
+						if (activity.getLinkId() != null) {
+							activityLink = roadNetwork.getLinks().get(activity.getLinkId());
+						} else {
+							activityLink = NetworkUtils.getNearestLink(roadNetwork, activity.getCoord());
 						}
+
+						ActivityFacility facility = facilityAdapter.getFacility(activityLink);
+
+						activity.setCoord(facility.getCoord());
+						activity.setLinkId(facility.getLinkId());
+						activity.setFacilityId(facility.getId());
 					}
 				}
+			}
 
-				Activity lastActivity = (Activity) plan.getPlanElements().get(plan.getPlanElements().size() - 1);
+			Activity lastActivity = (Activity) plan.getPlanElements().get(plan.getPlanElements().size() - 1);
 
-				if (lastActivity.getType().equals("outside")) {
-					lastActivity.setEndTimeUndefined();
-				}
+			if (lastActivity.getType().equals("outside")) {
+				lastActivity.setEndTimeUndefined();
 			}
 		}
 	}
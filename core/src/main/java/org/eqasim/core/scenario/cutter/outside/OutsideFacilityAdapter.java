@@ -24,7 +24,7 @@ public class OutsideFacilityAdapter {
 		return Id.create("outside_" + counter, ActivityFacility.class);
 	}
 
-	public ActivityFacility getFacility(Link link) {
+	public synchronized ActivityFacility getFacility(Link link) {
 		ActivityFacility facility = facilitiesByLink.get(link);
 
 		if (facility == null) {
@@ -13,6 +13,10 @@ import org.matsim.households.Households;
 public class CleanHouseholds {
 	final private Collection<Id<Person>> personsIds;
 
+	public CleanHouseholds(Collection<Id<Person>> personIds) {
+		this.personsIds = personIds;
+	}
+
 	public CleanHouseholds(Population population) {
 		this.personsIds = population.getPersons().values().stream().map(Person::getId).collect(Collectors.toSet());
 	}
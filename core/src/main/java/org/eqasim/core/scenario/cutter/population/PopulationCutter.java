@@ -63,6 +63,44 @@ public class PopulationCutter {
 		}
 	}
 
+	/**
+	 * Replaces all plans of the person by their cut versions and marks whether the
+	 * person has any outside activities.
+	 */
+	public void cutPerson(Person person, PlanCutter planCutter) {
+		boolean isPersonOutside = false;
+
+		List<Plan> newPlans = new LinkedList<>();
+		List<Plan> oldPlans = new LinkedList<>();
+
+		for (Plan oldPlan : person.getPlans()) {
+			List<PlanElement> newPlanElements = planCutter.processPlan(person.getId(), oldPlan.getPlanElements());
+
+			Plan newPlan = populationFactory.createPlan();
+
+			for (int k = 0; k < newPlanElements.size(); k++) {
+				if (k % 2 == 0) {
+					Activity activity = (Activity) newPlanElements.get(k);
+					newPlan.addActivity(activity);
+
+					if (activity.getType().equals(Constants.OUTSIDE_ACTIVITY_TYPE)) {
+						isPersonOutside = true;
+					}
+				} else {
+					newPlan.addLeg((Leg) newPlanElements.get(k));
+				}
+			}
+
+			newPlans.add(newPlan);
+			oldPlans.add(oldPlan);
+		}
+
+		oldPlans.forEach(person::removePlan);
+		newPlans.forEach(person::addPlan);
+
+		person.getAttributes().putAttribute(Constants.OUTSIDE_AGENT_ATTRIBUTE, isPersonOutside);
+	}
+
 	private class Worker implements Runnable {
 		private final Iterator<? extends Person> personIterator;
 		private final ParallelProgress progress;
@@ -90,38 +128,7 @@ public class PopulationCutter {
 				}
 
 				for (Person person : localTasks) {
-					boolean isPersonOutside = false;
-
-					List<Plan> newPlans = new LinkedList<>();
-					List<Plan> oldPlans = new LinkedList<>();
-
-					for (Plan oldPlan : person.getPlans()) {
-						List<PlanElement> newPlanElements = planCutter.processPlan(person.getId(),
-								oldPlan.getPlanElements());
-
-						Plan newPlan = populationFactory.createPlan();
-
-						for (int k = 0; k < newPlanElements.size(); k++) {
-							if (k % 2 == 0) {
-								Activity activity = (Activity) newPlanElements.get(k);
-								newPlan.addActivity(activity);
-
-								if (activity.getType().equals(Constants.OUTSIDE_ACTIVITY_TYPE)) {
-									isPersonOutside = true;
-								}
-							} else {
-								newPlan.addLeg((Leg) newPlanElements.get(k));
-							}
-						}
-
-						newPlans.add(newPlan);
-						oldPlans.add(oldPlan);
-					}
-
-					oldPlans.forEach(person::removePlan);
-					newPlans.forEach(person::addPlan);
-
-					person.getAttributes().putAttribute(Constants.OUTSIDE_AGENT_ATTRIBUTE, isPersonOutside);
+					cutPerson(person, planCutter);
 				}
 
 				progress.update(localTasks.size());
@@ -1,10 +1,17 @@
 package org.eqasim.core.scenario.cutter.population;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 
+import org.eqasim.core.scenario.cutter.extent.NetworkExtentIndex;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
 import org.eqasim.core.scenario.cutter.population.trips.ModeAwareTripProcessor;
 import org.eqasim.core.scenario.cutter.population.trips.NetworkTripProcessor;
@@ -43,13 +50,25 @@ public class PopulationCutterModule extends AbstractModule {
 	private final int batchSize;
 	private final ScenarioExtent extent;
 	private final Optional<String> eventsPath;
+	private final Optional<String> linkTimingPath;
 
 	public PopulationCutterModule(ScenarioExtent extent, int numberOfThreads, int batchSize,
 			Optional<String> eventsPath) {
+		this(extent, numberOfThreads, batchSize, eventsPath, Optional.empty());
+	}
+
+	/**
+	 * If a link timing path is given together with an events path, the link
+	 * timings obtained from the events are written to it. If only the link timing
+	 * path is given, the timings are read from there instead of the events.
+	 */
+	public PopulationCutterModule(ScenarioExtent extent, int numberOfThreads, int batchSize,
+			Optional<String> eventsPath, Optional<String> linkTimingPath) {
 		this.numberOfThreads = numberOfThreads;
 		this.batchSize = batchSize;
 		this.extent = extent;
 		this.eventsPath = eventsPath;
+		this.linkTimingPath = linkTimingPath;
 	}
 
 	@Override
@@ -149,18 +168,45 @@ public class PopulationCutterModule extends AbstractModule {
 
 	@Provides
 	@Singleton
-	public LinkTimingRegistry provideLinkTimingRegistry(Network network) {
+	public NetworkExtentIndex provideNetworkExtentIndex(ScenarioExtent extent, Network network) {
+		return new NetworkExtentIndex(extent, network);
+	}
+
+	@Provides
+	@Singleton
+	public LinkTimingRegistry provideLinkTimingRegistry(Network network, NetworkExtentIndex extentIndex) {
+		// Only links crossing the extent are recorded, so files are bound to the extent
+		long extentFingerprint = LinkTimingRegistryHandler.computeExtentFingerprint(extentIndex, network);
+
+		if (eventsPath.isEmpty() && linkTimingPath.isPresent()) {
+			try (InputStream inputStream = new FileInputStream(new File(linkTimingPath.get()))) {
+				return LinkTimingRegistry.readBinary(inputStream, extentFingerprint);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
 		LinkTimingRegistry registry = new LinkTimingRegistry();
 
 		if (eventsPath.isPresent()) {
 			EventsManager eventsManager = EventsUtils.createEventsManager();
-			eventsManager.addHandler(new LinkTimingRegistryHandler(extent, network, registry));
+			eventsManager.addHandler(new LinkTimingRegistryHandler(extentIndex, network, registry));
 
 			eventsManager.initProcessing();
 			new MatsimEventsReader(eventsManager).readFile(eventsPath.get());
 			eventsManager.finishProcessing();
 		}
 
+		registry.build();
+
+		if (eventsPath.isPresent() && linkTimingPath.isPresent()) {
+			try (OutputStream outputStream = new FileOutputStream(new File(linkTimingPath.get()))) {
+				LinkTimingRegistry.writeBinary(outputStream, registry, extentFingerprint);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
 		return registry;
 	}
 }
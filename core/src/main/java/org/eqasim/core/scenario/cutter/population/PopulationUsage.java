@@ -0,0 +1,84 @@
+package org.eqasim.core.scenario.cutter.population;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.PtConstants;
+
+/**
+ * Collects the ids of the persons, facilities and links that are used by a cut
+ * population, so that households, facilities and the network can be cut
+ * without keeping the population in memory. Persons can be added concurrently.
+ */
+public class PopulationUsage {
+	private final Set<Id<Person>> personIds = ConcurrentHashMap.newKeySet();
+	private final Set<Id<ActivityFacility>> facilityIds = ConcurrentHashMap.newKeySet();
+	private final Set<Id<ActivityFacility>> homeFacilityIds = ConcurrentHashMap.newKeySet();
+	private final Set<Id<Link>> linkIds = ConcurrentHashMap.newKeySet();
+
+	public void add(Person person) {
+		personIds.add(person.getId());
+
+		for (Plan plan : person.getPlans()) {
+			for (PlanElement element : plan.getPlanElements()) {
+				if (element instanceof Activity) {
+					Activity activity = (Activity) element;
+
+					if (activity.getFacilityId() != null) {
+						facilityIds.add(activity.getFacilityId());
+
+						if (activity.getType().equals("home")) {
+							homeFacilityIds.add(activity.getFacilityId());
+						}
+					}
+
+					if (!activity.getType().equals(PtConstants.TRANSIT_ACTIVITY_TYPE)
+							&& activity.getLinkId() != null) {
+						linkIds.add(activity.getLinkId());
+					}
+				} else if (((Leg) element).getRoute() instanceof NetworkRoute) {
+					NetworkRoute networkRoute = (NetworkRoute) ((Leg) element).getRoute();
+
+					linkIds.add(networkRoute.getStartLinkId());
+					linkIds.add(networkRoute.getEndLinkId());
+					linkIds.addAll(networkRoute.getLinkIds());
+				}
+			}
+		}
+	}
+
+	public Set<Id<Person>> getPersonIds() {
+		return personIds;
+	}
+
+	/**
+	 * Returns the facilities of all activities.
+	 */
+	public Set<Id<ActivityFacility>> getFacilityIds() {
+		return facilityIds;
+	}
+
+	/**
+	 * Returns the facilities of all home activities.
+	 */
+	public Set<Id<ActivityFacility>> getHomeFacilityIds() {
+		return homeFacilityIds;
+	}
+
+	/**
+	 * Returns the links of all activities (except pt interactions) and network
+	 * routes.
+	 */
+	public Set<Id<Link>> getLinkIds() {
+		return linkIds;
+	}
+}
@@ -15,13 +15,20 @@ public class RemoveEmptyPlans {
 		while (personIterator.hasNext()) {
 			Person person = personIterator.next();
 
-			List<Plan> plansToRemove = person.getPlans().stream().filter(p -> p.getPlanElements().size() == 0)
-					.collect(Collectors.toList());
-			plansToRemove.forEach(p -> person.removePlan(p));
-
-			if (person.getPlans().size() == 0) {
+			if (!run(person)) {
 				personIterator.remove();
 			}
 		}
 	}
+
+	/**
+	 * Removes the empty plans of the person and returns whether any plans are left.
+	 */
+	public boolean run(Person person) {
+		List<Plan> plansToRemove = person.getPlans().stream().filter(p -> p.getPlanElements().size() == 0)
+				.collect(Collectors.toList());
+		plansToRemove.forEach(p -> person.removePlan(p));
+
+		return person.getPlans().size() > 0;
+	}
 }
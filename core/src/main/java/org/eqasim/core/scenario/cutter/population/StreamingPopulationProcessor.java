@@ -0,0 +1,235 @@
+package org.eqasim.core.scenario.cutter.population;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.log4j.Logger;
+import org.eqasim.core.misc.ParallelProgress;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.population.io.StreamingPopulationReader;
+import org.matsim.core.population.io.StreamingPopulationWriter;
+
+/**
+ * Reads the persons of a population file one by one, processes them in batches
+ * on a pool of worker threads and writes them to the output population file
+ * right away. Only a bounded number of batches is held in memory at any time.
+ * The order of the persons in the output file is not preserved.
+ */
+public class StreamingPopulationProcessor {
+	private final static Logger logger = Logger.getLogger(StreamingPopulationProcessor.class);
+	private final static List<Person> END_OF_STREAM = Collections.emptyList();
+	private final static int BUFFER_SIZE = 1024 * 1024;
+
+	private final Scenario scenario;
+	private final int numberOfThreads;
+	private final int batchSize;
+	private final int queueSize;
+
+	public interface PersonProcessor {
+		/**
+		 * Processes the person and returns whether it should be written.
+		 */
+		boolean process(Person person);
+	}
+
+	public StreamingPopulationProcessor(Scenario scenario, int numberOfThreads, int batchSize, int queueSize) {
+		this.scenario = scenario;
+		this.numberOfThreads = numberOfThreads;
+		this.batchSize = batchSize;
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * Processes all persons of the input file. Every worker thread obtains its own
+	 * processor from the supplier.
+	 */
+	public void run(File inputPath, File outputPath, Supplier<PersonProcessor> processorSupplier)
+			throws IOException, InterruptedException {
+		BlockingQueue<List<Person>> queue = new ArrayBlockingQueue<>(queueSize);
+		List<Thread> threads = new ArrayList<>(numberOfThreads);
+
+		AtomicBoolean errorsOccured = new AtomicBoolean(false);
+		AtomicLong numberOfWrittenPersons = new AtomicLong();
+
+		StreamingPopulationWriter writer = new StreamingPopulationWriter();
+		writer.startStreaming(outputPath.toString());
+
+		for (int i = 0; i < numberOfThreads; i++) {
+			Thread thread = new Thread(new Worker(queue, processorSupplier, writer, numberOfWrittenPersons));
+			thread.setUncaughtExceptionHandler((t, e) -> {
+				e.printStackTrace();
+				errorsOccured.set(true);
+			});
+
+			thread.start();
+			threads.add(thread);
+		}
+
+		ParallelProgress progress = new ParallelProgress("Processing population (bytes) ...", inputPath.length());
+		progress.start();
+
+		long numberOfReadPersons = 0;
+
+		try (CountingInputStream countingStream = new CountingInputStream(new FileInputStream(inputPath))) {
+			InputStream inputStream = new BufferedInputStream(countingStream, BUFFER_SIZE);
+
+			if (inputPath.getName().endsWith(".gz")) {
+				inputStream = new GZIPInputStream(inputStream, BUFFER_SIZE);
+			}
+
+			Dispatcher dispatcher = new Dispatcher(queue, errorsOccured, progress, countingStream);
+
+			StreamingPopulationReader reader = new StreamingPopulationReader(scenario);
+			reader.addAlgorithm(dispatcher::process);
+			reader.parse(inputStream);
+
+			dispatcher.flush();
+			numberOfReadPersons = dispatcher.getNumberOfPersons();
+
+			progress.set(inputPath.length());
+		} finally {
+			progress.close();
+
+			for (int i = 0; i < numberOfThreads; i++) {
+				dispatch(queue, END_OF_STREAM, errorsOccured);
+			}
+
+			for (Thread thread : threads) {
+				thread.join();
+			}
+
+			writer.closeStreaming();
+		}
+
+		if (errorsOccured.get()) {
+			throw new RuntimeException("Errors occured while processing the population.");
+		}
+
+		logger.info(String.format("Processed %d persons, written %d persons", numberOfReadPersons,
+				numberOfWrittenPersons.get()));
+	}
+
+	/**
+	 * Hands a batch over to the workers. Returns false if the batch could not be
+	 * passed on because a worker has failed.
+	 */
+	static private boolean dispatch(BlockingQueue<List<Person>> queue, List<Person> batch,
+			AtomicBoolean errorsOccured) throws InterruptedException {
+		while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+			if (errorsOccured.get()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private class Dispatcher {
+		private final BlockingQueue<List<Person>> queue;
+		private final AtomicBoolean errorsOccured;
+
+		private final ParallelProgress progress;
+		private final CountingInputStream countingStream;
+
+		private List<Person> batch = new ArrayList<>(batchSize);
+		private long numberOfPersons = 0;
+
+		Dispatcher(BlockingQueue<List<Person>> queue, AtomicBoolean errorsOccured, ParallelProgress progress,
+				CountingInputStream countingStream) {
+			this.queue = queue;
+			this.errorsOccured = errorsOccured;
+			this.progress = progress;
+			this.countingStream = countingStream;
+		}
+
+		void process(Person person) {
+			batch.add(person);
+			numberOfPersons++;
+
+			if (batch.size() >= batchSize) {
+				try {
+					if (!dispatch(queue, batch, errorsOccured)) {
+						throw new IllegalStateException("Processing of persons has failed");
+					}
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+
+				batch = new ArrayList<>(batchSize);
+				progress.set(countingStream.getByteCount());
+			}
+		}
+
+		void flush() throws InterruptedException {
+			if (batch.size() > 0) {
+				dispatch(queue, batch, errorsOccured);
+				batch = new ArrayList<>(batchSize);
+			}
+		}
+
+		long getNumberOfPersons() {
+			return numberOfPersons;
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final BlockingQueue<List<Person>> queue;
+		private final Supplier<PersonProcessor> processorSupplier;
+		private final StreamingPopulationWriter writer;
+		private final AtomicLong numberOfWrittenPersons;
+
+		Worker(BlockingQueue<List<Person>> queue, Supplier<PersonProcessor> processorSupplier,
+				StreamingPopulationWriter writer, AtomicLong numberOfWrittenPersons) {
+			this.queue = queue;
+			this.processorSupplier = processorSupplier;
+			this.writer = writer;
+			this.numberOfWrittenPersons = numberOfWrittenPersons;
+		}
+
+		@Override
+		public void run() {
+			PersonProcessor processor = processorSupplier.get();
+
+			try {
+				while (true) {
+					List<Person> batch = queue.take();
+
+					if (batch == END_OF_STREAM) {
+						return;
+					}
+
+					List<Person> retained = new ArrayList<>(batch.size());
+
+					for (Person person : batch) {
+						if (processor.process(person)) {
+							retained.add(person);
+						}
+					}
+
+					synchronized (writer) {
+						retained.forEach(writer::run);
+					}
+
+					numberOfWrittenPersons.addAndGet(retained.size());
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
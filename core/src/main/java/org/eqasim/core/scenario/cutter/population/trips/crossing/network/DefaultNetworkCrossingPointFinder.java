@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.eqasim.core.scenario.cutter.extent.NetworkExtentIndex;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
 import org.eqasim.core.scenario.cutter.population.trips.crossing.network.timing.LinkTimingData;
 import org.eqasim.core.scenario.cutter.population.trips.crossing.network.timing.LinkTimingRegistry;
@@ -18,16 +19,21 @@ import org.matsim.core.router.util.TravelTime;
 import com.google.inject.Inject;
 
 public class DefaultNetworkCrossingPointFinder implements NetworkCrossingPointFinder {
-	final private ScenarioExtent extent;
+	final private NetworkExtentIndex extentIndex;
 	final private Network network;
 
 	final private Map<String, TravelTime> travelTimes;
 	final private LinkTimingRegistry timingRegistry;
 
-	@Inject
 	public DefaultNetworkCrossingPointFinder(ScenarioExtent extent, Network network,
 			Map<String, TravelTime> travelTimes, LinkTimingRegistry timingRegistry) {
-		this.extent = extent;
+		this(new NetworkExtentIndex(extent, network), network, travelTimes, timingRegistry);
+	}
+
+	@Inject
+	public DefaultNetworkCrossingPointFinder(NetworkExtentIndex extentIndex, Network network,
+			Map<String, TravelTime> travelTimes, LinkTimingRegistry timingRegistry) {
+		this.extentIndex = extentIndex;
 		this.network = network;
 		this.travelTimes = travelTimes;
 		this.timingRegistry = timingRegistry;
@@ -56,8 +62,8 @@ public class DefaultNetworkCrossingPointFinder implements NetworkCrossingPointFi
 			enterTime = leaveTime;
 			leaveTime = enterTime + travelTime.getLinkTravelTime(link, enterTime, null, null);
 
-			boolean fromIsInside = extent.isInside(link.getFromNode().getCoord());
-			boolean toIsInside = extent.isInside(link.getToNode().getCoord());
+			boolean fromIsInside = extentIndex.isFromNodeInside(link);
+			boolean toIsInside = extentIndex.isToNodeInside(link);
 
 			if (fromIsInside != toIsInside) {
 				Optional<LinkTimingData> timingData = timingRegistry.getTimingData(personId, legIndex, linkId);
@@ -87,11 +93,7 @@ public class DefaultNetworkCrossingPointFinder implements NetworkCrossingPointFi
 		for (Id<Link> linkId : fullRoute) {
 			Link link = network.getLinks().get(linkId);
 
-			if (!extent.isInside(link.getFromNode().getCoord())) {
-				return false;
-			}
-
-			if (!extent.isInside(link.getToNode().getCoord())) {
+			if (!extentIndex.isInside(link)) {
 				return false;
 			}
 		}
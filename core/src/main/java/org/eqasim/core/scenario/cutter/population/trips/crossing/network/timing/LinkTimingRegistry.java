@@ -1,54 +1,335 @@
 package org.eqasim.core.scenario.cutter.population.trips.crossing.network.timing;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Optional;
 
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Person;
 
+/**
+ * Stores the times at which persons have entered and left links. The entries
+ * are kept in parallel primitive arrays. Once all entries are registered, they
+ * are sorted by person, link and leg index, so that lookups are binary
+ * searches. Sorting happens on {@link #build()} or, at the latest, on the first
+ * lookup after a registration.
+ */
 public class LinkTimingRegistry {
-	private final IdMap<Person, Map<Id<Link>, List<LinkTimingData>>> data = new IdMap<>(Person.class);
+	static final long BINARY_MAGIC = 0x7FF000004C544D47L;
+	static final int BINARY_VERSION = 2;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private int size = 0;
+
+	private int[] personIndices = new int[INITIAL_CAPACITY];
+	private int[] linkIndices = new int[INITIAL_CAPACITY];
+	private int[] legIndices = new int[INITIAL_CAPACITY];
+	private double[] enterTimes = new double[INITIAL_CAPACITY];
+	private double[] leaveTimes = new double[INITIAL_CAPACITY];
+
+	private volatile boolean sorted = true;
 
 	public void register(Id<Person> personId, int legIndex, Id<Link> linkId, double enterTime, double leaveTime) {
-		data.computeIfAbsent(personId, key -> new HashMap<>()).computeIfAbsent(linkId, key -> new LinkedList<>())
-				.add(new LinkTimingData(enterTime, leaveTime, legIndex));
+		register(personId.index(), legIndex, linkId.index(), enterTime, leaveTime);
 	}
 
-	public Optional<LinkTimingData> getTimingData(Id<Person> personId, int legIndex, Id<Link> linkId) {
-		if (data.isEmpty()) {
-			return Optional.empty();
+	synchronized void register(int personIndex, int legIndex, int linkIndex, double enterTime, double leaveTime) {
+		if (size == personIndices.length) {
+			int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+
+			personIndices = Arrays.copyOf(personIndices, capacity);
+			linkIndices = Arrays.copyOf(linkIndices, capacity);
+			legIndices = Arrays.copyOf(legIndices, capacity);
+			enterTimes = Arrays.copyOf(enterTimes, capacity);
+			leaveTimes = Arrays.copyOf(leaveTimes, capacity);
 		}
 
-		Map<Id<Link>, List<LinkTimingData>> personData = data.get(personId);
+		personIndices[size] = personIndex;
+		linkIndices[size] = linkIndex;
+		legIndices[size] = legIndex;
+		enterTimes[size] = enterTime;
+		leaveTimes[size] = leaveTime;
 
-		if (personData == null) {
-			return Optional.empty();
+		size++;
+		sorted = false;
+	}
+
+	/**
+	 * Sorts the registered entries and releases unused capacity. Entries with the
+	 * same person, link and leg keep the order in which they were registered.
+	 */
+	public synchronized void build() {
+		if (!sorted) {
+			sort();
 		}
 
-		List<LinkTimingData> linkData = personData.get(linkId);
+		if (personIndices.length > size) {
+			personIndices = Arrays.copyOf(personIndices, size);
+			linkIndices = Arrays.copyOf(linkIndices, size);
+			legIndices = Arrays.copyOf(legIndices, size);
+			enterTimes = Arrays.copyOf(enterTimes, size);
+			leaveTimes = Arrays.copyOf(leaveTimes, size);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
 
-		if (linkData == null) {
+	public Optional<LinkTimingData> getTimingData(Id<Person> personId, int legIndex, Id<Link> linkId) {
+		if (size == 0) {
 			return Optional.empty();
 		}
 
-		Iterator<LinkTimingData> iterator = linkData.iterator();
+		if (!sorted) {
+			synchronized (this) {
+				if (!sorted) {
+					sort();
+				}
+			}
+		}
 
-		while (iterator.hasNext()) {
-			LinkTimingData legData = iterator.next();
+		int personIndex = personId.index();
+		int linkIndex = linkId.index();
 
-			if (legData.legIndex == legIndex) {
-				return Optional.of(legData);
-			} else if (legData.legIndex > legIndex) {
-				break;
+		int lower = 0;
+		int upper = size;
+
+		while (lower < upper) {
+			int middle = (lower + upper) >>> 1;
+
+			if (compare(middle, personIndex, linkIndex, legIndex) < 0) {
+				lower = middle + 1;
+			} else {
+				upper = middle;
 			}
 		}
 
+		if (lower < size && compare(lower, personIndex, linkIndex, legIndex) == 0) {
+			return Optional.of(new LinkTimingData(enterTimes[lower], leaveTimes[lower], legIndices[lower]));
+		}
+
 		return Optional.empty();
 	}
+
+	private int compare(int entry, int personIndex, int linkIndex, int legIndex) {
+		int result = Integer.compare(personIndices[entry], personIndex);
+
+		if (result == 0) {
+			result = Integer.compare(linkIndices[entry], linkIndex);
+		}
+
+		if (result == 0) {
+			result = Integer.compare(legIndices[entry], legIndex);
+		}
+
+		return result;
+	}
+
+	private int compareEntries(int a, int b) {
+		return compare(a, personIndices[b], linkIndices[b], legIndices[b]);
+	}
+
+	private void sort() {
+		int[] order = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+
+		mergeSort(order, new int[size], 0, size);
+
+		personIndices = permute(personIndices, order);
+		linkIndices = permute(linkIndices, order);
+		legIndices = permute(legIndices, order);
+		enterTimes = permute(enterTimes, order);
+		leaveTimes = permute(leaveTimes, order);
+
+		sorted = true;
+	}
+
+	/**
+	 * Stable merge sort of entry positions, so that duplicate keys keep their
+	 * registration order.
+	 */
+	private void mergeSort(int[] order, int[] buffer, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+
+		mergeSort(order, buffer, from, middle);
+		mergeSort(order, buffer, middle, to);
+
+		if (compareEntries(order[middle - 1], order[middle]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(order, from, buffer, from, to - from);
+
+		int left = from;
+		int right = middle;
+
+		for (int k = from; k < to; k++) {
+			if (right >= to || (left < middle && compareEntries(buffer[left], buffer[right]) <= 0)) {
+				order[k] = buffer[left++];
+			} else {
+				order[k] = buffer[right++];
+			}
+		}
+	}
+
+	private static int[] permute(int[] values, int[] order) {
+		int[] result = new int[order.length];
+
+		for (int i = 0; i < order.length; i++) {
+			result[i] = values[order[i]];
+		}
+
+		return result;
+	}
+
+	private static double[] permute(double[] values, int[] order) {
+		double[] result = new double[order.length];
+
+		for (int i = 0; i < order.length; i++) {
+			result[i] = values[order[i]];
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes the registry in a versioned binary format. Since id indices are only
+	 * valid within one run, persons and links are written as tables of ids that
+	 * are referenced by the entries. The fingerprint identifies the links for which
+	 * timings have been recorded, so that the file is not used with another
+	 * extent.
+	 */
+	static public void writeBinary(OutputStream outputStream, LinkTimingRegistry registry, long extentFingerprint)
+			throws IOException {
+		registry.build();
+
+		DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(outputStream));
+
+		int[] personReferences = new int[registry.size];
+		int[] linkReferences = new int[registry.size];
+
+		int[] personTable = createTable(registry.personIndices, registry.size, personReferences);
+		int[] linkTable = createTable(registry.linkIndices, registry.size, linkReferences);
+
+		writer.writeLong(BINARY_MAGIC);
+		writer.writeInt(BINARY_VERSION);
+		writer.writeLong(extentFingerprint);
+		writer.writeInt(registry.size);
+		writer.writeInt(personTable.length);
+		writer.writeInt(linkTable.length);
+
+		for (int personIndex : personTable) {
+			writer.writeUTF(Id.get(personIndex, Person.class).toString());
+		}
+
+		for (int linkIndex : linkTable) {
+			writer.writeUTF(Id.get(linkIndex, Link.class).toString());
+		}
+
+		for (int i = 0; i < registry.size; i++) {
+			writer.writeInt(personReferences[i]);
+			writer.writeInt(linkReferences[i]);
+			writer.writeInt(registry.legIndices[i]);
+			writer.writeDouble(registry.enterTimes[i]);
+			writer.writeDouble(registry.leaveTimes[i]);
+		}
+
+		writer.flush();
+	}
+
+	/**
+	 * Collects the distinct values of an index column into a table and stores for
+	 * every entry the position of its value in the table.
+	 */
+	static private int[] createTable(int[] indices, int size, int[] references) {
+		int maximumIndex = -1;
+
+		for (int i = 0; i < size; i++) {
+			maximumIndex = Math.max(maximumIndex, indices[i]);
+		}
+
+		int[] positions = new int[maximumIndex + 1];
+		Arrays.fill(positions, -1);
+
+		int[] table = new int[size];
+		int tableSize = 0;
+
+		for (int i = 0; i < size; i++) {
+			int index = indices[i];
+
+			if (positions[index] == -1) {
+				positions[index] = tableSize;
+				table[tableSize++] = index;
+			}
+
+			references[i] = positions[index];
+		}
+
+		return Arrays.copyOf(table, tableSize);
+	}
+
+	static public LinkTimingRegistry readBinary(InputStream inputStream, long extentFingerprint) throws IOException {
+		DataInputStream reader = new DataInputStream(new BufferedInputStream(inputStream));
+
+		if (reader.readLong() != BINARY_MAGIC) {
+			throw new IllegalStateException("Not a link timing file");
+		}
+
+		int version = reader.readInt();
+
+		if (version != BINARY_VERSION) {
+			throw new IllegalStateException("Unsupported link timing format version: " + version);
+		}
+
+		if (reader.readLong() != extentFingerprint) {
+			throw new IllegalStateException("Link timing file has been recorded for a different extent");
+		}
+
+		int numberOfEntries = reader.readInt();
+		int numberOfPersons = reader.readInt();
+		int numberOfLinks = reader.readInt();
+
+		int[] personTable = new int[numberOfPersons];
+		int[] linkTable = new int[numberOfLinks];
+
+		for (int i = 0; i < numberOfPersons; i++) {
+			personTable[i] = Id.createPersonId(reader.readUTF()).index();
+		}
+
+		for (int i = 0; i < numberOfLinks; i++) {
+			linkTable[i] = Id.createLinkId(reader.readUTF()).index();
+		}
+
+		LinkTimingRegistry registry = new LinkTimingRegistry();
+
+		for (int i = 0; i < numberOfEntries; i++) {
+			int personIndex = personTable[reader.readInt()];
+			int linkIndex = linkTable[reader.readInt()];
+			int legIndex = reader.readInt();
+			double enterTime = reader.readDouble();
+			double leaveTime = reader.readDouble();
+
+			registry.register(personIndex, legIndex, linkIndex, enterTime, leaveTime);
+		}
+
+		// Indices may have been assigned differently than in the writing run
+		registry.build();
+		return registry;
+	}
 }
@@ -1,5 +1,8 @@
 package org.eqasim.core.scenario.cutter.population.trips.crossing.network.timing;
 
+import java.util.Arrays;
+
+import org.eqasim.core.scenario.cutter.extent.NetworkExtentIndex;
 import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.IdMap;
@@ -18,24 +21,58 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.vehicles.Vehicle;
 
+/**
+ * Registers the times at which drivers enter and leave links that cross the
+ * scenario extent. The state per person is kept in primitive arrays indexed by
+ * the person id index.
+ */
 public class LinkTimingRegistryHandler implements PersonDepartureEventHandler, VehicleEntersTrafficEventHandler,
 		VehicleLeavesTrafficEventHandler, LinkEnterEventHandler, LinkLeaveEventHandler {
-	private final ScenarioExtent extent;
+	private final NetworkExtentIndex extentIndex;
 	private final Network network;
 
 	private final LinkTimingRegistry timingRegistry;
 
-	private final IdMap<Person, Integer> tripIndices = new IdMap<>(Person.class);
+	private static final int NONE = -1;
+
+	private int[] legIndices = new int[0];
+	private int[] enterLinkIndices = new int[0];
+	private double[] enterTimes = new double[0];
 
-	private final IdMap<Person, LinkEnterEvent> enterEvents = new IdMap<>(Person.class);
 	private final IdMap<Vehicle, Id<Person>> driverRegistry = new IdMap<>(Vehicle.class);
 
 	public LinkTimingRegistryHandler(ScenarioExtent extent, Network network, LinkTimingRegistry timingRegistry) {
-		this.extent = extent;
+		this(new NetworkExtentIndex(extent, network), network, timingRegistry);
+	}
+
+	public LinkTimingRegistryHandler(NetworkExtentIndex extentIndex, Network network,
+			LinkTimingRegistry timingRegistry) {
+		this.extentIndex = extentIndex;
 		this.network = network;
 		this.timingRegistry = timingRegistry;
 	}
 
+	/**
+	 * Computes a fingerprint of the links for which timings are recorded, that is
+	 * the links crossing the extent. It does not depend on the order of the links
+	 * in the network.
+	 */
+	static public long computeExtentFingerprint(NetworkExtentIndex extentIndex, Network network) {
+		long fingerprint = 0;
+		long numberOfLinks = 0;
+
+		for (Link link : network.getLinks().values()) {
+			if (extentIndex.isCrossing(link)) {
+				// Mixed per link and summed up, so that the order does not matter
+				long hash = link.getId().toString().hashCode() * 0x9E3779B97F4A7C15L;
+				fingerprint += hash ^ (hash >>> 31);
+				numberOfLinks++;
+			}
+		}
+
+		return fingerprint * 31 + numberOfLinks;
+	}
+
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		driverRegistry.put(event.getVehicleId(), event.getPersonId());
@@ -46,28 +83,53 @@ public class LinkTimingRegistryHandler implements PersonDepartureEventHandler, V
 		driverRegistry.remove(event.getVehicleId());
 	}
 
+	private void ensureCapacity(int personIndex) {
+		if (personIndex >= legIndices.length) {
+			int previousLength = legIndices.length;
+			int length = Math.max(personIndex + 1, previousLength * 2);
+
+			legIndices = Arrays.copyOf(legIndices, length);
+			enterLinkIndices = Arrays.copyOf(enterLinkIndices, length);
+			enterTimes = Arrays.copyOf(enterTimes, length);
+
+			Arrays.fill(legIndices, previousLength, length, NONE);
+			Arrays.fill(enterLinkIndices, previousLength, length, NONE);
+		}
+	}
+
 	@Override
 	public void handleEvent(PersonDepartureEvent event) {
-		tripIndices.compute(event.getPersonId(), (id, value) -> value == null ? 0 : value + 1);
+		int personIndex = event.getPersonId().index();
+		ensureCapacity(personIndex);
+		legIndices[personIndex]++;
 	}
 
 	@Override
 	public void handleEvent(LinkEnterEvent event) {
 		Link link = network.getLinks().get(event.getLinkId());
+		Id<Person> driverId = driverRegistry.get(event.getVehicleId());
 
-		if (extent.isInside(link.getFromNode().getCoord()) ^ extent.isInside(link.getToNode().getCoord())) {
-			enterEvents.put(driverRegistry.get(event.getVehicleId()), event);
+		if (driverId != null && extentIndex.isCrossing(link)) {
+			int personIndex = driverId.index();
+			ensureCapacity(personIndex);
+
+			enterLinkIndices[personIndex] = event.getLinkId().index();
+			enterTimes[personIndex] = event.getTime();
 		}
 	}
 
 	@Override
 	public void handleEvent(LinkLeaveEvent event) {
 		Id<Person> driverId = driverRegistry.get(event.getVehicleId());
-		LinkEnterEvent enterEvent = enterEvents.remove(driverId);
 
-		if (enterEvent != null) {
-			timingRegistry.register(driverRegistry.get(event.getVehicleId()), tripIndices.get(driverId),
-					enterEvent.getLinkId(), enterEvent.getTime(), event.getTime());
+		if (driverId != null) {
+			int personIndex = driverId.index();
+
+			if (personIndex < enterLinkIndices.length && enterLinkIndices[personIndex] != NONE) {
+				timingRegistry.register(personIndex, legIndices[personIndex], enterLinkIndices[personIndex],
+						enterTimes[personIndex], event.getTime());
+				enterLinkIndices[personIndex] = NONE;
+			}
 		}
 	}
 }
@@ -1,7 +1,10 @@
 package org.eqasim.core.scenario.validation;
 
+import java.util.Map;
+
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.population.Activity;
@@ -41,79 +44,96 @@ public class ScenarioValidator {
 		}
 
 		for (Person person : scenario.getPopulation().getPersons().values()) {
-			for (Plan plan : person.getPlans()) {
-				for (PlanElement element : plan.getPlanElements()) {
-					if (element instanceof Activity) {
-						Activity activity = (Activity) element;
-
-						boolean hasCoord = activity.getCoord() != null;
-						boolean hasLink = activity.getLinkId() != null;
-						boolean hasFacility = activity.getFacilityId() != null;
-
-						if (!hasCoord) {
-							logger.error(String.format("Person %s has %s activity without coordinate",
-									person.getId().toString(), activity.getType()));
-							errorsFound = true;
-						}
+			errorsFound |= checkSpatialConsistency(scenario, person);
+		}
 
-						if (!hasLink) {
-							logger.error(String.format("Person %s has %s activity without link",
-									person.getId().toString(), activity.getType()));
-							errorsFound = true;
-						}
+		return errorsFound;
+	}
+
+	public boolean checkSpatialConsistency(Scenario scenario, Person person) {
+		return checkSpatialConsistency(scenario.getNetwork().getLinks(),
+				scenario.getActivityFacilities().getFacilities(), person);
+	}
+
+	/**
+	 * Checks the activities of a person against the given links and facilities,
+	 * which may be snapshots if the scenario is modified concurrently.
+	 */
+	public boolean checkSpatialConsistency(Map<Id<Link>, ? extends Link> links,
+			Map<Id<ActivityFacility>, ? extends ActivityFacility> facilities, Person person) {
+		boolean errorsFound = false;
+
+		for (Plan plan : person.getPlans()) {
+			for (PlanElement element : plan.getPlanElements()) {
+				if (element instanceof Activity) {
+					Activity activity = (Activity) element;
+
+					boolean hasCoord = activity.getCoord() != null;
+					boolean hasLink = activity.getLinkId() != null;
+					boolean hasFacility = activity.getFacilityId() != null;
+
+					if (!hasCoord) {
+						logger.error(String.format("Person %s has %s activity without coordinate",
+								person.getId().toString(), activity.getType()));
+						errorsFound = true;
+					}
+
+					if (!hasLink) {
+						logger.error(String.format("Person %s has %s activity without link",
+								person.getId().toString(), activity.getType()));
+						errorsFound = true;
+					}
+
+					if (!hasFacility && !TripStructureUtils.isStageActivityType(activity.getType())) {
+						logger.error(String.format("Person %s has %s activity without facility",
+								person.getId().toString(), activity.getType()));
+						errorsFound = true;
+					}
 
-						if (!hasFacility && !TripStructureUtils.isStageActivityType(activity.getType())) {
-							logger.error(String.format("Person %s has %s activity without facility",
-									person.getId().toString(), activity.getType()));
+					if (hasCoord && hasFacility) {
+						Coord activityCoord = activity.getCoord();
+						Link link = links.get(activity.getLinkId());
+						ActivityFacility facility = facilities.get(activity.getFacilityId());
+
+						if (link == null) {
+							logger.error(String.format("Link %s in %s activity for person %s does not exist",
+									activity.getLinkId(), activity.getType(), person.getId().toString()));
 							errorsFound = true;
 						}
 
-						if (hasCoord && hasFacility) {
-							Coord activityCoord = activity.getCoord();
-							Link link = scenario.getNetwork().getLinks().get(activity.getLinkId());
-							ActivityFacility facility = scenario.getActivityFacilities().getFacilities()
-									.get(activity.getFacilityId());
-
-							if (link == null) {
-								logger.error(String.format("Link %s in %s activity for person %s does not exist",
-										activity.getLinkId(), activity.getType(), person.getId().toString()));
-								errorsFound = true;
-							}
+						if (facility == null) {
+							logger.error(String.format("Facility %s in %s activity for person %s does not exist",
+									activity.getFacilityId(), activity.getType(), person.getId().toString()));
+							errorsFound = true;
+						} else {
+							Coord facilityCoord = facility.getCoord();
 
-							if (facility == null) {
-								logger.error(String.format("Facility %s in %s activity for person %s does not exist",
+							if (!activityCoord.equals(facilityCoord)) {
+								logger.error(String.format(
+										"Facility %s and %s activity for person %s do not have same coordinates",
 										activity.getFacilityId(), activity.getType(), person.getId().toString()));
 								errorsFound = true;
-							} else {
-								Coord facilityCoord = facility.getCoord();
-
-								if (!activityCoord.equals(facilityCoord)) {
-									logger.error(String.format(
-											"Facility %s and %s activity for person %s do not have same coordinates",
-											activity.getFacilityId(), activity.getType(), person.getId().toString()));
-									errorsFound = true;
-								}
 							}
+						}
 
-							if (link != null && facility != null) {
-								if (!link.getId().equals(facility.getLinkId())) {
-									logger.error(String.format(
-											"Facility %s and %s activity for person %s do not have same link",
-											activity.getLinkId(), activity.getType(), person.getId().toString()));
-									errorsFound = true;
-								}
+						if (link != null && facility != null) {
+							if (!link.getId().equals(facility.getLinkId())) {
+								logger.error(String.format(
+										"Facility %s and %s activity for person %s do not have same link",
+										activity.getLinkId(), activity.getType(), person.getId().toString()));
+								errorsFound = true;
 							}
 						}
+					}
 
-						if (!TripStructureUtils.isStageActivityType(activity.getType())) {
-							Link link = scenario.getNetwork().getLinks().get(activity.getLinkId());
+					if (!TripStructureUtils.isStageActivityType(activity.getType())) {
+						Link link = links.get(activity.getLinkId());
 
-							if (link != null) {
-								if (!link.getAllowedModes().contains("car")) {
-									logger.error(String.format("Person %s has %s activity attached to non-car link %s",
-											person.getId().toString(), activity.getType(), link.getId().toString()));
-									errorsFound = true;
-								}
+						if (link != null) {
+							if (!link.getAllowedModes().contains("car")) {
+								logger.error(String.format("Person %s has %s activity attached to non-car link %s",
+										person.getId().toString(), activity.getType(), link.getId().toString()));
+								errorsFound = true;
 							}
 						}
 					}
@@ -128,53 +148,61 @@ public class ScenarioValidator {
 		boolean errorsFound = false;
 
 		for (Person person : population.getPersons().values()) {
-			for (Plan plan : person.getPlans()) {
-				for (int i = 0; i < plan.getPlanElements().size(); i++) {
-					PlanElement element = plan.getPlanElements().get(i);
+			errorsFound |= checkRouting(person);
+		}
 
-					if (element instanceof Leg) {
-						Leg leg = (Leg) element;
+		return errorsFound;
+	}
+
+	public boolean checkRouting(Person person) {
+		boolean errorsFound = false;
+
+		for (Plan plan : person.getPlans()) {
+			for (int i = 0; i < plan.getPlanElements().size(); i++) {
+				PlanElement element = plan.getPlanElements().get(i);
 
-						if (leg.getRoute() == null) {
-							logger.error(String.format("Person %s has %s leg without a route",
-									person.getId().toString(), leg.getMode()));
+				if (element instanceof Leg) {
+					Leg leg = (Leg) element;
+
+					if (leg.getRoute() == null) {
+						logger.error(String.format("Person %s has %s leg without a route",
+								person.getId().toString(), leg.getMode()));
+						errorsFound = true;
+					} else {
+						Route route = leg.getRoute();
+
+						if (route.getStartLinkId() == null) {
+							logger.error(String.format("Person %s has route without a start link",
+									person.getId().toString()));
 							errorsFound = true;
 						} else {
-							Route route = leg.getRoute();
+							Activity preceedingActivity = (Activity) plan.getPlanElements().get(i - 1);
 
-							if (route.getStartLinkId() == null) {
-								logger.error(String.format("Person %s has route without a start link",
-										person.getId().toString()));
-								errorsFound = true;
-							} else {
-								Activity preceedingActivity = (Activity) plan.getPlanElements().get(i - 1);
-
-								if (!TripStructureUtils.isStageActivityType(preceedingActivity.getType())) {
-									if (!preceedingActivity.getLinkId().equals(route.getStartLinkId())) {
-										logger.error(String.format(
-												"Person %s has route with a different start link (%s) than previous activity (%s)",
-												person.getId().toString(), route.getStartLinkId().toString(),
-												preceedingActivity.getLinkId().toString()));
-										errorsFound = true;
-									}
+							if (!TripStructureUtils.isStageActivityType(preceedingActivity.getType())) {
+								if (!preceedingActivity.getLinkId().equals(route.getStartLinkId())) {
+									logger.error(String.format(
+											"Person %s has route with a different start link (%s) than previous activity (%s)",
+											person.getId().toString(), route.getStartLinkId().toString(),
+											preceedingActivity.getLinkId().toString()));
+									errorsFound = true;
 								}
 							}
+						}
 
-							if (route.getEndLinkId() == null) {
-								logger.error(String.format("Person %s has route without an end link",
-										person.getId().toString()));
-								errorsFound = true;
-							} else {
-								Activity followingActivity = (Activity) plan.getPlanElements().get(i - 1);
-
-								if (!TripStructureUtils.isStageActivityType(followingActivity.getType())) {
-									if (!followingActivity.getLinkId().equals(route.getStartLinkId())) {
-										logger.error(String.format(
-												"Person %s has route with a different end link (%s) than following activity (%s)",
-												person.getId().toString(), route.getStartLinkId().toString(),
-												followingActivity.getLinkId().toString()));
-										errorsFound = true;
-									}
+						if (route.getEndLinkId() == null) {
+							logger.error(String.format("Person %s has route without an end link",
+									person.getId().toString()));
+							errorsFound = true;
+						} else {
+							Activity followingActivity = (Activity) plan.getPlanElements().get(i - 1);
+
+							if (!TripStructureUtils.isStageActivityType(followingActivity.getType())) {
+								if (!followingActivity.getLinkId().equals(route.getStartLinkId())) {
+									logger.error(String.format(
+											"Person %s has route with a different end link (%s) than following activity (%s)",
+											person.getId().toString(), route.getStartLinkId().toString(),
+											followingActivity.getLinkId().toString()));
+									errorsFound = true;
 								}
 							}
 						}
@@ -186,6 +214,25 @@ public class ScenarioValidator {
 		return errorsFound;
 	}
 
+	/**
+	 * Checks a single person, for instance while the population is streamed and
+	 * never held in memory.
+	 */
+	public boolean checkPerson(Scenario scenario, Person person) {
+		return checkPerson(scenario.getNetwork().getLinks(), scenario.getActivityFacilities().getFacilities(),
+				person);
+	}
+
+	public boolean checkPerson(Map<Id<Link>, ? extends Link> links,
+			Map<Id<ActivityFacility>, ? extends ActivityFacility> facilities, Person person) {
+		boolean errorsFound = false;
+
+		errorsFound |= checkSpatialConsistency(links, facilities, person);
+		errorsFound |= checkRouting(person);
+
+		return errorsFound;
+	}
+
 	public void checkScenario(Scenario scenario) {
 		boolean errorsFound = false;
 
@@ -1,15 +1,19 @@
 package org.eqasim.core.simulation.analysis;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 
 import org.eqasim.core.analysis.DistanceUnit;
+import org.eqasim.core.analysis.TripOutputFormat;
 import org.eqasim.core.analysis.legs.LegListener;
 import org.eqasim.core.analysis.legs.LegWriter;
 import org.eqasim.core.analysis.pt.PublicTransportLegListener;
 import org.eqasim.core.analysis.pt.PublicTransportLegWriter;
 import org.eqasim.core.analysis.trips.TripListener;
+import org.eqasim.core.analysis.trips.TripTable;
 import org.eqasim.core.analysis.trips.TripWriter;
 import org.eqasim.core.components.config.EqasimConfigGroup;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
@@ -26,6 +30,7 @@ import com.google.inject.Singleton;
 @Singleton
 public class AnalysisOutputListener implements IterationStartsListener, IterationEndsListener, ShutdownListener {
 	private static final String TRIPS_FILE_NAME = "eqasim_trips.csv";
+	private static final String BINARY_TRIPS_FILE_NAME = "eqasim_trips.bin";
 	private static final String LEGS_FILE_NAME = "eqasim_legs.csv";
 	private static final String PT_FILE_NAME = "eqasim_pt.csv";
 
@@ -41,6 +46,8 @@ public class AnalysisOutputListener implements IterationStartsListener, Iteratio
 	private final DistanceUnit scenarioDistanceUnit;
 	private final DistanceUnit analysisDistanceUnit;
 
+	private final TripOutputFormat tripFormat;
+
 	@Inject
 	public AnalysisOutputListener(EqasimConfigGroup config, OutputDirectoryHierarchy outputDirectory,
 			TripListener tripListener, LegListener legListener, PublicTransportLegListener ptListener) {
@@ -48,6 +55,7 @@ public class AnalysisOutputListener implements IterationStartsListener, Iteratio
 
 		this.scenarioDistanceUnit = config.getDistanceUnit();
 		this.analysisDistanceUnit = config.getAnalysisDistanceUnit();
+		this.tripFormat = config.getAnalysisTripFormat();
 
 		this.analysisInterval = config.getAnalysisInterval();
 
@@ -78,8 +86,16 @@ public class AnalysisOutputListener implements IterationStartsListener, Iteratio
 				event.getServices().getEvents().removeHandler(legAnalysisListener);
 				event.getServices().getEvents().removeHandler(ptAnalysisListener);
 
-				new TripWriter(tripAnalysisListener.getTripItems(), scenarioDistanceUnit, analysisDistanceUnit)
-						.write(outputDirectory.getIterationFilename(event.getIteration(), TRIPS_FILE_NAME));
+				if (tripFormat == TripOutputFormat.binary) {
+					// Distances stay in the scenario unit, they are converted on export
+					try (OutputStream outputStream = new FileOutputStream(
+							outputDirectory.getIterationFilename(event.getIteration(), BINARY_TRIPS_FILE_NAME))) {
+						TripTable.writeBinary(outputStream, tripAnalysisListener.getTripTable());
+					}
+				} else {
+					new TripWriter(tripAnalysisListener.getTripItems(), scenarioDistanceUnit, analysisDistanceUnit)
+							.write(outputDirectory.getIterationFilename(event.getIteration(), TRIPS_FILE_NAME));
+				}
 
 				new LegWriter(legAnalysisListener.getLegItems(), scenarioDistanceUnit, analysisDistanceUnit)
 						.write(outputDirectory.getIterationFilename(event.getIteration(), LEGS_FILE_NAME));
@@ -95,8 +111,10 @@ public class AnalysisOutputListener implements IterationStartsListener, Iteratio
 	@Override
 	public void notifyShutdown(ShutdownEvent event) {
 		try {
-			Files.copy(new File(outputDirectory.getIterationFilename(event.getIteration(), TRIPS_FILE_NAME)).toPath(),
-					new File(outputDirectory.getOutputFilename(TRIPS_FILE_NAME)).toPath());
+			String tripsFileName = tripFormat == TripOutputFormat.binary ? BINARY_TRIPS_FILE_NAME : TRIPS_FILE_NAME;
+
+			Files.copy(new File(outputDirectory.getIterationFilename(event.getIteration(), tripsFileName)).toPath(),
+					new File(outputDirectory.getOutputFilename(tripsFileName)).toPath());
 			Files.copy(new File(outputDirectory.getIterationFilename(event.getIteration(), LEGS_FILE_NAME)).toPath(),
 					new File(outputDirectory.getOutputFilename(LEGS_FILE_NAME)).toPath());
 			Files.copy(new File(outputDirectory.getIterationFilename(event.getIteration(), PT_FILE_NAME)).toPath(),
@@ -13,6 +13,8 @@ import org.eqasim.core.simulation.mode_choice.cost.CostModel;
 import org.eqasim.core.simulation.mode_choice.cost.ZeroCostModel;
 import org.eqasim.core.simulation.mode_choice.filters.OutsideFilter;
 import org.eqasim.core.simulation.mode_choice.filters.TourLengthFilter;
+import org.eqasim.core.simulation.mode_choice.routing.TripRouteCache;
+import org.eqasim.core.simulation.mode_choice.routing.TripRouteCacheListener;
 import org.eqasim.core.simulation.mode_choice.utilities.ModalUtilityEstimator;
 import org.eqasim.core.simulation.mode_choice.utilities.UtilityEstimator;
 import org.eqasim.core.simulation.mode_choice.utilities.estimators.BikeUtilityEstimator;
@@ -21,6 +23,7 @@ import org.eqasim.core.simulation.mode_choice.utilities.estimators.PtUtilityEsti
 import org.eqasim.core.simulation.mode_choice.utilities.estimators.WalkUtilityEstimator;
 import org.eqasim.core.simulation.mode_choice.utilities.estimators.ZeroUtilityEstimator;
 import org.eqasim.core.simulation.mode_choice.utilities.predictors.BikePredictor;
+import org.eqasim.core.simulation.mode_choice.utilities.predictors.CachedVariablePredictorListener;
 import org.eqasim.core.simulation.mode_choice.utilities.predictors.CarPredictor;
 import org.eqasim.core.simulation.mode_choice.utilities.predictors.PersonPredictor;
 import org.eqasim.core.simulation.mode_choice.utilities.predictors.PtPredictor;
@@ -86,12 +89,18 @@ public class EqasimModeChoiceModule extends AbstractEqasimExtension {
 
 		bindTourConstraintFactory(VEHICLE_TOUR_CONSTRAINT).to(EqasimVehicleTourConstraint.Factory.class);
 		bindHomeFinder(HOME_FINDER).to(EqasimHomeFinder.class);
+
+		addControlerListenerBinding().to(CachedVariablePredictorListener.class);
+
+		if (!EqasimConfigGroup.get(getConfig()).getRouteCacheModes().isEmpty()) {
+			addControlerListenerBinding().to(TripRouteCacheListener.class);
+		}
 	}
 
 	@Provides
 	public ModalUtilityEstimator provideModularUtilityEstimator(TripRouter tripRouter, ActivityFacilities facilities,
 			Map<String, Provider<UtilityEstimator>> factory, EqasimConfigGroup config,
-			TimeInterpretation timeInterpretation, DiscreteModeChoiceConfigGroup dmcConfig) {
+			TimeInterpretation timeInterpretation, DiscreteModeChoiceConfigGroup dmcConfig, TripRouteCache routeCache) {
 		Map<String, UtilityEstimator> estimators = new HashMap<>();
 
 		for (Map.Entry<String, String> entry : config.getEstimators().entrySet()) {
@@ -106,7 +115,19 @@ public class EqasimModeChoiceModule extends AbstractEqasimExtension {
 		}
 
 		return new ModalUtilityEstimator(tripRouter, facilities, estimators, timeInterpretation,
-				Collections.emptySet()); // Here we may add "pt" etc. as pre-routed modes.
+				Collections.emptySet(), routeCache); // Here we may add "pt" etc. as pre-routed modes.
+	}
+
+	@Provides
+	@Singleton
+	public TripRouteCache provideTripRouteCache(EqasimConfigGroup config) {
+		return new TripRouteCache(config.getRouteCacheModes(), config.getRouteCacheCapacity());
+	}
+
+	@Provides
+	@Singleton
+	public TripRouteCacheListener provideTripRouteCacheListener(TripRouteCache routeCache, EqasimConfigGroup config) {
+		return new TripRouteCacheListener(routeCache, config.getRouteCacheInvalidatedModes());
 	}
 
 	@Provides
@@ -9,6 +9,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.contribs.discrete_mode_choice.components.utils.LocationUtils;
 import org.matsim.contribs.discrete_mode_choice.components.utils.home_finder.HomeFinder;
 import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import org.matsim.contribs.discrete_mode_choice.model.tour_based.IncrementalTourConstraint;
 import org.matsim.contribs.discrete_mode_choice.model.tour_based.TourCandidate;
 import org.matsim.contribs.discrete_mode_choice.model.tour_based.TourConstraint;
 import org.matsim.contribs.discrete_mode_choice.model.tour_based.TourConstraintFactory;
@@ -36,9 +37,12 @@ import org.matsim.contribs.discrete_mode_choice.model.tour_based.TourConstraintF
  * If a home location cannot be found in the tour, a mode must start and end at
  * the first and last location in the tour.
  * 
+ * The departure rule and the continuity rule do not depend on the rest of the
+ * chain, so they are also checked on partial chains to prune the enumeration.
+ * 
  * @author sebhoerl
  */
-public class EqasimVehicleTourConstraint implements TourConstraint {
+public class EqasimVehicleTourConstraint implements IncrementalTourConstraint {
 	private final Collection<String> restrictedModes;
 	private final Id<? extends BasicLocation> vehicleLocationId;
 
@@ -127,6 +131,30 @@ public class EqasimVehicleTourConstraint implements TourConstraint {
 		return true;
 	}
 
+	@Override
+	public boolean validatePrefix(List<DiscreteModeChoiceTrip> tour, List<String> prefixModes) {
+		int index = prefixModes.size() - 1;
+		String mode = prefixModes.get(index);
+
+		if (!restrictedModes.contains(mode)) {
+			return true;
+		}
+
+		Id<? extends BasicLocation> originLocationId = LocationUtils
+				.getLocationId(tour.get(index).getOriginActivity());
+
+		for (int previousIndex = index - 1; previousIndex >= 0; previousIndex--) {
+			if (prefixModes.get(previousIndex).equals(mode)) {
+				// The vehicle must be picked up where it has been moved previously
+				return originLocationId.equals(
+						LocationUtils.getLocationId(tour.get(previousIndex).getDestinationActivity()));
+			}
+		}
+
+		// First use must depart at the vehicle base or at the very first activity
+		return index == 0 || originLocationId.equals(vehicleLocationId);
+	}
+
 	@Override
 	public boolean validateAfterEstimation(List<DiscreteModeChoiceTrip> tour, TourCandidate candidate,
 			List<TourCandidate> previousCandidates) {
@@ -9,21 +9,49 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 
 public abstract class AbstractEpsilonProvider implements EpsilonProvider {
-	private final MessageDigest digest;
+	static private final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final ThreadLocal<MessageDigest> digest;
 	private final double maximumValue;
 	private final long randomSeed;
+	private final EpsilonGenerator generator;
 
 	public AbstractEpsilonProvider(long randomSeed) {
+		this(randomSeed, EpsilonGenerator.sha512);
+	}
+
+	public AbstractEpsilonProvider(long randomSeed, EpsilonGenerator generator) {
 		try {
-			this.digest = MessageDigest.getInstance("SHA-512");
-			this.maximumValue = BigInteger.valueOf(2).pow(digest.getDigestLength() * 8).doubleValue();
-			this.randomSeed = randomSeed;
+			MessageDigest initialDigest = MessageDigest.getInstance("SHA-512");
+			this.maximumValue = BigInteger.valueOf(2).pow(initialDigest.getDigestLength() * 8).doubleValue();
 		} catch (NoSuchAlgorithmException e) {
 			throw new RuntimeException("Cannot find SHA-512 algorithm. Providing epsilons is not possible.");
 		}
+
+		// One digest per thread, since digests are stateful
+		this.digest = ThreadLocal.withInitial(() -> {
+			try {
+				return MessageDigest.getInstance("SHA-512");
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException("Cannot find SHA-512 algorithm. Providing epsilons is not possible.");
+			}
+		});
+
+		this.randomSeed = randomSeed;
+		this.generator = generator;
 	}
 
+	/**
+	 * Returns a uniform value which only depends on the random seed, the person,
+	 * the trip and the mode. With the SplitMix64 generator the value lies strictly
+	 * between zero and one.
+	 */
 	protected double getUniformEpsilon(Id<Person> personId, int tripIndex, String mode) {
+		if (generator.equals(EpsilonGenerator.splitMix64)) {
+			return getCounterEpsilon(personId.index(), tripIndex, mode.hashCode());
+		}
+
+		MessageDigest digest = this.digest.get();
 		digest.reset();
 
 		digest.update(ByteBuffer //
@@ -37,4 +65,23 @@ public abstract class AbstractEpsilonProvider implements EpsilonProvider {
 
 		return new BigInteger(1, digest.digest()).doubleValue() / maximumValue;
 	}
+
+	private double getCounterEpsilon(int personIndex, int tripIndex, int modeHash) {
+		long state = mix(randomSeed + GOLDEN_GAMMA);
+		state = mix(state + GOLDEN_GAMMA * (personIndex + 1L));
+		state = mix(state + GOLDEN_GAMMA * (tripIndex + 1L));
+		state = mix(state + GOLDEN_GAMMA * (modeHash + 1L));
+
+		// 53 bits, shifted by half a step to exclude zero and one
+		return ((state >>> 11) + 0.5) * 0x1.0p-53;
+	}
+
+	/**
+	 * Finalizer of the SplitMix64 generator.
+	 */
+	static private long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
 }
@@ -0,0 +1,11 @@
+package org.eqasim.core.simulation.mode_choice.epsilon;
+
+/**
+ * Generators for the uniform draws behind the epsilons. The SHA-512 generator
+ * reproduces the epsilons of earlier versions, while the SplitMix64 generator
+ * is a stateless counter-based generator that is much faster and can be used
+ * from many threads without any contention.
+ */
+public enum EpsilonGenerator {
+	sha512, splitMix64
+}
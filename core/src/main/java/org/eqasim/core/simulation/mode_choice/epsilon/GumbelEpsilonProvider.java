@@ -11,6 +11,11 @@ public class GumbelEpsilonProvider extends AbstractEpsilonProvider {
 		this.scale = scale;
 	}
 
+	public GumbelEpsilonProvider(long randomSeed, double scale, EpsilonGenerator generator) {
+		super(randomSeed, generator);
+		this.scale = scale;
+	}
+
 	@Override
 	public double getEpsilon(Id<Person> personId, int tripIndex, String mode) {
 		double u = getUniformEpsilon(personId, tripIndex, mode);
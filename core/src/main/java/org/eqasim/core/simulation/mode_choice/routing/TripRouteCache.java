@@ -0,0 +1,242 @@
+package org.eqasim.core.simulation.mode_choice.routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * Keeps routed trips across iterations by person, origin facility, destination
+ * facility, exact departure time and mode. A cached trip is copied whenever it
+ * is handed out, so the cached elements never end up in a plan.
+ *
+ * Since the person and the exact departure time are part of the key, a cached
+ * trip is only handed out for the request it has been routed for. This makes
+ * the cache safe for schedule-based modes like pt, whose connections depend on
+ * the departure time, and for routers that take attributes of the person into
+ * account. Hits come from persons whose trips are estimated again in a later
+ * iteration with unchanged departure times.
+ *
+ * The cache is split into segments which are each bounded and evict the least
+ * recently used trips. Modes whose routes change between iterations, like
+ * network modes with recorded travel times or pt when the schedule is adjusted,
+ * must be invalidated, see {@link TripRouteCacheListener}.
+ */
+public class TripRouteCache {
+	private final static Logger logger = Logger.getLogger(TripRouteCache.class);
+
+	static private final int NUMBER_OF_SEGMENTS = 64;
+
+	private final Segment[] segments;
+
+	private final Map<String, AtomicLong> hits = new HashMap<>();
+	private final Map<String, AtomicLong> misses = new HashMap<>();
+
+	public TripRouteCache(Collection<String> modes, int capacity) {
+		this.segments = new Segment[NUMBER_OF_SEGMENTS];
+
+		int segmentCapacity = Math.max(1, (capacity + NUMBER_OF_SEGMENTS - 1) / NUMBER_OF_SEGMENTS);
+
+		for (int k = 0; k < NUMBER_OF_SEGMENTS; k++) {
+			segments[k] = new Segment(segmentCapacity);
+		}
+
+		for (String mode : modes) {
+			hits.put(mode, new AtomicLong());
+			misses.put(mode, new AtomicLong());
+		}
+	}
+
+	public boolean isCached(String mode) {
+		return hits.containsKey(mode);
+	}
+
+	public Collection<String> getModes() {
+		return Collections.unmodifiableCollection(hits.keySet());
+	}
+
+	/**
+	 * Returns a copy of the cached trip or null if no trip is cached or the mode is
+	 * not cached at all.
+	 */
+	public List<PlanElement> get(String mode, Id<Person> personId, Id<ActivityFacility> originId,
+			Id<ActivityFacility> destinationId, double departureTime) {
+		if (!isCached(mode)) {
+			return null;
+		}
+
+		Key key = new Key(mode, personId.index(), originId.index(), destinationId.index(), departureTime);
+		Segment segment = getSegment(key);
+
+		List<PlanElement> elements;
+
+		synchronized (segment) {
+			elements = segment.get(key);
+		}
+
+		if (elements == null) {
+			misses.get(mode).incrementAndGet();
+			return null;
+		}
+
+		hits.get(mode).incrementAndGet();
+		return copyElements(elements);
+	}
+
+	public void put(String mode, Id<Person> personId, Id<ActivityFacility> originId,
+			Id<ActivityFacility> destinationId, double departureTime, List<? extends PlanElement> elements) {
+		if (!isCached(mode)) {
+			return;
+		}
+
+		Key key = new Key(mode, personId.index(), originId.index(), destinationId.index(), departureTime);
+		List<PlanElement> copy = copyElements(elements);
+		Segment segment = getSegment(key);
+
+		synchronized (segment) {
+			segment.put(key, copy);
+		}
+	}
+
+	/**
+	 * Removes all cached trips of the mode.
+	 */
+	public void invalidate(String mode) {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.keySet().removeIf(key -> key.mode.equals(mode));
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	public long getHits(String mode) {
+		AtomicLong value = hits.get(mode);
+		return value == null ? 0 : value.get();
+	}
+
+	public long getMisses(String mode) {
+		AtomicLong value = misses.get(mode);
+		return value == null ? 0 : value.get();
+	}
+
+	public int size() {
+		int size = 0;
+
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+	public void resetCounters() {
+		hits.values().forEach(value -> value.set(0));
+		misses.values().forEach(value -> value.set(0));
+	}
+
+	public void printStatistics() {
+		logger.info(String.format("Trip route cache contains %d trips", size()));
+
+		for (String mode : hits.keySet()) {
+			long modeHits = getHits(mode);
+			long modeMisses = getMisses(mode);
+			long total = modeHits + modeMisses;
+
+			logger.info(String.format("  %s: %d hits, %d misses (%.2f%% hits)", mode, modeHits, modeMisses,
+					total == 0 ? 0.0 : 100.0 * modeHits / total));
+		}
+	}
+
+	private Segment getSegment(Key key) {
+		return segments[Math.floorMod(key.hashCode(), NUMBER_OF_SEGMENTS)];
+	}
+
+	static private List<PlanElement> copyElements(List<? extends PlanElement> elements) {
+		List<PlanElement> copy = new ArrayList<>(elements.size());
+
+		for (PlanElement element : elements) {
+			if (element instanceof Leg) {
+				copy.add(PopulationUtils.createLeg((Leg) element));
+			} else {
+				copy.add(PopulationUtils.createActivity((Activity) element));
+			}
+		}
+
+		return copy;
+	}
+
+	static private class Key {
+		final String mode;
+		final int personIndex;
+		final int originIndex;
+		final int destinationIndex;
+		final double departureTime;
+		final int hash;
+
+		Key(String mode, int personIndex, int originIndex, int destinationIndex, double departureTime) {
+			this.mode = mode;
+			this.personIndex = personIndex;
+			this.originIndex = originIndex;
+			this.destinationIndex = destinationIndex;
+			this.departureTime = departureTime;
+			this.hash = Objects.hash(mode, personIndex, originIndex, destinationIndex, departureTime);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Key) {
+				Key otherKey = (Key) other;
+				return personIndex == otherKey.personIndex && originIndex == otherKey.originIndex
+						&& destinationIndex == otherKey.destinationIndex && departureTime == otherKey.departureTime
+						&& mode.equals(otherKey.mode);
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	static private class Segment extends LinkedHashMap<Key, List<PlanElement>> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, List<PlanElement>> eldest) {
+			return size() > capacity;
+		}
+	}
+}
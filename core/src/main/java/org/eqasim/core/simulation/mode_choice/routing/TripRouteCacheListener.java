@@ -0,0 +1,37 @@
+package org.eqasim.core.simulation.mode_choice.routing;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+
+/**
+ * Invalidates the cached trips of modes whose routes change between iterations
+ * at the start of every iteration and reports the cache statistics at the end.
+ */
+public class TripRouteCacheListener implements IterationStartsListener, IterationEndsListener {
+	private final TripRouteCache cache;
+	private final Set<String> invalidatedModes;
+
+	public TripRouteCacheListener(TripRouteCache cache, Collection<String> invalidatedModes) {
+		this.cache = cache;
+		this.invalidatedModes = new HashSet<>(invalidatedModes);
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		for (String mode : invalidatedModes) {
+			cache.invalidate(mode);
+		}
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		cache.printStatistics();
+		cache.resetCounters();
+	}
+}
@@ -4,23 +4,82 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.eqasim.core.simulation.mode_choice.routing.TripRouteCache;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.contribs.discrete_mode_choice.components.estimators.AbstractTripRouterEstimator;
 import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import org.matsim.contribs.discrete_mode_choice.model.trip_based.candidates.DefaultRoutedTripCandidate;
 import org.matsim.contribs.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
 import org.matsim.core.router.TripRouter;
 import org.matsim.core.utils.timing.TimeInterpretation;
 import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.FacilitiesUtils;
+import org.matsim.facilities.Facility;
 
 public class ModalUtilityEstimator extends AbstractTripRouterEstimator {
 	private final Map<String, UtilityEstimator> estimators;
 
+	private final TripRouter tripRouter;
+	private final ActivityFacilities facilities;
+	private final TimeInterpretation timeInterpretation;
+	private final TripRouteCache routeCache;
+
 	public ModalUtilityEstimator(TripRouter tripRouter, ActivityFacilities facilities,
 			Map<String, UtilityEstimator> estimators, TimeInterpretation timeInterpretation,
 			Collection<String> preroutedModes) {
+		this(tripRouter, facilities, estimators, timeInterpretation, preroutedModes, null);
+	}
+
+	/**
+	 * @param routeCache cache for routed trips across iterations, may be null
+	 */
+	public ModalUtilityEstimator(TripRouter tripRouter, ActivityFacilities facilities,
+			Map<String, UtilityEstimator> estimators, TimeInterpretation timeInterpretation,
+			Collection<String> preroutedModes, TripRouteCache routeCache) {
 		super(tripRouter, facilities, timeInterpretation, preroutedModes);
 		this.estimators = estimators;
+		this.tripRouter = tripRouter;
+		this.facilities = facilities;
+		this.timeInterpretation = timeInterpretation;
+		this.routeCache = routeCache;
+	}
+
+	@Override
+	public TripCandidate estimateTrip(Person person, String mode, DiscreteModeChoiceTrip trip,
+			List<TripCandidate> previousTrips) {
+		if (routeCache == null || !routeCache.isCached(mode)) {
+			return super.estimateTrip(person, mode, trip, previousTrips);
+		}
+
+		Id<ActivityFacility> originId = trip.getOriginActivity().getFacilityId();
+		Id<ActivityFacility> destinationId = trip.getDestinationActivity().getFacilityId();
+
+		if (originId == null || destinationId == null) {
+			// Trips between plain coordinates are not cached
+			return super.estimateTrip(person, mode, trip, previousTrips);
+		}
+
+		List<? extends PlanElement> elements = routeCache.get(mode, person.getId(), originId, destinationId,
+				trip.getDepartureTime());
+
+		if (elements == null) {
+			Facility originFacility = FacilitiesUtils.toFacility(trip.getOriginActivity(), facilities);
+			Facility destinationFacility = FacilitiesUtils.toFacility(trip.getDestinationActivity(), facilities);
+
+			elements = tripRouter.calcRoute(mode, originFacility, destinationFacility, trip.getDepartureTime(), person,
+					trip.getTripAttributes());
+
+			routeCache.put(mode, person.getId(), originId, destinationId, trip.getDepartureTime(), elements);
+		}
+
+		double utility = estimateTrip(person, mode, trip, previousTrips, elements);
+		double duration = timeInterpretation.decideOnElementsEndTime(elements, trip.getDepartureTime()).seconds()
+				- trip.getDepartureTime();
+
+		return new DefaultRoutedTripCandidate(utility, mode, elements, duration);
 	}
 
 	@Override
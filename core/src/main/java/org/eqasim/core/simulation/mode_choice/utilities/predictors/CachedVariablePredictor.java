@@ -1,25 +1,132 @@
 package org.eqasim.core.simulation.mode_choice.utilities.predictors;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eqasim.core.simulation.mode_choice.utilities.variables.BaseVariables;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
 
+/**
+ * Caches the predicted variables of all trips of the person that is currently
+ * handled. Every thread has its own cache, so predictors may be shared between
+ * replanning threads. The mode choice model calls {@link #clearCaches()} at the
+ * start of each person's replanning call, which clears the caches of all
+ * predictors of the calling thread. Trips are identified by identity.
+ * Predictors whose variables depend on the routed elements additionally key
+ * the cache by the identity of the element list.
+ */
 public abstract class CachedVariablePredictor<T extends BaseVariables> implements VariablePredictor<T> {
-	private DiscreteModeChoiceTrip cacheKey = null;
-	private T cacheValue = null;
+	static private final ThreadLocal<long[]> generations = ThreadLocal.withInitial(() -> new long[1]);
+
+	static private final LongAdder totalHits = new LongAdder();
+	static private final LongAdder totalMisses = new LongAdder();
+
+	private final boolean elementDependent;
+	private final ThreadLocal<PersonCache<T>> caches = ThreadLocal.withInitial(PersonCache::new);
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	protected CachedVariablePredictor() {
+		this(false);
+	}
+
+	/**
+	 * @param elementDependent whether the variables depend on the routed elements
+	 *                         and not only on the person and the trip
+	 */
+	protected CachedVariablePredictor(boolean elementDependent) {
+		this.elementDependent = elementDependent;
+	}
 
 	@Override
 	public T predictVariables(Person person, DiscreteModeChoiceTrip trip, List<? extends PlanElement> elements) {
-		if (trip != cacheKey) {
-			cacheKey = trip;
-			cacheValue = predict(person, trip, elements);
+		PersonCache<T> cache = caches.get();
+		long generation = generations.get()[0];
+
+		if (cache.generation != generation) {
+			cache.generation = generation;
+			cache.tripValues.clear();
+			cache.elementValues.clear();
 		}
 
-		return cacheValue;
+		T value;
+
+		if (elementDependent) {
+			Map<List<? extends PlanElement>, T> values = cache.elementValues.computeIfAbsent(trip,
+					t -> new IdentityHashMap<>());
+			value = values.get(elements);
+
+			if (value == null) {
+				value = predict(person, trip, elements);
+				values.put(elements, value);
+				misses.increment();
+				totalMisses.increment();
+			} else {
+				hits.increment();
+				totalHits.increment();
+			}
+		} else {
+			value = cache.tripValues.get(trip);
+
+			if (value == null) {
+				value = predict(person, trip, elements);
+				cache.tripValues.put(trip, value);
+				misses.increment();
+				totalMisses.increment();
+			} else {
+				hits.increment();
+				totalHits.increment();
+			}
+		}
+
+		return value;
+	}
+
+	public long getNumberOfHits() {
+		return hits.sum();
+	}
+
+	public long getNumberOfMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Clears the caches of all predictors for the calling thread. Must be called
+	 * at the start of each person's replanning call.
+	 */
+	static public void clearCaches() {
+		generations.get()[0]++;
+	}
+
+	/**
+	 * Returns the number of hits of all predictors since the last reset.
+	 */
+	static public long getTotalNumberOfHits() {
+		return totalHits.sum();
+	}
+
+	/**
+	 * Returns the number of misses of all predictors since the last reset.
+	 */
+	static public long getTotalNumberOfMisses() {
+		return totalMisses.sum();
+	}
+
+	static public void resetTotalStatistics() {
+		totalHits.reset();
+		totalMisses.reset();
 	}
 
 	protected abstract T predict(Person person, DiscreteModeChoiceTrip trip, List<? extends PlanElement> elements);
+
+	static private class PersonCache<T> {
+		long generation = -1;
+		final Map<DiscreteModeChoiceTrip, T> tripValues = new IdentityHashMap<>();
+		final Map<DiscreteModeChoiceTrip, Map<List<? extends PlanElement>, T>> elementValues = new IdentityHashMap<>();
+	}
 }
@@ -0,0 +1,25 @@
+package org.eqasim.core.simulation.mode_choice.utilities.predictors;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+
+/**
+ * Reports the hits and misses of all cached variable predictors at the end of
+ * every iteration.
+ */
+public class CachedVariablePredictorListener implements IterationEndsListener {
+	private final static Logger logger = Logger.getLogger(CachedVariablePredictorListener.class);
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		long hits = CachedVariablePredictor.getTotalNumberOfHits();
+		long misses = CachedVariablePredictor.getTotalNumberOfMisses();
+		long total = hits + misses;
+
+		logger.info(String.format("Predicted variables: %d hits, %d misses (%.2f%% hits)", hits, misses,
+				total == 0 ? 0.0 : 100.0 * hits / total));
+
+		CachedVariablePredictor.resetTotalStatistics();
+	}
+}
@@ -19,6 +19,7 @@ public class CarPredictor extends CachedVariablePredictor<CarVariables> {
 
 	@Inject
 	public CarPredictor(ModeParameters parameters, @Named("car") CostModel costModel) {
+		super(true);
 		this.costModel = costModel;
 		this.parameters = parameters;
 	}
@@ -19,6 +19,7 @@ public class PtPredictor extends CachedVariablePredictor<PtVariables> {
 
 	@Inject
 	public PtPredictor(@Named("pt") CostModel costModel) {
+		super(true);
 		this.costModel = costModel;
 	}
 
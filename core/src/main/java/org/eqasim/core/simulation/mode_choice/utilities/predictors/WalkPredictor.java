@@ -9,6 +9,10 @@ import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
 
 public class WalkPredictor extends CachedVariablePredictor<WalkVariables> {
+	public WalkPredictor() {
+		super(true);
+	}
+
 	@Override
 	public WalkVariables predict(Person person, DiscreteModeChoiceTrip trip, List<? extends PlanElement> elements) {
 		double travelTime_min = ((Leg) elements.get(0)).getTravelTime().seconds() / 60.0;
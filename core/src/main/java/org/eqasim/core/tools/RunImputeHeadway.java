@@ -18,7 +18,7 @@ public class RunImputeHeadway {
 	static public void main(String[] args) throws ConfigurationException, InterruptedException {
 		CommandLine cmd = new CommandLine.Builder(args) //
 				.requireOptions("config-path", "output-path") //
-				.allowOptions("threads", "batch-size") //
+				.allowOptions("threads", "batch-size", "cache-bin-size", "cache-capacity") //
 				.build();
 
 		EqasimConfigurator configurator = new EqasimConfigurator();
@@ -30,12 +30,17 @@ public class RunImputeHeadway {
 		int numberOfThreads = cmd.getOption("threads").map(Integer::parseInt)
 				.orElse(Runtime.getRuntime().availableProcessors());
 
+		// Headways are only cached if a bin size (in seconds) is given
+		double cacheBinSize = cmd.getOption("cache-bin-size").map(Double::parseDouble).orElse(0.0);
+		int cacheCapacity = cmd.getOption("cache-capacity").map(Integer::parseInt).orElse(1000000);
+
 		Scenario scenario = ScenarioUtils.createScenario(config);
 		ScenarioUtils.loadScenario(scenario);
 
 		Injector injector = new InjectorBuilder(scenario) //
 				.addOverridingModules(configurator.getModules()) //
-				.addOverridingModule(new HeadwayImputerModule(numberOfThreads, batchSize, true, 2.0 * 3600.0)) //
+				.addOverridingModule(new HeadwayImputerModule(numberOfThreads, batchSize, true, 2.0 * 3600.0,
+						cacheBinSize, cacheCapacity)) //
 				.build();
 
 		HeadwayImputer headwayImputer = injector.getInstance(HeadwayImputer.class);
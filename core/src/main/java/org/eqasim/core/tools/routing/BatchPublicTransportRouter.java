@@ -3,14 +3,19 @@ package org.eqasim.core.tools.routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 import org.eqasim.core.components.headway.HeadwayCalculator;
+import org.eqasim.core.components.transit.departure.DepartureIndex;
 import org.eqasim.core.misc.ParallelProgress;
 import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.PlanElement;
@@ -24,25 +29,63 @@ import org.matsim.pt.transitSchedule.api.Departure;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.inject.Provider;
 
+import ch.sbb.matsim.routing.pt.raptor.RaptorRoute;
+import ch.sbb.matsim.routing.pt.raptor.RaptorRoute.RoutePart;
+import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
+
+/**
+ * Routes a batch of origin-destination tasks with public transport and
+ * decomposes the resulting trips into access, egress, transfer, waiting and
+ * in-vehicle components. The vehicles of the pt legs are looked up in a
+ * {@link DepartureIndex} that is built once for the schedule.
+ *
+ * If a range window is given, tasks with the same origin link, destination link
+ * and departure window are routed together with one range query of
+ * SwissRailRaptor. Each task then uses the connection from that query that
+ * departs not before the task and arrives first; the time until that
+ * connection departs is counted as initial waiting time. Tasks for which the
+ * range query does not provide a connection are routed individually. Note that
+ * a point query returns the least-cost connection instead, so range mode may
+ * select other connections than routing each task on its own, for instance a
+ * faster connection with more transfers.
+ *
+ * Connections from range queries are converted to legs in the same way as
+ * SwissRailRaptor does for point queries, so that both modes number and
+ * classify the legs of a trip identically.
+ */
 public class BatchPublicTransportRouter {
 	private final Provider<TransitRouter> routerProvider;
 	private final Provider<HeadwayCalculator> headwayCalculatorProvider;
 	private final TransitSchedule schedule;
 	private final Network network;
+	private final DepartureIndex departureIndex;
 
 	private final int batchSize;
 	private final int numberOfThreads;
 	private final double interval;
+	private final double rangeWindow;
+	private final double transferWalkMargin;
 
 	private final Set<String> transitModes;
 
 	public BatchPublicTransportRouter(Provider<TransitRouter> routerProvider,
 			Provider<HeadwayCalculator> headwayCalculatorProvider, TransitSchedule schedule, Network network,
 			int batchSize, int numberOfThreads, double interval, Set<String> transitModes) {
+		this(routerProvider, headwayCalculatorProvider, schedule, network, batchSize, numberOfThreads, interval,
+				transitModes, 0.0, 0.0);
+	}
+
+	public BatchPublicTransportRouter(Provider<TransitRouter> routerProvider,
+			Provider<HeadwayCalculator> headwayCalculatorProvider, TransitSchedule schedule, Network network,
+			int batchSize, int numberOfThreads, double interval, Set<String> transitModes, double rangeWindow,
+			double transferWalkMargin) {
 		this.routerProvider = routerProvider;
 		this.headwayCalculatorProvider = headwayCalculatorProvider;
 		this.batchSize = batchSize;
@@ -51,11 +94,14 @@ public class BatchPublicTransportRouter {
 		this.network = network;
 		this.interval = interval;
 		this.transitModes = transitModes;
+		this.rangeWindow = rangeWindow;
+		this.transferWalkMargin = transferWalkMargin;
+		this.departureIndex = new DepartureIndex(schedule);
 	}
 
 	public Pair<Collection<TripInformation>, Collection<LegInformation>> run(Collection<Task> tasks)
 			throws InterruptedException {
-		Iterator<Task> taskIterator = tasks.iterator();
+		Iterator<TaskGroup> groupIterator = groupTasks(tasks).iterator();
 
 		List<TripInformation> tripResults = new ArrayList<>(tasks.size());
 		List<LegInformation> legResults = new ArrayList<>(tasks.size());
@@ -66,7 +112,7 @@ public class BatchPublicTransportRouter {
 		List<Thread> threads = new ArrayList<>(numberOfThreads);
 
 		for (int i = 0; i < numberOfThreads; i++) {
-			Thread thread = new Thread(new Worker(taskIterator, tripResults, legResults, progress));
+			Thread thread = new Thread(new Worker(groupIterator, tripResults, legResults, progress));
 			threads.add(thread);
 			thread.start();
 		}
@@ -79,15 +125,58 @@ public class BatchPublicTransportRouter {
 		return Pair.of(tripResults, legResults);
 	}
 
+	private List<TaskGroup> groupTasks(Collection<Task> tasks) {
+		List<TaskGroup> groups = new ArrayList<>(tasks.size());
+
+		if (rangeWindow > 0.0) {
+			Map<Triple<Id<Link>, Id<Link>, Integer>, TaskGroup> index = new LinkedHashMap<>();
+
+			for (Task task : tasks) {
+				Link fromLink = NetworkUtils.getNearestLink(network, new Coord(task.originX, task.originY));
+				Link toLink = NetworkUtils.getNearestLink(network, new Coord(task.destinationX, task.destinationY));
+				int window = (int) Math.floor(task.departureTime / rangeWindow);
+
+				index.computeIfAbsent(Triple.of(fromLink.getId(), toLink.getId(), window),
+						key -> new TaskGroup(fromLink, toLink)).tasks.add(task);
+			}
+
+			groups.addAll(index.values());
+		} else {
+			for (Task task : tasks) {
+				// Links are looked up by the routing threads
+				TaskGroup group = new TaskGroup(null, null);
+				group.tasks.add(task);
+				groups.add(group);
+			}
+		}
+
+		return groups;
+	}
+
+	/**
+	 * Tasks that share their origin and destination links and are routed together.
+	 * The links are null until they have been looked up.
+	 */
+	static private class TaskGroup {
+		final Link fromLink;
+		final Link toLink;
+		final List<Task> tasks = new ArrayList<>(1);
+
+		TaskGroup(Link fromLink, Link toLink) {
+			this.fromLink = fromLink;
+			this.toLink = toLink;
+		}
+	}
+
 	private class Worker implements Runnable {
-		private final Iterator<Task> taskIterator;
+		private final Iterator<TaskGroup> groupIterator;
 		private final Collection<TripInformation> tripResults;
 		private final Collection<LegInformation> legResults;
 		private final ParallelProgress progress;
 
-		private Worker(Iterator<Task> taskIterator, Collection<TripInformation> tripResults,
+		private Worker(Iterator<TaskGroup> groupIterator, Collection<TripInformation> tripResults,
 				Collection<LegInformation> legResults, ParallelProgress progress) {
-			this.taskIterator = taskIterator;
+			this.groupIterator = groupIterator;
 			this.tripResults = tripResults;
 			this.legResults = legResults;
 			this.progress = progress;
@@ -98,144 +187,95 @@ public class BatchPublicTransportRouter {
 			TransitRouter router = routerProvider.get();
 			HeadwayCalculator headwayCalculator = headwayCalculatorProvider.get();
 
-			while (true) {
-				List<Task> localTasks = new ArrayList<>(batchSize);
+			SwissRailRaptor raptor = null;
 
-				synchronized (taskIterator) {
-					while (taskIterator.hasNext() && localTasks.size() < batchSize) {
-						localTasks.add(taskIterator.next());
+			if (rangeWindow > 0.0) {
+				if (!(router instanceof SwissRailRaptor)) {
+					throw new IllegalStateException("Range queries are only available with SwissRailRaptor");
+				}
+
+				raptor = (SwissRailRaptor) router;
+			}
+
+			while (true) {
+				List<TaskGroup> localGroups = new ArrayList<>();
+				int numberOfLocalTasks = 0;
+
+				synchronized (groupIterator) {
+					while (groupIterator.hasNext() && numberOfLocalTasks < batchSize) {
+						TaskGroup group = groupIterator.next();
+						localGroups.add(group);
+						numberOfLocalTasks += group.tasks.size();
 					}
 
-					if (localTasks.size() == 0) {
+					if (localGroups.size() == 0) {
 						return;
 					}
 				}
 
-				List<TripInformation> localTripResults = new ArrayList<>(localTasks.size());
-				List<LegInformation> localLegResults = new ArrayList<>(localTasks.size() * 3);
+				List<TripInformation> localTripResults = new ArrayList<>(numberOfLocalTasks);
+				List<LegInformation> localLegResults = new ArrayList<>(numberOfLocalTasks * 3);
+
+				for (TaskGroup group : localGroups) {
+					Task firstTask = group.tasks.get(0);
+
+					Link fromLink = group.fromLink;
+					Link toLink = group.toLink;
+
+					if (fromLink == null) {
+						Coord fromCoord = new Coord(firstTask.originX, firstTask.originY);
+						Coord toCoord = new Coord(firstTask.destinationX, firstTask.destinationY);
+
+						fromLink = NetworkUtils.getNearestLink(network, fromCoord);
+						toLink = NetworkUtils.getNearestLink(network, toCoord);
+					}
+
+					Facility fromFacility = new LinkWrapperFacility(fromLink);
+					Facility toFacility = new LinkWrapperFacility(toLink);
 
-				for (Task task : localTasks) {
-					TripInformation tripInformation = new TripInformation(task);
+					List<RaptorRoute> rangeRoutes = null;
 
-					Coord fromCoord = new Coord(task.originX, task.originY);
-					Coord toCoord = new Coord(task.destinationX, task.destinationY);
+					if (raptor != null && group.tasks.size() > 1) {
+						double windowStart = Math.floor(firstTask.departureTime / rangeWindow) * rangeWindow;
 
-					Facility fromFacility = new LinkWrapperFacility(NetworkUtils.getNearestLink(network, fromCoord));
-					Facility toFacility = new LinkWrapperFacility(NetworkUtils.getNearestLink(network, toCoord));
+						rangeRoutes = raptor.calcRoutes(fromFacility, toFacility, windowStart, windowStart,
+								windowStart + rangeWindow, null, new Attributes());
+					}
 
-					List<? extends PlanElement> planElements = router.calcRoute(DefaultRoutingRequest.withoutAttributes(fromFacility, toFacility, task.departureTime, null));
+					for (Task task : group.tasks) {
+						TripInformation tripInformation = new TripInformation(task);
+						RaptorRoute rangeRoute = rangeRoutes == null ? null : selectRoute(rangeRoutes, task);
 
-					if (planElements != null) {
-						boolean isFirstVehicularLeg = true;
-						tripInformation.isOnlyWalk = 1;
+						boolean isRouted = false;
 
-						if (interval > 0.0) {
-							tripInformation.headway_min = headwayCalculator.calculateHeadway_min(fromFacility,
-									toFacility, task.departureTime);
+						if (rangeRoute != null) {
+							processRoute(task, rangeRoute, tripInformation, localLegResults);
+							isRouted = true;
 						} else {
-							tripInformation.headway_min = Double.NaN;
+							// All tasks of a group share the same origin and destination links
+							List<? extends PlanElement> planElements = router.calcRoute(DefaultRoutingRequest
+									.withoutAttributes(fromFacility, toFacility, task.departureTime, null));
+
+							if (planElements != null) {
+								processPlanElements(task, planElements, 0.0, tripInformation, localLegResults);
+								isRouted = true;
+							}
 						}
 
-						int currentIndex = 0;
-
-						List<PlanElement> legs = planElements.stream().filter(leg -> leg instanceof Leg).collect(Collectors.toList());
-
-						for (PlanElement planElement : legs) {
-							Leg leg = (Leg) planElement;
-							boolean isFirstLeg = currentIndex == 0;
-							boolean isLastLeg = currentIndex == legs.size() - 1;
-
-							if (leg.getMode().contains("walk") && isFirstLeg) {
-								tripInformation.accessTravelTime_min += leg.getTravelTime().seconds() / 60.0;
-								tripInformation.accessDistance_km += leg.getRoute().getDistance() * 1e-3;
-							} else if (leg.getMode().contains("walk") && isLastLeg) {
-								tripInformation.egressTravelTime_min += leg.getTravelTime().seconds() / 60.0;
-								tripInformation.egressDistance_km += leg.getRoute().getDistance() * 1e-3;
-							} else if (leg.getMode().contains("walk") && !isFirstLeg && !isLastLeg) {
-								tripInformation.transferTravelTime_min += leg.getTravelTime().seconds() / 60.0;
-								tripInformation.transferDistance_km += leg.getRoute().getDistance() * 1e-3;
-							} else if (transitModes.contains(leg.getMode())) {
-								TransitPassengerRoute route = (TransitPassengerRoute) leg.getRoute();
-
-								double waitingTime = route.getBoardingTime().seconds()
-										- leg.getDepartureTime().seconds();
-
-								if (isFirstVehicularLeg) {
-									tripInformation.initialWaitingTime_min += waitingTime / 60.0;
-									isFirstVehicularLeg = false;
-								} else {
-									tripInformation.numberOfTransfers += 1;
-									tripInformation.transferWaitingTime_min += waitingTime / 60.0;
-								}
-
-								TransitLine transitLine = schedule.getTransitLines().get(route.getLineId());
-								TransitRoute transitRoute = transitLine.getRoutes().get(route.getRouteId());
-								String transitMode = transitRoute.getTransportMode();
-
-								double inVehicleTime = route.getTravelTime().seconds() - waitingTime;
-
-								switch (transitMode) {
-								case "rail":
-									tripInformation.inVehicleTimeRail_min += inVehicleTime / 60.0;
-									tripInformation.inVehicleDistanceRail_km += route.getDistance() * 1e-3;
-									break;
-								case "subway":
-									tripInformation.inVehicleTimeSubway_min += inVehicleTime / 60.0;
-									tripInformation.inVehicleDistanceSubway_km += route.getDistance() * 1e-3;
-									break;
-								case "bus":
-									tripInformation.inVehicleTimeBus_min += inVehicleTime / 60.0;
-									tripInformation.inVehicleDistanceBus_km += route.getDistance() * 1e-3;
-									break;
-								case "tram":
-									tripInformation.inVehicleTimeTram_min += inVehicleTime / 60.0;
-									tripInformation.inVehicleDistanceTram_km += route.getDistance() * 1e-3;
-									break;
-								default:
-									tripInformation.inVehicleTimeOther_min += inVehicleTime / 60.0;
-									tripInformation.inVehicleDistanceOther_km += route.getDistance() * 1e-3;
-								}
-
-								tripInformation.isOnlyWalk = 0;
-
-								{ // Legs
-									Departure departure = findDeparture(route, transitRoute);
-
-									LegInformation legInformation = new LegInformation();
-									legInformation.identifier = task.identifier;
-									legInformation.legIndex = currentIndex;
-									legInformation.transitMode = transitMode;
-									legInformation.lineId = transitLine.getId().toString();
-									legInformation.routeId = transitRoute.getId().toString();
-									legInformation.vehicleId = departure.getVehicleId().toString();
-									legInformation.accessTime = route.getBoardingTime().seconds();
-									legInformation.egressTime = leg.getDepartureTime().seconds()
-											+ leg.getTravelTime().seconds();
-
-									localLegResults.add(legInformation);
-								}
+						if (isRouted) {
+							if (interval > 0.0) {
+								tripInformation.headway_min = headwayCalculator.calculateHeadway_min(fromFacility,
+										toFacility, task.departureTime);
 							} else {
-								throw new IllegalStateException();
+								tripInformation.headway_min = Double.NaN;
 							}
 
-							currentIndex++;
+							calculateTotals(tripInformation);
+							localTripResults.add(tripInformation);
 						}
 
-						tripInformation.inVehicleTimeTotal_min = tripInformation.inVehicleTimeRail_min
-								+ tripInformation.inVehicleTimeSubway_min + tripInformation.inVehicleTimeBus_min
-								+ tripInformation.inVehicleTimeTram_min + tripInformation.inVehicleTimeOther_min;
-						tripInformation.inVehicleDistanceTotal_km = tripInformation.inVehicleDistanceRail_km
-								+ tripInformation.inVehicleDistanceSubway_km + tripInformation.inVehicleDistanceBus_km
-								+ tripInformation.inVehicleDistanceTram_km + tripInformation.inVehicleDistanceOther_km;
-						tripInformation.totalWalkTravelTime_min = tripInformation.accessTravelTime_min
-								+ tripInformation.egressTravelTime_min + tripInformation.transferTravelTime_min;
-						tripInformation.totalWalkDistance_km = tripInformation.accessDistance_km
-								+ tripInformation.egressDistance_km + tripInformation.transferDistance_km;
-
-						localTripResults.add(tripInformation);
+						progress.update();
 					}
-
-					progress.update();
 				}
 
 				synchronized (tripResults) {
@@ -246,24 +286,186 @@ public class BatchPublicTransportRouter {
 		}
 	}
 
-	private static Departure findDeparture(TransitPassengerRoute passengerRoute, TransitRoute route) {
-		double boardingTime = passengerRoute.getBoardingTime().seconds();
+	/**
+	 * Selects the route from a range query that departs not before the task and
+	 * arrives first. Walk-only routes can depart at any time.
+	 */
+	private static RaptorRoute selectRoute(List<RaptorRoute> routes, Task task) {
+		RaptorRoute bestRoute = null;
+		double bestArrivalTime = Double.POSITIVE_INFINITY;
 
-		List<Double> accessOffsets = route.getStops().stream() //
-				.filter(stop -> stop.getStopFacility().getId().equals(passengerRoute.getAccessStopId())) //
-				.map(stop -> stop.getArrivalOffset().seconds()).collect(Collectors.toList());
+		for (RaptorRoute route : routes) {
+			double departureTime = isWalkOnly(route) ? task.departureTime : route.getDepartureTime();
 
-		for (Departure departure : route.getDepartures().values()) {
-			if (departure.getDepartureTime() <= boardingTime) {
-				for (double offset : accessOffsets) {
-					if (departure.getDepartureTime() + offset == boardingTime) {
-						return departure;
-					}
+			if (departureTime >= task.departureTime) {
+				double arrivalTime = departureTime + route.getTravelTime();
+
+				if (arrivalTime < bestArrivalTime) {
+					bestRoute = route;
+					bestArrivalTime = arrivalTime;
+				}
+			}
+		}
+
+		return bestRoute;
+	}
+
+	private static boolean isWalkOnly(RaptorRoute route) {
+		for (RoutePart part : route.getParts()) {
+			if (part.line != null) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Decomposes the legs of a trip. The origin waiting time is the time between
+	 * the departure of the task and the first leg of the trip and is added to the
+	 * initial waiting time.
+	 */
+	private void processPlanElements(Task task, List<? extends PlanElement> planElements, double originWaitingTime,
+			TripInformation tripInformation, List<LegInformation> legResults) {
+		boolean isFirstVehicularLeg = true;
+		tripInformation.isOnlyWalk = 1;
+
+		int numberOfLegs = 0;
+
+		for (PlanElement planElement : planElements) {
+			if (planElement instanceof Leg) {
+				numberOfLegs++;
+			}
+		}
+
+		int currentIndex = 0;
+
+		for (PlanElement planElement : planElements) {
+			if (!(planElement instanceof Leg)) {
+				continue;
+			}
+
+			Leg leg = (Leg) planElement;
+			boolean isFirstLeg = currentIndex == 0;
+			boolean isLastLeg = currentIndex == numberOfLegs - 1;
+
+			if (leg.getMode().contains("walk")) {
+				addWalk(tripInformation, leg.getTravelTime().seconds(), leg.getRoute().getDistance(), isFirstLeg,
+						isLastLeg);
+			} else if (transitModes.contains(leg.getMode())) {
+				TransitPassengerRoute route = (TransitPassengerRoute) leg.getRoute();
+
+				double boardingTime = route.getBoardingTime().seconds();
+				double waitingTime = boardingTime - leg.getDepartureTime().seconds();
+
+				if (isFirstVehicularLeg) {
+					tripInformation.initialWaitingTime_min += (originWaitingTime + waitingTime) / 60.0;
+					isFirstVehicularLeg = false;
+				} else {
+					tripInformation.numberOfTransfers += 1;
+					tripInformation.transferWaitingTime_min += waitingTime / 60.0;
 				}
+
+				TransitLine transitLine = schedule.getTransitLines().get(route.getLineId());
+				TransitRoute transitRoute = transitLine.getRoutes().get(route.getRouteId());
+
+				double inVehicleTime = route.getTravelTime().seconds() - waitingTime;
+				addInVehicle(tripInformation, transitRoute.getTransportMode(), inVehicleTime, route.getDistance());
+
+				legResults.add(createLegInformation(task, currentIndex, transitLine, transitRoute,
+						route.getAccessStopId(), boardingTime,
+						leg.getDepartureTime().seconds() + leg.getTravelTime().seconds()));
+			} else {
+				throw new IllegalStateException();
 			}
+
+			currentIndex++;
+		}
+	}
+
+	private void processRoute(Task task, RaptorRoute route, TripInformation tripInformation,
+			List<LegInformation> legResults) {
+		// Time until the selected connection departs is spent waiting at the origin
+		double originWaitingTime = isWalkOnly(route) ? 0.0 : route.getDepartureTime() - task.departureTime;
+
+		List<Leg> legs = RaptorUtils.convertRouteToLegs(route, transferWalkMargin);
+		processPlanElements(task, legs, originWaitingTime, tripInformation, legResults);
+	}
+
+	private static void addWalk(TripInformation tripInformation, double travelTime, double distance,
+			boolean isFirstLeg, boolean isLastLeg) {
+		if (isFirstLeg) {
+			tripInformation.accessTravelTime_min += travelTime / 60.0;
+			tripInformation.accessDistance_km += distance * 1e-3;
+		} else if (isLastLeg) {
+			tripInformation.egressTravelTime_min += travelTime / 60.0;
+			tripInformation.egressDistance_km += distance * 1e-3;
+		} else {
+			tripInformation.transferTravelTime_min += travelTime / 60.0;
+			tripInformation.transferDistance_km += distance * 1e-3;
+		}
+	}
+
+	private static void addInVehicle(TripInformation tripInformation, String transitMode, double inVehicleTime,
+			double distance) {
+		switch (transitMode) {
+		case "rail":
+			tripInformation.inVehicleTimeRail_min += inVehicleTime / 60.0;
+			tripInformation.inVehicleDistanceRail_km += distance * 1e-3;
+			break;
+		case "subway":
+			tripInformation.inVehicleTimeSubway_min += inVehicleTime / 60.0;
+			tripInformation.inVehicleDistanceSubway_km += distance * 1e-3;
+			break;
+		case "bus":
+			tripInformation.inVehicleTimeBus_min += inVehicleTime / 60.0;
+			tripInformation.inVehicleDistanceBus_km += distance * 1e-3;
+			break;
+		case "tram":
+			tripInformation.inVehicleTimeTram_min += inVehicleTime / 60.0;
+			tripInformation.inVehicleDistanceTram_km += distance * 1e-3;
+			break;
+		default:
+			tripInformation.inVehicleTimeOther_min += inVehicleTime / 60.0;
+			tripInformation.inVehicleDistanceOther_km += distance * 1e-3;
 		}
 
-		throw new IllegalStateException("Departure not found");
+		tripInformation.isOnlyWalk = 0;
+	}
+
+	private LegInformation createLegInformation(Task task, int legIndex, TransitLine transitLine,
+			TransitRoute transitRoute, Id<TransitStopFacility> accessStopId, double boardingTime, double egressTime) {
+		Departure departure = departureIndex.getRouteDepartures(transitRoute).findArrivingDeparture(accessStopId,
+				boardingTime);
+
+		if (departure == null) {
+			throw new IllegalStateException("Departure not found");
+		}
+
+		LegInformation legInformation = new LegInformation();
+		legInformation.identifier = task.identifier;
+		legInformation.legIndex = legIndex;
+		legInformation.transitMode = transitRoute.getTransportMode();
+		legInformation.lineId = transitLine.getId().toString();
+		legInformation.routeId = transitRoute.getId().toString();
+		legInformation.vehicleId = departure.getVehicleId().toString();
+		legInformation.accessTime = boardingTime;
+		legInformation.egressTime = egressTime;
+
+		return legInformation;
+	}
+
+	private static void calculateTotals(TripInformation tripInformation) {
+		tripInformation.inVehicleTimeTotal_min = tripInformation.inVehicleTimeRail_min
+				+ tripInformation.inVehicleTimeSubway_min + tripInformation.inVehicleTimeBus_min
+				+ tripInformation.inVehicleTimeTram_min + tripInformation.inVehicleTimeOther_min;
+		tripInformation.inVehicleDistanceTotal_km = tripInformation.inVehicleDistanceRail_km
+				+ tripInformation.inVehicleDistanceSubway_km + tripInformation.inVehicleDistanceBus_km
+				+ tripInformation.inVehicleDistanceTram_km + tripInformation.inVehicleDistanceOther_km;
+		tripInformation.totalWalkTravelTime_min = tripInformation.accessTravelTime_min
+				+ tripInformation.egressTravelTime_min + tripInformation.transferTravelTime_min;
+		tripInformation.totalWalkDistance_km = tripInformation.accessDistance_km
+				+ tripInformation.egressDistance_km + tripInformation.transferDistance_km;
 	}
 
 	static public class Task {
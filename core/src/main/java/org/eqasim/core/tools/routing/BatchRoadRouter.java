@@ -1,17 +1,26 @@
 package org.eqasim.core.tools.routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.eqasim.core.misc.ParallelProgress;
 import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.core.network.NetworkUtils;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.speedy.LeastCostPathTree;
+import org.matsim.core.router.speedy.SpeedyGraph;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
@@ -19,116 +28,315 @@ import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.OptionalTime;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.inject.Provider;
 
+/**
+ * Routes a batch of origin-destination tasks on the road network. Tasks are
+ * split recursively on a work-stealing pool, where each thread keeps its own
+ * router, and all threads share one prebuilt link index. Results are passed on
+ * batch by batch as soon as they are available.
+ *
+ * In tree mode, tasks are grouped by origin node and departure time bin. For
+ * each group, one least-cost path tree is calculated from the origin (starting
+ * at the earliest departure time of the group) and the travel times and
+ * distances of all destinations are read from it. The tree stops as soon as all
+ * destinations of the group are settled. Note that all tasks of a group are
+ * routed with the earliest departure time of the group. With time-dependent
+ * travel times, results therefore differ from routing each task on its own
+ * unless all tasks of a bin share their departure time.
+ */
 public class BatchRoadRouter {
 	private final Provider<LeastCostPathCalculatorFactory> routerFactoryProvider;
 	private final Network network;
+	private final TravelTime travelTime;
 
 	private final int batchSize;
 	private final int numberOfThreads;
 	private final boolean writePaths;
 
+	private final boolean useTrees;
+	private final double treeInterval;
+
 	public BatchRoadRouter(Provider<LeastCostPathCalculatorFactory> routerFactoryProvider, Network network,
 			int batchSize, int numberOfThreads, boolean writePaths) {
+		this(routerFactoryProvider, network, new FreeSpeedTravelTime(), batchSize, numberOfThreads, writePaths);
+	}
+
+	public BatchRoadRouter(Provider<LeastCostPathCalculatorFactory> routerFactoryProvider, Network network,
+			TravelTime travelTime, int batchSize, int numberOfThreads, boolean writePaths) {
+		this(routerFactoryProvider, network, travelTime, batchSize, numberOfThreads, writePaths, false, 0.0);
+	}
+
+	public BatchRoadRouter(Provider<LeastCostPathCalculatorFactory> routerFactoryProvider, Network network,
+			TravelTime travelTime, int batchSize, int numberOfThreads, boolean writePaths, boolean useTrees,
+			double treeInterval) {
 		this.routerFactoryProvider = routerFactoryProvider;
 		this.batchSize = batchSize;
 		this.numberOfThreads = numberOfThreads;
 		this.network = network;
+		this.travelTime = travelTime;
 		this.writePaths = writePaths;
+		this.useTrees = useTrees;
+		this.treeInterval = treeInterval;
+
+		if (useTrees && writePaths) {
+			throw new IllegalStateException("Paths cannot be written when routing with trees");
+		}
+
+		if (useTrees && !(treeInterval > 0.0)) {
+			throw new IllegalStateException("Tree interval must be positive");
+		}
 	}
 
 	public Collection<Result> run(Collection<Task> tasks) throws InterruptedException {
-		Iterator<Task> taskIterator = tasks.iterator();
 		List<Result> results = new ArrayList<>(tasks.size());
+		run(tasks, results::addAll);
+		return results;
+	}
+
+	/**
+	 * Routes all tasks and passes the results to the consumer, one batch at a time.
+	 * The consumer is never called concurrently.
+	 */
+	public void run(Collection<Task> tasks, Consumer<List<Result>> consumer) throws InterruptedException {
+		List<Task> taskList = tasks instanceof List ? (List<Task>) tasks : new ArrayList<>(tasks);
 
-		ParallelProgress progress = new ParallelProgress("Routing trips ...", tasks.size());
+		ParallelProgress progress = new ParallelProgress("Routing trips ...", taskList.size());
 		progress.start();
 
-		List<Thread> threads = new ArrayList<>(numberOfThreads);
+		NearestLinkIndex linkIndex = new NearestLinkIndex(network);
+		ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
 
-		for (int i = 0; i < numberOfThreads; i++) {
-			Thread thread = new Thread(new Worker(taskIterator, results, progress));
-			threads.add(thread);
-			thread.start();
-		}
+		try {
+			if (useTrees) {
+				List<List<Task>> groups = groupTasks(taskList, linkIndex);
+
+				SpeedyGraph graph = new SpeedyGraph(network);
+
+				ThreadLocal<LeastCostPathTree> trees = ThreadLocal.withInitial(() -> {
+					TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+					return new LeastCostPathTree(graph, travelTime, travelDisutility);
+				});
+
+				pool.invoke(new TreeRoutingAction(groups, 0, groups.size(), linkIndex, trees, consumer, progress));
+			} else {
+				ThreadLocal<LeastCostPathCalculator> routers = ThreadLocal.withInitial(() -> {
+					TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+					return routerFactoryProvider.get().createPathCalculator(network, travelDisutility, travelTime);
+				});
 
-		for (Thread thread : threads) {
-			thread.join();
+				pool.invoke(
+						new RoutingAction(taskList, 0, taskList.size(), linkIndex, routers, consumer, progress));
+			}
+		} finally {
+			pool.shutdown();
 		}
 
 		progress.close();
-		return results;
 	}
 
-	private class Worker implements Runnable {
-		private final Iterator<Task> taskIterator;
-		private final Collection<Result> results;
+	private List<List<Task>> groupTasks(List<Task> tasks, NearestLinkIndex linkIndex) {
+		Map<Pair<Id<Node>, Integer>, List<Task>> groups = new LinkedHashMap<>();
+
+		for (Task task : tasks) {
+			Link fromLink = linkIndex.getNearestLink(new Coord(task.originX, task.originY));
+			int timeBin = (int) Math.floor(task.departureTime / treeInterval);
+
+			groups.computeIfAbsent(Pair.of(fromLink.getToNode().getId(), timeBin), key -> new ArrayList<>())
+					.add(task);
+		}
+
+		return new ArrayList<>(groups.values());
+	}
+
+	private class RoutingAction extends RecursiveAction {
+		private static final long serialVersionUID = 3385428133516468716L;
+
+		private final List<Task> tasks;
+		private final int start;
+		private final int end;
+
+		private final NearestLinkIndex linkIndex;
+		private final ThreadLocal<LeastCostPathCalculator> routers;
+		private final Consumer<List<Result>> consumer;
 		private final ParallelProgress progress;
 
-		private Worker(Iterator<Task> taskIterator, Collection<Result> results, ParallelProgress progress) {
-			this.taskIterator = taskIterator;
-			this.results = results;
+		RoutingAction(List<Task> tasks, int start, int end, NearestLinkIndex linkIndex,
+				ThreadLocal<LeastCostPathCalculator> routers, Consumer<List<Result>> consumer,
+				ParallelProgress progress) {
+			this.tasks = tasks;
+			this.start = start;
+			this.end = end;
+			this.linkIndex = linkIndex;
+			this.routers = routers;
+			this.consumer = consumer;
 			this.progress = progress;
 		}
 
 		@Override
-		public void run() {
-			LeastCostPathCalculatorFactory factory = routerFactoryProvider.get();
+		protected void compute() {
+			if (end - start > batchSize) {
+				int middle = (start + end) >>> 1;
+
+				invokeAll( //
+						new RoutingAction(tasks, start, middle, linkIndex, routers, consumer, progress), //
+						new RoutingAction(tasks, middle, end, linkIndex, routers, consumer, progress));
+			} else {
+				LeastCostPathCalculator router = routers.get();
+				List<Result> localResults = new ArrayList<>(end - start);
+
+				for (int i = start; i < end; i++) {
+					localResults.add(route(router, tasks.get(i)));
+				}
+
+				synchronized (consumer) {
+					consumer.accept(localResults);
+				}
 
-			TravelTime travelTime = new FreeSpeedTravelTime();
-			TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+				progress.update(localResults.size());
+			}
+		}
 
-			LeastCostPathCalculator router = factory.createPathCalculator(network, travelDisutility, travelTime);
+		private Result route(LeastCostPathCalculator router, Task task) {
+			Result result = new Result(task);
 
-			while (true) {
-				List<Task> localTasks = new ArrayList<>(batchSize);
+			Coord fromCoord = new Coord(task.originX, task.originY);
+			Coord toCoord = new Coord(task.destinationX, task.destinationY);
 
-				synchronized (taskIterator) {
-					while (taskIterator.hasNext() && localTasks.size() < batchSize) {
-						localTasks.add(taskIterator.next());
-					}
+			Link fromLink = linkIndex.getNearestLink(fromCoord);
+			Link toLink = linkIndex.getNearestLink(toCoord);
 
-					if (localTasks.size() == 0) {
-						return;
-					}
+			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), task.departureTime, null,
+					null);
+
+			double distance = 0.0;
+
+			for (Link link : path.links) {
+				distance += link.getLength();
+			}
+
+			result.inVehicleTime_min = path.travelTime / 60.0;
+			result.inVehicleDistance_km = distance * 1e-3;
+
+			result.accessEuclideanDistance_km = CoordUtils.calcEuclideanDistance(fromCoord,
+					fromLink.getToNode().getCoord()) * 1e-3;
+			result.egressEuclideanDistance_km = CoordUtils.calcEuclideanDistance(toCoord,
+					toLink.getFromNode().getCoord()) * 1e-3;
+
+			if (writePaths) {
+				path.links.forEach(link -> result.path.add(link.getId().toString()));
+			}
+
+			return result;
+		}
+	}
+
+	private class TreeRoutingAction extends RecursiveAction {
+		private static final long serialVersionUID = -2640196567392358150L;
+
+		private final List<List<Task>> groups;
+		private final int start;
+		private final int end;
+
+		private final NearestLinkIndex linkIndex;
+		private final ThreadLocal<LeastCostPathTree> trees;
+		private final Consumer<List<Result>> consumer;
+		private final ParallelProgress progress;
+
+		TreeRoutingAction(List<List<Task>> groups, int start, int end, NearestLinkIndex linkIndex,
+				ThreadLocal<LeastCostPathTree> trees, Consumer<List<Result>> consumer, ParallelProgress progress) {
+			this.groups = groups;
+			this.start = start;
+			this.end = end;
+			this.linkIndex = linkIndex;
+			this.trees = trees;
+			this.consumer = consumer;
+			this.progress = progress;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > 1) {
+				int middle = (start + end) >>> 1;
+
+				invokeAll( //
+						new TreeRoutingAction(groups, start, middle, linkIndex, trees, consumer, progress), //
+						new TreeRoutingAction(groups, middle, end, linkIndex, trees, consumer, progress));
+			} else if (end > start) {
+				List<Task> group = groups.get(start);
+				List<Result> localResults = new ArrayList<>(group.size());
+
+				double departureTime = Double.POSITIVE_INFINITY;
+
+				for (Task task : group) {
+					departureTime = Math.min(departureTime, task.departureTime);
 				}
 
-				List<Result> localResults = new ArrayList<>(localTasks.size());
+				Link[] fromLinks = new Link[group.size()];
+				Link[] toLinks = new Link[group.size()];
 
-				for (Task task : localTasks) {
+				BitSet destinations = new BitSet();
+
+				for (int k = 0; k < group.size(); k++) {
+					Task task = group.get(k);
+
+					fromLinks[k] = linkIndex.getNearestLink(new Coord(task.originX, task.originY));
+					toLinks[k] = linkIndex.getNearestLink(new Coord(task.destinationX, task.destinationY));
+
+					destinations.set(toLinks[k].getFromNode().getId().index());
+				}
+
+				// Stop the tree once all destinations of the group are settled
+				int[] remainingDestinations = { destinations.cardinality() };
+
+				LeastCostPathTree tree = trees.get();
+				tree.calculate(fromLinks[0].getToNode().getId().index(), departureTime, null, null,
+						(nodeIndex, arrivalTime, travelCost, distance, startTime) -> {
+							if (destinations.get(nodeIndex)) {
+								destinations.clear(nodeIndex);
+								remainingDestinations[0]--;
+							}
+
+							return remainingDestinations[0] == 0;
+						});
+
+				for (int k = 0; k < group.size(); k++) {
+					Task task = group.get(k);
 					Result result = new Result(task);
 
 					Coord fromCoord = new Coord(task.originX, task.originY);
 					Coord toCoord = new Coord(task.destinationX, task.destinationY);
 
-					Link fromLink = NetworkUtils.getNearestLink(network, fromCoord);
-					Link toLink = NetworkUtils.getNearestLink(network, toCoord);
+					Link fromLink = fromLinks[k];
+					Link toLink = toLinks[k];
 
-					Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), task.departureTime,
-							null, null);
+					int destinationIndex = toLink.getFromNode().getId().index();
+					OptionalTime arrivalTime = tree.getTime(destinationIndex);
 
-					result.inVehicleTime_min = path.travelTime / 60.0;
-					result.inVehicleDistance_km = path.links.stream().mapToDouble(Link::getLength).sum() * 1e-3;
+					if (arrivalTime.isDefined()) {
+						result.inVehicleTime_min = (arrivalTime.seconds() - departureTime) / 60.0;
+						result.inVehicleDistance_km = tree.getDistance(destinationIndex) * 1e-3;
+					} else {
+						result.inVehicleTime_min = Double.NaN;
+						result.inVehicleDistance_km = Double.NaN;
+					}
 
 					result.accessEuclideanDistance_km = CoordUtils.calcEuclideanDistance(fromCoord,
 							fromLink.getToNode().getCoord()) * 1e-3;
 					result.egressEuclideanDistance_km = CoordUtils.calcEuclideanDistance(toCoord,
 							toLink.getFromNode().getCoord()) * 1e-3;
 
-					if (writePaths) {
-						path.links.forEach(link -> result.path.add(link.getId().toString()));
-					}
-
 					localResults.add(result);
-					progress.update();
 				}
 
-				synchronized (results) {
-					results.addAll(localResults);
+				synchronized (consumer) {
+					consumer.accept(localResults);
 				}
+
+				progress.update(localResults.size());
 			}
 		}
 	}
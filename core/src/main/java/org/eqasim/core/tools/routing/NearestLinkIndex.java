@@ -0,0 +1,28 @@
+package org.eqasim.core.tools.routing;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.LinkQuadTree;
+import org.matsim.core.network.NetworkUtils;
+
+/**
+ * Link quadtree that is built once before routing and then only read, so it
+ * can be shared by all routing threads.
+ */
+class NearestLinkIndex {
+	private final LinkQuadTree quadTree;
+
+	NearestLinkIndex(Network network) {
+		double[] bounds = NetworkUtils.getBoundingBox(network.getNodes().values());
+		quadTree = new LinkQuadTree(bounds[0], bounds[1], bounds[2], bounds[3]);
+
+		for (Link link : network.getLinks().values()) {
+			quadTree.put(link);
+		}
+	}
+
+	Link getNearestLink(Coord coord) {
+		return quadTree.getNearest(coord.getX(), coord.getY());
+	}
+}
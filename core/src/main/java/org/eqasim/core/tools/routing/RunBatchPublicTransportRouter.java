@@ -56,7 +56,7 @@ public class RunBatchPublicTransportRouter {
 			IOException, InterruptedException {
 		CommandLine cmd = new CommandLine.Builder(args) //
 				.requireOptions("config-path", "input-path") //
-				.allowOptions("threads", "batch-size", "interval", //
+				.allowOptions("threads", "batch-size", "interval", "range-window", //
 						"transfer-utility", "waiting-utility", //
 						"direct-walk-factor", "maximum-transfer-distance", //
 						"walk-factor", "walk-speed", //
@@ -255,6 +255,7 @@ public class RunBatchPublicTransportRouter {
 				.orElse(Runtime.getRuntime().availableProcessors());
 		int batchSize = cmd.getOption("batch-size").map(Integer::parseInt).orElse(100);
 		double interval = (double) cmd.getOption("interval").map(Integer::parseInt).orElse(0);
+		double rangeWindow = cmd.getOption("range-window").map(Double::parseDouble).orElse(0.0);
 
 		Optional<String> outputLegsPath = cmd.getOption("output-legs-path");
 		Optional<String> outputTripsPath = cmd.getOption("output-trips-path");
@@ -269,8 +270,12 @@ public class RunBatchPublicTransportRouter {
 		TransitSchedule schedule = injector.getInstance(TransitSchedule.class);
 		Network network = injector.getInstance(Network.class);
 
+		double transferWalkMargin = ConfigUtils.addOrGetModule(config, SwissRailRaptorConfigGroup.class)
+				.getTransferWalkMargin();
+
 		BatchPublicTransportRouter batchRouter = new BatchPublicTransportRouter(routerProvider,
-				headwayCalculatorProvider, schedule, network, batchSize, numberOfThreads, interval, transitModes);
+				headwayCalculatorProvider, schedule, network, batchSize, numberOfThreads, interval, transitModes,
+				rangeWindow, transferWalkMargin);
 
 		CsvMapper mapper = new CsvMapper();
 
@@ -2,11 +2,12 @@ package org.eqasim.core.tools.routing;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
+import java.io.UncheckedIOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.eqasim.core.components.travel_time.RecordedTravelTime;
 import org.eqasim.core.misc.InjectorBuilder;
 import org.eqasim.core.simulation.EqasimConfigurator;
 import org.eqasim.core.tools.routing.BatchRoadRouter.Result;
@@ -22,7 +23,9 @@ import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.NetworkCleaner;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -43,7 +46,7 @@ public class RunBatchRoadRouter {
 			IOException, InterruptedException {
 		CommandLine cmd = new CommandLine.Builder(args) //
 				.requireOptions("config-path", "input-path", "output-path") //
-				.allowOptions("threads", "batch-size", "modes", "write-paths") //
+				.allowOptions("threads", "batch-size", "modes", "write-paths", "travel-time-path", "tree-interval") //
 				.build();
 
 		EqasimConfigurator configurator = new EqasimConfigurator();
@@ -60,6 +63,12 @@ public class RunBatchRoadRouter {
 
 		boolean writePaths = cmd.getOption("write-paths").map(Boolean::parseBoolean).orElse(false);
 
+		// If given, tasks are routed with one tree per origin and time bin. All tasks
+		// of a bin are routed with the earliest departure time of the bin, which is an
+		// approximation if travel times depend on the time of day.
+		boolean useTrees = cmd.hasOption("tree-interval");
+		double treeInterval = cmd.getOption("tree-interval").map(Double::parseDouble).orElse(0.0);
+
 		Set<String> modes = new HashSet<>();
 		for (String mode : cmd.getOption("modes").orElse("car").split(",")) {
 			modes.add(mode);
@@ -85,8 +94,14 @@ public class RunBatchRoadRouter {
 
 		Network network = injector.getInstance(Key.get(Network.class, Names.named("car")));
 
+		TravelTime travelTime = new FreeSpeedTravelTime();
+
+		if (cmd.hasOption("travel-time-path")) {
+			travelTime = RecordedTravelTime.mapBinary(new File(cmd.getOptionStrict("travel-time-path")));
+		}
+
 		BatchRoadRouter batchRouter = new BatchRoadRouter(injector.getProvider(LeastCostPathCalculatorFactory.class),
-				network, batchSize, numberOfThreads, writePaths);
+				network, travelTime, batchSize, numberOfThreads, writePaths, useTrees, treeInterval);
 
 		CsvMapper taskMapper = new CsvMapper();
 
@@ -98,8 +113,6 @@ public class RunBatchRoadRouter {
 				.readValues(inputFile);
 		List<Task> tasks = taskIterator.readAll();
 
-		Collection<Result> results = batchRouter.run(tasks);
-
 		CsvSchema.Builder builder = new CsvSchema.Builder() //
 				.setColumnSeparator(',') //
 				.setArrayElementSeparator(" ") //
@@ -120,9 +133,16 @@ public class RunBatchRoadRouter {
 
 		CsvMapper resultMapper = new CsvMapper();
 		resultMapper.configure(JsonGenerator.Feature.IGNORE_UNKNOWN, true);
-		SequenceWriter writer = resultMapper.writerWithTypedSchemaFor(Result.class).with(schema)
-				.writeValues(outputFile);
 
-		writer.writeAll(results);
+		try (SequenceWriter writer = resultMapper.writerWithTypedSchemaFor(Result.class).with(schema)
+				.writeValues(outputFile)) {
+			batchRouter.run(tasks, results -> {
+				try {
+					writer.writeAll(results);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
 	}
 }
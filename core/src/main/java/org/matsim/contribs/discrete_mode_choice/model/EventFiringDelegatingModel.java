@@ -1,5 +1,6 @@
 package org.matsim.contribs.discrete_mode_choice.model;
 
+import org.eqasim.core.simulation.mode_choice.utilities.predictors.CachedVariablePredictor;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.contribs.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
 import org.matsim.core.api.experimental.events.EventsManager;
@@ -19,6 +20,9 @@ public class EventFiringDelegatingModel implements DiscreteModeChoiceModel {
 
     @Override
     public List<TripCandidate> chooseModes(Person person, List<DiscreteModeChoiceTrip> trips, Random random) throws NoFeasibleChoiceException {
+        // Predicted variables must not be reused from a previous replanning call
+        CachedVariablePredictor.clearCaches();
+
         List<TripCandidate> result = delegate.chooseModes(person, trips, random);
         eventsManager.processEvent(new ModeChoicePerformedEvent(person, trips, result));
         return result;
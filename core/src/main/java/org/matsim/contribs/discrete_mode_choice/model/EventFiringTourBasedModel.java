@@ -5,8 +5,11 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.contribs.discrete_mode_choice.components.tour_finder.TourFinder;
 import org.matsim.contribs.discrete_mode_choice.model.mode_availability.ModeAvailability;
 import org.matsim.contribs.discrete_mode_choice.model.mode_chain.ModeChainGenerator;
+import org.matsim.contribs.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
 import org.matsim.contribs.discrete_mode_choice.model.mode_chain.ModeChainGeneratorFactory;
+import org.matsim.contribs.discrete_mode_choice.model.mode_chain.PruningModeChainGenerator;
 import org.matsim.contribs.discrete_mode_choice.model.tour_based.*;
+import org.matsim.contribs.discrete_mode_choice.model.trip_based.TripEstimator;
 import org.matsim.contribs.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
 import org.matsim.contribs.discrete_mode_choice.model.utilities.UtilityCandidate;
 import org.matsim.contribs.discrete_mode_choice.model.utilities.UtilitySelector;
@@ -32,11 +35,39 @@ public class EventFiringTourBasedModel implements DiscreteModeChoiceModel {
     final private TimeInterpretation timeInterpreterFactory;
     final private EventsManager eventsManager;
 
+    // Only set if tour candidates are composed from memoized trip candidates
+    final private TripEstimator tripEstimator;
+
+    // Constraints from these factories which support it prune the mode chains
+    final private List<TourConstraintFactory> prefixConstraintFactories;
+
     public EventFiringTourBasedModel(TourEstimator estimator, ModeAvailability modeAvailability,
                                      TourConstraintFactory constraintFactory, TourFinder tourFinder, TourFilter tourFilter,
                                      UtilitySelectorFactory selectorFactory, ModeChainGeneratorFactory modeChainGeneratorFactory,
                                      FallbackBehaviour fallbackBehaviour, TimeInterpretation timeInterpreterFactory,
                                      EventsManager eventsManager) {
+        this(estimator, modeAvailability, constraintFactory, tourFinder, tourFilter, selectorFactory,
+                modeChainGeneratorFactory, fallbackBehaviour, timeInterpreterFactory, eventsManager, null,
+                Collections.emptyList());
+    }
+
+    /**
+     * If a trip estimator is given, the candidates of the enumerated mode chains
+     * are composed like in the cumulative tour estimator, but every combination of
+     * trip, mode and departure time is only estimated once per tour. The tour
+     * estimator is then only used for fallback candidates.
+     *
+     * If the default mode chain generator is used, the constraints created by the
+     * prefix constraint factories that implement {@link IncrementalTourConstraint}
+     * are checked on partial chains, so that chains which cannot be valid are
+     * never generated.
+     */
+    public EventFiringTourBasedModel(TourEstimator estimator, ModeAvailability modeAvailability,
+                                     TourConstraintFactory constraintFactory, TourFinder tourFinder, TourFilter tourFilter,
+                                     UtilitySelectorFactory selectorFactory, ModeChainGeneratorFactory modeChainGeneratorFactory,
+                                     FallbackBehaviour fallbackBehaviour, TimeInterpretation timeInterpreterFactory,
+                                     EventsManager eventsManager, TripEstimator tripEstimator,
+                                     List<TourConstraintFactory> prefixConstraintFactories) {
         this.estimator = estimator;
         this.modeAvailability = modeAvailability;
         this.constraintFactory = constraintFactory;
@@ -47,6 +78,8 @@ public class EventFiringTourBasedModel implements DiscreteModeChoiceModel {
         this.fallbackBehaviour = fallbackBehaviour;
         this.timeInterpreterFactory = timeInterpreterFactory;
         this.eventsManager = eventsManager;
+        this.tripEstimator = tripEstimator;
+        this.prefixConstraintFactories = prefixConstraintFactories;
     }
 
     @Override
@@ -54,6 +87,7 @@ public class EventFiringTourBasedModel implements DiscreteModeChoiceModel {
             throws NoFeasibleChoiceException {
         List<String> modes = new ArrayList<>(modeAvailability.getAvailableModes(person, trips));
         TourConstraint constraint = constraintFactory.createConstraint(person, trips, modes);
+        List<IncrementalTourConstraint> prefixConstraints = createPrefixConstraints(person, trips, modes);
 
         List<TourCandidate> tourCandidates = new LinkedList<>();
         List<List<String>> tourCandidateModes = new LinkedList<>();
@@ -71,9 +105,11 @@ public class EventFiringTourBasedModel implements DiscreteModeChoiceModel {
             List<TourCandidate> utilityCandidates = new ArrayList<>();
             List<List<String>> tourModesExcludedBeforeEstimation = new ArrayList<>();
             List<TourCandidate> candidatesExcludedAfterEstimation = new ArrayList<>();
+            Map<TripKey, TripCandidate> memo = new HashMap<>();
             if (tourFilter.filter(person, tourTrips)) {
-                ModeChainGenerator generator = modeChainGeneratorFactory.createModeChainGenerator(modes, person,
-                        tourTrips);
+                ModeChainGenerator generator = prefixConstraints.isEmpty()
+                        ? modeChainGeneratorFactory.createModeChainGenerator(modes, person, tourTrips)
+                        : new PruningModeChainGenerator(modes, tourTrips, prefixConstraints);
                 UtilitySelector selector = selectorFactory.createUtilitySelector();
 
                 while (generator.hasNext()) {
@@ -84,7 +120,9 @@ public class EventFiringTourBasedModel implements DiscreteModeChoiceModel {
                         continue;
                     }
 
-                    TourCandidate candidate = estimator.estimateTour(person, tourModes, tourTrips, tourCandidates);
+                    TourCandidate candidate = tripEstimator == null
+                            ? estimator.estimateTour(person, tourModes, tourTrips, tourCandidates)
+                            : estimateTourFromMemo(person, tourModes, tourTrips, memo);
 
                     if (!Double.isFinite(candidate.getUtility())) {
                         logger.warn(buildIllegalUtilityMessage(tripIndex, person));
@@ -97,33 +135,7 @@ public class EventFiringTourBasedModel implements DiscreteModeChoiceModel {
                     }
                     utilityCandidates.add(candidate);
                 }
-                boolean removed;
-                do {
-                    removed = false;
-                    Set<Integer> nonRequiredFeederIndexes = new HashSet<>();
-                    for(TourCandidate tourCandidate: utilityCandidates) {
-                        for(int i=0; i<tourCandidate.getTripCandidates().size(); i++) {
-                            TripCandidate tripCandidate = tourCandidate.getTripCandidates().get(i);
-                            if(tripCandidate.getMode().equals("car") || tripCandidate.getMode().equals("pt")) {
-                                nonRequiredFeederIndexes.add(i);
-                            }
-                        }
-                    }
-                    List<TourCandidate> newUtilityCandidates = new ArrayList<>();
-                    for(TourCandidate tourCandidate: utilityCandidates) {
-                        boolean goodToAdd = true;
-                        for(int i=0; i<tourCandidate.getTripCandidates().size(); i++) {
-                            if(tourCandidate.getTripCandidates().get(i).getMode().equals("feeder") && !nonRequiredFeederIndexes.contains(i)){
-                                removed = true;
-                                goodToAdd = false;
-                            }
-                        }
-                        if(goodToAdd) {
-                            newUtilityCandidates.add(tourCandidate);
-                        }
-                    }
-                    utilityCandidates = newUtilityCandidates;
-                }while(removed);
+                utilityCandidates = removeUnrequiredFeederCandidates(utilityCandidates);
                 for(TourCandidate tourCandidate: utilityCandidates){
                     selector.addCandidate(tourCandidate);
                 }
@@ -171,6 +183,156 @@ public class EventFiringTourBasedModel implements DiscreteModeChoiceModel {
         return createTripCandidates(tourCandidates);
     }
 
+    private List<IncrementalTourConstraint> createPrefixConstraints(Person person, List<DiscreteModeChoiceTrip> trips,
+                                                                    List<String> modes) {
+        List<IncrementalTourConstraint> prefixConstraints = new ArrayList<>();
+
+        // Other generators may not enumerate all chains, so they are not replaced
+        if (modeChainGeneratorFactory instanceof DefaultModeChainGenerator.Factory) {
+            for (TourConstraintFactory factory : prefixConstraintFactories) {
+                TourConstraint prefixConstraint = factory.createConstraint(person, trips, modes);
+
+                if (prefixConstraint instanceof IncrementalTourConstraint) {
+                    prefixConstraints.add((IncrementalTourConstraint) prefixConstraint);
+                }
+            }
+        }
+
+        return prefixConstraints;
+    }
+
+    /**
+     * Removes candidates that use "feeder" for a trip for which no remaining
+     * candidate uses "car" or "pt", until no such candidate is left. Every
+     * candidate is removed at most once, so the cost is linear in the number of
+     * candidates.
+     */
+    private List<TourCandidate> removeUnrequiredFeederCandidates(List<TourCandidate> candidates) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        int numberOfTrips = candidates.get(0).getTripCandidates().size();
+        int[] requiringCounts = new int[numberOfTrips];
+        List<List<Integer>> feederCandidates = new ArrayList<>(numberOfTrips);
+
+        for (int i = 0; i < numberOfTrips; i++) {
+            feederCandidates.add(new ArrayList<>());
+        }
+
+        for (int k = 0; k < candidates.size(); k++) {
+            List<TripCandidate> tripCandidates = candidates.get(k).getTripCandidates();
+
+            for (int i = 0; i < tripCandidates.size(); i++) {
+                String mode = tripCandidates.get(i).getMode();
+
+                if (mode.equals("car") || mode.equals("pt")) {
+                    requiringCounts[i]++;
+                } else if (mode.equals("feeder")) {
+                    feederCandidates.get(i).add(k);
+                }
+            }
+        }
+
+        boolean[] removed = new boolean[candidates.size()];
+        Deque<Integer> pendingTrips = new ArrayDeque<>();
+
+        for (int i = 0; i < numberOfTrips; i++) {
+            if (requiringCounts[i] == 0) {
+                pendingTrips.add(i);
+            }
+        }
+
+        while (!pendingTrips.isEmpty()) {
+            for (int k : feederCandidates.get(pendingTrips.poll())) {
+                if (!removed[k]) {
+                    removed[k] = true;
+
+                    List<TripCandidate> tripCandidates = candidates.get(k).getTripCandidates();
+
+                    for (int i = 0; i < tripCandidates.size(); i++) {
+                        String mode = tripCandidates.get(i).getMode();
+
+                        if ((mode.equals("car") || mode.equals("pt")) && --requiringCounts[i] == 0) {
+                            pendingTrips.add(i);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<TourCandidate> result = new ArrayList<>(candidates.size());
+
+        for (int k = 0; k < candidates.size(); k++) {
+            if (!removed[k]) {
+                result.add(candidates.get(k));
+            }
+        }
+
+        return result;
+    }
+
+    private TourCandidate estimateTourFromMemo(Person person, List<String> modes, List<DiscreteModeChoiceTrip> trips,
+                                               Map<TripKey, TripCandidate> memo) {
+        List<TripCandidate> tripCandidates = new ArrayList<>(modes.size());
+        double utility = 0.0;
+
+        TimeTracker timeTracker = new TimeTracker(timeInterpreterFactory);
+        timeTracker.setTime(trips.get(0).getDepartureTime());
+
+        for (int i = 0; i < modes.size(); i++) {
+            String mode = modes.get(i);
+            DiscreteModeChoiceTrip trip = trips.get(i);
+
+            if (i > 0) { // We're already at the end of the first origin activity
+                timeTracker.addActivity(trip.getOriginActivity());
+                trip.setDepartureTime(timeTracker.getTime().seconds());
+            }
+
+            TripKey key = new TripKey(i, mode, trip.getDepartureTime());
+            TripCandidate tripCandidate = memo.get(key);
+
+            if (tripCandidate == null) {
+                tripCandidate = tripEstimator.estimateTrip(person, mode, trip, tripCandidates);
+                memo.put(key, tripCandidate);
+            }
+
+            utility += tripCandidate.getUtility();
+            timeTracker.addDuration(tripCandidate.getDuration());
+            tripCandidates.add(tripCandidate);
+        }
+
+        return new DefaultTourCandidate(utility, tripCandidates);
+    }
+
+    static private class TripKey {
+        final int tripIndex;
+        final String mode;
+        final double departureTime;
+
+        TripKey(int tripIndex, String mode, double departureTime) {
+            this.tripIndex = tripIndex;
+            this.mode = mode;
+            this.departureTime = departureTime;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof TripKey) {
+                TripKey otherKey = (TripKey) other;
+                return tripIndex == otherKey.tripIndex && departureTime == otherKey.departureTime
+                        && mode.equals(otherKey.mode);
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tripIndex, mode, departureTime);
+        }
+    }
+
     private TourCandidate createFallbackCandidate(Person person, List<DiscreteModeChoiceTrip> tourTrips,
                                                   List<TourCandidate> tourCandidates) {
         List<String> initialModes = tourTrips.stream().map(DiscreteModeChoiceTrip::getInitialMode)
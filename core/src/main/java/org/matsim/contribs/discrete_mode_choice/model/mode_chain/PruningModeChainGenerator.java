@@ -0,0 +1,112 @@
+package org.matsim.contribs.discrete_mode_choice.model.mode_chain;
+
+import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import org.matsim.contribs.discrete_mode_choice.model.tour_based.IncrementalTourConstraint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates mode chains depth-first and checks every prefix against the
+ * incremental constraints while the chain is built. If a prefix is rejected,
+ * none of the chains starting with it is generated.
+ */
+public class PruningModeChainGenerator implements ModeChainGenerator {
+    private final List<String> modes;
+    private final List<DiscreteModeChoiceTrip> tour;
+    private final Collection<IncrementalTourConstraint> constraints;
+
+    private final int numberOfTrips;
+    private final int[] choices;
+    private final String[] chain;
+    private final List<String> chainView;
+
+    private int depth;
+    private List<String> nextChain;
+
+    public PruningModeChainGenerator(List<String> modes, List<DiscreteModeChoiceTrip> tour,
+                                     Collection<IncrementalTourConstraint> constraints) {
+        this.modes = modes;
+        this.tour = tour;
+        this.constraints = constraints;
+
+        this.numberOfTrips = tour.size();
+        this.choices = new int[numberOfTrips];
+        this.chain = new String[numberOfTrips];
+        this.chainView = Arrays.asList(chain);
+
+        Arrays.fill(choices, -1);
+
+        if (numberOfTrips == 0) {
+            this.depth = -1;
+            this.nextChain = new ArrayList<>();
+        } else {
+            this.depth = 0;
+            advance();
+        }
+    }
+
+    private void advance() {
+        nextChain = null;
+
+        while (depth >= 0) {
+            int choice = ++choices[depth];
+
+            if (choice == modes.size()) {
+                choices[depth] = -1;
+                depth--;
+                continue;
+            }
+
+            chain[depth] = modes.get(choice);
+
+            if (!validatePrefix(chainView.subList(0, depth + 1))) {
+                continue;
+            }
+
+            if (depth == numberOfTrips - 1) {
+                nextChain = new ArrayList<>(chainView);
+                return;
+            }
+
+            depth++;
+        }
+    }
+
+    private boolean validatePrefix(List<String> prefixModes) {
+        for (IncrementalTourConstraint constraint : constraints) {
+            if (!constraint.validatePrefix(tour, prefixModes)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of chains without pruning.
+     */
+    @Override
+    public long getNumberOfAlternatives() {
+        return (long) Math.pow(modes.size(), numberOfTrips);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextChain != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (nextChain == null) {
+            throw new NoSuchElementException();
+        }
+
+        List<String> result = nextChain;
+        advance();
+        return result;
+    }
+}
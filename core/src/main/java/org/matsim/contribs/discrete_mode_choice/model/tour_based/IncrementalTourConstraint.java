@@ -0,0 +1,19 @@
+package org.matsim.contribs.discrete_mode_choice.model.tour_based;
+
+import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+import java.util.List;
+
+/**
+ * Tour constraint which can reject partial mode chains, so that the mode chain
+ * enumeration can skip all chains starting with a rejected prefix.
+ */
+public interface IncrementalTourConstraint extends TourConstraint {
+    /**
+     * Returns false if no chain starting with the given modes can pass
+     * {@link #validateBeforeEstimation}. The prefixes of a chain are passed in
+     * increasing length and only if all shorter prefixes have been accepted, so
+     * it is sufficient to check the last mode of the prefix.
+     */
+    boolean validatePrefix(List<DiscreteModeChoiceTrip> tour, List<String> prefixModes);
+}
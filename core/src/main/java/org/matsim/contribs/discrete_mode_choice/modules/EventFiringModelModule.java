@@ -28,6 +28,7 @@ import org.matsim.core.utils.timing.TimeInterpretation;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 public class EventFiringModelModule extends AbstractModule {
@@ -67,9 +68,26 @@ public class EventFiringModelModule extends AbstractModule {
                                                 TourEstimator tourEstimator, TourConstraintFactory tourConstraintFactory, TourFinder tourFinder,
                                                 UtilitySelectorFactory selectorFactory, ModeChainGeneratorFactory modeChainGeneratorFactory,
                                                 DiscreteModeChoiceConfigGroup dmcConfig, TimeInterpretation timeInterpreterFactory,
-                                                EventsManager eventsManager) {
+                                                EventsManager eventsManager, Provider<TripEstimator> tripEstimator,
+                                                Map<String, Provider<TourConstraintFactory>> tourConstraintFactories) {
+        // Memoized trip candidates are only composed like the cumulative estimator does
+        boolean memoizeTripUtilities = dmcConfig.getMemoizeTripUtilities()
+                && dmcConfig.getTourEstimator().equals(EstimatorModule.CUMULATIVE);
+
+        // Pruned chains are not reported, so all chains are enumerated if tour choices are written
+        List<TourConstraintFactory> prefixConstraintFactories = new ArrayList<>();
+
+        if (!dmcConfig.getWriteTourChoices()) {
+            for (String name : dmcConfig.getTourConstraints()) {
+                if (tourConstraintFactories.containsKey(name)) {
+                    prefixConstraintFactories.add(tourConstraintFactories.get(name).get());
+                }
+            }
+        }
+
         return new EventFiringTourBasedModel(tourEstimator, modeAvailability, tourConstraintFactory, tourFinder, tourFilter,
-                selectorFactory, modeChainGeneratorFactory, dmcConfig.getFallbackBehaviour(), timeInterpreterFactory, eventsManager);
+                selectorFactory, modeChainGeneratorFactory, dmcConfig.getFallbackBehaviour(), timeInterpreterFactory, eventsManager,
+                memoizeTripUtilities ? tripEstimator.get() : null, prefixConstraintFactories);
     }
 
     @Provides
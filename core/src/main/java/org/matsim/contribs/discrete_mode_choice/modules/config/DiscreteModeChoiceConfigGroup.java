@@ -46,6 +46,8 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 
 	private boolean writeTourChoices = false;
 
+	private boolean memoizeTripUtilities = true;
+
 	public static final String GROUP_NAME = "DiscreteModeChoice";
 
 	public static final String PERFORM_REROUTE = "performReroute";
@@ -109,6 +111,11 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 
 	public static final String WRITE_TOUR_CHOICES_CMT = "Logs during each iteration the tour choices that are performed in a x.tourSelection.xml file";
 
+	public static final String MEMOIZE_TRIP_UTILITIES = "memoizeTripUtilities";
+
+	public static final String MEMOIZE_TRIP_UTILITIES_CMT = "Defines whether the tour-based model with the " + EstimatorModule.CUMULATIVE
+			+ " tour estimator estimates every combination of trip, mode and departure time only once per tour. Disable if the trip estimator depends on the previous trips.";
+
 
 	public DiscreteModeChoiceConfigGroup() {
 		super(GROUP_NAME);
@@ -314,6 +321,22 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 		this.writeTourChoices = writeTourChoices;
 	}
 
+	/**
+	 * @return -- {@value #MEMOIZE_TRIP_UTILITIES_CMT}
+	 */
+	@StringGetter(MEMOIZE_TRIP_UTILITIES)
+	public boolean getMemoizeTripUtilities() {
+		return this.memoizeTripUtilities;
+	}
+
+	/**
+	 * @param memoizeTripUtilities -- {@value #MEMOIZE_TRIP_UTILITIES_CMT}
+	 */
+	@StringSetter(MEMOIZE_TRIP_UTILITIES)
+	public void setMemoizeTripUtilities(boolean memoizeTripUtilities) {
+		this.memoizeTripUtilities = memoizeTripUtilities;
+	}
+
 	/**
 	 * @param tripFilters  -- {@value #TRIP_FILTERS_CMT}
 	 */
@@ -666,6 +689,7 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 		comments.put(CACHED_MODES, CACHED_MODES_CMT );
 		comments.put(WRITE_UTILITIES, WRITE_UTILITIES_CMT);
 		comments.put(WRITE_TOUR_CHOICES, WRITE_TOUR_CHOICES_CMT);
+		comments.put(MEMOIZE_TRIP_UTILITIES, MEMOIZE_TRIP_UTILITIES_CMT);
 
 		return comments;
 	}
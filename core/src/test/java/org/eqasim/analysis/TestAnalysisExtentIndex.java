@@ -0,0 +1,233 @@
+package org.eqasim.analysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eqasim.core.analysis.AnalysisExtentIndex;
+import org.eqasim.core.analysis.trips.TripItem;
+import org.eqasim.core.analysis.trips.TripListener;
+import org.eqasim.core.components.transit.events.PublicTransitEvent;
+import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+public class TestAnalysisExtentIndex {
+	static private final Id<Link> LINK_INSIDE = Id.createLinkId("extentInside");
+	static private final Id<Link> LINK_OUTSIDE_A = Id.createLinkId("extentOutsideA");
+	static private final Id<Link> LINK_OUTSIDE_B = Id.createLinkId("extentOutsideB");
+	static private final Id<Link> LINK_OUTSIDE_C = Id.createLinkId("extentOutsideC");
+
+	static private final Id<TransitStopFacility> STOP_INSIDE = Id.create("extentInside", TransitStopFacility.class);
+	static private final Id<TransitStopFacility> STOP_OUTSIDE_A = Id.create("extentOutsideA",
+			TransitStopFacility.class);
+	static private final Id<TransitStopFacility> STOP_OUTSIDE_B = Id.create("extentOutsideB",
+			TransitStopFacility.class);
+
+	static private final Id<TransitLine> LINE = Id.create("extentLine", TransitLine.class);
+	static private final Id<TransitRoute> ROUTE_BY_STOP = Id.create("extentByStop", TransitRoute.class);
+	static private final Id<TransitRoute> ROUTE_BY_LINK = Id.create("extentByLink", TransitRoute.class);
+	static private final Id<TransitRoute> ROUTE_BY_START_LINK = Id.create("extentByStartLink", TransitRoute.class);
+	static private final Id<TransitRoute> ROUTE_OUTSIDE = Id.create("extentOutside", TransitRoute.class);
+
+	/**
+	 * Everything left of x = 500 is inside.
+	 */
+	static private final ScenarioExtent EXTENT = new ScenarioExtent() {
+		@Override
+		public boolean isInside(Coord coord) {
+			return coord.getX() < 500.0;
+		}
+
+		@Override
+		public List<Coord> computeEuclideanIntersections(Coord from, Coord to) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public Coord getInteriorPoint() {
+			return new Coord(0.0, 0.0);
+		}
+	};
+
+	/**
+	 * Links are classified by their center, so the inside link lies between x = 0
+	 * and x = 200 and the outside links lie beyond x = 1000.
+	 */
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory factory = network.getFactory();
+
+		Map<Double, Node> nodes = new HashMap<>();
+
+		for (double x : new double[] { 0.0, 200.0, 1000.0, 2000.0, 3000.0, 4000.0 }) {
+			Node node = factory.createNode(Id.createNodeId("extent" + x), new Coord(x, 0.0));
+			network.addNode(node);
+			nodes.put(x, node);
+		}
+
+		network.addLink(factory.createLink(LINK_INSIDE, nodes.get(0.0), nodes.get(200.0)));
+		network.addLink(factory.createLink(LINK_OUTSIDE_A, nodes.get(1000.0), nodes.get(2000.0)));
+		network.addLink(factory.createLink(LINK_OUTSIDE_B, nodes.get(2000.0), nodes.get(3000.0)));
+		network.addLink(factory.createLink(LINK_OUTSIDE_C, nodes.get(3000.0), nodes.get(4000.0)));
+
+		return network;
+	}
+
+	private TransitSchedule createSchedule() {
+		TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+		TransitSchedule schedule = factory.createTransitSchedule();
+
+		TransitStopFacility stopInside = factory.createTransitStopFacility(STOP_INSIDE, new Coord(100.0, 0.0), false);
+		TransitStopFacility stopOutsideA = factory.createTransitStopFacility(STOP_OUTSIDE_A, new Coord(1500.0, 0.0),
+				false);
+		TransitStopFacility stopOutsideB = factory.createTransitStopFacility(STOP_OUTSIDE_B, new Coord(3500.0, 0.0),
+				false);
+
+		for (TransitStopFacility stop : Arrays.asList(stopInside, stopOutsideA, stopOutsideB)) {
+			schedule.addStopFacility(stop);
+		}
+
+		List<TransitRouteStop> insideStops = Arrays.asList( //
+				factory.createTransitRouteStop(stopInside, 0.0, 0.0), //
+				factory.createTransitRouteStop(stopOutsideA, 60.0, 60.0));
+
+		List<TransitRouteStop> outsideStops = Arrays.asList( //
+				factory.createTransitRouteStop(stopOutsideA, 0.0, 0.0), //
+				factory.createTransitRouteStop(stopOutsideB, 60.0, 60.0));
+
+		// Only passes through the extent between its outside stops
+		NetworkRoute throughRoute = RouteUtils.createLinkNetworkRouteImpl(LINK_OUTSIDE_A,
+				Collections.singletonList(LINK_INSIDE), LINK_OUTSIDE_C);
+
+		// Only starts on a link inside the extent
+		NetworkRoute startRoute = RouteUtils.createLinkNetworkRouteImpl(LINK_INSIDE,
+				Collections.singletonList(LINK_OUTSIDE_A), LINK_OUTSIDE_C);
+
+		NetworkRoute outsideRoute = RouteUtils.createLinkNetworkRouteImpl(LINK_OUTSIDE_A,
+				Collections.singletonList(LINK_OUTSIDE_B), LINK_OUTSIDE_C);
+
+		TransitLine line = factory.createTransitLine(LINE);
+		line.addRoute(factory.createTransitRoute(ROUTE_BY_STOP, null, insideStops, "bus"));
+		line.addRoute(factory.createTransitRoute(ROUTE_BY_LINK, throughRoute, outsideStops, "bus"));
+		line.addRoute(factory.createTransitRoute(ROUTE_BY_START_LINK, startRoute, outsideStops, "bus"));
+		line.addRoute(factory.createTransitRoute(ROUTE_OUTSIDE, outsideRoute, outsideStops, "bus"));
+		schedule.addTransitLine(line);
+
+		return schedule;
+	}
+
+	@Test
+	public void testLinksAndStops() {
+		Network network = createNetwork();
+		TransitSchedule schedule = createSchedule();
+		AnalysisExtentIndex index = new AnalysisExtentIndex(EXTENT, network, schedule);
+
+		Assert.assertTrue(index.isInside(network.getLinks().get(LINK_INSIDE)));
+		Assert.assertFalse(index.isInside(network.getLinks().get(LINK_OUTSIDE_A)));
+
+		Assert.assertTrue(index.isInside(schedule.getFacilities().get(STOP_INSIDE)));
+		Assert.assertFalse(index.isInside(schedule.getFacilities().get(STOP_OUTSIDE_B)));
+
+		// Links and stops that are not indexed are classified through the extent
+		Network otherNetwork = NetworkUtils.createNetwork();
+		NetworkFactory factory = otherNetwork.getFactory();
+		Node fromNode = factory.createNode(Id.createNodeId("extentOther1"), new Coord(0.0, 100.0));
+		Node toNode = factory.createNode(Id.createNodeId("extentOther2"), new Coord(100.0, 100.0));
+		Link otherLink = factory.createLink(Id.createLinkId("extentOther"), fromNode, toNode);
+
+		TransitStopFacility otherStop = new TransitScheduleFactoryImpl().createTransitStopFacility(
+				Id.create("extentOther", TransitStopFacility.class), new Coord(600.0, 0.0), false);
+
+		Assert.assertTrue(index.isInside(otherLink));
+		Assert.assertFalse(index.isInside(otherStop));
+	}
+
+	@Test
+	public void testTouchingRoutes() {
+		AnalysisExtentIndex index = new AnalysisExtentIndex(EXTENT, createNetwork(), createSchedule());
+
+		Assert.assertTrue(index.isTouching(LINE, ROUTE_BY_STOP));
+		Assert.assertTrue(index.isTouching(LINE, ROUTE_BY_LINK));
+		Assert.assertTrue(index.isTouching(LINE, ROUTE_BY_START_LINK));
+		Assert.assertFalse(index.isTouching(LINE, ROUTE_OUTSIDE));
+
+		// Unknown lines and routes
+		Assert.assertFalse(index.isTouching(LINE, Id.create("extentUnknown", TransitRoute.class)));
+		Assert.assertFalse(index.isTouching(Id.create("extentUnknown", TransitLine.class), ROUTE_BY_STOP));
+
+		// Without a network, only the stops are considered
+		AnalysisExtentIndex stopIndex = new AnalysisExtentIndex(EXTENT, null, createSchedule());
+
+		Assert.assertTrue(stopIndex.isTouching(LINE, ROUTE_BY_STOP));
+		Assert.assertFalse(stopIndex.isTouching(LINE, ROUTE_BY_LINK));
+	}
+
+	static private void addPtTrip(TripListener listener, Id<Person> personId, Id<Link> originLinkId,
+			Id<Link> destinationLinkId, Id<TransitRoute> routeId) {
+		listener.handleEvent(new ActivityEndEvent(1000.0, personId, originLinkId, null, "home"));
+		listener.handleEvent(new PersonDepartureEvent(1000.0, personId, originLinkId, "pt", "pt"));
+		listener.handleEvent(new PublicTransitEvent(1600.0, personId, LINE, routeId, STOP_OUTSIDE_A, STOP_OUTSIDE_B,
+				1100.0, 2000.0));
+		listener.handleEvent(new ActivityStartEvent(1600.0, personId, destinationLinkId, null, "work", null));
+	}
+
+	@Test
+	public void testTripScopes() {
+		Network network = createNetwork();
+		AnalysisExtentIndex index = new AnalysisExtentIndex(EXTENT, network, createSchedule());
+		TripListener listener = new TripListener(network, elements -> "pt", personId -> true, index);
+
+		Id<Person> throughPerson = Id.createPersonId("extentThrough");
+		Id<Person> outsidePerson = Id.createPersonId("extentOutside");
+		Id<Person> originPerson = Id.createPersonId("extentOrigin");
+		Id<Person> unknownPerson = Id.createPersonId("extentUnknown");
+
+		addPtTrip(listener, throughPerson, LINK_OUTSIDE_A, LINK_OUTSIDE_C, ROUTE_BY_LINK);
+		addPtTrip(listener, outsidePerson, LINK_OUTSIDE_A, LINK_OUTSIDE_C, ROUTE_OUTSIDE);
+		addPtTrip(listener, originPerson, LINK_INSIDE, LINK_OUTSIDE_C, ROUTE_OUTSIDE);
+		addPtTrip(listener, unknownPerson, LINK_OUTSIDE_A, LINK_OUTSIDE_C,
+				Id.create("extentUnknown", TransitRoute.class));
+
+		Map<Id<Person>, TripItem> trips = new HashMap<>();
+
+		for (TripItem trip : listener.getTripItems()) {
+			trips.put(trip.personId, trip);
+		}
+
+		Assert.assertEquals(4, trips.size());
+
+		// Outside origin and destination, but the route passes through the extent
+		Assert.assertEquals("outside", trips.get(throughPerson).originScope);
+		Assert.assertEquals("outside", trips.get(throughPerson).destinationScope);
+		Assert.assertEquals("inside", trips.get(throughPerson).tripScope);
+
+		Assert.assertEquals("outside", trips.get(outsidePerson).tripScope);
+		Assert.assertEquals("outside", trips.get(unknownPerson).tripScope);
+
+		Assert.assertEquals("inside", trips.get(originPerson).originScope);
+		Assert.assertEquals("inside", trips.get(originPerson).tripScope);
+	}
+}
@@ -0,0 +1,214 @@
+package org.eqasim.analysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eqasim.core.analysis.pt.PublicTransportStationUsageItem;
+import org.eqasim.core.analysis.pt.PublicTransportStationUsageListener;
+import org.eqasim.core.components.transit.events.PublicTransitEvent;
+import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+public class TestPublicTransportStationUsageListener {
+	static private final Id<TransitStopFacility> STOP_A = Id.create("usageA", TransitStopFacility.class);
+	static private final Id<TransitStopFacility> STOP_B = Id.create("usageB", TransitStopFacility.class);
+	static private final Id<TransitStopFacility> STOP_C = Id.create("usageC", TransitStopFacility.class);
+	static private final Id<TransitStopFacility> STOP_D = Id.create("usageD", TransitStopFacility.class);
+	static private final Id<TransitStopFacility> STOP_E = Id.create("usageE", TransitStopFacility.class);
+
+	/**
+	 * Stops A and B share a coordinate and C lies close to them. A bus route
+	 * serves A, C and D and a rail route serves B and E.
+	 */
+	private TransitSchedule createSchedule() {
+		TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+		TransitSchedule schedule = factory.createTransitSchedule();
+
+		TransitStopFacility stopA = factory.createTransitStopFacility(STOP_A, new Coord(0.0, 0.0), false);
+		TransitStopFacility stopB = factory.createTransitStopFacility(STOP_B, new Coord(0.0, 0.0), false);
+		TransitStopFacility stopC = factory.createTransitStopFacility(STOP_C, new Coord(50.0, 0.0), false);
+		TransitStopFacility stopD = factory.createTransitStopFacility(STOP_D, new Coord(1000.0, 0.0), false);
+		TransitStopFacility stopE = factory.createTransitStopFacility(STOP_E, new Coord(5000.0, 0.0), false);
+
+		for (TransitStopFacility stop : Arrays.asList(stopA, stopB, stopC, stopD, stopE)) {
+			schedule.addStopFacility(stop);
+		}
+
+		TransitLine line = factory.createTransitLine(Id.create("usageLine", TransitLine.class));
+
+		List<TransitRouteStop> busStops = Arrays.asList( //
+				factory.createTransitRouteStop(stopA, 0.0, 0.0), //
+				factory.createTransitRouteStop(stopC, 60.0, 60.0), //
+				factory.createTransitRouteStop(stopD, 120.0, 120.0));
+
+		List<TransitRouteStop> railStops = Arrays.asList( //
+				factory.createTransitRouteStop(stopB, 0.0, 0.0), //
+				factory.createTransitRouteStop(stopE, 300.0, 300.0));
+
+		line.addRoute(factory.createTransitRoute(Id.create("usageBus", TransitRoute.class), null, busStops, "bus"));
+		line.addRoute(factory.createTransitRoute(Id.create("usageRail", TransitRoute.class), null, railStops, "rail"));
+		schedule.addTransitLine(line);
+
+		return schedule;
+	}
+
+	static private void addUsage(PublicTransportStationUsageListener listener, Id<TransitStopFacility> accessStopId,
+			Id<TransitStopFacility> egressStopId) {
+		listener.handleEvent(new PublicTransitEvent(0.0, Id.createPersonId("usagePerson"),
+				Id.create("usageLine", TransitLine.class), Id.create("usageBus", TransitRoute.class), accessStopId,
+				egressStopId, 0.0, 0.0));
+	}
+
+	static private void assertUsage(Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usages,
+			Id<TransitStopFacility> stopId, int accesses, int egresses) {
+		PublicTransportStationUsageItem item = usages.get(stopId);
+
+		Assert.assertNotNull(item);
+		Assert.assertEquals(accesses, item.getNbAccesses());
+		Assert.assertEquals(egresses, item.getNbEgresses());
+	}
+
+	/**
+	 * Merged counts go to the first stop of the group in schedule order.
+	 */
+	static private Id<TransitStopFacility> getRepresentative(TransitSchedule schedule,
+			List<Id<TransitStopFacility>> group) {
+		for (TransitStopFacility facility : schedule.getFacilities().values()) {
+			if (group.contains(facility.getId())) {
+				return facility.getId();
+			}
+		}
+
+		throw new IllegalStateException();
+	}
+
+	@Test
+	public void testWithoutMerging() {
+		TransitSchedule schedule = createSchedule();
+		PublicTransportStationUsageListener listener = new PublicTransportStationUsageListener(schedule);
+
+		addUsage(listener, STOP_A, STOP_D);
+		addUsage(listener, STOP_B, STOP_E);
+		addUsage(listener, STOP_A, STOP_C);
+
+		Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usages = listener.getUsagesMap();
+
+		Assert.assertEquals(5, usages.size());
+		assertUsage(usages, STOP_A, 2, 0);
+		assertUsage(usages, STOP_B, 1, 0);
+		assertUsage(usages, STOP_C, 0, 1);
+		assertUsage(usages, STOP_D, 0, 1);
+		assertUsage(usages, STOP_E, 0, 1);
+
+		listener.reset(1);
+		Assert.assertTrue(listener.getUsagesMap().isEmpty());
+	}
+
+	@Test
+	public void testMergeEqualCoordinates() {
+		TransitSchedule schedule = createSchedule();
+		PublicTransportStationUsageListener listener = new PublicTransportStationUsageListener(schedule, true,
+				Collections.emptySet(), null);
+
+		addUsage(listener, STOP_A, STOP_D);
+		addUsage(listener, STOP_B, STOP_C);
+
+		Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usages = listener.getUsagesMap();
+		Id<TransitStopFacility> representative = getRepresentative(schedule, Arrays.asList(STOP_A, STOP_B));
+
+		Assert.assertEquals(3, usages.size());
+		assertUsage(usages, representative, 2, 0);
+		assertUsage(usages, STOP_C, 0, 1);
+		assertUsage(usages, STOP_D, 0, 1);
+	}
+
+	@Test
+	public void testMergeDistance() {
+		TransitSchedule schedule = createSchedule();
+		PublicTransportStationUsageListener listener = new PublicTransportStationUsageListener(schedule, true,
+				Collections.emptySet(), null, 100.0);
+
+		addUsage(listener, STOP_A, STOP_C);
+		addUsage(listener, STOP_B, STOP_D);
+
+		Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usages = listener.getUsagesMap();
+		Id<TransitStopFacility> representative = getRepresentative(schedule, Arrays.asList(STOP_A, STOP_B, STOP_C));
+
+		Assert.assertEquals(2, usages.size());
+		assertUsage(usages, representative, 2, 1);
+		assertUsage(usages, STOP_D, 0, 1);
+	}
+
+	@Test
+	public void testInsideExtent() {
+		ScenarioExtent extent = new ScenarioExtent() {
+			@Override
+			public boolean isInside(Coord coord) {
+				return coord.getX() < 500.0;
+			}
+
+			@Override
+			public List<Coord> computeEuclideanIntersections(Coord from, Coord to) {
+				return Collections.emptyList();
+			}
+
+			@Override
+			public Coord getInteriorPoint() {
+				return new Coord(0.0, 0.0);
+			}
+		};
+
+		TransitSchedule schedule = createSchedule();
+		PublicTransportStationUsageListener listener = new PublicTransportStationUsageListener(schedule, false,
+				extent);
+
+		addUsage(listener, STOP_A, STOP_D);
+		addUsage(listener, STOP_E, STOP_C);
+
+		Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usages = listener.getUsagesMap();
+
+		Assert.assertEquals(2, usages.size());
+		assertUsage(usages, STOP_A, 1, 0);
+		assertUsage(usages, STOP_C, 0, 1);
+	}
+
+	@Test
+	public void testModesAndUnknownStops() {
+		TransitSchedule schedule = createSchedule();
+		PublicTransportStationUsageListener listener = new PublicTransportStationUsageListener(schedule,
+				Collections.singleton("bus"));
+
+		Id<TransitStopFacility> unknownStopId = Id.create("usageUnknown", TransitStopFacility.class);
+
+		addUsage(listener, STOP_B, STOP_D);
+		addUsage(listener, unknownStopId, STOP_A);
+		addUsage(listener, STOP_C, unknownStopId);
+
+		Map<Id<TransitStopFacility>, PublicTransportStationUsageItem> usages = listener.getUsagesMap();
+
+		// Stop B is only served by rail, unknown stops are not counted
+		Assert.assertEquals(3, usages.size());
+		assertUsage(usages, STOP_A, 0, 1);
+		assertUsage(usages, STOP_C, 1, 0);
+		assertUsage(usages, STOP_D, 0, 1);
+
+		// Also without a mode filter
+		PublicTransportStationUsageListener unfiltered = new PublicTransportStationUsageListener(schedule);
+		addUsage(unfiltered, unknownStopId, STOP_A);
+
+		Assert.assertEquals(1, unfiltered.getUsagesMap().size());
+		assertUsage(unfiltered.getUsagesMap(), STOP_A, 0, 1);
+	}
+}
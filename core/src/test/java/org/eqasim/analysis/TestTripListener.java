@@ -0,0 +1,150 @@
+package org.eqasim.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eqasim.core.analysis.trips.TripItem;
+import org.eqasim.core.analysis.trips.TripListener;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.MainModeIdentifier;
+
+public class TestTripListener {
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory factory = network.getFactory();
+
+		Node previousNode = factory.createNode(Id.createNodeId("listener0"), new Coord(0.0, 0.0));
+		network.addNode(previousNode);
+
+		for (int k = 1; k <= 4; k++) {
+			Node node = factory.createNode(Id.createNodeId("listener" + k), new Coord(k * 1000.0, 0.0));
+			network.addNode(node);
+
+			Link link = factory.createLink(Id.createLinkId("listener" + k), previousNode, node);
+			link.setLength(1000.0);
+			network.addLink(link);
+
+			previousNode = node;
+		}
+
+		return network;
+	}
+
+	/**
+	 * Identifies the main mode from the link of the first stage activity, so the
+	 * result depends on the links being passed on.
+	 */
+	static private class LinkBasedIdentifier implements MainModeIdentifier {
+		final List<Id<Link>> stageLinkIds = new ArrayList<>();
+
+		@Override
+		public String identifyMainMode(List<? extends PlanElement> tripElements) {
+			for (PlanElement element : tripElements) {
+				if (element instanceof Activity) {
+					Id<Link> linkId = ((Activity) element).getLinkId();
+					stageLinkIds.add(linkId);
+
+					return "pt@" + linkId;
+				}
+			}
+
+			return ((Leg) tripElements.get(0)).getMode();
+		}
+	}
+
+	static private void addPtTrip(TripListener listener, Id<Person> personId, double time, Id<Link> originLinkId,
+			Id<Link> accessStopLinkId, Id<Link> egressStopLinkId, Id<Link> destinationLinkId) {
+		listener.handleEvent(new ActivityEndEvent(time, personId, originLinkId, null, "home"));
+
+		listener.handleEvent(new PersonDepartureEvent(time, personId, originLinkId, "walk", "pt"));
+		listener.handleEvent(new TeleportationArrivalEvent(time + 100.0, personId, 100.0, "walk"));
+		listener.handleEvent(
+				new ActivityStartEvent(time + 100.0, personId, accessStopLinkId, null, "pt interaction", null));
+		listener.handleEvent(new ActivityEndEvent(time + 100.0, personId, accessStopLinkId, null, "pt interaction"));
+
+		listener.handleEvent(new PersonDepartureEvent(time + 100.0, personId, accessStopLinkId, "pt", "pt"));
+		listener.handleEvent(new TeleportationArrivalEvent(time + 600.0, personId, 2000.0, "pt"));
+		listener.handleEvent(
+				new ActivityStartEvent(time + 600.0, personId, egressStopLinkId, null, "pt interaction", null));
+		listener.handleEvent(new ActivityEndEvent(time + 600.0, personId, egressStopLinkId, null, "pt interaction"));
+
+		listener.handleEvent(new PersonDepartureEvent(time + 600.0, personId, egressStopLinkId, "walk", "pt"));
+		listener.handleEvent(new TeleportationArrivalEvent(time + 700.0, personId, 50.0, "walk"));
+		listener.handleEvent(new ActivityStartEvent(time + 700.0, personId, destinationLinkId, null, "work", null));
+	}
+
+	@Test
+	public void testTripsWithStageActivities() {
+		Network network = createNetwork();
+		LinkBasedIdentifier identifier = new LinkBasedIdentifier();
+		TripListener listener = new TripListener(network, identifier, personId -> true);
+
+		Id<Link> link1 = Id.createLinkId("listener1");
+		Id<Link> link2 = Id.createLinkId("listener2");
+		Id<Link> link3 = Id.createLinkId("listener3");
+		Id<Link> link4 = Id.createLinkId("listener4");
+
+		Id<Person> personA = Id.createPersonId("listenerA");
+		Id<Person> personB = Id.createPersonId("listenerB");
+		Id<Person> personC = Id.createPersonId("listenerC");
+
+		// Same legs and stage activity types, but different stops for person B
+		addPtTrip(listener, personA, 1000.0, link1, link2, link3, link4);
+		addPtTrip(listener, personB, 2000.0, link1, link3, link2, link4);
+		addPtTrip(listener, personC, 3000.0, link1, link2, link3, link4);
+
+		// A trip without stage activities for person A
+		listener.handleEvent(new ActivityEndEvent(5000.0, personA, link4, null, "work"));
+		listener.handleEvent(new PersonDepartureEvent(5000.0, personA, link4, "walk", "walk"));
+		listener.handleEvent(new TeleportationArrivalEvent(5600.0, personA, 600.0, "walk"));
+		listener.handleEvent(new ActivityStartEvent(5600.0, personA, link1, null, "home", null));
+
+		Collection<TripItem> trips = listener.getTripItems();
+		Assert.assertEquals(4, trips.size());
+
+		for (Id<Link> linkId : identifier.stageLinkIds) {
+			Assert.assertNotNull(linkId);
+		}
+
+		for (TripItem trip : trips) {
+			if (trip.personTripId == 0) {
+				Assert.assertEquals("home", trip.precedingPurpose);
+				Assert.assertEquals("work", trip.followingPurpose);
+				Assert.assertEquals(700.0, trip.travelTime, 1e-9);
+				Assert.assertEquals(2150.0, trip.routedDistance, 1e-9);
+				Assert.assertFalse(trip.returning);
+
+				// Main mode is identified from the stops of each person
+				String expectedMode = trip.personId.equals(personB) ? "pt@listener3" : "pt@listener2";
+				Assert.assertEquals(expectedMode, trip.mode);
+			} else {
+				Assert.assertEquals(personA, trip.personId);
+				Assert.assertEquals(1, trip.personTripId);
+				Assert.assertEquals("walk", trip.mode);
+				Assert.assertEquals(600.0, trip.routedDistance, 1e-9);
+				Assert.assertTrue(trip.returning);
+			}
+		}
+
+		// Persons A and C share the same trip structure, so the main mode is only
+		// identified once for them
+		Assert.assertEquals(2, identifier.stageLinkIds.size());
+	}
+}
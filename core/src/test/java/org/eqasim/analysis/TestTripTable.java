@@ -0,0 +1,48 @@
+package org.eqasim.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eqasim.core.analysis.trips.TripItem;
+import org.eqasim.core.analysis.trips.TripTable;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+
+public class TestTripTable {
+	@Test
+	public void testReadWrite() throws IOException {
+		TripItem first = new TripItem(Id.createPersonId("tripA"), 0, new Coord(1.0, 2.0), new Coord(3.0, 4.0), 100.0,
+				50.0, 10.0, 12.0, "car", "home", "work", false, 2.8, "inside", "outside", "inside");
+		TripItem second = new TripItem(Id.createPersonId("tripB"), 1, new Coord(5.0, 6.0), new Coord(7.0, 8.0),
+				200.0, 60.0, 0.0, 20.0, "walk", "work", "home", true, 2.8, "inside", "", "");
+
+		TripTable table = TripTable.fromItems(Arrays.asList(first, second));
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		TripTable.writeBinary(outputStream, table);
+
+		TripTable restored = TripTable.readBinary(new ByteArrayInputStream(outputStream.toByteArray()));
+		Assert.assertEquals(2, restored.size());
+
+		List<TripItem> trips = restored.getTripItems();
+
+		Assert.assertEquals(first.personId, trips.get(0).personId);
+		Assert.assertEquals("car", trips.get(0).mode);
+		Assert.assertEquals("work", trips.get(0).followingPurpose);
+		Assert.assertEquals(3.0, trips.get(0).destination.getX(), 1e-9);
+		Assert.assertEquals(12.0, trips.get(0).routedDistance, 1e-9);
+		Assert.assertEquals("outside", trips.get(0).destinationScope);
+		Assert.assertFalse(trips.get(0).returning);
+
+		Assert.assertEquals(second.personId, trips.get(1).personId);
+		Assert.assertEquals(1, trips.get(1).personTripId);
+		Assert.assertEquals("walk", trips.get(1).mode);
+		Assert.assertEquals("", trips.get(1).tripScope);
+		Assert.assertTrue(trips.get(1).returning);
+	}
+}
@@ -0,0 +1,70 @@
+package org.eqasim.components.headway;
+
+import org.eqasim.core.components.headway.HeadwayCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+public class TestHeadwayCache {
+	@Test
+	public void testCacheHit() {
+		HeadwayCache cache = new HeadwayCache(900.0, 1000);
+
+		Id<Link> originId = Id.createLinkId("headwayOrigin");
+		Id<Link> destinationId = Id.createLinkId("headwayDestination");
+
+		int[] calculations = new int[1];
+
+		int bin = cache.getBin(8.0 * 3600.0 + 100.0);
+		Assert.assertEquals(32, bin);
+		Assert.assertEquals(8.0 * 3600.0 + 450.0, cache.getBinTime(bin), 0.0);
+
+		double headway = cache.get(originId, destinationId, bin, () -> {
+			calculations[0]++;
+			return 7.5;
+		});
+
+		Assert.assertEquals(7.5, headway, 0.0);
+		Assert.assertEquals(1, calculations[0]);
+
+		// A hit returns the calculated headway without calculating again
+		double cached = cache.get(originId, destinationId, cache.getBin(8.0 * 3600.0 + 800.0), () -> {
+			calculations[0]++;
+			return 0.0;
+		});
+
+		Assert.assertEquals(7.5, cached, 0.0);
+		Assert.assertEquals(1, calculations[0]);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+
+		// Other bins and link pairs are calculated separately
+		Assert.assertEquals(5.0, cache.get(originId, destinationId, bin + 1, () -> 5.0), 0.0);
+		Assert.assertEquals(3.0, cache.get(destinationId, originId, bin, () -> 3.0), 0.0);
+		Assert.assertEquals(3, cache.getMisses());
+
+		// Missing connections are cached as well
+		cache.get(originId, originId, bin, () -> Double.POSITIVE_INFINITY);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, cache.get(originId, originId, bin, () -> 1.0), 0.0);
+
+		Assert.assertEquals(4, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		// The smallest capacity keeps one entry per segment
+		HeadwayCache cache = new HeadwayCache(900.0, 1);
+
+		Id<Link> originId = Id.createLinkId("headwayOrigin");
+		Id<Link> destinationId = Id.createLinkId("headwayDestination");
+
+		for (int bin = 0; bin < 1000; bin++) {
+			int value = bin;
+			Assert.assertEquals(value, cache.get(originId, destinationId, bin, () -> value), 0.0);
+		}
+
+		Assert.assertTrue(cache.size() <= 64);
+		Assert.assertEquals(999.0, cache.get(originId, destinationId, 999, () -> -1.0), 0.0);
+	}
+}
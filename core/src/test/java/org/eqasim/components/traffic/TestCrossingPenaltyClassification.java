@@ -0,0 +1,80 @@
+package org.eqasim.components.traffic;
+
+import org.eqasim.core.components.traffic.CrossingPenaltyClassification;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class TestCrossingPenaltyClassification {
+	static private Link addLink(Network network, String id, Node fromNode, Node toNode, double capacity) {
+		Link link = network.getFactory().createLink(Id.createLinkId(id), fromNode, toNode);
+		link.setLength(1000.0);
+		link.setFreespeed(10.0);
+		link.setCapacity(capacity);
+		network.addLink(link);
+		return link;
+	}
+
+	static private void assertClassification(Network network, CrossingPenaltyClassification classification) {
+		for (Link link : network.getLinks().values()) {
+			Assert.assertEquals(CrossingPenaltyClassification.computeCrossingPenalty(link),
+					classification.hasCrossingPenalty(link));
+		}
+	}
+
+	@Test
+	public void testClassification() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory factory = network.getFactory();
+
+		Node nodeA = factory.createNode(Id.createNodeId("A"), new Coord(0.0, 0.0));
+		Node nodeB = factory.createNode(Id.createNodeId("B"), new Coord(0.0, 1000.0));
+		Node nodeC = factory.createNode(Id.createNodeId("C"), new Coord(1000.0, 0.0));
+		Node nodeD = factory.createNode(Id.createNodeId("D"), new Coord(2000.0, 0.0));
+		Node nodeE = factory.createNode(Id.createNodeId("E"), new Coord(2000.0, 1000.0));
+
+		for (Node node : new Node[] { nodeA, nodeB, nodeC, nodeD, nodeE }) {
+			network.addNode(node);
+		}
+
+		Link linkAC = addLink(network, "AC", nodeA, nodeC, 2000.0);
+		Link linkBC = addLink(network, "BC", nodeB, nodeC, 500.0);
+		Link linkCD = addLink(network, "CD", nodeC, nodeD, 1000.0);
+
+		CrossingPenaltyClassification classification = new CrossingPenaltyClassification(network);
+
+		// Both approaches to the intersection at C are penalized, CD is the only link
+		// into D
+		Assert.assertTrue(classification.hasCrossingPenalty(linkAC));
+		Assert.assertTrue(classification.hasCrossingPenalty(linkBC));
+		Assert.assertFalse(classification.hasCrossingPenalty(linkCD));
+		assertClassification(network, classification);
+
+		// Without invalidation, the network is not scanned again
+		addLink(network, "ED", nodeE, nodeD, 1000.0);
+		classification.refresh();
+		Assert.assertFalse(classification.hasCrossingPenalty(linkCD));
+
+		// The new link into D creates an intersection, which is found once the
+		// classification has been invalidated
+		classification.invalidate();
+		classification.refresh();
+
+		Assert.assertTrue(classification.hasCrossingPenalty(linkCD));
+		assertClassification(network, classification);
+
+		// A capacity change that does not touch the link indices is found as well
+		linkBC.setCapacity(3000.0);
+		classification.invalidate();
+		classification.refresh();
+
+		Assert.assertFalse(classification.hasCrossingPenalty(linkBC));
+		assertClassification(network, classification);
+	}
+}
@@ -0,0 +1,233 @@
+package org.eqasim.components.travel_time;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eqasim.core.components.travel_time.PipelinedEventsReplay;
+import org.eqasim.core.components.travel_time.RecordedTravelTime;
+import org.eqasim.core.components.travel_time.TravelTimeRecorder;
+import org.eqasim.core.scenario.cutter.network.RoadNetwork;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class TestRecordedTravelTime {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private RoadNetwork createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory factory = network.getFactory();
+
+		Node nodeA = factory.createNode(Id.createNodeId("A"), new Coord(0.0, 0.0));
+		Node nodeB = factory.createNode(Id.createNodeId("B"), new Coord(1000.0, 0.0));
+		Node nodeC = factory.createNode(Id.createNodeId("C"), new Coord(2000.0, 0.0));
+
+		network.addNode(nodeA);
+		network.addNode(nodeB);
+		network.addNode(nodeC);
+
+		Link linkAB = factory.createLink(Id.createLinkId("AB"), nodeA, nodeB);
+		Link linkBC = factory.createLink(Id.createLinkId("BC"), nodeB, nodeC);
+
+		for (Link link : new Link[] { linkAB, linkBC }) {
+			link.setLength(1000.0);
+			link.setFreespeed(10.0);
+			link.setAllowedModes(Collections.singleton(TransportMode.car));
+			network.addLink(link);
+		}
+
+		return new RoadNetwork(network);
+	}
+
+	private RecordedTravelTime createTravelTime(RoadNetwork network) {
+		TravelTimeRecorder recorder = new TravelTimeRecorder(network, 0.0, 3600.0, 900.0);
+
+		Id<Vehicle> vehicleId = Id.createVehicleId("v");
+		Id<Link> linkId = Id.createLinkId("AB");
+
+		recorder.handleEvent(new LinkEnterEvent(1000.0, vehicleId, linkId));
+		recorder.handleEvent(new LinkLeaveEvent(1300.0, vehicleId, linkId));
+
+		recorder.handleEvent(new LinkEnterEvent(1100.0, vehicleId, linkId));
+		recorder.handleEvent(new LinkLeaveEvent(1200.0, vehicleId, linkId));
+
+		return recorder.getTravelTime();
+	}
+
+	private void assertTravelTime(RoadNetwork network, RecordedTravelTime travelTime) {
+		Link linkAB = network.getLinks().get(Id.createLinkId("AB"));
+		Link linkBC = network.getLinks().get(Id.createLinkId("BC"));
+
+		Assert.assertEquals(4, travelTime.getNumberOfBins());
+		Assert.assertEquals(2, travelTime.getNumberOfLinks());
+
+		Assert.assertEquals(100.0, travelTime.getLinkTravelTime(linkAB, 0.0, null, null), 1e-6);
+		Assert.assertEquals(200.0, travelTime.getLinkTravelTime(linkAB, 1000.0, null, null), 1e-6);
+		Assert.assertEquals(100.0, travelTime.getLinkTravelTime(linkAB, 5000.0, null, null), 1e-6);
+		Assert.assertEquals(100.0, travelTime.getLinkTravelTime(linkBC, 1000.0, null, null), 1e-6);
+	}
+
+	@Test
+	public void testRecordedTravelTime() {
+		RoadNetwork network = createNetwork();
+		assertTravelTime(network, createTravelTime(network));
+	}
+
+	@Test
+	public void testParallelRecording() throws InterruptedException {
+		RoadNetwork network = createNetwork();
+		TravelTimeRecorder recorder = new TravelTimeRecorder(network, 0.0, 3600.0, 900.0);
+
+		Id<Link> linkId = Id.createLinkId("AB");
+		List<Thread> threads = new LinkedList<>();
+
+		for (int k = 0; k < 4; k++) {
+			Id<Vehicle> vehicleId = Id.createVehicleId("v" + k);
+
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					recorder.handleEvent(new LinkEnterEvent(1000.0, vehicleId, linkId));
+					recorder.handleEvent(new LinkLeaveEvent(i % 2 == 0 ? 1300.0 : 1100.0, vehicleId, linkId));
+				}
+			}));
+		}
+
+		threads.forEach(Thread::start);
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTravelTime(network, recorder.getTravelTime());
+	}
+
+	@Test
+	public void testBinaryRoundTrip() throws IOException, InterruptedException {
+		RoadNetwork network = createNetwork();
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		RecordedTravelTime.writeBinary(outputStream, createTravelTime(network));
+
+		RecordedTravelTime travelTime = RecordedTravelTime
+				.readBinary(new ByteArrayInputStream(outputStream.toByteArray()));
+		assertTravelTime(network, travelTime);
+	}
+
+	@Test
+	public void testMappedBinary() throws IOException, InterruptedException {
+		RoadNetwork network = createNetwork();
+		File path = temporaryFolder.newFile("travel_time.bin");
+
+		try (OutputStream outputStream = new FileOutputStream(path)) {
+			RecordedTravelTime.writeBinary(outputStream, createTravelTime(network));
+		}
+
+		assertTravelTime(network, RecordedTravelTime.mapBinary(path));
+	}
+
+	@Test
+	public void testLegacyBinary() throws IOException {
+		RoadNetwork network = createNetwork();
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		DataOutputStream writer = new DataOutputStream(outputStream);
+
+		writer.writeDouble(0.0);
+		writer.writeDouble(3600.0);
+		writer.writeDouble(900.0);
+		writer.writeInt(4);
+		writer.writeInt(2);
+
+		writer.writeUTF("AB");
+		for (double value : new double[] { 100.0, 200.0, 100.0, 100.0 }) {
+			writer.writeDouble(value);
+		}
+
+		writer.writeUTF("BC");
+		for (int k = 0; k < 4; k++) {
+			writer.writeDouble(100.0);
+		}
+
+		writer.flush();
+
+		RecordedTravelTime travelTime = RecordedTravelTime
+				.readBinary(new ByteArrayInputStream(outputStream.toByteArray()));
+		assertTravelTime(network, travelTime);
+	}
+
+	@Test
+	public void testPipelinedReplay() throws IOException, InterruptedException {
+		RoadNetwork network = createNetwork();
+		File path = new File(temporaryFolder.getRoot(), "output_events.xml.gz");
+
+		Id<Link> linkAB = Id.createLinkId("AB");
+		Id<Link> linkBC = Id.createLinkId("BC");
+
+		EventWriterXML writer = new EventWriterXML(path.toString());
+
+		for (int k = 0; k < 50; k++) {
+			Id<Person> personId = Id.createPersonId("p" + k);
+			Id<Vehicle> vehicleId = Id.createVehicleId("v" + k);
+
+			double time = 60.0 * k;
+			double speedFactor = 1.0 + (k % 7) * 0.5;
+
+			writer.handleEvent(
+					new VehicleEntersTrafficEvent(time, personId, linkAB, vehicleId, TransportMode.car, 1.0));
+			writer.handleEvent(new LinkLeaveEvent(time + 10.0, vehicleId, linkAB));
+			writer.handleEvent(new LinkEnterEvent(time + 10.0, vehicleId, linkBC));
+			writer.handleEvent(new LinkLeaveEvent(time + 10.0 + 100.0 * speedFactor, vehicleId, linkBC));
+			writer.handleEvent(new LinkEnterEvent(time + 10.0 + 100.0 * speedFactor, vehicleId, linkAB));
+			writer.handleEvent(new LinkLeaveEvent(time + 10.0 + 250.0 * speedFactor, vehicleId, linkAB));
+			writer.handleEvent(new LinkEnterEvent(time + 10.0 + 250.0 * speedFactor, vehicleId, linkBC));
+			writer.handleEvent(new VehicleLeavesTrafficEvent(time + 300.0 * speedFactor, personId, linkBC, vehicleId,
+					TransportMode.car, 1.0));
+		}
+
+		writer.closeFile();
+
+		RecordedTravelTime sequential = RecordedTravelTime.readFromEvents(path, network, 0.0, 3600.0, 300.0);
+
+		// Small batches and queues to exercise the hand-over between the stages
+		TravelTimeRecorder recorder = new TravelTimeRecorder(network, 0.0, 3600.0, 300.0);
+		new PipelinedEventsReplay(recorder, 3, 4, 2).run(path);
+		RecordedTravelTime pipelined = recorder.getTravelTime();
+
+		Assert.assertEquals(sequential.getNumberOfBins(), pipelined.getNumberOfBins());
+
+		for (Link link : network.getLinks().values()) {
+			for (double time = 0.0; time < 3600.0; time += 300.0) {
+				Assert.assertEquals(sequential.getLinkTravelTime(link, time, null, null),
+						pipelined.getLinkTravelTime(link, time, null, null), 1e-6);
+			}
+		}
+
+		Assert.assertNotEquals(100.0, pipelined.getLinkTravelTime(network.getLinks().get(linkBC), 300.0, null, null),
+				1e-6);
+	}
+}
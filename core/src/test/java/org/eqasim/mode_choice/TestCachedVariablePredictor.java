@@ -0,0 +1,117 @@
+package org.eqasim.mode_choice;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eqasim.core.simulation.mode_choice.utilities.predictors.CachedVariablePredictor;
+import org.eqasim.core.simulation.mode_choice.utilities.variables.BikeVariables;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+public class TestCachedVariablePredictor {
+	@Test
+	public void testTripCache() throws InterruptedException {
+		CountingPredictor predictor = new CountingPredictor(false);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("person"));
+		DiscreteModeChoiceTrip firstTrip = createTrip(0);
+		DiscreteModeChoiceTrip secondTrip = createTrip(1);
+
+		// Alternating between trips of the same person does not evict anything
+		BikeVariables first = predictor.predictVariables(person, firstTrip, Collections.emptyList());
+		BikeVariables second = predictor.predictVariables(person, secondTrip, Collections.emptyList());
+
+		Assert.assertSame(first, predictor.predictVariables(person, firstTrip, Collections.emptyList()));
+		Assert.assertSame(second, predictor.predictVariables(person, secondTrip, Collections.emptyList()));
+		Assert.assertEquals(2, predictor.getNumberOfMisses());
+		Assert.assertEquals(2, predictor.getNumberOfHits());
+
+		// Other threads have their own cache
+		BikeVariables[] threadVariables = new BikeVariables[1];
+		Thread thread = new Thread(
+				() -> threadVariables[0] = predictor.predictVariables(person, firstTrip, Collections.emptyList()));
+		thread.start();
+		thread.join();
+
+		Assert.assertNotSame(first, threadVariables[0]);
+		Assert.assertEquals(3, predictor.getNumberOfMisses());
+
+		// Starting a new replanning call clears the cache, even for the same person
+		CachedVariablePredictor.clearCaches();
+
+		Assert.assertNotSame(first, predictor.predictVariables(person, firstTrip, Collections.emptyList()));
+		Assert.assertEquals(4, predictor.getNumberOfMisses());
+	}
+
+	@Test
+	public void testTotalStatistics() {
+		CachedVariablePredictor.resetTotalStatistics();
+
+		CountingPredictor firstPredictor = new CountingPredictor(false);
+		CountingPredictor secondPredictor = new CountingPredictor(false);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("person"));
+		DiscreteModeChoiceTrip trip = createTrip(0);
+
+		CachedVariablePredictor.clearCaches();
+		firstPredictor.predictVariables(person, trip, Collections.emptyList());
+		firstPredictor.predictVariables(person, trip, Collections.emptyList());
+		secondPredictor.predictVariables(person, trip, Collections.emptyList());
+
+		Assert.assertEquals(1, CachedVariablePredictor.getTotalNumberOfHits());
+		Assert.assertEquals(2, CachedVariablePredictor.getTotalNumberOfMisses());
+
+		CachedVariablePredictor.resetTotalStatistics();
+		Assert.assertEquals(0, CachedVariablePredictor.getTotalNumberOfHits());
+		Assert.assertEquals(0, CachedVariablePredictor.getTotalNumberOfMisses());
+	}
+
+	@Test
+	public void testElementCache() {
+		CountingPredictor predictor = new CountingPredictor(true);
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("person"));
+		DiscreteModeChoiceTrip trip = createTrip(0);
+
+		List<PlanElement> firstRoute = Collections.singletonList(PopulationUtils.createLeg("bike"));
+		List<PlanElement> secondRoute = Collections.singletonList(PopulationUtils.createLeg("walk"));
+
+		BikeVariables first = predictor.predictVariables(person, trip, firstRoute);
+		BikeVariables second = predictor.predictVariables(person, trip, secondRoute);
+
+		Assert.assertNotSame(first, second);
+		Assert.assertSame(first, predictor.predictVariables(person, trip, firstRoute));
+		Assert.assertSame(second, predictor.predictVariables(person, trip, secondRoute));
+		Assert.assertEquals(2, predictor.getNumberOfMisses());
+		Assert.assertEquals(2, predictor.getNumberOfHits());
+	}
+
+	static private DiscreteModeChoiceTrip createTrip(int index) {
+		Activity originActivity = PopulationUtils.createActivityFromLinkId("home", Id.createLinkId("A"));
+		Activity destinationActivity = PopulationUtils.createActivityFromLinkId("work", Id.createLinkId("B"));
+
+		return new DiscreteModeChoiceTrip(originActivity, destinationActivity, "walk", Collections.emptyList(), 0,
+				index, index, new Attributes());
+	}
+
+	static private class CountingPredictor extends CachedVariablePredictor<BikeVariables> {
+		private int numberOfPredictions = 0;
+
+		CountingPredictor(boolean elementDependent) {
+			super(elementDependent);
+		}
+
+		@Override
+		protected BikeVariables predict(Person person, DiscreteModeChoiceTrip trip,
+				List<? extends PlanElement> elements) {
+			return new BikeVariables(numberOfPredictions++);
+		}
+	}
+}
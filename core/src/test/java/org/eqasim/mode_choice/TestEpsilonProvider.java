@@ -0,0 +1,62 @@
+package org.eqasim.mode_choice;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.eqasim.core.simulation.mode_choice.epsilon.EpsilonGenerator;
+import org.eqasim.core.simulation.mode_choice.epsilon.GumbelEpsilonProvider;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+
+public class TestEpsilonProvider {
+	@Test
+	public void testCompatibility() throws NoSuchAlgorithmException {
+		Id<Person> personId = Id.createPersonId("epsilonPerson");
+		GumbelEpsilonProvider provider = new GumbelEpsilonProvider(1234, 1.0, EpsilonGenerator.sha512);
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-512");
+		digest.update(ByteBuffer.allocate(20).putLong(1234).putInt(personId.index()).putInt(2)
+				.putInt("car".hashCode()).array());
+
+		double u = new BigInteger(1, digest.digest()).doubleValue() / BigInteger.valueOf(2).pow(512).doubleValue();
+		Assert.assertEquals(-Math.log(-Math.log(u)), provider.getEpsilon(personId, 2, "car"), 0.0);
+	}
+
+	@Test
+	public void testSplitMix64() throws InterruptedException {
+		GumbelEpsilonProvider provider = new GumbelEpsilonProvider(1234, 1.0, EpsilonGenerator.splitMix64);
+		GumbelEpsilonProvider otherSeed = new GumbelEpsilonProvider(1235, 1.0, EpsilonGenerator.splitMix64);
+
+		Id<Person> personId = Id.createPersonId("epsilonPerson");
+		double epsilon = provider.getEpsilon(personId, 0, "car");
+
+		Assert.assertEquals(epsilon, new GumbelEpsilonProvider(1234, 1.0, EpsilonGenerator.splitMix64)
+				.getEpsilon(personId, 0, "car"), 0.0);
+		Assert.assertNotEquals(epsilon, provider.getEpsilon(personId, 1, "car"), 0.0);
+		Assert.assertNotEquals(epsilon, provider.getEpsilon(personId, 0, "pt"), 0.0);
+		Assert.assertNotEquals(epsilon, otherSeed.getEpsilon(personId, 0, "car"), 0.0);
+
+		double[] threadEpsilon = new double[1];
+		Thread thread = new Thread(() -> threadEpsilon[0] = provider.getEpsilon(personId, 0, "car"));
+		thread.start();
+		thread.join();
+
+		Assert.assertEquals(epsilon, threadEpsilon[0], 0.0);
+
+		// The mean of the standard Gumbel distribution is the Euler-Mascheroni constant
+		int numberOfSamples = 100000;
+		double sum = 0.0;
+
+		for (int k = 0; k < numberOfSamples; k++) {
+			double value = provider.getEpsilon(Id.createPersonId("epsilonPerson" + (k / 4)), k % 4, "walk");
+			Assert.assertTrue(Double.isFinite(value));
+			sum += value;
+		}
+
+		Assert.assertEquals(0.5772, sum / numberOfSamples, 0.02);
+	}
+}
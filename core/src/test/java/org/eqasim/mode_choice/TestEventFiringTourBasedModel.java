@@ -0,0 +1,189 @@
+package org.eqasim.mode_choice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceModel.FallbackBehaviour;
+import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceModel.NoFeasibleChoiceException;
+import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import org.matsim.contribs.discrete_mode_choice.model.EventFiringTourBasedModel;
+import org.matsim.contribs.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
+import org.matsim.contribs.discrete_mode_choice.model.tour_based.CumulativeTourEstimator;
+import org.matsim.contribs.discrete_mode_choice.model.tour_based.TourCandidate;
+import org.matsim.contribs.discrete_mode_choice.model.tour_based.TourConstraint;
+import org.matsim.contribs.discrete_mode_choice.model.trip_based.TripEstimator;
+import org.matsim.contribs.discrete_mode_choice.model.trip_based.candidates.DefaultTripCandidate;
+import org.matsim.contribs.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+import org.matsim.contribs.discrete_mode_choice.model.utilities.UtilityCandidate;
+import org.matsim.contribs.discrete_mode_choice.model.utilities.UtilitySelector;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.utils.timing.TimeInterpretation;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+public class TestEventFiringTourBasedModel {
+	static private final List<String> MODES = Arrays.asList("car", "bike", "walk");
+	static private final double DEPARTURE_TIME = 8.0 * 3600.0;
+	static private final double ACTIVITY_DURATION = 3600.0;
+
+	static private double getDuration(String mode) {
+		switch (mode) {
+		case "car":
+			return 600.0;
+		case "bike":
+			return 900.0;
+		default:
+			return 1800.0;
+		}
+	}
+
+	static private double getUtility(String mode, double departureTime) {
+		return -getDuration(mode) / 600.0 + departureTime / 36000.0;
+	}
+
+	/**
+	 * Utilities depend on the departure time, so they are only equal if the
+	 * departure times are propagated in the same way.
+	 */
+	static private class DepartureTimeEstimator implements TripEstimator {
+		int numberOfEstimations = 0;
+
+		@Override
+		public TripCandidate estimateTrip(Person person, String mode, DiscreteModeChoiceTrip trip,
+				List<TripCandidate> previousTrips) {
+			numberOfEstimations++;
+			return new DefaultTripCandidate(getUtility(mode, trip.getDepartureTime()), mode, getDuration(mode));
+		}
+	}
+
+	/**
+	 * Records all candidates and selects the best one.
+	 */
+	static private class RecordingSelector implements UtilitySelector {
+		final List<TourCandidate> candidates = new ArrayList<>();
+
+		@Override
+		public void addCandidate(UtilityCandidate candidate) {
+			candidates.add((TourCandidate) candidate);
+		}
+
+		@Override
+		public Optional<UtilityCandidate> select(Random random) {
+			return candidates.stream().map(UtilityCandidate.class::cast)
+					.max((a, b) -> Double.compare(a.getUtility(), b.getUtility()));
+		}
+	}
+
+	static private List<DiscreteModeChoiceTrip> createTour() {
+		List<String> purposes = Arrays.asList("home", "work", "shop", "home");
+		List<Activity> activities = new ArrayList<>();
+
+		for (int k = 0; k < purposes.size(); k++) {
+			Activity activity = PopulationUtils.createActivityFromLinkId(purposes.get(k),
+					Id.createLinkId("tour" + k % 3));
+
+			if (k == 0) {
+				activity.setEndTime(DEPARTURE_TIME);
+			} else {
+				activity.setMaximumDuration(ACTIVITY_DURATION);
+			}
+
+			activities.add(activity);
+		}
+
+		List<DiscreteModeChoiceTrip> trips = new ArrayList<>();
+
+		for (int k = 0; k < activities.size() - 1; k++) {
+			trips.add(new DiscreteModeChoiceTrip(activities.get(k), activities.get(k + 1), "walk",
+					Collections.emptyList(), 0, k, 0, new Attributes()));
+		}
+
+		return trips;
+	}
+
+	static private List<TourCandidate> choose(DepartureTimeEstimator tripEstimator, boolean memoize)
+			throws NoFeasibleChoiceException {
+		TimeInterpretation timeInterpretation = TimeInterpretation.create(ConfigUtils.createConfig());
+		CumulativeTourEstimator tourEstimator = new CumulativeTourEstimator(tripEstimator, timeInterpretation);
+
+		TourConstraint constraint = new TourConstraint() {
+			@Override
+			public boolean validateBeforeEstimation(List<DiscreteModeChoiceTrip> tour, List<String> modes,
+					List<List<String>> previousModes) {
+				return true;
+			}
+
+			@Override
+			public boolean validateAfterEstimation(List<DiscreteModeChoiceTrip> tour, TourCandidate candidate,
+					List<TourCandidate> previousCandidates) {
+				return true;
+			}
+		};
+
+		RecordingSelector selector = new RecordingSelector();
+
+		EventFiringTourBasedModel model = new EventFiringTourBasedModel(tourEstimator, (person, trips) -> MODES,
+				(person, trips, modes) -> constraint, trips -> Collections.singletonList(trips),
+				(person, tour) -> true, () -> selector, new DefaultModeChainGenerator.Factory(),
+				FallbackBehaviour.EXCEPTION, timeInterpretation, EventsUtils.createEventsManager(),
+				memoize ? tripEstimator : null, Collections.emptyList());
+
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId("tour"));
+		model.chooseModes(person, createTour(), new Random(0));
+
+		return selector.candidates;
+	}
+
+	@Test
+	public void testMemoizedCandidates() throws NoFeasibleChoiceException {
+		DepartureTimeEstimator cumulativeEstimator = new DepartureTimeEstimator();
+		DepartureTimeEstimator memoizedEstimator = new DepartureTimeEstimator();
+
+		List<TourCandidate> cumulative = choose(cumulativeEstimator, false);
+		List<TourCandidate> memoized = choose(memoizedEstimator, true);
+
+		Assert.assertEquals(27, cumulative.size());
+		Assert.assertEquals(cumulative.size(), memoized.size());
+
+		for (int k = 0; k < cumulative.size(); k++) {
+			TourCandidate expected = cumulative.get(k);
+			TourCandidate actual = memoized.get(k);
+
+			Assert.assertEquals(expected.getUtility(), actual.getUtility(), 1e-9);
+			Assert.assertEquals(expected.getTripCandidates().size(), actual.getTripCandidates().size());
+
+			for (int i = 0; i < expected.getTripCandidates().size(); i++) {
+				TripCandidate expectedTrip = expected.getTripCandidates().get(i);
+				TripCandidate actualTrip = actual.getTripCandidates().get(i);
+
+				Assert.assertEquals(expectedTrip.getMode(), actualTrip.getMode());
+				Assert.assertEquals(expectedTrip.getUtility(), actualTrip.getUtility(), 1e-9);
+				Assert.assertEquals(expectedTrip.getDuration(), actualTrip.getDuration(), 1e-9);
+			}
+		}
+
+		// The last trip departs after both previous trips and activities
+		for (TourCandidate candidate : memoized) {
+			List<TripCandidate> trips = candidate.getTripCandidates();
+
+			double departureTime = DEPARTURE_TIME + trips.get(0).getDuration() + trips.get(1).getDuration()
+					+ 2.0 * ACTIVITY_DURATION;
+			Assert.assertEquals(getUtility(trips.get(2).getMode(), departureTime), trips.get(2).getUtility(), 1e-9);
+		}
+
+		// 3 modes for the first trip, 3 departure times for the second and 6
+		// distinct departure times for the third trip
+		Assert.assertEquals(27 * 3, cumulativeEstimator.numberOfEstimations);
+		Assert.assertEquals(3 + 3 * 3 + 6 * 3, memoizedEstimator.numberOfEstimations);
+	}
+}
@@ -0,0 +1,169 @@
+package org.eqasim.mode_choice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eqasim.core.simulation.mode_choice.constraints.EqasimVehicleTourConstraint;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.contribs.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import org.matsim.contribs.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
+import org.matsim.contribs.discrete_mode_choice.model.mode_chain.ModeChainGenerator;
+import org.matsim.contribs.discrete_mode_choice.model.mode_chain.PruningModeChainGenerator;
+import org.matsim.contribs.discrete_mode_choice.model.tour_based.IncrementalTourConstraint;
+import org.matsim.contribs.discrete_mode_choice.model.tour_based.TourCandidate;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+public class TestPruningModeChainGenerator {
+	static private final List<String> MODES = Arrays.asList("car", "bike", "walk", "pt");
+	static private final List<String> RESTRICTED_MODES = Arrays.asList("car", "bike");
+	static private class NoCarAfterWalkConstraint implements IncrementalTourConstraint {
+		int numberOfChecks = 0;
+
+		@Override
+		public boolean validateBeforeEstimation(List<DiscreteModeChoiceTrip> tour, List<String> modes,
+				List<List<String>> previousModes) {
+			return true;
+		}
+
+		@Override
+		public boolean validateAfterEstimation(List<DiscreteModeChoiceTrip> tour, TourCandidate candidate,
+				List<TourCandidate> previousCandidates) {
+			return true;
+		}
+
+		@Override
+		public boolean validatePrefix(List<DiscreteModeChoiceTrip> tour, List<String> prefixModes) {
+			numberOfChecks++;
+			int index = prefixModes.size() - 1;
+			return !(index > 0 && prefixModes.get(index).equals("car") && prefixModes.get(index - 1).equals("walk"));
+		}
+	}
+
+	private List<List<String>> generate(int numberOfTrips, List<IncrementalTourConstraint> constraints) {
+		List<DiscreteModeChoiceTrip> tour = Collections.nCopies(numberOfTrips, null);
+		PruningModeChainGenerator generator = new PruningModeChainGenerator(Arrays.asList("car", "walk"), tour,
+				constraints);
+
+		List<List<String>> chains = new ArrayList<>();
+
+		while (generator.hasNext()) {
+			chains.add(generator.next());
+		}
+
+		return chains;
+	}
+
+	@Test
+	public void testWithoutConstraints() {
+		List<List<String>> chains = generate(3, Collections.emptyList());
+
+		Assert.assertEquals(8, chains.size());
+		Assert.assertEquals(Arrays.asList("car", "car", "car"), chains.get(0));
+		Assert.assertEquals(Arrays.asList("walk", "walk", "walk"), chains.get(7));
+	}
+
+	@Test
+	public void testPruning() {
+		NoCarAfterWalkConstraint constraint = new NoCarAfterWalkConstraint();
+		List<List<String>> chains = generate(4, Collections.singletonList(constraint));
+
+		// Valid chains are some cars followed by walks only
+		Assert.assertEquals(5, chains.size());
+		Assert.assertEquals(Arrays.asList("car", "car", "walk", "walk"), chains.get(2));
+
+		// Rejected prefixes are not extended
+		Assert.assertTrue(constraint.numberOfChecks < 2 + 4 + 8 + 16);
+	}
+
+	static private List<DiscreteModeChoiceTrip> createTour(String... locations) {
+		List<Activity> activities = new ArrayList<>();
+
+		for (String location : locations) {
+			activities.add(PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId(location)));
+		}
+
+		List<DiscreteModeChoiceTrip> tour = new ArrayList<>();
+
+		for (int k = 0; k < activities.size() - 1; k++) {
+			tour.add(new DiscreteModeChoiceTrip(activities.get(k), activities.get(k + 1), "walk",
+					Collections.emptyList(), 0, k, k, new Attributes()));
+		}
+
+		return tour;
+	}
+
+	static private List<List<String>> collect(ModeChainGenerator generator) {
+		List<List<String>> chains = new ArrayList<>();
+
+		while (generator.hasNext()) {
+			chains.add(generator.next());
+		}
+
+		return chains;
+	}
+
+	/**
+	 * Compares the pruned enumeration with the full enumeration, both filtered by
+	 * the complete check of the constraint, and returns the number of chains that
+	 * are generated with pruning.
+	 */
+	private int assertSameFeasibleChains(List<DiscreteModeChoiceTrip> tour, String vehicleLocation) {
+		EqasimVehicleTourConstraint constraint = new EqasimVehicleTourConstraint(RESTRICTED_MODES,
+				Id.createLinkId(vehicleLocation));
+
+		List<List<String>> allChains = collect(
+				new DefaultModeChainGenerator.Factory().createModeChainGenerator(MODES, null, tour));
+		List<List<String>> prunedChains = collect(
+				new PruningModeChainGenerator(MODES, tour, Collections.singletonList(constraint)));
+
+		Assert.assertEquals((int) Math.pow(MODES.size(), tour.size()), allChains.size());
+
+		List<List<String>> expected = new ArrayList<>();
+
+		for (List<String> chain : allChains) {
+			if (constraint.validateBeforeEstimation(tour, chain, Collections.emptyList())) {
+				expected.add(chain);
+
+				// No prefix of a feasible chain is rejected
+				for (int length = 1; length <= chain.size(); length++) {
+					Assert.assertTrue(constraint.validatePrefix(tour, chain.subList(0, length)));
+				}
+			}
+		}
+
+		List<List<String>> actual = new ArrayList<>();
+
+		for (List<String> chain : prunedChains) {
+			if (constraint.validateBeforeEstimation(tour, chain, Collections.emptyList())) {
+				actual.add(chain);
+			}
+		}
+
+		Assert.assertTrue(expected.size() > 0);
+		Assert.assertTrue(expected.size() < allChains.size());
+		Assert.assertEquals(expected, actual);
+
+		return prunedChains.size();
+	}
+
+	@Test
+	public void testVehicleTourConstraint() {
+		// Home-based tour with the vehicles at home
+		List<DiscreteModeChoiceTrip> homeTour = createTour("A", "B", "C", "B", "A");
+		Assert.assertTrue(assertSameFeasibleChains(homeTour, "A") < Math.pow(MODES.size(), homeTour.size()));
+
+		// Tour passing by the vehicle base in between
+		List<DiscreteModeChoiceTrip> passingTour = createTour("B", "C", "A", "C", "B");
+		Assert.assertTrue(assertSameFeasibleChains(passingTour, "A") < Math.pow(MODES.size(), passingTour.size()));
+
+		// Tour that does not visit the vehicle base
+		List<DiscreteModeChoiceTrip> outsideTour = createTour("A", "B", "C", "A");
+		Assert.assertTrue(assertSameFeasibleChains(outsideTour, "D") < Math.pow(MODES.size(), outsideTour.size()));
+	}
+}
@@ -0,0 +1,123 @@
+package org.eqasim.mode_choice;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eqasim.core.simulation.mode_choice.routing.TripRouteCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.facilities.ActivityFacility;
+
+public class TestTripRouteCache {
+	static private List<PlanElement> createTrip(String mode, double departureTime) {
+		Leg leg = PopulationUtils.createLeg(mode);
+		leg.setDepartureTime(departureTime);
+		leg.setTravelTime(300.0);
+		return Collections.singletonList(leg);
+	}
+
+	@Test
+	public void testCache() {
+		TripRouteCache cache = new TripRouteCache(Arrays.asList("walk", "pt"), 1000);
+
+		Id<Person> personId = Id.createPersonId("cachePerson");
+		Id<ActivityFacility> originId = Id.create("cacheOrigin", ActivityFacility.class);
+		Id<ActivityFacility> destinationId = Id.create("cacheDestination", ActivityFacility.class);
+
+		List<PlanElement> trip = createTrip("walk", 1000.0);
+
+		Assert.assertNull(cache.get("walk", personId, originId, destinationId, 1000.0));
+		cache.put("walk", personId, originId, destinationId, 1000.0, trip);
+
+		List<PlanElement> elements = cache.get("walk", personId, originId, destinationId, 1000.0);
+		Assert.assertEquals(1, elements.size());
+		Assert.assertNotSame(trip.get(0), elements.get(0));
+		Assert.assertEquals(1000.0, ((Leg) elements.get(0)).getDepartureTime().seconds(), 1e-9);
+		Assert.assertEquals(300.0, ((Leg) elements.get(0)).getTravelTime().seconds(), 1e-9);
+
+		// Other departure time, other mode and uncached mode
+		Assert.assertNull(cache.get("walk", personId, originId, destinationId, 1001.0));
+		Assert.assertNull(cache.get("pt", personId, originId, destinationId, 1000.0));
+		Assert.assertNull(cache.get("car", personId, originId, destinationId, 1000.0));
+
+		Assert.assertEquals(1, cache.getHits("walk"));
+		Assert.assertEquals(2, cache.getMisses("walk"));
+		Assert.assertEquals(1, cache.getMisses("pt"));
+
+		cache.invalidate("pt");
+		Assert.assertNotNull(cache.get("walk", personId, originId, destinationId, 1000.0));
+
+		cache.invalidate("walk");
+		Assert.assertNull(cache.get("walk", personId, originId, destinationId, 1000.0));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testPtAcrossIterations() {
+		TripRouteCache cache = new TripRouteCache(Collections.singleton("pt"), 1000);
+
+		Id<ActivityFacility> originId = Id.create("cacheOrigin", ActivityFacility.class);
+		Id<ActivityFacility> destinationId = Id.create("cacheDestination", ActivityFacility.class);
+
+		int numberOfPersons = 20;
+		double[] departureTimes = new double[] { 8.0 * 3600.0, 12.0 * 3600.0, 17.5 * 3600.0 };
+
+		// Every person estimates the same trips in two iterations
+		for (int iteration = 0; iteration < 2; iteration++) {
+			for (int k = 0; k < numberOfPersons; k++) {
+				Id<Person> personId = Id.createPersonId("cache" + k);
+
+				for (double departureTime : departureTimes) {
+					if (cache.get("pt", personId, originId, destinationId, departureTime) == null) {
+						cache.put("pt", personId, originId, destinationId, departureTime,
+								createTrip("pt", departureTime));
+					}
+				}
+			}
+
+			if (iteration == 0) {
+				Assert.assertEquals(0, cache.getHits("pt"));
+				cache.resetCounters();
+			}
+		}
+
+		// All trips of the second iteration are served from the cache
+		Assert.assertEquals(numberOfPersons * departureTimes.length, cache.getHits("pt"));
+		Assert.assertEquals(0, cache.getMisses("pt"));
+
+		// A connection at a shifted departure time or for another person is routed
+		Id<Person> personId = Id.createPersonId("cache0");
+		Assert.assertNull(cache.get("pt", personId, originId, destinationId, 8.0 * 3600.0 + 60.0));
+		Assert.assertNull(cache.get("pt", Id.createPersonId("cacheOther"), originId, destinationId, 8.0 * 3600.0));
+
+		// A served connection keeps its own departure time
+		List<PlanElement> elements = cache.get("pt", personId, originId, destinationId, 12.0 * 3600.0);
+		Assert.assertEquals(12.0 * 3600.0, ((Leg) elements.get(0)).getDepartureTime().seconds(), 1e-9);
+
+		// Invalidating after a schedule change drops all connections
+		cache.invalidate("pt");
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCapacity() {
+		TripRouteCache cache = new TripRouteCache(Collections.singleton("pt"), 64);
+
+		Id<ActivityFacility> originId = Id.create("cacheOrigin", ActivityFacility.class);
+		Id<ActivityFacility> destinationId = Id.create("cacheDestination", ActivityFacility.class);
+
+		for (int k = 0; k < 1000; k++) {
+			Id<Person> personId = Id.createPersonId("cache" + k);
+			cache.put("pt", personId, originId, destinationId, 3600.0, createTrip("pt", 3600.0));
+		}
+
+		// Every segment keeps at least one trip
+		Assert.assertTrue(cache.size() <= 64);
+	}
+}
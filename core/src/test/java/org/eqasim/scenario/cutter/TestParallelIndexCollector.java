@@ -0,0 +1,63 @@
+package org.eqasim.scenario.cutter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.eqasim.core.scenario.cutter.ParallelIndexCollector;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestParallelIndexCollector {
+	static private List<int[]> createItems(int numberOfItems, Random random) {
+		List<int[]> items = new ArrayList<>(numberOfItems);
+
+		for (int k = 0; k < numberOfItems; k++) {
+			int[] indices = new int[random.nextInt(5)];
+
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = random.nextInt(10000);
+			}
+
+			items.add(indices);
+		}
+
+		return items;
+	}
+
+	static private void collectIndices(int[] item, BitSet indices) {
+		for (int index : item) {
+			indices.set(index);
+		}
+	}
+
+	@Test
+	public void testEqualsSequentialCollection() throws InterruptedException {
+		Random random = new Random(0);
+
+		for (int numberOfItems : new int[] { 0, 1, 3, 1000 }) {
+			List<int[]> items = createItems(numberOfItems, random);
+
+			BitSet expected = new BitSet();
+			items.forEach(item -> collectIndices(item, expected));
+
+			// Includes more threads than items
+			for (int numberOfThreads : new int[] { 1, 2, 4, 7 }) {
+				BitSet actual = ParallelIndexCollector.collect(items, numberOfThreads,
+						TestParallelIndexCollector::collectIndices);
+
+				Assert.assertEquals(expected, actual);
+			}
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testFailingCollector() throws InterruptedException {
+		List<int[]> items = createItems(100, new Random(0));
+
+		ParallelIndexCollector.collect(items, 4, (item, indices) -> {
+			throw new IllegalStateException();
+		});
+	}
+}
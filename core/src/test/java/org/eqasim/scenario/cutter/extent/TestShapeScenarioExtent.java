@@ -0,0 +1,47 @@
+package org.eqasim.scenario.cutter.extent;
+
+import java.util.Random;
+
+import org.eqasim.core.scenario.cutter.extent.ShapeScenarioExtent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.matsim.api.core.v01.Coord;
+
+public class TestShapeScenarioExtent {
+	@Test
+	public void testIsInsideMatchesPolygon() {
+		GeometryFactory factory = new GeometryFactory();
+
+		// L-shaped polygon, so some cells of the bounding box are outside
+		Polygon polygon = factory.createPolygon(new Coordinate[] { //
+				new Coordinate(0.0, 0.0), //
+				new Coordinate(100.0, 0.0), //
+				new Coordinate(100.0, 40.0), //
+				new Coordinate(40.0, 40.0), //
+				new Coordinate(40.0, 100.0), //
+				new Coordinate(0.0, 100.0), //
+				new Coordinate(0.0, 0.0) //
+		});
+
+		ShapeScenarioExtent extent = new ShapeScenarioExtent(polygon, 16);
+		Random random = new Random(0);
+
+		for (int k = 0; k < 10000; k++) {
+			double x = -10.0 + 120.0 * random.nextDouble();
+			double y = -10.0 + 120.0 * random.nextDouble();
+
+			boolean expected = polygon.contains(factory.createPoint(new Coordinate(x, y)));
+			Assert.assertEquals(expected, extent.isInside(new Coord(x, y)));
+		}
+
+		// Points on the boundary and on cell borders
+		Assert.assertFalse(extent.isInside(new Coord(0.0, 50.0)));
+		Assert.assertFalse(extent.isInside(new Coord(40.0, 70.0)));
+		Assert.assertTrue(extent.isInside(new Coord(25.0, 25.0)));
+		Assert.assertTrue(extent.isInside(new Coord(37.5, 50.0)));
+		Assert.assertFalse(extent.isInside(new Coord(50.0, 50.0)));
+	}
+}
@@ -0,0 +1,135 @@
+package org.eqasim.scenario.cutter.network;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.eqasim.core.scenario.cutter.extent.ScenarioExtent;
+import org.eqasim.core.scenario.cutter.network.MinimumNetworkFinder;
+import org.eqasim.core.scenario.cutter.network.MinimumNetworkFinder.Mode;
+import org.eqasim.core.scenario.cutter.network.RoadNetwork;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class TestMinimumNetworkFinder {
+	static private final int GRID_SIZE = 6;
+	static private final double SPACING = 1000.0;
+
+	static private class PointExtent implements ScenarioExtent {
+		private final Coord interiorPoint;
+
+		PointExtent(Coord interiorPoint) {
+			this.interiorPoint = interiorPoint;
+		}
+
+		@Override
+		public boolean isInside(Coord coord) {
+			return false;
+		}
+
+		@Override
+		public List<Coord> computeEuclideanIntersections(Coord from, Coord to) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public Coord getInteriorPoint() {
+			return interiorPoint;
+		}
+	}
+
+	static private Link addLink(Network network, Node fromNode, Node toNode, Random random) {
+		Id<Link> linkId = Id.createLinkId(fromNode.getId() + "-" + toNode.getId());
+		Link link = network.getFactory().createLink(linkId, fromNode, toNode);
+
+		// Random speeds avoid ties between paths of equal cost
+		link.setLength(SPACING);
+		link.setFreespeed(5.0 + random.nextDouble() * 20.0);
+		link.setAllowedModes(Collections.singleton(TransportMode.car));
+		network.addLink(link);
+
+		return link;
+	}
+
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int j = 0; j < GRID_SIZE; j++) {
+				nodes[i][j] = network.getFactory().createNode(Id.createNodeId(i + "_" + j),
+						new Coord(i * SPACING, j * SPACING));
+				network.addNode(nodes[i][j]);
+			}
+		}
+
+		Random random = new Random(0);
+
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int j = 0; j < GRID_SIZE; j++) {
+				if (i + 1 < GRID_SIZE) {
+					addLink(network, nodes[i][j], nodes[i + 1][j], random);
+					addLink(network, nodes[i + 1][j], nodes[i][j], random);
+				}
+
+				if (j + 1 < GRID_SIZE) {
+					addLink(network, nodes[i][j], nodes[i][j + 1], random);
+					addLink(network, nodes[i][j + 1], nodes[i][j], random);
+				}
+			}
+		}
+
+		return network;
+	}
+
+	@Test
+	public void testTreesEqualPaths() throws InterruptedException {
+		RoadNetwork network = new RoadNetwork(createNetwork());
+		ScenarioExtent extent = new PointExtent(new Coord(2500.0, 2010.0));
+
+		// Links in two corners of the grid, far from the reference
+		Set<Id<Link>> linkIds = new HashSet<>();
+
+		for (Link link : network.getLinks().values()) {
+			Coord coord = link.getCoord();
+
+			if ((coord.getX() < 1500.0 && coord.getY() < 1500.0) || (coord.getX() > 4000.0 && coord.getY() > 4000.0)) {
+				linkIds.add(link.getId());
+			}
+		}
+
+		Set<Id<Link>> paths = new MinimumNetworkFinder(extent, network, 2, 3, Mode.PATHS).run(linkIds);
+		Set<Id<Link>> trees = new MinimumNetworkFinder(extent, network, 2, 3, Mode.TREES).run(linkIds);
+		Set<Id<Link>> component = new MinimumNetworkFinder(extent, network, 2, 3, Mode.COMPONENT).run(linkIds);
+
+		Assert.assertFalse(paths.isEmpty());
+		Assert.assertEquals(paths, trees);
+
+		// Component paths stop early, so they only use links of the trees
+		Assert.assertTrue(trees.containsAll(component));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnreachableLink() throws InterruptedException {
+		Network baseNetwork = createNetwork();
+
+		// A dead end from which the reference cannot be reached
+		Node deadEnd = baseNetwork.getFactory().createNode(Id.createNodeId("deadEnd"), new Coord(-1000.0, 0.0));
+		baseNetwork.addNode(deadEnd);
+		Link link = addLink(baseNetwork, baseNetwork.getNodes().get(Id.createNodeId("0_0")), deadEnd, new Random(0));
+
+		RoadNetwork network = new RoadNetwork(baseNetwork);
+		ScenarioExtent extent = new PointExtent(new Coord(2500.0, 2010.0));
+
+		new MinimumNetworkFinder(extent, network, 2, 3, Mode.TREES).run(Collections.singleton(link.getId()));
+	}
+}
@@ -0,0 +1,102 @@
+package org.eqasim.scenario.cutter.population.trips.crossing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import org.eqasim.core.scenario.cutter.population.trips.crossing.network.timing.LinkTimingData;
+import org.eqasim.core.scenario.cutter.population.trips.crossing.network.timing.LinkTimingRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+
+public class TestLinkTimingRegistry {
+	private LinkTimingRegistry createRegistry() {
+		LinkTimingRegistry registry = new LinkTimingRegistry();
+
+		// Registered out of order on purpose
+		registry.register(Id.createPersonId("timingB"), 2, Id.createLinkId("timing1"), 500.0, 550.0);
+		registry.register(Id.createPersonId("timingA"), 1, Id.createLinkId("timing2"), 300.0, 350.0);
+		registry.register(Id.createPersonId("timingA"), 0, Id.createLinkId("timing1"), 100.0, 150.0);
+		registry.register(Id.createPersonId("timingA"), 1, Id.createLinkId("timing2"), 400.0, 450.0);
+
+		return registry;
+	}
+
+	private void assertTiming(LinkTimingRegistry registry, String personId, int legIndex, String linkId,
+			double enterTime, double leaveTime) {
+		Optional<LinkTimingData> data = registry.getTimingData(Id.createPersonId(personId), legIndex,
+				Id.createLinkId(linkId));
+
+		Assert.assertTrue(data.isPresent());
+		Assert.assertEquals(enterTime, data.get().enterTime, 1e-3);
+		Assert.assertEquals(leaveTime, data.get().leaveTime, 1e-3);
+		Assert.assertEquals(legIndex, data.get().legIndex);
+	}
+
+	@Test
+	public void testLookup() {
+		LinkTimingRegistry registry = createRegistry();
+
+		assertTiming(registry, "timingA", 0, "timing1", 100.0, 150.0);
+		assertTiming(registry, "timingB", 2, "timing1", 500.0, 550.0);
+
+		// First registration wins for duplicate keys
+		assertTiming(registry, "timingA", 1, "timing2", 300.0, 350.0);
+
+		Assert.assertFalse(
+				registry.getTimingData(Id.createPersonId("timingA"), 1, Id.createLinkId("timing1")).isPresent());
+		Assert.assertFalse(
+				registry.getTimingData(Id.createPersonId("timingC"), 0, Id.createLinkId("timing1")).isPresent());
+
+		// Registering after a lookup is still possible
+		registry.register(Id.createPersonId("timingC"), 0, Id.createLinkId("timing1"), 700.0, 750.0);
+		assertTiming(registry, "timingC", 0, "timing1", 700.0, 750.0);
+	}
+
+	@Test
+	public void testReadWrite() throws IOException {
+		LinkTimingRegistry registry = createRegistry();
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		LinkTimingRegistry.writeBinary(outputStream, registry, 42);
+
+		LinkTimingRegistry restored = LinkTimingRegistry
+				.readBinary(new ByteArrayInputStream(outputStream.toByteArray()), 42);
+
+		Assert.assertEquals(4, restored.size());
+		assertTiming(restored, "timingA", 0, "timing1", 100.0, 150.0);
+		assertTiming(restored, "timingA", 1, "timing2", 300.0, 350.0);
+		assertTiming(restored, "timingB", 2, "timing1", 500.0, 550.0);
+
+		Id<Person> personId = Id.createPersonId("timingB");
+		Id<Link> linkId = Id.createLinkId("timing2");
+		Assert.assertFalse(restored.getTimingData(personId, 2, linkId).isPresent());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReadOtherExtent() throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		LinkTimingRegistry.writeBinary(outputStream, createRegistry(), 42);
+
+		LinkTimingRegistry.readBinary(new ByteArrayInputStream(outputStream.toByteArray()), 43);
+	}
+
+	@Test
+	public void testRegisterAfterEmptyBuild() {
+		LinkTimingRegistry registry = new LinkTimingRegistry();
+
+		// Building releases all capacity of an empty registry
+		registry.build();
+		Assert.assertEquals(0, registry.size());
+
+		registry.register(Id.createPersonId("timingA"), 0, Id.createLinkId("timing1"), 100.0, 150.0);
+		registry.build();
+
+		Assert.assertEquals(1, registry.size());
+		assertTiming(registry, "timingA", 0, "timing1", 100.0, 150.0);
+	}
+}
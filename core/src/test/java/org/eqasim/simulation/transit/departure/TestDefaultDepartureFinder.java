@@ -5,14 +5,18 @@ import java.util.Arrays;
 import org.eqasim.core.components.transit.departure.DefaultDepartureFinder;
 import org.eqasim.core.components.transit.departure.DepartureFinder;
 import org.eqasim.core.components.transit.departure.DepartureFinder.NoDepartureFoundException;
+import org.eqasim.core.components.transit.departure.DepartureIndex;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.misc.OptionalTime;
 import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
 import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
@@ -147,4 +151,126 @@ public class TestDefaultDepartureFinder {
 					finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 115.0).departure);
 		}
 	}
+
+	@Test
+	public void testDepartureFinderWithUnsortedDepartures() throws NoDepartureFoundException {
+		TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+
+		TransitStopFacility facilityA = factory.createTransitStopFacility(Id.create("A", TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+
+		TransitStopFacility facilityB = factory.createTransitStopFacility(Id.create("B", TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+
+		TransitRouteStop stopA = factory.createTransitRouteStop(facilityA, 0.0, 60.0);
+		TransitRouteStop stopB = factory.createTransitRouteStop(facilityB, 600.0, 600.0);
+
+		TransitRoute route = factory.createTransitRoute(null, null, Arrays.asList(stopA, stopB), "pt");
+
+		Departure departureAt10 = factory.createDeparture(Id.create("10:00", Departure.class), 10.0 * 3600.0);
+		Departure departureAt08 = factory.createDeparture(Id.create("08:00", Departure.class), 8.0 * 3600.0);
+		Departure departureAt09 = factory.createDeparture(Id.create("09:00", Departure.class), 9.0 * 3600.0);
+
+		Arrays.asList(departureAt10, departureAt08, departureAt09).forEach(route::addDeparture);
+
+		DepartureIndex index = new DepartureIndex();
+		DepartureFinder finder = new DefaultDepartureFinder(index);
+
+		Assert.assertEquals(departureAt08,
+				finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 8.0 * 3600.0 + 60.0).departure);
+		Assert.assertEquals(departureAt09,
+				finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 8.0 * 3600.0 + 61.0).departure);
+		Assert.assertEquals(59.0, finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(),
+				9.0 * 3600.0 + 1.0).waitingTime, 1e-6);
+
+		// Adding a departure after the first lookup requires invalidating the route
+		Departure departureAt11 = factory.createDeparture(Id.create("11:00", Departure.class), 11.0 * 3600.0);
+		route.addDeparture(departureAt11);
+
+		boolean exceptionThrown = false;
+		try {
+			finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 10.5 * 3600.0);
+		} catch (NoDepartureFoundException e) {
+			exceptionThrown = true;
+		}
+		Assert.assertTrue(exceptionThrown);
+
+		index.invalidate(route);
+
+		Assert.assertEquals(departureAt11,
+				finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 10.5 * 3600.0).departure);
+	}
+
+	@Test
+	public void testDepartureFinderWithReplacedDeparture() throws NoDepartureFoundException {
+		TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+
+		TransitStopFacility facilityA = factory.createTransitStopFacility(Id.create("A", TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+
+		TransitStopFacility facilityB = factory.createTransitStopFacility(Id.create("B", TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+
+		TransitRouteStop stopA = factory.createTransitRouteStop(facilityA, 0.0, 0.0);
+		TransitRouteStop stopB = factory.createTransitRouteStop(facilityB, 600.0, 600.0);
+
+		TransitRoute route = factory.createTransitRoute(Id.create("route", TransitRoute.class), null,
+				Arrays.asList(stopA, stopB), "pt");
+
+		Departure departureAt08 = factory.createDeparture(Id.create("08:00", Departure.class), 8.0 * 3600.0);
+		Departure departureAt09 = factory.createDeparture(Id.create("09:00", Departure.class), 9.0 * 3600.0);
+
+		Arrays.asList(departureAt08, departureAt09).forEach(route::addDeparture);
+
+		TransitLine line = factory.createTransitLine(Id.create("line", TransitLine.class));
+		line.addRoute(route);
+
+		TransitSchedule schedule = factory.createTransitSchedule();
+		schedule.addTransitLine(line);
+
+		DepartureIndex index = new DepartureIndex(schedule);
+		DepartureFinder finder = new DefaultDepartureFinder(index);
+
+		Assert.assertEquals(departureAt09,
+				finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 8.5 * 3600.0).departure);
+
+		// Replacing a departure in place is picked up after invalidating the schedule
+		route.removeDeparture(departureAt09);
+
+		Departure departureAt0830 = factory.createDeparture(Id.create("08:30", Departure.class), 8.5 * 3600.0);
+		route.addDeparture(departureAt0830);
+
+		index.invalidate();
+
+		Assert.assertEquals(departureAt0830,
+				finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 8.5 * 3600.0).departure);
+	}
+
+	@Test
+	public void testDepartureFinderWithUndefinedOffset() throws NoDepartureFoundException {
+		TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+
+		TransitStopFacility facilityA = factory.createTransitStopFacility(Id.create("A", TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+
+		TransitStopFacility facilityB = factory.createTransitStopFacility(Id.create("B", TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+
+		TransitRouteStop stopA = factory.createTransitRouteStop(facilityA, OptionalTime.undefined(),
+				OptionalTime.undefined());
+		TransitRouteStop stopB = factory.createTransitRouteStop(facilityB, 600.0, 600.0);
+
+		TransitRoute route = factory.createTransitRoute(null, null, Arrays.asList(stopA, stopB), "pt");
+		route.addDeparture(factory.createDeparture(Id.create("08:00", Departure.class), 8.0 * 3600.0));
+
+		DepartureFinder finder = new DefaultDepartureFinder();
+
+		boolean exceptionThrown = false;
+		try {
+			finder.findNextDeparture(route, facilityA.getId(), facilityB.getId(), 7.0 * 3600.0);
+		} catch (RuntimeException e) {
+			exceptionThrown = true;
+		}
+		Assert.assertTrue(exceptionThrown);
+	}
 }
@@ -0,0 +1,195 @@
+package org.eqasim.tools.routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eqasim.core.tools.routing.BatchRoadRouter;
+import org.eqasim.core.tools.routing.BatchRoadRouter.Result;
+import org.eqasim.core.tools.routing.BatchRoadRouter.Task;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.LinkQuadTree;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+public class TestBatchRoadRouter {
+	static private final int GRID_SIZE = 5;
+	static private final double SPACING = 1000.0;
+
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory factory = network.getFactory();
+
+		Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int j = 0; j < GRID_SIZE; j++) {
+				nodes[i][j] = factory.createNode(Id.createNodeId(i + "_" + j), new Coord(i * SPACING, j * SPACING));
+				network.addNode(nodes[i][j]);
+			}
+		}
+
+		Random random = new Random(0);
+
+		for (int i = 0; i < GRID_SIZE; i++) {
+			for (int j = 0; j < GRID_SIZE; j++) {
+				if (i + 1 < GRID_SIZE) {
+					addLinks(network, nodes[i][j], nodes[i + 1][j], random);
+				}
+
+				if (j + 1 < GRID_SIZE) {
+					addLinks(network, nodes[i][j], nodes[i][j + 1], random);
+				}
+			}
+		}
+
+		return network;
+	}
+
+	static private void addLinks(Network network, Node nodeA, Node nodeB, Random random) {
+		for (Node[] direction : new Node[][] { { nodeA, nodeB }, { nodeB, nodeA } }) {
+			Id<Link> linkId = Id.createLinkId(direction[0].getId() + "-" + direction[1].getId());
+			Link link = network.getFactory().createLink(linkId, direction[0], direction[1]);
+
+			// Random speeds avoid ties between paths of equal cost
+			link.setLength(SPACING);
+			link.setFreespeed(5.0 + random.nextDouble() * 20.0);
+			network.addLink(link);
+		}
+	}
+
+	/**
+	 * Travel times that depend on the time of day, so that results also depend on
+	 * the departure time of each task.
+	 */
+	static private TravelTime createTravelTime() {
+		return (link, time, person, vehicle) -> {
+			double factor = 1.0 + 0.25 * Math.sin(time / 3600.0) * (link.getId().index() % 3);
+			return factor * link.getLength() / link.getFreespeed();
+		};
+	}
+
+	static private List<Task> createTasks(int numberOfTasks, boolean fixedDepartureTime) {
+		Random random = new Random(1);
+		List<Task> tasks = new ArrayList<>(numberOfTasks);
+
+		for (int k = 0; k < numberOfTasks; k++) {
+			Task task = new Task();
+			task.identifier = "task" + k;
+
+			// Origins are taken from a few locations so that tasks share trees
+			task.originX = random.nextInt(3) * SPACING + 100.0;
+			task.originY = random.nextInt(2) * SPACING + 10.0;
+			task.destinationX = random.nextDouble() * (GRID_SIZE - 1) * SPACING;
+			task.destinationY = random.nextDouble() * (GRID_SIZE - 1) * SPACING;
+			task.departureTime = fixedDepartureTime ? 8.0 * 3600.0 : random.nextDouble() * 24.0 * 3600.0;
+
+			tasks.add(task);
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Routes one task after the other, as the router did before batching, and
+	 * returns travel time, distance, access and egress distance per task.
+	 */
+	static private Map<String, double[]> routeSequentially(Network network, TravelTime travelTime,
+			List<Task> tasks) {
+		LeastCostPathCalculator router = new DijkstraFactory().createPathCalculator(network,
+				new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
+
+		// Links in both directions share their geometry, so the quadtree is built in
+		// the same way as the batch router does to break ties identically
+		double[] bounds = NetworkUtils.getBoundingBox(network.getNodes().values());
+		LinkQuadTree quadTree = new LinkQuadTree(bounds[0], bounds[1], bounds[2], bounds[3]);
+		network.getLinks().values().forEach(quadTree::put);
+
+		Map<String, double[]> results = new HashMap<>();
+
+		for (Task task : tasks) {
+			Coord fromCoord = new Coord(task.originX, task.originY);
+			Coord toCoord = new Coord(task.destinationX, task.destinationY);
+
+			Link fromLink = quadTree.getNearest(fromCoord.getX(), fromCoord.getY());
+			Link toLink = quadTree.getNearest(toCoord.getX(), toCoord.getY());
+
+			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), task.departureTime, null,
+					null);
+
+			results.put(task.identifier, new double[] { //
+					path.travelTime / 60.0, //
+					path.links.stream().mapToDouble(Link::getLength).sum() * 1e-3, //
+					CoordUtils.calcEuclideanDistance(fromCoord, fromLink.getToNode().getCoord()) * 1e-3, //
+					CoordUtils.calcEuclideanDistance(toCoord, toLink.getFromNode().getCoord()) * 1e-3 //
+			});
+		}
+
+		return results;
+	}
+
+	static private void assertSameResults(Map<String, double[]> expected, Collection<Result> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+
+		for (Result result : actual) {
+			double[] reference = expected.get(result.identifier);
+
+			Assert.assertNotNull(reference);
+			Assert.assertEquals(reference[0], result.inVehicleTime_min, 1e-6);
+			Assert.assertEquals(reference[1], result.inVehicleDistance_km, 1e-6);
+			Assert.assertEquals(reference[2], result.accessEuclideanDistance_km, 1e-6);
+			Assert.assertEquals(reference[3], result.egressEuclideanDistance_km, 1e-6);
+		}
+	}
+
+	@Test
+	public void testBatchRoutingEqualsSingleRouting() throws InterruptedException {
+		Network network = createNetwork();
+		TravelTime travelTime = createTravelTime();
+		List<Task> tasks = createTasks(200, false);
+
+		Map<String, double[]> expected = routeSequentially(network, travelTime, tasks);
+
+		// Small batches, so that tasks are split over several threads
+		BatchRoadRouter batchRouter = new BatchRoadRouter(() -> new DijkstraFactory(), network, travelTime, 7, 4,
+				true);
+		Collection<Result> results = batchRouter.run(tasks);
+
+		assertSameResults(expected, results);
+
+		for (Result result : results) {
+			Assert.assertEquals(expected.get(result.identifier)[1], result.path.size() * SPACING * 1e-3, 1e-6);
+		}
+	}
+
+	@Test
+	public void testTreeRoutingEqualsSingleRouting() throws InterruptedException {
+		Network network = createNetwork();
+		TravelTime travelTime = createTravelTime();
+
+		// Trees start at the earliest departure of a bin, so all tasks depart together
+		List<Task> tasks = createTasks(200, true);
+
+		Map<String, double[]> expected = routeSequentially(network, travelTime, tasks);
+
+		BatchRoadRouter batchRouter = new BatchRoadRouter(() -> new DijkstraFactory(), network, travelTime, 7, 4,
+				false, true, 3600.0);
+
+		assertSameResults(expected, batchRouter.run(tasks));
+	}
+}
@@ -21,6 +21,7 @@ public class DrtPredictor extends CachedVariablePredictor<DrtVariables> {
 
 	@Inject
 	public DrtPredictor(@Named("drt") CostModel costModel) {
+		super(true);
 		this.costModel = costModel;
 	}
 
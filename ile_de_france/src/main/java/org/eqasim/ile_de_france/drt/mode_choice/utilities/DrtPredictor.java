@@ -20,6 +20,7 @@ public class DrtPredictor extends CachedVariablePredictor<DrtVariables> implemen
 
 	@Inject
 	public DrtPredictor(@Named("drt") CostModel costModel) {
+		super(true);
 		this.costModel = costModel;
 	}
 
@@ -0,0 +1,411 @@
+package org.eqasim.ile_de_france.emissions;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Square emission grid with a precomputed sparse matrix that distributes the
+ * emissions of a link onto the surrounding cells. The weight of a cell is the
+ * Gaussian kernel with the smoothing radius, averaged along the link and
+ * evaluated at the cell centroid, so that the weights of one link sum up to
+ * approximately one. Cells farther than three smoothing radii from a link are
+ * ignored and only cells with their centroid inside the bounds are kept.
+ *
+ * The matrix is stored by cell, so a link vector can be rasterized on several
+ * threads without any synchronization.
+ */
+public class EmissionsGrid {
+    static private final double KERNEL_CUTOFF = 3.0;
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+
+    // Raster index (row * columns + column) of every retained cell
+    private final int[] cellIndices;
+
+    // Links and weights of cell k are at cellOffsets[k] until cellOffsets[k + 1]
+    private final int[] cellOffsets;
+    private final int[] entryLinks;
+    private final float[] entryWeights;
+
+    private EmissionsGrid(double minX, double minY, double cellSize, int columns, int rows, int[] cellIndices,
+            int[] cellOffsets, int[] entryLinks, float[] entryWeights) {
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellIndices = cellIndices;
+        this.cellOffsets = cellOffsets;
+        this.entryLinks = entryLinks;
+        this.entryWeights = entryWeights;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getNumberOfCells() {
+        return cellIndices.length;
+    }
+
+    public int getNumberOfEntries() {
+        return entryLinks.length;
+    }
+
+    /**
+     * Returns the raster index (row * columns + column) of a retained cell.
+     */
+    public int getCellIndex(int cell) {
+        return cellIndices[cell];
+    }
+
+    public Coord getCellCentroid(int cell) {
+        int index = cellIndices[cell];
+        return new Coord(minX + (index % columns + 0.5) * cellSize, minY + (index / columns + 0.5) * cellSize);
+    }
+
+    /**
+     * Distributes link values (in the order of the given links when building the
+     * grid) onto the cells. Several vectors, e.g. one per pollutant, are processed
+     * together.
+     */
+    public double[][] rasterize(double[][] linkValues, double scaleFactor, int numberOfThreads)
+            throws InterruptedException {
+        double[][] cellValues = new double[linkValues.length][cellIndices.length];
+
+        runChunks(cellIndices.length, numberOfThreads, (chunk, start, end) -> {
+            for (int cell = start; cell < end; cell++) {
+                for (int entry = cellOffsets[cell]; entry < cellOffsets[cell + 1]; entry++) {
+                    int link = entryLinks[entry];
+                    double weight = entryWeights[entry] * scaleFactor;
+
+                    for (int k = 0; k < linkValues.length; k++) {
+                        cellValues[k][cell] += linkValues[k][link] * weight;
+                    }
+                }
+            }
+        });
+
+        return cellValues;
+    }
+
+    /**
+     * Builds the grid over the bounds for the given links. Links that are not
+     * relevant, e.g. because they never have emissions, are left out of the
+     * matrix.
+     */
+    static public EmissionsGrid build(List<Link> links, BitSet relevantLinks, Geometry bounds, double cellSize,
+            double smoothingRadius, int numberOfThreads) throws InterruptedException {
+        Envelope envelope = bounds.getEnvelopeInternal();
+
+        double minX = envelope.getMinX();
+        double minY = envelope.getMinY();
+        int columns = (int) Math.ceil(envelope.getWidth() / cellSize);
+        int rows = (int) Math.ceil(envelope.getHeight() / cellSize);
+
+        if ((long) columns * rows > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Grid is too large: " + columns + " x " + rows + " cells");
+        }
+
+        Kernel kernel = new Kernel(minX, minY, cellSize, columns, rows, smoothingRadius);
+
+        // First, find the cells that are reached by any link
+        int numberOfChunks = getNumberOfChunks(links.size(), numberOfThreads);
+        BitSet[] chunkCells = new BitSet[numberOfChunks];
+
+        runChunks(links.size(), numberOfThreads, (chunk, start, end) -> {
+            BitSet cells = new BitSet();
+
+            for (int position = start; position < end; position++) {
+                if (relevantLinks.get(position)) {
+                    kernel.apply(links.get(position), (index, weight) -> cells.set(index));
+                }
+            }
+
+            chunkCells[chunk] = cells;
+        });
+
+        BitSet reachedCells = new BitSet();
+
+        for (BitSet cells : chunkCells) {
+            if (cells != null) {
+                reachedCells.or(cells);
+            }
+        }
+
+        // Second, number the reached cells that are inside the bounds
+        PreparedGeometry preparedBounds = PreparedGeometryFactory.prepare(bounds);
+        GeometryFactory geometryFactory = new GeometryFactory();
+
+        int[] cellPositions = new int[columns * rows];
+        Arrays.fill(cellPositions, -1);
+
+        int numberOfCells = 0;
+        int[] cellIndices = new int[reachedCells.cardinality()];
+
+        for (int index = reachedCells.nextSetBit(0); index >= 0; index = reachedCells.nextSetBit(index + 1)) {
+            Coordinate centroid = new Coordinate(minX + (index % columns + 0.5) * cellSize,
+                    minY + (index / columns + 0.5) * cellSize);
+
+            if (preparedBounds.contains(geometryFactory.createPoint(centroid))) {
+                cellPositions[index] = numberOfCells;
+                cellIndices[numberOfCells] = index;
+                numberOfCells++;
+            }
+        }
+
+        cellIndices = Arrays.copyOf(cellIndices, numberOfCells);
+
+        // Third, compute the weights by link and transpose them to the cells
+        EntryList[] chunkEntries = new EntryList[numberOfChunks];
+
+        runChunks(links.size(), numberOfThreads, (chunk, start, end) -> {
+            EntryList entries = new EntryList();
+
+            for (int position = start; position < end; position++) {
+                if (relevantLinks.get(position)) {
+                    int link = position;
+
+                    kernel.apply(links.get(position), (index, weight) -> {
+                        int cell = cellPositions[index];
+
+                        if (cell >= 0) {
+                            entries.add(link, cell, (float) weight);
+                        }
+                    });
+                }
+            }
+
+            chunkEntries[chunk] = entries;
+        });
+
+        int[] cellOffsets = new int[numberOfCells + 1];
+
+        for (EntryList entries : chunkEntries) {
+            if (entries != null) {
+                for (int k = 0; k < entries.size; k++) {
+                    cellOffsets[entries.cells[k] + 1]++;
+                }
+            }
+        }
+
+        for (int cell = 0; cell < numberOfCells; cell++) {
+            cellOffsets[cell + 1] += cellOffsets[cell];
+        }
+
+        int[] entryLinks = new int[cellOffsets[numberOfCells]];
+        float[] entryWeights = new float[cellOffsets[numberOfCells]];
+        int[] fill = Arrays.copyOf(cellOffsets, numberOfCells);
+
+        for (EntryList entries : chunkEntries) {
+            if (entries != null) {
+                for (int k = 0; k < entries.size; k++) {
+                    int entry = fill[entries.cells[k]]++;
+                    entryLinks[entry] = entries.links[k];
+                    entryWeights[entry] = entries.weights[k];
+                }
+            }
+        }
+
+        return new EmissionsGrid(minX, minY, cellSize, columns, rows, cellIndices, cellOffsets, entryLinks,
+                entryWeights);
+    }
+
+    private interface ChunkTask {
+        void run(int chunk, int start, int end);
+    }
+
+    static private int getNumberOfChunks(int size, int numberOfThreads) {
+        return Math.max(1, Math.min(numberOfThreads, size));
+    }
+
+    static private void runChunks(int size, int numberOfThreads, ChunkTask task) throws InterruptedException {
+        int numberOfChunks = getNumberOfChunks(size, numberOfThreads);
+
+        if (numberOfChunks == 1) {
+            task.run(0, 0, size);
+            return;
+        }
+
+        List<Thread> threads = new ArrayList<>(numberOfChunks);
+        AtomicBoolean errorsOccured = new AtomicBoolean(false);
+
+        for (int k = 0; k < numberOfChunks; k++) {
+            int start = (int) ((long) k * size / numberOfChunks);
+            int end = (int) ((long) (k + 1) * size / numberOfChunks);
+            int chunk = k;
+
+            Thread thread = new Thread(() -> {
+                task.run(chunk, start, end);
+            });
+
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                e.printStackTrace();
+                errorsOccured.set(true);
+            });
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (errorsOccured.get()) {
+            throw new RuntimeException("Errors occured while processing the emissions grid.");
+        }
+    }
+
+    private interface CellConsumer {
+        void accept(int index, double weight);
+    }
+
+    static private class Kernel {
+        private final double minX;
+        private final double minY;
+        private final double cellSize;
+        private final int columns;
+        private final int rows;
+        private final double radius;
+        private final double normalization;
+
+        Kernel(double minX, double minY, double cellSize, int columns, int rows, double radius) {
+            this.minX = minX;
+            this.minY = minY;
+            this.cellSize = cellSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.radius = radius;
+
+            // The Gaussian kernel integrates to pi * radius^2 over the plane
+            this.normalization = cellSize * cellSize / (Math.PI * radius * radius);
+        }
+
+        void apply(Link link, CellConsumer consumer) {
+            Coord from = link.getFromNode().getCoord();
+            Coord to = link.getToNode().getCoord();
+
+            double reach = KERNEL_CUTOFF * radius;
+
+            int minColumn = Math.max(0, (int) Math.floor((Math.min(from.getX(), to.getX()) - reach - minX) / cellSize));
+            int maxColumn = Math.min(columns - 1,
+                    (int) Math.floor((Math.max(from.getX(), to.getX()) + reach - minX) / cellSize));
+            int minRow = Math.max(0, (int) Math.floor((Math.min(from.getY(), to.getY()) - reach - minY) / cellSize));
+            int maxRow = Math.min(rows - 1,
+                    (int) Math.floor((Math.max(from.getY(), to.getY()) + reach - minY) / cellSize));
+
+            double dx = to.getX() - from.getX();
+            double dy = to.getY() - from.getY();
+            double length = Math.sqrt(dx * dx + dy * dy);
+
+            for (int row = minRow; row <= maxRow; row++) {
+                double y = minY + (row + 0.5) * cellSize;
+
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    double x = minX + (column + 0.5) * cellSize;
+                    double weight = calculateWeight(from, dx, dy, length, x, y);
+
+                    if (weight > 0.0) {
+                        consumer.accept(row * columns + column, weight * normalization);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Kernel exp(-d^2 / r^2) averaged along the link, zero beyond the cutoff.
+         */
+        private double calculateWeight(Coord from, double dx, double dy, double length, double x, double y) {
+            double px = x - from.getX();
+            double py = y - from.getY();
+
+            if (length == 0.0) {
+                double distance2 = px * px + py * py;
+                return distance2 > KERNEL_CUTOFF * KERNEL_CUTOFF * radius * radius ? 0.0
+                        : Math.exp(-distance2 / (radius * radius));
+            }
+
+            // Position along the link and squared distance to the link's line
+            double along = (px * dx + py * dy) / length;
+            double across2 = Math.max(0.0, px * px + py * py - along * along);
+
+            double nearest = Math.min(Math.max(along, 0.0), length);
+            double segmentDistance2 = across2 + (along - nearest) * (along - nearest);
+
+            if (segmentDistance2 > KERNEL_CUTOFF * KERNEL_CUTOFF * radius * radius) {
+                return 0.0;
+            }
+
+            double integral = 0.5 * Math.sqrt(Math.PI) * radius
+                    * (erf((length - along) / radius) - erf(-along / radius));
+
+            return Math.exp(-across2 / (radius * radius)) * integral / length;
+        }
+    }
+
+    /**
+     * Error function after Abramowitz and Stegun 7.1.26, absolute error below
+     * 1.5e-7.
+     */
+    static double erf(double x) {
+        double t = 1.0 / (1.0 + 0.3275911 * Math.abs(x));
+        double polynomial = t * (0.254829592
+                + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+        double value = 1.0 - polynomial * Math.exp(-x * x);
+        return x >= 0.0 ? value : -value;
+    }
+
+    static private class EntryList {
+        int[] links = new int[1024];
+        int[] cells = new int[1024];
+        float[] weights = new float[1024];
+        int size = 0;
+
+        void add(int link, int cell, float weight) {
+            if (size == links.length) {
+                int capacity = links.length * 2;
+                links = Arrays.copyOf(links, capacity);
+                cells = Arrays.copyOf(cells, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+
+            links[size] = link;
+            cells[size] = cell;
+            weights[size] = weight;
+            size++;
+        }
+    }
+}
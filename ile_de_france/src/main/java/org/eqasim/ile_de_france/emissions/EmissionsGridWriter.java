@@ -0,0 +1,117 @@
+package org.eqasim.ile_de_france.emissions;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.contrib.emissions.Pollutant;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes rasterized emissions bin by bin, so that only one time bin needs to be
+ * kept in memory. The binary format contains the grid definition and the
+ * raster indices of the cells once, followed by one float per cell and
+ * pollutant for every time bin. The CSV format contains one row per cell and
+ * time bin with any emissions.
+ */
+public class EmissionsGridWriter implements Closeable {
+    static final long BINARY_MAGIC = 0x7FF0000047524944L;
+    static final int BINARY_VERSION = 1;
+
+    static private final int BUFFER_SIZE = 1024 * 1024;
+
+    public enum Format {
+        binary, csv
+    }
+
+    private final EmissionsGrid grid;
+    private final Pollutant[] pollutants;
+    private final Format format;
+
+    private final DataOutputStream writer;
+
+    public EmissionsGridWriter(String outputPath, Format format, EmissionsGrid grid, Pollutant[] pollutants,
+            double timeBinSize, int numberOfTimeBins) throws IOException {
+        this.grid = grid;
+        this.pollutants = pollutants;
+        this.format = format;
+        this.writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath), BUFFER_SIZE));
+
+        if (format.equals(Format.binary)) {
+            writer.writeLong(BINARY_MAGIC);
+            writer.writeInt(BINARY_VERSION);
+
+            writer.writeDouble(grid.getMinX());
+            writer.writeDouble(grid.getMinY());
+            writer.writeDouble(grid.getCellSize());
+            writer.writeInt(grid.getColumns());
+            writer.writeInt(grid.getRows());
+            writer.writeDouble(timeBinSize);
+            writer.writeInt(numberOfTimeBins);
+
+            writer.writeInt(pollutants.length);
+
+            for (Pollutant pollutant : pollutants) {
+                writer.writeUTF(pollutant.name());
+            }
+
+            writer.writeInt(grid.getNumberOfCells());
+
+            for (int cell = 0; cell < grid.getNumberOfCells(); cell++) {
+                writer.writeInt(grid.getCellIndex(cell));
+            }
+        } else {
+            StringBuilder header = new StringBuilder("x;y;time");
+
+            for (Pollutant pollutant : pollutants) {
+                header.append(';').append(pollutant.name());
+            }
+
+            writer.writeBytes(header.append('\n').toString());
+        }
+    }
+
+    /**
+     * Writes the values of one time bin, indexed by pollutant and cell.
+     */
+    public void write(int startTime, double[][] values) throws IOException {
+        if (format.equals(Format.binary)) {
+            for (int slot = 0; slot < pollutants.length; slot++) {
+                for (int cell = 0; cell < grid.getNumberOfCells(); cell++) {
+                    writer.writeFloat((float) values[slot][cell]);
+                }
+            }
+        } else {
+            StringBuilder row = new StringBuilder();
+
+            for (int cell = 0; cell < grid.getNumberOfCells(); cell++) {
+                boolean hasEmissions = false;
+
+                for (int slot = 0; slot < pollutants.length; slot++) {
+                    hasEmissions |= values[slot][cell] != 0.0;
+                }
+
+                if (hasEmissions) {
+                    Coord centroid = grid.getCellCentroid(cell);
+
+                    row.setLength(0);
+                    row.append(centroid.getX()).append(';').append(centroid.getY()).append(';').append(startTime);
+
+                    for (int slot = 0; slot < pollutants.length; slot++) {
+                        row.append(';').append(values[slot][cell]);
+                    }
+
+                    writer.writeBytes(row.append('\n').toString());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+        writer.close();
+    }
+}
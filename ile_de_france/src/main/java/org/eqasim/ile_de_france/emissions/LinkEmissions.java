@@ -0,0 +1,182 @@
+package org.eqasim.ile_de_france.emissions;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.emissions.Pollutant;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+/**
+ * Emissions by time bin, link and pollutant. Links are numbered in the order of
+ * the network and only the requested pollutants are stored. Every time bin is
+ * one block of links times pollutants values which is allocated when the bin
+ * is first used, either on the heap or, to keep large networks out of the
+ * garbage collector, in direct memory. Whether a link has emission events in a
+ * time bin is tracked separately, because values may sum up to zero or be
+ * negative.
+ */
+public class LinkEmissions {
+    public static final int NONE = -1;
+
+    private final double timeBinSize;
+    private final boolean offHeap;
+
+    private final List<Link> links = new ArrayList<>();
+    private final int[] linkPositions;
+
+    private final Pollutant[] pollutants;
+    private final int[] pollutantSlots;
+
+    private DoubleBuffer[] timeBins = new DoubleBuffer[0];
+    private boolean[][] presence = new boolean[0][];
+
+    public LinkEmissions(Network network, Collection<Pollutant> pollutants, double timeBinSize, boolean offHeap) {
+        this.timeBinSize = timeBinSize;
+        this.offHeap = offHeap;
+
+        int maximumIndex = -1;
+
+        for (Link link : network.getLinks().values()) {
+            maximumIndex = Math.max(maximumIndex, link.getId().index());
+        }
+
+        this.linkPositions = new int[maximumIndex + 1];
+        Arrays.fill(linkPositions, NONE);
+
+        for (Link link : network.getLinks().values()) {
+            linkPositions[link.getId().index()] = links.size();
+            links.add(link);
+        }
+
+        this.pollutants = pollutants.toArray(new Pollutant[0]);
+        this.pollutantSlots = new int[Pollutant.values().length];
+        Arrays.fill(pollutantSlots, NONE);
+
+        for (int slot = 0; slot < this.pollutants.length; slot++) {
+            pollutantSlots[this.pollutants[slot].ordinal()] = slot;
+        }
+    }
+
+    public double getTimeBinSize() {
+        return timeBinSize;
+    }
+
+    public int getTimeBin(double time) {
+        return Math.max(0, (int) Math.floor(time / timeBinSize));
+    }
+
+    public double getTimeBinStart(int timeBin) {
+        return timeBin * timeBinSize;
+    }
+
+    public int getNumberOfTimeBins() {
+        return timeBins.length;
+    }
+
+    public List<Link> getLinks() {
+        return Collections.unmodifiableList(links);
+    }
+
+    public int getNumberOfLinks() {
+        return links.size();
+    }
+
+    public Pollutant[] getPollutants() {
+        return pollutants.clone();
+    }
+
+    /**
+     * Returns the position of the link in the network order or NONE if the link
+     * is not part of the network.
+     */
+    public int getLinkPosition(Id<Link> linkId) {
+        int index = linkId.index();
+        return index < linkPositions.length ? linkPositions[index] : NONE;
+    }
+
+    /**
+     * Returns the slot of the pollutant or NONE if it is not recorded.
+     */
+    public int getPollutantSlot(Pollutant pollutant) {
+        return pollutantSlots[pollutant.ordinal()];
+    }
+
+    /**
+     * Allocates all time bins up to the given one.
+     */
+    public void ensureTimeBin(int timeBin) {
+        DoubleBuffer[] current = timeBins;
+
+        if (timeBin < current.length) {
+            return;
+        }
+
+        DoubleBuffer[] updated = Arrays.copyOf(current, timeBin + 1);
+        boolean[][] updatedPresence = Arrays.copyOf(presence, timeBin + 1);
+
+        for (int k = current.length; k < updated.length; k++) {
+            updated[k] = allocate(links.size() * pollutants.length);
+            updatedPresence[k] = new boolean[links.size()];
+        }
+
+        presence = updatedPresence;
+        timeBins = updated;
+    }
+
+    private DoubleBuffer allocate(int size) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(size * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        } else {
+            return DoubleBuffer.allocate(size);
+        }
+    }
+
+    public void add(int timeBin, int linkPosition, int pollutantSlot, double value) {
+        DoubleBuffer buffer = timeBins[timeBin];
+        int offset = linkPosition * pollutants.length + pollutantSlot;
+        buffer.put(offset, buffer.get(offset) + value);
+    }
+
+    public double get(int timeBin, int linkPosition, int pollutantSlot) {
+        return timeBins[timeBin].get(linkPosition * pollutants.length + pollutantSlot);
+    }
+
+    /**
+     * Marks that the link has emission events in the time bin.
+     */
+    public void setPresent(int timeBin, int linkPosition) {
+        presence[timeBin][linkPosition] = true;
+    }
+
+    /**
+     * Returns whether the link has emission events in the time bin, whatever their
+     * values are.
+     */
+    public boolean hasEmissions(int timeBin, int linkPosition) {
+        return presence[timeBin][linkPosition];
+    }
+
+    /**
+     * Copies the emissions of one pollutant in one time bin for all links, in
+     * network order.
+     */
+    public double[] getLinkValues(int timeBin, int pollutantSlot) {
+        DoubleBuffer buffer = timeBins[timeBin];
+        double[] values = new double[links.size()];
+
+        for (int position = 0; position < values.length; position++) {
+            values[position] = buffer.get(position * pollutants.length + pollutantSlot);
+        }
+
+        return values;
+    }
+
+    public void clear() {
+        timeBins = new DoubleBuffer[0];
+        presence = new boolean[0][];
+    }
+}
@@ -0,0 +1,85 @@
+package org.eqasim.ile_de_france.emissions;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.emissions.Pollutant;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
+
+import java.util.Map;
+
+/**
+ * Adds warm and cold emission events to {@link LinkEmissions}. Values are added
+ * right away in the events thread, since adding them costs far less than
+ * decoding the events. Events on links that are not part of the network are
+ * skipped and counted, {@link #finish()} reports them after reading.
+ */
+public class LinkEmissionsHandler implements WarmEmissionEventHandler, ColdEmissionEventHandler {
+    private final static Logger logger = Logger.getLogger(LinkEmissionsHandler.class);
+
+    private final LinkEmissions emissions;
+
+    private long numberOfSkippedEvents = 0;
+
+    public LinkEmissionsHandler(LinkEmissions emissions) {
+        this.emissions = emissions;
+    }
+
+    public LinkEmissions getEmissions() {
+        return emissions;
+    }
+
+    public long getNumberOfSkippedEvents() {
+        return numberOfSkippedEvents;
+    }
+
+    @Override
+    public void reset(int iteration) {
+        emissions.clear();
+        numberOfSkippedEvents = 0;
+    }
+
+    @Override
+    public void handleEvent(WarmEmissionEvent event) {
+        handleEmissionEvent(event.getTime(), event.getLinkId(), event.getWarmEmissions());
+    }
+
+    @Override
+    public void handleEvent(ColdEmissionEvent event) {
+        handleEmissionEvent(event.getTime(), event.getLinkId(), event.getColdEmissions());
+    }
+
+    private void handleEmissionEvent(double time, Id<Link> linkId, Map<Pollutant, Double> values) {
+        int timeBin = emissions.getTimeBin(time);
+        int linkPosition = emissions.getLinkPosition(linkId);
+
+        if (linkPosition == LinkEmissions.NONE) {
+            numberOfSkippedEvents++;
+            return;
+        }
+
+        emissions.ensureTimeBin(timeBin);
+        emissions.setPresent(timeBin, linkPosition);
+
+        for (Map.Entry<Pollutant, Double> entry : values.entrySet()) {
+            int pollutantSlot = emissions.getPollutantSlot(entry.getKey());
+
+            if (pollutantSlot != LinkEmissions.NONE) {
+                emissions.add(timeBin, linkPosition, pollutantSlot, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reports the events that have been skipped while reading.
+     */
+    public void finish() {
+        if (numberOfSkippedEvents > 0) {
+            logger.warn(String.format("Skipped %d emission events on links that are not part of the network",
+                    numberOfSkippedEvents));
+        }
+    }
+}
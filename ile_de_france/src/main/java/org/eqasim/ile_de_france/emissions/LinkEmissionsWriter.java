@@ -0,0 +1,118 @@
+package org.eqasim.ile_de_france.emissions;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.emissions.Pollutant;
+import org.matsim.core.utils.geometry.geotools.MGC;
+import org.matsim.core.utils.gis.PolylineFeatureFactory;
+import org.matsim.core.utils.gis.ShapeFileWriter;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes one row per link and time bin that has emissions, with one column per
+ * recorded pollutant.
+ */
+public class LinkEmissionsWriter {
+    static private final int BUFFER_SIZE = 1024 * 1024;
+
+    private final LinkEmissions emissions;
+
+    public LinkEmissionsWriter(LinkEmissions emissions) {
+        this.emissions = emissions;
+    }
+
+    public void writeShapefile(String outputPath, String crs) {
+        Pollutant[] pollutants = emissions.getPollutants();
+
+        PolylineFeatureFactory.Builder builder = new PolylineFeatureFactory.Builder() //
+                .setCrs(MGC.getCRS(crs)).setName("Emissions") //
+                .addAttribute("link", String.class) //
+                .addAttribute("time", Integer.class);
+
+        for (Pollutant pollutant : pollutants) {
+            builder.addAttribute(pollutant.name(), Double.class);
+        }
+
+        PolylineFeatureFactory linkFactory = builder.create();
+        Collection<SimpleFeature> features = new ArrayList<>();
+
+        List<Link> links = emissions.getLinks();
+        Object[] attributes = new Object[2 + pollutants.length];
+
+        for (int timeBin = 0; timeBin < emissions.getNumberOfTimeBins(); timeBin++) {
+            int startTime = (int) emissions.getTimeBinStart(timeBin);
+
+            for (int position = 0; position < links.size(); position++) {
+                if (emissions.hasEmissions(timeBin, position)) {
+                    Link link = links.get(position);
+
+                    Coordinate fromCoordinate = new Coordinate(link.getFromNode().getCoord().getX(),
+                            link.getFromNode().getCoord().getY());
+                    Coordinate toCoordinate = new Coordinate(link.getToNode().getCoord().getX(),
+                            link.getToNode().getCoord().getY());
+
+                    attributes[0] = link.getId().toString();
+                    attributes[1] = startTime;
+
+                    for (int slot = 0; slot < pollutants.length; slot++) {
+                        attributes[2 + slot] = emissions.get(timeBin, position, slot);
+                    }
+
+                    features.add(linkFactory.createPolyline( //
+                            new Coordinate[] { fromCoordinate, toCoordinate }, //
+                            attributes, null));
+                }
+            }
+        }
+
+        ShapeFileWriter.writeGeometries(features, outputPath);
+    }
+
+    public void writeCsv(String outputPath) throws IOException {
+        Pollutant[] pollutants = emissions.getPollutants();
+
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath)),
+                BUFFER_SIZE);
+
+        List<String> header = new ArrayList<>();
+        header.add("link");
+        header.add("time");
+
+        for (Pollutant pollutant : pollutants) {
+            header.add(pollutant.name());
+        }
+
+        writer.write(String.join(";", header) + "\n");
+
+        List<Link> links = emissions.getLinks();
+        StringBuilder row = new StringBuilder();
+
+        for (int timeBin = 0; timeBin < emissions.getNumberOfTimeBins(); timeBin++) {
+            int startTime = (int) emissions.getTimeBinStart(timeBin);
+
+            for (int position = 0; position < links.size(); position++) {
+                if (emissions.hasEmissions(timeBin, position)) {
+                    row.setLength(0);
+                    row.append(links.get(position).getId().toString()).append(';').append(startTime);
+
+                    for (int slot = 0; slot < pollutants.length; slot++) {
+                        row.append(';').append(emissions.get(timeBin, position, slot));
+                    }
+
+                    writer.write(row.append('\n').toString());
+                }
+            }
+        }
+
+        writer.flush();
+        writer.close();
+    }
+}
@@ -4,26 +4,31 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.eqasim.ile_de_france.IDFConfigurator;
 import org.locationtech.jts.geom.Geometry;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.contrib.emissions.analysis.EmissionGridAnalyzer;
+import org.matsim.contrib.emissions.events.EmissionEventsReader;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.CommandLine;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.io.MatsimNetworkReader;
 import org.matsim.core.utils.gis.ShapeFileReader;
 import org.opengis.feature.simple.SimpleFeature;
 
+import java.io.IOException;
+import java.util.BitSet;
+
 // TODO: will need to be updated after the matsim 14 release to profit from https://github.com/matsim-org/matsim-libs/pull/1859
 
 public class RunComputeEmissionsGrid {
 
-    public static void main(String[] args) throws CommandLine.ConfigurationException {
+    public static void main(String[] args) throws CommandLine.ConfigurationException, IOException, InterruptedException {
 
         CommandLine cmd = new CommandLine.Builder(args) //
                 .requireOptions("config-path", "domain-shp-path") //
-                .allowOptions("scale-factor", "grid-size", "smooth-radius", "time-bin-size")
+                .allowOptions("scale-factor", "grid-size", "smooth-radius", "time-bin-size", "threads", "output-format")
                 .build();
 
         ConfigGroup[] configGroups = ArrayUtils.addAll(new IDFConfigurator().getConfigGroups(), new EmissionsConfigGroup());
@@ -42,17 +47,54 @@ public class RunComputeEmissionsGrid {
         int gridSize = Integer.parseInt(cmd.getOption("grid-size").orElse("25"));
         int smoothRadius = Integer.parseInt(cmd.getOption("smooth-radius").orElse("50"));
         int timeBinSize = Integer.parseInt(cmd.getOption("time-bin-size").orElse("3600"));
+        int numberOfThreads = cmd.getOption("threads").map(Integer::parseInt)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        EmissionsGridWriter.Format outputFormat = EmissionsGridWriter.Format
+                .valueOf(cmd.getOption("output-format").orElse("binary"));
+
+        // Aggregate emissions by link and time bin
+        LinkEmissions emissions = new LinkEmissions(network, RunExportEmissionsNetwork.POLLUTANTS, timeBinSize, false);
+        LinkEmissionsHandler handler = new LinkEmissionsHandler(emissions);
+
+        EventsManager eventsManager = EventsUtils.createEventsManager();
+        eventsManager.addHandler(handler);
+        eventsManager.initProcessing();
+        new EmissionEventsReader(eventsManager).readFile(outputDirectory + "output_emissions_events.xml.gz");
+        eventsManager.finishProcessing();
+        handler.finish();
+
+        // Only links with emissions are distributed onto the grid
+        BitSet relevantLinks = new BitSet(emissions.getNumberOfLinks());
+
+        for (int timeBin = 0; timeBin < emissions.getNumberOfTimeBins(); timeBin++) {
+            for (int position = 0; position < emissions.getNumberOfLinks(); position++) {
+                if (emissions.hasEmissions(timeBin, position)) {
+                    relevantLinks.set(position);
+                }
+            }
+        }
+
+        EmissionsGrid grid = EmissionsGrid.build(emissions.getLinks(), relevantLinks, analysisGeometry, gridSize,
+                smoothRadius, numberOfThreads);
+
+        String outputPath = outputDirectory + "output_emissions_grid."
+                + (outputFormat.equals(EmissionsGridWriter.Format.csv) ? "csv" : "bin");
+
+        int numberOfPollutants = emissions.getPollutants().length;
+
+        try (EmissionsGridWriter writer = new EmissionsGridWriter(outputPath, outputFormat, grid,
+                emissions.getPollutants(), timeBinSize, emissions.getNumberOfTimeBins())) {
+            for (int timeBin = 0; timeBin < emissions.getNumberOfTimeBins(); timeBin++) {
+                double[][] linkValues = new double[numberOfPollutants][];
+
+                for (int slot = 0; slot < numberOfPollutants; slot++) {
+                    linkValues[slot] = emissions.getLinkValues(timeBin, slot);
+                }
 
-        new EmissionGridAnalyzer.Builder() //
-                .withBounds(analysisGeometry) //
-                .withNetwork(network) //
-                .withCountScaleFactor(scaleFactor) //
-                .withGridSize(gridSize) //
-                .withSmoothingRadius(smoothRadius) //
-                .withTimeBinSize(timeBinSize) //
-                .withGridType(EmissionGridAnalyzer.GridType.Square) //
-                .build() //
-                .processToJsonFile(outputDirectory + "output_emissions_events.xml.gz", outputDirectory + "output_emissions.json");
+                writer.write((int) emissions.getTimeBinStart(timeBin),
+                        grid.rasterize(linkValues, scaleFactor, numberOfThreads));
+            }
+        }
     }
 
 }
@@ -1,5 +1,6 @@
 package org.eqasim.ile_de_france.mode_choice.epsilon;
 
+import org.eqasim.core.components.config.EqasimConfigGroup;
 import org.eqasim.core.simulation.mode_choice.AbstractEqasimExtension;
 import org.eqasim.core.simulation.mode_choice.epsilon.EpsilonAdapter;
 import org.eqasim.core.simulation.mode_choice.epsilon.EpsilonProvider;
@@ -17,8 +18,9 @@ import com.google.inject.name.Names;
 
 public class EpsilonModule extends AbstractEqasimExtension {
 	@Provides
-	public GumbelEpsilonProvider provideGumbelEpsilonProvider(GlobalConfigGroup config) {
-		return new GumbelEpsilonProvider(config.getRandomSeed(), 1.0);
+	public GumbelEpsilonProvider provideGumbelEpsilonProvider(GlobalConfigGroup config,
+			EqasimConfigGroup eqasimConfig) {
+		return new GumbelEpsilonProvider(config.getRandomSeed(), 1.0, eqasimConfig.getEpsilonGenerator());
 	}
 
 	@Override
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
@@ -15,13 +16,22 @@ import org.junit.Before;
 import org.junit.Test;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.CommandLine.ConfigurationException;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.population.io.PopulationReader;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.facilities.MatsimFacilitiesReader;
 
 public class TestCorisica {
 	@Before
@@ -73,6 +83,23 @@ public class TestCorisica {
 			Assert.assertEquals(1286, countPersons("corsica_test/cut_population.xml.gz"));
 		}
 
+		// Cut the scenario again while streaming the population
+		{
+			RunScenarioCutter.main(new String[] { //
+					"--config-path", "corsica_test/corsica_config.xml", //
+					"--config:plans.inputPlansFile", "simulation_output/output_plans.xml.gz", //
+					"--extent-path", "corsica_test/extent.shp", //
+					"--threads", "4", //
+					"--prefix", "streaming_", //
+					"--output-path", "corsica_test", //
+					"--streaming", "true", //
+			});
+
+			assertSamePopulation("corsica_test/cut_population.xml.gz", "corsica_test/streaming_population.xml.gz");
+			assertSameNetwork("corsica_test/cut_network.xml.gz", "corsica_test/streaming_network.xml.gz");
+			assertSameFacilities("corsica_test/cut_facilities.xml.gz", "corsica_test/streaming_facilities.xml.gz");
+		}
+
 		// Run the cut simulation
 		{
 			RunSimulation.main(new String[] { //
@@ -111,6 +138,82 @@ public class TestCorisica {
 		return counts;
 	}
 
+	static Population readPopulation(String populationPath) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(scenario).readFile(populationPath);
+		return scenario.getPopulation();
+	}
+
+	/**
+	 * Compares two populations regardless of the order of the persons.
+	 */
+	static void assertSamePopulation(String expectedPath, String actualPath) {
+		Population expected = readPopulation(expectedPath);
+		Population actual = readPopulation(actualPath);
+
+		Assert.assertEquals(expected.getPersons().keySet(), actual.getPersons().keySet());
+
+		for (Person expectedPerson : expected.getPersons().values()) {
+			Person actualPerson = actual.getPersons().get(expectedPerson.getId());
+			Assert.assertEquals(expectedPerson.getPlans().size(), actualPerson.getPlans().size());
+
+			for (int k = 0; k < expectedPerson.getPlans().size(); k++) {
+				List<PlanElement> expectedElements = expectedPerson.getPlans().get(k).getPlanElements();
+				List<PlanElement> actualElements = actualPerson.getPlans().get(k).getPlanElements();
+
+				Assert.assertEquals(expectedElements.size(), actualElements.size());
+
+				for (int i = 0; i < expectedElements.size(); i++) {
+					PlanElement expectedElement = expectedElements.get(i);
+					PlanElement actualElement = actualElements.get(i);
+
+					if (expectedElement instanceof Activity) {
+						Activity expectedActivity = (Activity) expectedElement;
+						Activity actualActivity = (Activity) actualElement;
+
+						Assert.assertEquals(expectedActivity.getType(), actualActivity.getType());
+						Assert.assertEquals(expectedActivity.getLinkId(), actualActivity.getLinkId());
+						Assert.assertEquals(expectedActivity.getFacilityId(), actualActivity.getFacilityId());
+						Assert.assertEquals(expectedActivity.getCoord(), actualActivity.getCoord());
+						Assert.assertEquals(expectedActivity.getEndTime(), actualActivity.getEndTime());
+					} else {
+						Leg expectedLeg = (Leg) expectedElement;
+						Leg actualLeg = (Leg) actualElement;
+
+						Assert.assertEquals(expectedLeg.getMode(), actualLeg.getMode());
+						Assert.assertEquals(expectedLeg.getDepartureTime(), actualLeg.getDepartureTime());
+						Assert.assertEquals(expectedLeg.getTravelTime(), actualLeg.getTravelTime());
+						Route expectedRoute = expectedLeg.getRoute();
+						Route actualRoute = actualLeg.getRoute();
+
+						Assert.assertEquals(expectedRoute.getStartLinkId(), actualRoute.getStartLinkId());
+						Assert.assertEquals(expectedRoute.getEndLinkId(), actualRoute.getEndLinkId());
+						Assert.assertEquals(expectedRoute.getRouteDescription(), actualRoute.getRouteDescription());
+					}
+				}
+			}
+		}
+	}
+
+	static void assertSameNetwork(String expectedPath, String actualPath) {
+		Network expected = NetworkUtils.readNetwork(expectedPath);
+		Network actual = NetworkUtils.readNetwork(actualPath);
+
+		Assert.assertEquals(expected.getNodes().keySet(), actual.getNodes().keySet());
+		Assert.assertEquals(expected.getLinks().keySet(), actual.getLinks().keySet());
+	}
+
+	static void assertSameFacilities(String expectedPath, String actualPath) {
+		Scenario expected = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimFacilitiesReader(expected).readFile(expectedPath);
+
+		Scenario actual = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new MatsimFacilitiesReader(actual).readFile(actualPath);
+
+		Assert.assertEquals(expected.getActivityFacilities().getFacilities().keySet(),
+				actual.getActivityFacilities().getFacilities().keySet());
+	}
+
 	static long countPersons(String populationPath) {
 		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
 		new PopulationReader(scenario).readFile(populationPath);
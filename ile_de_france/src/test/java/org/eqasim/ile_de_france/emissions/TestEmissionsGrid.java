@@ -0,0 +1,173 @@
+package org.eqasim.ile_de_france.emissions;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class TestEmissionsGrid {
+    private static final double CELL_SIZE = 10.0;
+    private static final double RADIUS = 50.0;
+
+    private Geometry createBounds(double size) {
+        return new GeometryFactory().createPolygon(new Coordinate[] { //
+                new Coordinate(0.0, 0.0), new Coordinate(size, 0.0), new Coordinate(size, size),
+                new Coordinate(0.0, size), new Coordinate(0.0, 0.0) });
+    }
+
+    private List<Link> createLinks(double[][] coordinates) {
+        Network network = NetworkUtils.createNetwork();
+        NetworkFactory factory = network.getFactory();
+
+        List<Link> links = new ArrayList<>();
+
+        for (int k = 0; k < coordinates.length; k++) {
+            Node fromNode = factory.createNode(Id.createNodeId("grid" + k + "from"),
+                    new Coord(coordinates[k][0], coordinates[k][1]));
+            Node toNode = factory.createNode(Id.createNodeId("grid" + k + "to"),
+                    new Coord(coordinates[k][2], coordinates[k][3]));
+
+            links.add(factory.createLink(Id.createLinkId("grid" + k), fromNode, toNode));
+        }
+
+        return links;
+    }
+
+    private BitSet allLinks(int numberOfLinks) {
+        BitSet relevantLinks = new BitSet();
+        relevantLinks.set(0, numberOfLinks);
+        return relevantLinks;
+    }
+
+    @Test
+    public void testWeightsSumToOne() throws InterruptedException {
+        // Horizontal, diagonal and zero-length links, all far from the bounds
+        List<Link> links = createLinks(new double[][] { //
+                { 500.0, 500.0, 700.0, 500.0 }, //
+                { 403.0, 398.0, 612.0, 655.0 }, //
+                { 501.0, 502.0, 501.0, 502.0 } });
+
+        EmissionsGrid grid = EmissionsGrid.build(links, allLinks(links.size()), createBounds(1000.0), CELL_SIZE,
+                RADIUS, 2);
+
+        for (int link = 0; link < links.size(); link++) {
+            double[][] linkValues = new double[1][links.size()];
+            linkValues[0][link] = 1.0;
+
+            double sum = 0.0;
+
+            for (double value : grid.rasterize(linkValues, 1.0, 3)[0]) {
+                sum += value;
+            }
+
+            // Only the tails of the kernel beyond the cutoff are lost
+            Assert.assertEquals(1.0, sum, 1e-3);
+        }
+    }
+
+    @Test
+    public void testIrrelevantLinks() throws InterruptedException {
+        List<Link> links = createLinks(new double[][] { //
+                { 200.0, 200.0, 300.0, 200.0 }, //
+                { 700.0, 700.0, 800.0, 700.0 } });
+
+        BitSet relevantLinks = new BitSet();
+        relevantLinks.set(0);
+
+        EmissionsGrid grid = EmissionsGrid.build(links, relevantLinks, createBounds(1000.0), CELL_SIZE, RADIUS, 1);
+
+        double[][] cellValues = grid.rasterize(new double[][] { { 0.0, 1.0 } }, 1.0, 1);
+
+        for (double value : cellValues[0]) {
+            Assert.assertEquals(0.0, value, 0.0);
+        }
+    }
+
+    /**
+     * Kernel averaged along the link by numerical integration, for comparison
+     * with the closed form of the grid.
+     */
+    private double calculateExpectedWeight(Link link, Coord centroid) {
+        Coord from = link.getFromNode().getCoord();
+        Coord to = link.getToNode().getCoord();
+
+        double dx = to.getX() - from.getX();
+        double dy = to.getY() - from.getY();
+
+        // Distance to the nearest point of the link decides about the cutoff
+        double nearest = ((centroid.getX() - from.getX()) * dx + (centroid.getY() - from.getY()) * dy)
+                / (dx * dx + dy * dy);
+        nearest = Math.min(Math.max(nearest, 0.0), 1.0);
+
+        double nearestDistance2 = Math.pow(centroid.getX() - from.getX() - nearest * dx, 2)
+                + Math.pow(centroid.getY() - from.getY() - nearest * dy, 2);
+
+        if (nearestDistance2 > 9.0 * RADIUS * RADIUS) {
+            return 0.0;
+        }
+
+        int steps = 2000;
+        double sum = 0.0;
+
+        for (int step = 0; step <= steps; step++) {
+            double fraction = (double) step / steps;
+            double x = from.getX() + fraction * dx;
+            double y = from.getY() + fraction * dy;
+
+            double distance2 = Math.pow(centroid.getX() - x, 2) + Math.pow(centroid.getY() - y, 2);
+
+            // Simpson's rule
+            double factor = step == 0 || step == steps ? 1.0 : (step % 2 == 1 ? 4.0 : 2.0);
+            sum += factor * Math.exp(-distance2 / (RADIUS * RADIUS));
+        }
+
+        double average = sum / (3.0 * steps);
+        return average * CELL_SIZE * CELL_SIZE / (Math.PI * RADIUS * RADIUS);
+    }
+
+    @Test
+    public void testSingleLink() throws InterruptedException {
+        List<Link> links = createLinks(new double[][] { { 503.0, 507.0, 687.0, 561.0 } });
+        Link link = links.get(0);
+
+        Geometry bounds = createBounds(1000.0);
+        EmissionsGrid grid = EmissionsGrid.build(links, allLinks(1), bounds, CELL_SIZE, RADIUS, 1);
+
+        double[][] cellValues = grid.rasterize(new double[][] { { 1.0 }, { 3.0 } }, 2.0, 2);
+
+        for (int cell = 0; cell < grid.getNumberOfCells(); cell++) {
+            double expected = 2.0 * calculateExpectedWeight(link, grid.getCellCentroid(cell));
+
+            Assert.assertTrue(expected > 0.0);
+            Assert.assertEquals(expected, cellValues[0][cell], 1e-6);
+            Assert.assertEquals(3.0 * expected, cellValues[1][cell], 3e-6);
+        }
+
+        // All cells within the cutoff are part of the grid
+        int numberOfCells = 0;
+
+        for (int row = 0; row < grid.getRows(); row++) {
+            for (int column = 0; column < grid.getColumns(); column++) {
+                Coord centroid = new Coord((column + 0.5) * CELL_SIZE, (row + 0.5) * CELL_SIZE);
+
+                if (calculateExpectedWeight(link, centroid) > 0.0) {
+                    numberOfCells++;
+                }
+            }
+        }
+
+        Assert.assertEquals(numberOfCells, grid.getNumberOfCells());
+    }
+}
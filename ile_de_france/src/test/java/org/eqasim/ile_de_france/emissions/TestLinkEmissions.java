@@ -0,0 +1,161 @@
+package org.eqasim.ile_de_france.emissions;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.emissions.Pollutant;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TestLinkEmissions {
+    private static final double TIME_BIN_SIZE = 3600.0;
+    private static final List<Pollutant> POLLUTANTS = Arrays.asList(Pollutant.NOx, Pollutant.CO2_TOTAL);
+
+    private Network createNetwork(int numberOfLinks) {
+        Network network = NetworkUtils.createNetwork();
+        NetworkFactory factory = network.getFactory();
+
+        Node previousNode = factory.createNode(Id.createNodeId("emissions0"), new Coord(0.0, 0.0));
+        network.addNode(previousNode);
+
+        for (int k = 1; k <= numberOfLinks; k++) {
+            Node node = factory.createNode(Id.createNodeId("emissions" + k), new Coord(k * 100.0, 0.0));
+            network.addNode(node);
+            network.addLink(factory.createLink(Id.createLinkId("emissions" + k), previousNode, node));
+            previousNode = node;
+        }
+
+        return network;
+    }
+
+    /**
+     * Replays random warm and cold events into the handler and sums them up by
+     * time bin, link and pollutant in a map, as the map-based handler did.
+     */
+    private Map<String, Double> replay(LinkEmissionsHandler handler, Network network, int numberOfEvents) {
+        Map<String, Double> expected = new HashMap<>();
+
+        Random random = new Random(0);
+        Id<Vehicle> vehicleId = Id.createVehicleId("emissions");
+
+        for (int k = 0; k < numberOfEvents; k++) {
+            Id<Link> linkId = Id.createLinkId("emissions" + (1 + random.nextInt(network.getLinks().size())));
+            double time = random.nextDouble() * 30.0 * 3600.0;
+
+            // Unrecorded pollutants and negative values are included on purpose
+            Map<Pollutant, Double> values = new EnumMap<>(Pollutant.class);
+            values.put(Pollutant.NOx, random.nextDouble() - 0.2);
+            values.put(Pollutant.PM, random.nextDouble());
+
+            if (random.nextBoolean()) {
+                values.put(Pollutant.CO2_TOTAL, random.nextDouble() * 100.0);
+                handler.handleEvent(new WarmEmissionEvent(time, linkId, vehicleId, values));
+            } else {
+                handler.handleEvent(new ColdEmissionEvent(time, linkId, vehicleId, values));
+            }
+
+            int timeBin = (int) Math.floor(time / TIME_BIN_SIZE);
+
+            for (Pollutant pollutant : POLLUTANTS) {
+                expected.merge(timeBin + ":" + linkId + ":" + pollutant, values.getOrDefault(pollutant, 0.0),
+                        Double::sum);
+            }
+        }
+
+        handler.finish();
+        return expected;
+    }
+
+    private void assertAggregation(boolean offHeap) {
+        Network network = createNetwork(20);
+
+        LinkEmissions emissions = new LinkEmissions(network, POLLUTANTS, TIME_BIN_SIZE, offHeap);
+        LinkEmissionsHandler handler = new LinkEmissionsHandler(emissions);
+
+        Map<String, Double> expected = replay(handler, network, 20000);
+
+        Assert.assertEquals(30, emissions.getNumberOfTimeBins());
+        Assert.assertEquals(0, handler.getNumberOfSkippedEvents());
+
+        for (int timeBin = 0; timeBin < emissions.getNumberOfTimeBins(); timeBin++) {
+            for (int position = 0; position < emissions.getNumberOfLinks(); position++) {
+                Id<Link> linkId = emissions.getLinks().get(position).getId();
+                Assert.assertEquals(position, emissions.getLinkPosition(linkId));
+
+                for (int slot = 0; slot < POLLUTANTS.size(); slot++) {
+                    Double value = expected.get(timeBin + ":" + linkId + ":" + POLLUTANTS.get(slot));
+
+                    Assert.assertEquals(value != null, emissions.hasEmissions(timeBin, position));
+                    Assert.assertEquals(value == null ? 0.0 : value, emissions.get(timeBin, position, slot), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAggregation() {
+        assertAggregation(false);
+    }
+
+    @Test
+    public void testOffHeapAggregation() {
+        assertAggregation(true);
+    }
+
+    private static Map<Pollutant, Double> createValues(Pollutant pollutant, double value) {
+        return Collections.singletonMap(pollutant, value);
+    }
+
+    @Test
+    public void testPresenceAndUnknownLinks() {
+        Network network = createNetwork(3);
+
+        LinkEmissions emissions = new LinkEmissions(network, POLLUTANTS, TIME_BIN_SIZE, false);
+        LinkEmissionsHandler handler = new LinkEmissionsHandler(emissions);
+
+        Id<Vehicle> vehicleId = Id.createVehicleId("emissions");
+        Id<Link> linkId = Id.createLinkId("emissions2");
+
+        // Values that cancel out and values of unrecorded pollutants still count
+        handler.handleEvent(new WarmEmissionEvent(100.0, linkId, vehicleId, createValues(Pollutant.NOx, 1.0)));
+        handler.handleEvent(new WarmEmissionEvent(200.0, linkId, vehicleId, createValues(Pollutant.NOx, -1.0)));
+        handler.handleEvent(new ColdEmissionEvent(4000.0, linkId, vehicleId, createValues(Pollutant.PM, 1.0)));
+
+        // Links outside of the network are skipped
+        Id<Link> unknownLinkId = Id.createLinkId("emissionsUnknown");
+        handler.handleEvent(new WarmEmissionEvent(100.0, unknownLinkId, vehicleId, createValues(Pollutant.NOx, 1.0)));
+
+        handler.finish();
+
+        int position = emissions.getLinkPosition(linkId);
+
+        Assert.assertEquals(LinkEmissions.NONE, emissions.getLinkPosition(unknownLinkId));
+        Assert.assertEquals(1, handler.getNumberOfSkippedEvents());
+        Assert.assertEquals(2, emissions.getNumberOfTimeBins());
+
+        Assert.assertTrue(emissions.hasEmissions(0, position));
+        Assert.assertEquals(0.0, emissions.get(0, position, 0), 1e-9);
+        Assert.assertTrue(emissions.hasEmissions(1, position));
+
+        Assert.assertFalse(emissions.hasEmissions(0, emissions.getLinkPosition(Id.createLinkId("emissions1"))));
+
+        handler.reset(1);
+        Assert.assertEquals(0, emissions.getNumberOfTimeBins());
+        Assert.assertEquals(0, handler.getNumberOfSkippedEvents());
+    }
+}
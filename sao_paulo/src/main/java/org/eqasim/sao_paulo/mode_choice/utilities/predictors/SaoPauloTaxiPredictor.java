@@ -19,6 +19,7 @@ public class SaoPauloTaxiPredictor extends CachedVariablePredictor<TaxiVariables
 
 	@Inject
 	public SaoPauloTaxiPredictor(@Named("taxi") CostModel costModel) {
+		super(true);
 		this.costModel = costModel;
 	}
 
@@ -1,6 +1,7 @@
 package org.eqasim.vdf;
 
 import org.eqasim.core.components.config.EqasimConfigGroup;
+import org.eqasim.core.components.traffic.CrossingPenaltyClassification;
 import org.eqasim.vdf.function.BPRFunction;
 import org.eqasim.vdf.function.VolumeDelayFunction;
 import org.matsim.api.core.v01.TransportMode;
@@ -23,11 +24,13 @@ public class VDFModule extends AbstractModule {
 	@Provides
 	@Singleton
 	public VDFTravelTime provideVDFTravelTime(VDFConfigGroup config, Network network, VolumeDelayFunction vdf,
-			QSimConfigGroup qsimConfig, EqasimConfigGroup eqasimConfig) {
+			QSimConfigGroup qsimConfig, EqasimConfigGroup eqasimConfig,
+			CrossingPenaltyClassification crossingPenaltyClassification) {
 		int numberOfIntervals = (int) Math.floor((config.getEndTime() - config.getStartTime()) / config.getInterval())
 				+ 1;
 		return new VDFTravelTime(config.getEndTime(), config.getInterval(), numberOfIntervals, config.getMinimumSpeed(),
-				qsimConfig.getFlowCapFactor(), network, vdf, eqasimConfig.getCrossingPenalty());
+				qsimConfig.getFlowCapFactor(), network, vdf, eqasimConfig.getCrossingPenalty(),
+				crossingPenaltyClassification);
 	}
 
 	@Provides
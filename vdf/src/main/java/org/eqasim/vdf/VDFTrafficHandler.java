@@ -1,79 +1,85 @@
 package org.eqasim.vdf;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.IdMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
-import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 
+/**
+ * Counts link entries per interval and passes the counts, averaged over the
+ * last iterations, to the {@link VDFTravelTime}. Counts are kept in an atomic
+ * array in the layout of the travel times, so counting is lock-free. The
+ * history is a ring buffer of past counts together with their running sum, so
+ * each reset only adds the newest counts and subtracts the expired ones.
+ */
 public class VDFTrafficHandler implements LinkEnterEventHandler {
 	private final VDFTravelTime travelTime;
-	private final Network network;
 	private final int horizon;
 
-	private final IdMap<Link, List<Integer>> counts = new IdMap<>(Link.class);
-	private final List<IdMap<Link, List<Integer>>> history = new LinkedList<>();
+	private final AtomicIntegerArray counts;
+
+	private final int[][] history;
+	private final long[] historySum;
+	private final double[] aggregated;
+
+	private int historyStart = 0;
+	private int historySize = 0;
 
 	public VDFTrafficHandler(Network network, VDFTravelTime travelTime, int horizon) {
 		this.travelTime = travelTime;
-		this.network = network;
 		this.horizon = horizon;
 
+		int numberOfValues = travelTime.getNumberOfValues();
+
+		this.counts = new AtomicIntegerArray(numberOfValues);
+		this.history = new int[horizon][];
+		this.historySum = new long[numberOfValues];
+		this.aggregated = new double[numberOfValues];
+
 		reset(0);
 	}
 
 	@Override
-	public synchronized void handleEvent(LinkEnterEvent event) {
-		int i = travelTime.getInterval(event.getTime());
-		int currentValue = counts.get(event.getLinkId()).get(i);
-		counts.get(event.getLinkId()).set(i, currentValue + 1);
+	public void handleEvent(LinkEnterEvent event) {
+		int index = travelTime.getIndex(event.getLinkId(), event.getTime());
+
+		if (index < counts.length()) {
+			counts.incrementAndGet(index);
+		}
 	}
 
 	@Override
 	public void reset(int iteration) {
-		if (history.size() == horizon) {
-			history.remove(0);
-		}
-		
-		// Make a copy to add to the history
-		
-		IdMap<Link, List<Integer>> copy = new IdMap<>(Link.class);
-		
-		for (Map.Entry<Id<Link>, List<Integer>> entry : counts.entrySet()) {
-			copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+		int[] slot;
+
+		if (historySize == horizon) {
+			// Expire the oldest counts and reuse their slot
+			slot = history[historyStart];
+			historyStart = (historyStart + 1) % horizon;
+			historySize--;
+
+			for (int i = 0; i < slot.length; i++) {
+				historySum[i] -= slot[i];
+			}
+		} else {
+			slot = new int[counts.length()];
 		}
-		
-		history.add(copy);
-		
-		IdMap<Link, List<Double>> aggregated = new IdMap<>(Link.class);
-		
-		for (Id<Link> linkId : network.getLinks().keySet()) {
-			// Reset current counts
-			counts.put(linkId, new ArrayList<>(Collections.nCopies(travelTime.getNumberOfIntervals(), 0)));
-		
-			// Initialize aggregated counts
-			aggregated.put(linkId, new ArrayList<>(Collections.nCopies(travelTime.getNumberOfIntervals(), 0.0)));
+
+		// Move current counts into the history
+		for (int i = 0; i < slot.length; i++) {
+			slot[i] = counts.getAndSet(i, 0);
+			historySum[i] += slot[i];
 		}
-		
+
+		history[(historyStart + historySize) % horizon] = slot;
+		historySize++;
+
 		// Aggregate
-		
-		for (IdMap<Link, List<Integer>> item : history) {
-			for (Map.Entry<Id<Link>, List<Integer>> entry : item.entrySet()) {
-				List<Double> aggregatedList = aggregated.get(entry.getKey());
-				
-				for (int i = 0; i < aggregatedList.size(); i++) {
-					aggregatedList.set(i, aggregatedList.get(i) + (double) entry.getValue().get(i) / (double) history.size());
-				}
-			}
+		for (int i = 0; i < aggregated.length; i++) {
+			aggregated[i] = (double) historySum[i] / (double) historySize;
 		}
-		
+
 		travelTime.update(aggregated);
 	}
 }
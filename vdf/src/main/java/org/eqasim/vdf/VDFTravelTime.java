@@ -1,19 +1,21 @@
 package org.eqasim.vdf;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+import org.eqasim.core.components.traffic.CrossingPenaltyClassification;
 import org.eqasim.vdf.function.VolumeDelayFunction;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.vehicles.Vehicle;
 
+/**
+ * Travel times are stored in one flat array with one row of intervals per link,
+ * addressed through the link id index (see {@link #getIndex(Id, double)}).
+ */
 public class VDFTravelTime implements TravelTime {
 	private final double startTime;
 	private final double interval;
@@ -21,14 +23,17 @@ public class VDFTravelTime implements TravelTime {
 	private final double minimumSpeed;
 	private final double flowCapacityFactor;
 	private final double crossingPenalty;
+	private final CrossingPenaltyClassification crossingPenaltyClassification;
 
 	private final Network network;
 	private final VolumeDelayFunction vdf;
 
-	private final IdMap<Link, List<Double>> travelTimes = new IdMap<>(Link.class);
+	private final List<Link> links;
+	private final double[] travelTimes;
 
 	public VDFTravelTime(double startTime, double interval, int numberOfIntervals, double minimumSpeed,
-			double flowCapacityFacotor, Network network, VolumeDelayFunction vdf, double crossingPenalty) {
+			double flowCapacityFacotor, Network network, VolumeDelayFunction vdf, double crossingPenalty,
+			CrossingPenaltyClassification crossingPenaltyClassification) {
 		this.startTime = startTime;
 		this.interval = interval;
 		this.numberOfIntervals = numberOfIntervals;
@@ -37,54 +42,62 @@ public class VDFTravelTime implements TravelTime {
 		this.minimumSpeed = minimumSpeed;
 		this.flowCapacityFactor = flowCapacityFacotor;
 		this.crossingPenalty = crossingPenalty;
+		this.crossingPenaltyClassification = crossingPenaltyClassification;
 
-		for (Link link : network.getLinks().values()) {
+		this.links = new ArrayList<>(network.getLinks().values());
+
+		int maximumIndex = -1;
+
+		for (Link link : links) {
+			maximumIndex = Math.max(maximumIndex, link.getId().index());
+		}
+
+		this.travelTimes = new double[(maximumIndex + 1) * numberOfIntervals];
+
+		for (Link link : links) {
 			double travelTime = Math.max(1.0,
 					Math.max(link.getLength() / minimumSpeed, link.getLength() / link.getFreespeed()));
-			travelTimes.put(link.getId(), new ArrayList<>(Collections.nCopies(numberOfIntervals, travelTime)));
+
+			int offset = link.getId().index() * numberOfIntervals;
+
+			for (int i = 0; i < numberOfIntervals; i++) {
+				travelTimes[offset + i] = travelTime;
+			}
 		}
 	}
 
 	@Override
 	public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
-		int i = getInterval(time);
-		return travelTimes.get(link.getId()).get(i);
+		return travelTimes[getIndex(link.getId(), time)];
 	}
 
-	public void update(IdMap<Link, List<Double>> counts) {
-		for (Map.Entry<Id<Link>, List<Double>> entry : counts.entrySet()) {
-			Link link = network.getLinks().get(entry.getKey());
-
-			List<Double> linkCounts = entry.getValue();
-			List<Double> linkTravelTimes = travelTimes.get(entry.getKey());
+	/**
+	 * Updates the travel times from the (averaged) link counts, which are given in
+	 * the same layout as the travel times.
+	 */
+	public void update(double[] counts) {
+		for (Link link : links) {
+			int offset = link.getId().index() * numberOfIntervals;
 
 			for (int i = 0; i < numberOfIntervals; i++) {
 				double time = startTime + i * interval;
 
 				// Pass per interval
-				double flow = linkCounts.get(i) / flowCapacityFactor;
+				double flow = counts[offset + i] / flowCapacityFactor;
 				double capacity = interval * link.getCapacity(time) / network.getCapacityPeriod();
 
 				double travelTime = Math.max(1.0,
 						Math.max(link.getLength() / minimumSpeed, vdf.getTravelTime(time, flow, capacity, link)));
-				linkTravelTimes.set(i, considerCrossingPenalty(link, travelTime));
+				travelTimes[offset + i] = considerCrossingPenalty(link, travelTime);
 			}
 		}
 	}
 
 	private double considerCrossingPenalty(Link link, double baseTravelTime) {
-		boolean isMajor = true;
-
-		for (Link other : link.getToNode().getInLinks().values()) {
-			if (other.getCapacity() >= link.getCapacity()) {
-				isMajor = false;
-			}
-		}
-
-		if (isMajor || link.getToNode().getInLinks().size() == 1) {
-			return baseTravelTime;
-		} else {
+		if (crossingPenaltyClassification.hasCrossingPenalty(link)) {
 			return baseTravelTime + crossingPenalty;
+		} else {
+			return baseTravelTime;
 		}
 	}
 
@@ -95,4 +108,19 @@ public class VDFTravelTime implements TravelTime {
 	public int getInterval(double time) {
 		return Math.min(Math.max(0, (int) Math.floor((time - startTime) / interval)), numberOfIntervals - 1);
 	}
+
+	/**
+	 * Returns the position of a link and time in the flat per-link and per-interval
+	 * layout that is shared by the travel times and the counts.
+	 */
+	public int getIndex(Id<Link> linkId, double time) {
+		return linkId.index() * numberOfIntervals + getInterval(time);
+	}
+
+	/**
+	 * Returns the number of entries in the flat per-link and per-interval layout.
+	 */
+	public int getNumberOfValues() {
+		return travelTimes.length;
+	}
 }
@@ -0,0 +1,155 @@
+package org.eqasim.vdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eqasim.core.components.traffic.CrossingPenaltyClassification;
+import org.eqasim.vdf.function.BPRFunction;
+import org.eqasim.vdf.function.VolumeDelayFunction;
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+public class TestVDFTravelTime {
+	static private final double START_TIME = 0.0;
+	static private final double INTERVAL = 900.0;
+	static private final int NUMBER_OF_INTERVALS = 4;
+	static private final double MINIMUM_SPEED = 1.0;
+	static private final double FLOW_CAPACITY_FACTOR = 0.1;
+	static private final double CROSSING_PENALTY = 3.0;
+	static private final int HORIZON = 3;
+
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		NetworkFactory factory = network.getFactory();
+
+		Node nodeA = factory.createNode(Id.createNodeId("A"), new Coord(0.0, 0.0));
+		Node nodeB = factory.createNode(Id.createNodeId("B"), new Coord(0.0, 1000.0));
+		Node nodeC = factory.createNode(Id.createNodeId("C"), new Coord(1000.0, 0.0));
+		Node nodeD = factory.createNode(Id.createNodeId("D"), new Coord(2000.0, 0.0));
+
+		network.addNode(nodeA);
+		network.addNode(nodeB);
+		network.addNode(nodeC);
+		network.addNode(nodeD);
+
+		// AC and BC meet at an intersection, so they receive a crossing penalty
+		Link linkAC = factory.createLink(Id.createLinkId("AC"), nodeA, nodeC);
+		Link linkBC = factory.createLink(Id.createLinkId("BC"), nodeB, nodeC);
+		Link linkCD = factory.createLink(Id.createLinkId("CD"), nodeC, nodeD);
+
+		linkAC.setCapacity(2000.0);
+		linkBC.setCapacity(500.0);
+		linkCD.setCapacity(1000.0);
+
+		for (Link link : new Link[] { linkAC, linkBC, linkCD }) {
+			link.setLength(1000.0);
+			link.setFreespeed(10.0);
+			network.addLink(link);
+		}
+
+		return network;
+	}
+
+	/**
+	 * Computes the travel times the way the map-based implementation did: the
+	 * counts of the last iterations are kept per link and averaged from scratch
+	 * on every reset.
+	 */
+	static private Map<Id<Link>, List<Double>> computeReference(Network network, VolumeDelayFunction vdf,
+			List<Map<Id<Link>, int[]>> history) {
+		Map<Id<Link>, List<Double>> travelTimes = new HashMap<>();
+
+		for (Link link : network.getLinks().values()) {
+			List<Double> linkTravelTimes = new ArrayList<>(Collections.nCopies(NUMBER_OF_INTERVALS, 0.0));
+
+			for (int i = 0; i < NUMBER_OF_INTERVALS; i++) {
+				double count = 0.0;
+
+				for (Map<Id<Link>, int[]> item : history) {
+					int[] linkCounts = item.get(link.getId());
+					count += linkCounts == null ? 0.0 : (double) linkCounts[i] / (double) history.size();
+				}
+
+				double time = START_TIME + i * INTERVAL;
+				double flow = count / FLOW_CAPACITY_FACTOR;
+				double capacity = INTERVAL * link.getCapacity(time) / network.getCapacityPeriod();
+
+				double travelTime = Math.max(1.0,
+						Math.max(link.getLength() / MINIMUM_SPEED, vdf.getTravelTime(time, flow, capacity, link)));
+
+				if (CrossingPenaltyClassification.computeCrossingPenalty(link)) {
+					travelTime += CROSSING_PENALTY;
+				}
+
+				linkTravelTimes.set(i, travelTime);
+			}
+
+			travelTimes.put(link.getId(), linkTravelTimes);
+		}
+
+		return travelTimes;
+	}
+
+	@Test
+	public void testTravelTimesMatchReference() {
+		Network network = createNetwork();
+		VolumeDelayFunction vdf = new BPRFunction(0.15, 4.0);
+
+		VDFTravelTime travelTime = new VDFTravelTime(START_TIME, INTERVAL, NUMBER_OF_INTERVALS, MINIMUM_SPEED,
+				FLOW_CAPACITY_FACTOR, network, vdf, CROSSING_PENALTY, new CrossingPenaltyClassification(network));
+		VDFTrafficHandler handler = new VDFTrafficHandler(network, travelTime, HORIZON);
+
+		// The handler adds the (empty) initial counts to the history on construction
+		List<Map<Id<Link>, int[]>> history = new LinkedList<>();
+		history.add(new HashMap<>());
+
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		Random random = new Random(0);
+
+		for (int iteration = 1; iteration < 6; iteration++) {
+			Map<Id<Link>, int[]> counts = new HashMap<>();
+
+			for (int k = 0; k < 200; k++) {
+				Link link = links.get(random.nextInt(links.size()));
+
+				// Includes times before the start and after the end of the intervals
+				double time = -600.0 + random.nextDouble() * (NUMBER_OF_INTERVALS * INTERVAL + 1200.0);
+
+				handler.handleEvent(new LinkEnterEvent(time, Id.createVehicleId("v" + k), link.getId()));
+				counts.computeIfAbsent(link.getId(), id -> new int[NUMBER_OF_INTERVALS])[travelTime
+						.getInterval(time)]++;
+			}
+
+			handler.reset(iteration);
+
+			if (history.size() == HORIZON) {
+				history.remove(0);
+			}
+
+			history.add(counts);
+
+			Map<Id<Link>, List<Double>> reference = computeReference(network, vdf, history);
+
+			for (Link link : links) {
+				for (int i = 0; i < NUMBER_OF_INTERVALS; i++) {
+					double time = START_TIME + i * INTERVAL;
+					Assert.assertEquals(reference.get(link.getId()).get(i),
+							travelTime.getLinkTravelTime(link, time, null, null), 1e-9);
+				}
+			}
+		}
+	}
+}